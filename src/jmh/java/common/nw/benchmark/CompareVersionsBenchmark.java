@@ -0,0 +1,46 @@
+package common.nw.benchmark;
+
+import common.nw.core.utils.FileUtils;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * comparison of version strings
+ *
+ * @author Nuklearwurst
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CompareVersionsBenchmark {
+
+	private static final int COUNT = 1024;
+
+	private final String[] versions = new String[COUNT];
+
+	private int index = 0;
+
+	@Setup
+	public void setUp() {
+		Random random = new Random(42);
+		for (int i = 0; i < COUNT; i++) {
+			StringBuilder version = new StringBuilder().append(random.nextInt(3));
+			int parts = 1 + random.nextInt(4);
+			for (int j = 0; j < parts; j++) {
+				version.append('.').append(random.nextInt(20));
+			}
+			versions[i] = version.toString();
+		}
+	}
+
+	@Benchmark
+	public int compareVersions() {
+		index = (index + 1) & (COUNT - 1);
+		return FileUtils.compareVersions(versions[index], versions[(index * 7 + 3) & (COUNT - 1)]);
+	}
+}
@@ -0,0 +1,126 @@
+package common.nw.benchmark;
+
+import com.google.gson.Gson;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import common.nw.core.gui.IDownloadProgressListener;
+import common.nw.core.modpack.ModInfo;
+import common.nw.core.modpack.RepoMod;
+import common.nw.core.utils.DownloadHelper;
+import common.nw.core.utils.DownloadResult;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * downloads from an in-process http server, so the benchmark runs offline
+ * <p>
+ * measures the client side of the download path (connection handling, copying, hashing)
+ *
+ * @author Nuklearwurst
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DownloadBenchmark {
+
+	/**
+	 * size of the downloaded mod in kB
+	 */
+	@Param({"64", "4096"})
+	public int size;
+
+	private HttpServer server;
+	private String manifestUrl;
+	private ModInfo mod;
+	private File tempFile;
+
+	@Setup
+	public void setUp() throws IOException {
+		byte[] content = new byte[size * 1024];
+		new Random(42).nextBytes(content);
+		byte[] manifest = new Gson().toJson(SyntheticPack.createRepoModpack(1000)).getBytes(StandardCharsets.UTF_8);
+
+		server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+		server.createContext("/mod.jar", exchange -> send(exchange, content));
+		server.createContext("/modpack.json", exchange -> send(exchange, manifest));
+		server.start();
+		String baseUrl = "http://" + server.getAddress().getHostString() + ":" + server.getAddress().getPort();
+
+		manifestUrl = baseUrl + "/modpack.json";
+		RepoMod remoteMod = new RepoMod();
+		remoteMod.downloadUrl = baseUrl + "/mod.jar";
+		remoteMod.setFileName("mods/mod.jar");
+		mod = new ModInfo(remoteMod);
+		tempFile = File.createTempFile("download", ".tmp");
+	}
+
+	@TearDown
+	public void tearDown() {
+		server.stop(0);
+		DownloadHelper.deleteTempFile(tempFile);
+	}
+
+	@Benchmark
+	public DownloadResult downloadMod() {
+		//always download the whole file
+		DownloadHelper.deleteTempFile(tempFile);
+		return DownloadHelper.downloadModWithHash(tempFile, mod, SilentListener.INSTANCE);
+	}
+
+	@Benchmark
+	public String downloadManifest() throws IOException {
+		return DownloadHelper.getString(manifestUrl, null);
+	}
+
+	private static void send(HttpExchange exchange, byte[] content) throws IOException {
+		exchange.sendResponseHeaders(200, content.length);
+		try (OutputStream out = exchange.getResponseBody()) {
+			out.write(content);
+		}
+	}
+
+	/**
+	 * progress listener that ignores all progress
+	 */
+	private static class SilentListener implements IDownloadProgressListener {
+
+		private static final SilentListener INSTANCE = new SilentListener();
+
+		@Override
+		public boolean isCancelled() {
+			return false;
+		}
+
+		@Override
+		public boolean isPaused() {
+			return false;
+		}
+
+		@Override
+		public void setDownloadProgress(String msg) {
+		}
+
+		@Override
+		public void setDownloadProgress(int progress) {
+		}
+
+		@Override
+		public void setDownloadProgress(String msg, int progress) {
+		}
+
+		@Override
+		public void setDownloadProgress(String msg, int progress, int maxProgress) {
+		}
+	}
+}
@@ -0,0 +1,51 @@
+package common.nw.benchmark;
+
+import common.nw.core.utils.DownloadHelper;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * md5 of files of different sizes
+ *
+ * @author Nuklearwurst
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HashBenchmark {
+
+	/**
+	 * file size in kB
+	 */
+	@Param({"16", "1024", "16384", "65536"})
+	public int size;
+
+	private File file;
+
+	@Setup
+	public void setUp() throws IOException {
+		file = File.createTempFile("hash", ".jar");
+		byte[] content = new byte[size * 1024];
+		new Random(42).nextBytes(content);
+		Files.write(file.toPath(), content);
+	}
+
+	@TearDown
+	public void tearDown() {
+		//noinspection ResultOfMethodCallIgnored
+		file.delete();
+	}
+
+	@Benchmark
+	public String getHash() {
+		return DownloadHelper.getHash(file);
+	}
+}
@@ -0,0 +1,63 @@
+package common.nw.benchmark;
+
+import com.google.gson.Gson;
+import common.nw.core.modpack.LocalModpack;
+import common.nw.core.modpack.ModpackJson;
+import common.nw.core.modpack.RepoModpack;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * parsing of large modpack.json documents
+ * <p>
+ * {@code reflective*} reads the document into a String and binds it using reflection (as done before {@link ModpackJson}),
+ * {@code streaming*} parses the bytes directly using the hand-written adapters
+ *
+ * @author Nuklearwurst
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ManifestParseBenchmark {
+
+	@Param({"1000", "10000", "50000"})
+	public int files;
+
+	private byte[] repoJson;
+	private byte[] localJson;
+
+	@Setup
+	public void setUp() {
+		Gson gson = new Gson();
+		repoJson = gson.toJson(SyntheticPack.createRepoModpack(files)).getBytes(StandardCharsets.UTF_8);
+		localJson = gson.toJson(SyntheticPack.createLocalModpack(files)).getBytes(StandardCharsets.UTF_8);
+	}
+
+	@Benchmark
+	public RepoModpack reflectiveRepoModpack() {
+		return new Gson().fromJson(new String(repoJson, StandardCharsets.UTF_8), RepoModpack.class);
+	}
+
+	@Benchmark
+	public RepoModpack streamingRepoModpack() throws IOException {
+		return ModpackJson.readRepoModpack(new ByteArrayInputStream(repoJson), repoJson.length, null);
+	}
+
+	@Benchmark
+	public LocalModpack reflectiveLocalModpack() {
+		return new Gson().fromJson(new String(localJson, StandardCharsets.UTF_8), LocalModpack.class);
+	}
+
+	@Benchmark
+	public LocalModpack streamingLocalModpack() {
+		return ModpackJson.GSON.fromJson(new InputStreamReader(new ByteArrayInputStream(localJson), StandardCharsets.UTF_8), LocalModpack.class);
+	}
+}
@@ -0,0 +1,90 @@
+package common.nw.benchmark;
+
+import common.nw.core.modpack.ModIndex;
+import common.nw.core.modpack.ModInfo;
+import common.nw.core.modpack.ModpackValues;
+import common.nw.core.modpack.RepoMod;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * matching of remote and local mods on synthetic packs (mods, configs, scripts and resources)
+ * <p>
+ * {@code bruteForce} is the nested loop the updater used before {@link ModIndex}
+ *
+ * @author Nuklearwurst
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ModReconciliationBenchmark {
+
+	@Param({"1000", "10000", "50000"})
+	public int files;
+
+	private List<ModInfo> mods;
+	private List<RepoMod> remoteFiles;
+
+	@Setup
+	public void setUp() {
+		Random random = new Random(42);
+		mods = new ArrayList<>(files);
+		remoteFiles = new ArrayList<>(files);
+		for (int i = 0; i < files; i++) {
+			String fileName = SyntheticPack.getFileName(i);
+			String zipName = i % 4 == 0 ? "mod" + i : null;
+			//5% of the remote files are not installed yet
+			if (random.nextInt(100) >= 5) {
+				ModInfo mod = new ModInfo(fileName);
+				if (zipName != null) {
+					mod.name = zipName;
+					mod.hasName = true;
+				}
+				mods.add(mod);
+			}
+			RepoMod remoteMod = new RepoMod();
+			remoteMod.setFileName(fileName);
+			if (zipName != null) {
+				remoteMod.name = zipName;
+				remoteMod.nameType = ModpackValues.Name.nameTypeZipEntry;
+			} else {
+				remoteMod.name = fileName;
+				remoteMod.nameType = ModpackValues.Name.nameTypeFileName;
+			}
+			remoteFiles.add(remoteMod);
+		}
+		Collections.shuffle(mods, random);
+		Collections.shuffle(remoteFiles, random);
+	}
+
+	@Benchmark
+	public void indexed(Blackhole blackhole) {
+		ModIndex index = new ModIndex(mods);
+		for (RepoMod remoteMod : remoteFiles) {
+			blackhole.consume(index.find(remoteMod));
+		}
+	}
+
+	@Benchmark
+	public void bruteForce(Blackhole blackhole) {
+		for (RepoMod remoteMod : remoteFiles) {
+			ModInfo match = null;
+			for (ModInfo mod : mods) {
+				if (mod.equals(remoteMod)) {
+					match = mod;
+					break;
+				}
+			}
+			blackhole.consume(match);
+		}
+	}
+}
@@ -0,0 +1,74 @@
+package common.nw.benchmark;
+
+import common.nw.core.modpack.LocalModpack;
+import common.nw.core.modpack.ModpackValues;
+import common.nw.core.modpack.RepoMod;
+import common.nw.core.modpack.RepoModpack;
+import common.nw.core.modpack.RepoVersionInfo;
+
+import java.util.ArrayList;
+
+/**
+ * creates modpack documents of a given size for benchmarks
+ *
+ * @author Nuklearwurst
+ */
+public class SyntheticPack {
+
+	private SyntheticPack() {
+	}
+
+	/**
+	 * @return the file name of the i-th file (mods, configs, scripts and resources)
+	 */
+	public static String getFileName(int i) {
+		switch (i % 4) {
+			case 0:
+				return "mods/mod" + i + "-1.0.jar";
+			case 1:
+				return "config/mod" + i + ".cfg";
+			case 2:
+				return "scripts/script" + i + ".zs";
+			default:
+				return "resources/assets/texture" + i + ".png";
+		}
+	}
+
+	public static RepoModpack createRepoModpack(int files) {
+		RepoModpack modpack = new RepoModpack();
+		modpack.modpackName = "Benchmark Pack";
+		modpack.updaterRevision = 3;
+		modpack.modpackRepo = "http://localhost/benchmark/";
+		modpack.minecraft = new RepoVersionInfo();
+		modpack.minecraft.version = "1.0";
+		modpack.minecraft.versionName = "1.10.2";
+		modpack.minecraft.jarUpdateType = ModpackValues.Download.jarForgeInherit;
+		modpack.blacklist = new ArrayList<>();
+		modpack.files = new ArrayList<>(files);
+		for (int i = 0; i < files; i++) {
+			RepoMod mod = new RepoMod();
+			mod.setFileName(getFileName(i));
+			mod.name = i % 4 == 0 ? "mod" + i : mod.getFileName();
+			mod.nameType = i % 4 == 0 ? ModpackValues.Name.nameTypeZipEntry : ModpackValues.Name.nameTypeFileName;
+			mod.version = "1.0." + i;
+			mod.versionType = i % 4 == 0 ? ModpackValues.Version.versionTypeZipEntry : ModpackValues.Version.versionTypeMD5;
+			mod.downloadUrl = "http://localhost/benchmark/" + mod.getFileName();
+			mod.downloadType = ModpackValues.Download.modDirectDownload;
+			mod.md5 = String.format("%032x", i * 2654435761L);
+			modpack.files.add(mod);
+		}
+		return modpack;
+	}
+
+	public static LocalModpack createLocalModpack(int files) {
+		LocalModpack modpack = new LocalModpack("Benchmark Pack", "http://localhost/benchmark/modpack.json", "1.0");
+		for (int i = 0; i < files; i++) {
+			String fileName = getFileName(i);
+			modpack.files.add(fileName);
+			if (i % 4 == 1) {
+				modpack.trackedFileVersions.put(fileName, "1.0." + i);
+			}
+		}
+		return modpack;
+	}
+}
@@ -0,0 +1,96 @@
+package common.nw.benchmark;
+
+import common.nw.core.modpack.ModInfo;
+import common.nw.core.utils.ZipUtils;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Enumeration;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * reading mcmod.info files from jars with many entries
+ *
+ * @author Nuklearwurst
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ZipScanBenchmark {
+
+	private static final String MOD_INFO = "[{\"modid\": \"benchmark\", \"name\": \"Benchmark\", \"version\": \"1.0\"}]";
+
+	/**
+	 * number of class files in the jar
+	 */
+	@Param({"100", "1000", "10000"})
+	public int entries;
+
+	private File jar;
+
+	@Setup
+	public void setUp() throws IOException {
+		jar = File.createTempFile("mod", ".jar");
+		try (ZipOutputStream out = new ZipOutputStream(new FileOutputStream(jar))) {
+			byte[] classFile = new byte[512];
+			for (int i = 0; i < entries; i++) {
+				out.putNextEntry(new ZipEntry("common/benchmark/package" + (i / 100) + "/Class" + i + ".class"));
+				out.write(classFile);
+				out.closeEntry();
+			}
+			//worst case for the wildcard search: the mod.info is the last entry
+			out.putNextEntry(new ZipEntry("mcmod.info"));
+			out.write(MOD_INFO.getBytes(StandardCharsets.UTF_8));
+			out.closeEntry();
+		}
+	}
+
+	@TearDown
+	public void tearDown() {
+		//noinspection ResultOfMethodCallIgnored
+		jar.delete();
+	}
+
+	@Benchmark
+	public String wildcard() {
+		return ModInfo.readVersionFileFromZip(jar, "*mod.info");
+	}
+
+	@Benchmark
+	public String exactName() {
+		return ModInfo.readVersionFileFromZip(jar, "mcmod.info");
+	}
+
+	@Benchmark
+	public String cached() {
+		return ModInfo.getVersionFileFromZip(jar, "*mod.info");
+	}
+
+	@Benchmark
+	public String centralDirectoryScan() throws IOException {
+		return ZipUtils.findEntryEndingWith(jar, "mod.info");
+	}
+
+	@Benchmark
+	public String entryEnumeration() throws IOException {
+		try (ZipFile zip = new ZipFile(jar)) {
+			Enumeration<? extends ZipEntry> entries = zip.entries();
+			while (entries.hasMoreElements()) {
+				ZipEntry entry = entries.nextElement();
+				if (entry.getName().endsWith("mod.info")) {
+					return entry.getName();
+				}
+			}
+		}
+		return null;
+	}
+}
@@ -0,0 +1,297 @@
+package common.nw.core.modpack;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import common.nw.core.gui.IDownloadProgressListener;
+import common.nw.core.utils.FileUtils;
+import common.nw.core.utils.ManifestCache;
+import common.nw.core.utils.Utils;
+import common.nw.core.utils.log.NwLogger;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+
+/**
+ * index of all minecraft forge builds
+ * <p>
+ * the forge version json ({@link ModpackValues.URL#forgeVersionJson}) is only downloaded once per session and revalidated
+ * using conditional requests. A compact index of it is stored on disk, so it only has to be parsed after it changed.
+ *
+ * @author Nuklearwurst
+ */
+public class ForgeVersionCatalog {
+
+	/**
+	 * name of the compact index file, stored next to the cached version json
+	 */
+	private static final String INDEX_FILE_NAME = "forge-index.json";
+
+	/**
+	 * revision of the index format, indices of other revisions are discarded
+	 */
+	private static final int INDEX_REVISION = 1;
+
+	private static ForgeVersionCatalog shared;
+
+	private final Map<Integer, Build> builds;
+	private final Map<String, List<Build>> buildsByMinecraftVersion;
+
+	private ForgeVersionCatalog(List<String> minecraftVersions, List<Build> builds) {
+		this.builds = new HashMap<>(builds.size() * 2);
+		this.buildsByMinecraftVersion = new LinkedHashMap<>();
+		for (String mcversion : minecraftVersions) {
+			buildsByMinecraftVersion.put(mcversion, new ArrayList<>());
+		}
+		for (Build build : builds) {
+			this.builds.put(build.number, build);
+			List<Build> list = buildsByMinecraftVersion.get(build.mcversion);
+			if (list == null) {
+				list = new ArrayList<>();
+				buildsByMinecraftVersion.put(build.mcversion, list);
+			}
+			list.add(build);
+		}
+		for (List<Build> list : buildsByMinecraftVersion.values()) {
+			list.sort(Comparator.comparingInt(build -> build.number));
+		}
+	}
+
+	/**
+	 * returns the catalog, it gets loaded on first use
+	 *
+	 * @throws IOException if the version data could neither be downloaded nor read from the cache
+	 */
+	public static synchronized ForgeVersionCatalog getShared() throws IOException {
+		if (shared == null) {
+			shared = load(new File(Utils.getCacheDir(), "forge"), ModpackValues.URL.forgeVersionJson, null);
+		}
+		return shared;
+	}
+
+	/**
+	 * loads the catalog from the given url, the compact index is used if the version json did not change
+	 *
+	 * @param dir      cache directory
+	 * @param listener progress listener, may be null
+	 */
+	public static ForgeVersionCatalog load(File dir, String url, IDownloadProgressListener listener) throws IOException {
+		File indexFile = new File(dir, INDEX_FILE_NAME);
+		ManifestCache.Manifest manifest;
+		try {
+			manifest = new ManifestCache(dir).get(url, 0, listener);
+		} catch (IOException e) {
+			//offline: use the last known version data
+			IndexData index = readIndex(indexFile, null);
+			if (index == null) {
+				throw e;
+			}
+			NwLogger.NW_LOGGER.warn("Could not download forge version data, using cached data", e);
+			return new ForgeVersionCatalog(index.mcversions, index.builds);
+		}
+		IndexData index = manifest.md5 != null ? readIndex(indexFile, manifest.md5) : null;
+		if (index == null) {
+			NwLogger.NW_LOGGER.info("Indexing forge version data...");
+			try (JsonReader reader = new JsonReader(new InputStreamReader(new FileInputStream(manifest.file), StandardCharsets.UTF_8))) {
+				index = parse(reader);
+			} catch (IllegalStateException | NumberFormatException e) {
+				throw new IOException("Invalid forge version data", e);
+			}
+			index.md5 = manifest.md5;
+			writeIndex(indexFile, index);
+		}
+		return new ForgeVersionCatalog(index.mcversions, index.builds);
+	}
+
+	/**
+	 * @param number build number
+	 * @return the build or null if it does not exist
+	 */
+	public Build getBuild(int number) {
+		return builds.get(number);
+	}
+
+	/**
+	 * @param number build number
+	 * @return the build or null if it does not exist
+	 * @throws NumberFormatException if the number could not be parsed
+	 */
+	public Build getBuild(String number) {
+		return getBuild(Integer.parseInt(number.trim()));
+	}
+
+	/**
+	 * @return all minecraft versions in the order of the forge version data (oldest first)
+	 */
+	public List<String> getMinecraftVersions() {
+		return new ArrayList<>(buildsByMinecraftVersion.keySet());
+	}
+
+	/**
+	 * @return the builds of the given minecraft version sorted by build number, empty if the version is unknown
+	 */
+	public List<Build> getBuilds(String mcversion) {
+		List<Build> list = buildsByMinecraftVersion.get(mcversion);
+		return list == null ? Collections.emptyList() : Collections.unmodifiableList(list);
+	}
+
+	/**
+	 * parses the forge version json, only the mcversion and number objects are read
+	 */
+	private static IndexData parse(JsonReader reader) throws IOException {
+		IndexData index = new IndexData();
+		index.mcversions = new ArrayList<>();
+		index.builds = new ArrayList<>();
+		reader.beginObject();
+		while (reader.hasNext()) {
+			switch (reader.nextName()) {
+				case "mcversion":
+					reader.beginObject();
+					while (reader.hasNext()) {
+						index.mcversions.add(reader.nextName());
+						reader.skipValue();
+					}
+					reader.endObject();
+					break;
+				case "number":
+					reader.beginObject();
+					while (reader.hasNext()) {
+						index.builds.add(parseBuild(Integer.parseInt(reader.nextName()), reader));
+					}
+					reader.endObject();
+					break;
+				default:
+					reader.skipValue();
+					break;
+			}
+		}
+		reader.endObject();
+		return index;
+	}
+
+	private static Build parseBuild(int number, JsonReader reader) throws IOException {
+		String mcversion = null;
+		String version = null;
+		String branch = null;
+		reader.beginObject();
+		while (reader.hasNext()) {
+			String name = reader.nextName();
+			if (reader.peek() == JsonToken.NULL) {
+				reader.nextNull();
+				continue;
+			}
+			switch (name) {
+				case "mcversion":
+					mcversion = reader.nextString();
+					break;
+				case "version":
+					version = reader.nextString();
+					break;
+				case "branch":
+					branch = reader.nextString();
+					break;
+				default:
+					reader.skipValue();
+					break;
+			}
+		}
+		reader.endObject();
+		return new Build(number, mcversion, version, branch);
+	}
+
+	/**
+	 * @param md5 md5 of the version json the index has to belong to, null accepts any index
+	 * @return the index or null if there is no valid index
+	 */
+	private static IndexData readIndex(File indexFile, String md5) {
+		if (!indexFile.exists()) {
+			return null;
+		}
+		try (Reader reader = new InputStreamReader(new FileInputStream(indexFile), StandardCharsets.UTF_8)) {
+			IndexData index = new Gson().fromJson(reader, IndexData.class);
+			if (index == null || index.revision != INDEX_REVISION || index.mcversions == null || index.builds == null
+					|| md5 != null && !md5.equals(index.md5)) {
+				return null;
+			}
+			return index;
+		} catch (IOException | JsonParseException e) {
+			NwLogger.NW_LOGGER.warn("Error reading " + indexFile + ", rebuilding forge version index", e);
+			return null;
+		}
+	}
+
+	/**
+	 * writes the index, failures are only logged
+	 */
+	private static void writeIndex(File indexFile, IndexData index) {
+		index.revision = INDEX_REVISION;
+		try {
+			FileUtils.writeJsonAtomically(index, indexFile, false);
+		} catch (IOException e) {
+			NwLogger.NW_LOGGER.warn("Error writing " + indexFile, e);
+		}
+	}
+
+	/**
+	 * a single forge build
+	 */
+	public static class Build {
+
+		/**
+		 * build number
+		 */
+		public final int number;
+		public final String mcversion;
+		public final String version;
+
+		/**
+		 * may be null
+		 */
+		public final String branch;
+
+		public Build(int number, String mcversion, String version, String branch) {
+			this.number = number;
+			this.mcversion = mcversion;
+			this.version = version;
+			this.branch = branch;
+		}
+
+		/**
+		 * @return the name of the version the forge installer creates (the name of the directory in the versions folder)
+		 */
+		public String getVersionId() {
+			if (FileUtils.compareVersions(mcversion, "1.10.0") == -1) {
+				return String.format("%s-Forge%s%s", mcversion, version, getBranchSuffix());
+			}
+			return String.format("%s-forge%s-%s%s", mcversion, mcversion, version, getBranchSuffix());
+		}
+
+		/**
+		 * @return the url of the installer of this build
+		 */
+		public String getInstallerUrl() {
+			String fullVersion = mcversion + "-" + version + getBranchSuffix();
+			return ModpackValues.URL.forgeInstaller + fullVersion + "/forge-" + fullVersion + "-installer.jar";
+		}
+
+		private String getBranchSuffix() {
+			return branch != null ? "-" + branch : "";
+		}
+	}
+
+	/**
+	 * the stored index
+	 */
+	private static class IndexData {
+		int revision;
+
+		/**
+		 * md5 of the version json this index was created from
+		 */
+		String md5;
+		List<String> mcversions;
+		List<Build> builds;
+	}
+}
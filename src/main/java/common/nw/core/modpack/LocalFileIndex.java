@@ -0,0 +1,307 @@
+package common.nw.core.modpack;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import common.nw.core.utils.DownloadHelper;
+import common.nw.core.utils.FileUtils;
+import common.nw.core.utils.log.NwLogger;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * on-disk cache of file hashes and mod.info data of the files in a game directory
+ * <p>
+ * entries are keyed by the path relative to the game directory and are only valid as long as
+ * size, modification time and file key (inode, where available) of the file do not change.
+ * This allows checking unchanged files without reading them.
+ *
+ * @author Nuklearwurst
+ */
+public class LocalFileIndex {
+
+	/**
+	 * name of the index file, stored next to the modpack.json
+	 */
+	public static final String FILE_NAME = "modpack.index.json";
+
+	/**
+	 * revision of the index format, indices of other revisions are discarded
+	 */
+	private static final int INDEX_REVISION = 1;
+
+	/**
+	 * directory the indexed paths are relative to
+	 */
+	private final File baseDir;
+
+	private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+	private volatile boolean dirty = false;
+
+	public LocalFileIndex(File baseDir) {
+		this.baseDir = baseDir;
+	}
+
+	/**
+	 * loads the index of the given game directory, returns an empty index if none exists or it could not be read
+	 */
+	public static LocalFileIndex load(File baseDir) {
+		LocalFileIndex index = new LocalFileIndex(baseDir);
+		File file = new File(baseDir, FILE_NAME);
+		if (file.exists()) {
+			try (Reader reader = new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8)) {
+				IndexData data = new Gson().fromJson(reader, IndexData.class);
+				if (data != null && data.revision == INDEX_REVISION && data.files != null) {
+					index.entries.putAll(data.files);
+				}
+			} catch (IOException | JsonParseException e) {
+				NwLogger.NW_LOGGER.warn("Error reading " + FILE_NAME + ", rebuilding file index", e);
+			}
+		}
+		return index;
+	}
+
+	/**
+	 * writes the index to disk if it has changed
+	 *
+	 * @return success
+	 */
+	public boolean save() {
+		if (!dirty) {
+			return true;
+		}
+		IndexData data = new IndexData();
+		data.revision = INDEX_REVISION;
+		data.files = new TreeMap<>(entries);
+		try {
+			FileUtils.writeJsonAtomically(data, new File(baseDir, FILE_NAME), false);
+		} catch (IOException e) {
+			NwLogger.NW_LOGGER.error("Error writing " + FILE_NAME, e);
+			return false;
+		}
+		dirty = false;
+		return true;
+	}
+
+	/**
+	 * returns the md5 of the given file, the file only gets read if the cached value is outdated
+	 *
+	 * @return the md5 or an empty String if the file could not be read
+	 */
+	public String getHash(File file) {
+		String path = getPath(file);
+		Signature signature = Signature.read(file);
+		Entry entry = entries.get(path);
+		if (signature != null && entry != null && entry.matches(signature) && entry.md5 != null) {
+			return entry.md5;
+		}
+		String hash = DownloadHelper.getHash(file);
+		if (signature != null && hash != null && !hash.isEmpty()) {
+			//the file might have changed while hashing
+			if (signature.equals(Signature.read(file))) {
+				put(path, signature, entry).md5 = hash;
+			}
+		}
+		return hash;
+	}
+
+	/**
+	 * stores the md5 of a file whose hash is already known (eg. after a verified download)
+	 */
+	public void putHash(File file, String md5) {
+		Signature signature = Signature.read(file);
+		if (signature != null && md5 != null && !md5.isEmpty()) {
+			String path = getPath(file);
+			put(path, signature, entries.get(path)).md5 = md5;
+		}
+	}
+
+	/**
+	 * stores the md5 of a file whose hash was known when it had the given size and modification time
+	 * <p>
+	 * nothing is stored if the file changed since then
+	 */
+	public void putHash(File file, String md5, long size, long lastModified) {
+		Signature signature = Signature.read(file);
+		if (signature != null && signature.size == size && signature.lastModified == lastModified) {
+			putHash(file, md5);
+		}
+	}
+
+	/**
+	 * @return the cached mod.info data of the given file, null if the file changed or was never read
+	 */
+	public Entry getModInfo(File file) {
+		Signature signature = Signature.read(file);
+		Entry entry = entries.get(getPath(file));
+		if (signature != null && entry != null && entry.matches(signature) && entry.modInfoRead) {
+			return entry;
+		}
+		return null;
+	}
+
+	/**
+	 * caches mod.info data of the given file
+	 *
+	 * @param hasModInfo whether name and version were read from a mod.info file
+	 */
+	public void putModInfo(File file, boolean hasModInfo, String name, String version) {
+		Signature signature = Signature.read(file);
+		if (signature != null) {
+			String path = getPath(file);
+			Entry entry = put(path, signature, entries.get(path));
+			entry.modInfoRead = true;
+			entry.hasModInfo = hasModInfo;
+			entry.modName = name;
+			entry.modVersion = version;
+		}
+	}
+
+	/**
+	 * removes all entries that are not contained in the given list of paths
+	 *
+	 * @param paths paths relative to the base directory
+	 */
+	public void retain(Collection<String> paths) {
+		Set<String> keep = new HashSet<>();
+		for (String path : paths) {
+			keep.add(path.replace(File.separator, "/"));
+		}
+		if (entries.keySet().retainAll(keep)) {
+			dirty = true;
+		}
+	}
+
+	/**
+	 * replaces the entry of the given path, cached values are copied if the signature still matches
+	 */
+	private Entry put(String path, Signature signature, Entry old) {
+		Entry entry = new Entry();
+		entry.size = signature.size;
+		entry.lastModified = signature.lastModified;
+		entry.fileKey = signature.fileKey;
+		if (old != null && old.matches(signature)) {
+			entry.md5 = old.md5;
+			entry.modInfoRead = old.modInfoRead;
+			entry.hasModInfo = old.hasModInfo;
+			entry.modName = old.modName;
+			entry.modVersion = old.modVersion;
+		}
+		entries.put(path, entry);
+		dirty = true;
+		return entry;
+	}
+
+	/**
+	 * @return the path of the file relative to the base directory (using '/' as separator)
+	 */
+	private String getPath(File file) {
+		String base = baseDir.getAbsoluteFile().toPath().normalize().toString();
+		String path = file.getAbsoluteFile().toPath().normalize().toString();
+		if (path.startsWith(base + File.separator)) {
+			path = path.substring(base.length() + 1);
+		}
+		return path.replace(File.separator, "/");
+	}
+
+	/**
+	 * cached information about a file
+	 */
+	public static class Entry {
+
+		long size;
+		long lastModified;
+		String fileKey;
+
+		String md5;
+
+		boolean modInfoRead;
+		boolean hasModInfo;
+		String modName;
+		String modVersion;
+
+		/**
+		 * @return whether name and version were read from a mod.info file
+		 */
+		public boolean hasModInfo() {
+			return hasModInfo;
+		}
+
+		public String getModName() {
+			return modName;
+		}
+
+		public String getModVersion() {
+			return modVersion;
+		}
+
+		private boolean matches(Signature signature) {
+			return size == signature.size && lastModified == signature.lastModified
+					&& (fileKey == null ? signature.fileKey == null : fileKey.equals(signature.fileKey));
+		}
+	}
+
+	/**
+	 * size, modification time and file key of a file
+	 */
+	private static class Signature {
+
+		private final long size;
+		private final long lastModified;
+		private final String fileKey;
+
+		private Signature(long size, long lastModified, String fileKey) {
+			this.size = size;
+			this.lastModified = lastModified;
+			this.fileKey = fileKey;
+		}
+
+		/**
+		 * @return the signature of the given file, null if it does not exist or could not be read
+		 */
+		private static Signature read(File file) {
+			try {
+				BasicFileAttributes attributes = Files.readAttributes(file.toPath(), BasicFileAttributes.class);
+				if (!attributes.isRegularFile()) {
+					return null;
+				}
+				Object fileKey = attributes.fileKey();
+				return new Signature(attributes.size(), attributes.lastModifiedTime().toMillis(), fileKey == null ? null : fileKey.toString());
+			} catch (IOException e) {
+				return null;
+			}
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (!(o instanceof Signature)) {
+				return false;
+			}
+			Signature other = (Signature) o;
+			return size == other.size && lastModified == other.lastModified
+					&& (fileKey == null ? other.fileKey == null : fileKey.equals(other.fileKey));
+		}
+
+		@Override
+		public int hashCode() {
+			return (int) (size ^ lastModified);
+		}
+	}
+
+	/**
+	 * json representation of the index file
+	 */
+	private static class IndexData {
+		int revision;
+		Map<String, Entry> files;
+	}
+}
@@ -0,0 +1,124 @@
+package common.nw.core.modpack;
+
+import common.nw.core.utils.Utils;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * index of a list of local mods, used to find the local mod matching a {@link RepoMod}
+ * <p>
+ * lookups give the same result as checking {@link ModInfo#equals(RepoMod)} on every mod of the list in order
+ * (the first matching mod is returned), but don't depend on the size of the list.
+ *
+ * @author Nuklearwurst
+ */
+public class ModIndex {
+
+	private final List<ModInfo> mods;
+
+	/**
+	 * position of the first mod with the given name
+	 */
+	private final Map<String, Integer> byName = new HashMap<>();
+
+	/**
+	 * position of the first mod with the given name, only mods whose name was read from the zip file
+	 */
+	private final Map<String, Integer> byZipName = new HashMap<>();
+
+	/**
+	 * position of the first mod with the given name, only mods whose name was not read from the zip file
+	 */
+	private final Map<String, Integer> byPlainName = new HashMap<>();
+
+	/**
+	 * position of the first mod with the given file name, only mods whose name was read from the zip file
+	 */
+	private final Map<String, Integer> byZipNameFileName = new HashMap<>();
+
+	/**
+	 * creates an index of the given list, mods have to be added using {@link #add(ModInfo)} afterwards
+	 */
+	public ModIndex(List<ModInfo> mods) {
+		this.mods = mods;
+		for (int i = 0; i < mods.size(); i++) {
+			index(mods.get(i), i);
+		}
+	}
+
+	/**
+	 * adds remote information to the matching local mods, remote mods without a local match are added to the list
+	 * if their fileType matches the given flags
+	 *
+	 * @param mods        local mods
+	 * @param remoteFiles remote mods
+	 * @param flags       flags of this installation (client/server)
+	 */
+	public static void addRemoteInformation(List<ModInfo> mods, List<RepoMod> remoteFiles, int flags) {
+		ModIndex index = new ModIndex(mods);
+		for (RepoMod remoteMod : remoteFiles) {
+			// updating entries
+			ModInfo mod = index.find(remoteMod);
+			if (mod != null) {
+				mod.setRemoteInfo(remoteMod);
+			} else if (Utils.doFlagCombine(remoteMod.fileType, flags)) {
+				// adding missing entries (only if we need that mod, if mods are added manually we don't remove them)
+				index.add(new ModInfo(remoteMod));
+			}
+		}
+	}
+
+	/**
+	 * adds a mod to the end of the list
+	 */
+	public void add(ModInfo mod) {
+		mods.add(mod);
+		index(mod, mods.size() - 1);
+	}
+
+	/**
+	 * @return the first mod that equals the given remote mod, null if there is none
+	 * @see ModInfo#equals(RepoMod)
+	 */
+	public ModInfo find(RepoMod remoteMod) {
+		if (remoteMod.name == null) {
+			return null;
+		}
+		Integer position;
+		if (remoteMod.nameType == null) {
+			position = byName.get(remoteMod.name);
+		} else if (remoteMod.nameType.equals(ModpackValues.Name.nameTypeZipEntry)) {
+			position = byZipName.get(remoteMod.name);
+		} else {
+			//managed by filename (or unknown nameType): mods with a zip name are compared by file name
+			position = first(byPlainName.get(remoteMod.name), byZipNameFileName.get(remoteMod.name));
+		}
+		return position == null ? null : mods.get(position);
+	}
+
+	private void index(ModInfo mod, int position) {
+		if (mod.name != null) {
+			byName.putIfAbsent(mod.name, position);
+			if (mod.hasName) {
+				byZipName.putIfAbsent(mod.name, position);
+			} else {
+				byPlainName.putIfAbsent(mod.name, position);
+			}
+		}
+		if (mod.hasName && mod.getFileName() != null) {
+			byZipNameFileName.putIfAbsent(mod.getFileName(), position);
+		}
+	}
+
+	private static Integer first(Integer a, Integer b) {
+		if (a == null) {
+			return b;
+		}
+		if (b == null) {
+			return a;
+		}
+		return Math.min(a, b);
+	}
+}
@@ -3,11 +3,15 @@ package common.nw.core.modpack;
 import argo.jdom.JdomParser;
 import argo.jdom.JsonNode;
 import argo.saj.InvalidSyntaxException;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
 import common.nw.core.utils.DownloadHelper;
+import common.nw.core.utils.ZipUtils;
 import common.nw.core.utils.log.NwLogger;
 
 import java.io.BufferedReader;
 import java.io.File;
+import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.util.Enumeration;
@@ -17,6 +21,16 @@ import java.util.zip.ZipFile;
 
 public class ModInfo {
 
+	/**
+	 * canonical location of forge's mod.info file
+	 */
+	private static final String MOD_INFO = "mcmod.info";
+
+	/**
+	 * version files read from zip files, keyed by path and name of the version file
+	 */
+	private static final Cache<String, VersionFileCacheEntry> VERSION_FILE_CACHE = CacheBuilder.newBuilder().maximumSize(4096).build();
+
 	/**
 	 * mod name
 	 */
@@ -52,6 +66,11 @@ public class ModInfo {
 	 */
 	public boolean hasVersionFile = false;
 
+	/**
+	 * cache for hashes and mod.info data, may be null
+	 */
+	private LocalFileIndex fileIndex;
+
 	/**
 	 * create a modInfo instance using the file name, the modData is read by
 	 * loadInfo, remoteData is added by setRemoteInfo
@@ -90,6 +109,13 @@ public class ModInfo {
 		this.fileName = fileName.replace(File.separator, "/");
 	}
 
+	/**
+	 * sets the index used to cache hashes and mod.info data of the local file
+	 */
+	public void setFileIndex(LocalFileIndex fileIndex) {
+		this.fileIndex = fileIndex;
+	}
+
 	/**
 	 * @return remote data of the mod
 	 */
@@ -119,7 +145,7 @@ public class ModInfo {
 		if (remoteInfo != null) {
 			if (remoteInfo.versionType != null) {
 				if (remoteInfo.versionType.equals(ModpackValues.Version.versionTypeMD5) && file != null && file.exists()) {
-					version = DownloadHelper.getHash(file);
+					version = fileIndex != null ? fileIndex.getHash(file) : DownloadHelper.getHash(file);
 				} else if (remoteInfo.versionType.equals(ModpackValues.Version.versionTypeFileName) && this.hasVersionFile) {
 					version = getFileName();
 				}
@@ -184,9 +210,31 @@ public class ModInfo {
 	}
 
 	/**
-	 * reads forge's mod.info files from the jar file
+	 * reads forge's mod.info files from the jar file, using the file index if available
 	 */
 	private void readForgeVersionData() {
+		if (fileIndex != null) {
+			LocalFileIndex.Entry cached = fileIndex.getModInfo(file);
+			if (cached != null) {
+				if (cached.hasModInfo()) {
+					name = cached.getModName();
+					version = cached.getModVersion();
+					hasName = true;
+					hasVersionFile = true;
+				}
+				return;
+			}
+		}
+		readForgeVersionFile();
+		if (fileIndex != null) {
+			fileIndex.putModInfo(file, hasName, hasName ? name : null, hasName ? version : null);
+		}
+	}
+
+	/**
+	 * reads forge's mod.info files from the jar file
+	 */
+	private void readForgeVersionFile() {
 		String versionFile = getVersionFileFromZip(file, "*mod.info");
 		if (versionFile != null && !versionFile.isEmpty()) {
 			JdomParser parser = new JdomParser();
@@ -230,13 +278,37 @@ public class ModInfo {
 
 	/**
 	 * returns the String of the specified file contained in the ZIP-archive
+	 * <p>
+	 * results are cached as long as size and modification time of the zip file do not change
 	 *
 	 * @param file zip file
-	 * @param name name of the file inside the zip
+	 * @param name name of the file inside the zip, names starting with '*' match the first entry ending with the rest of the name
+	 *             (the canonical mcmod.info in the root of the zip is preferred)
 	 * @return null if no version file could be extracted
 	 */
 	@SuppressWarnings({"SameParameterValue", "WeakerAccess"})
 	public static String getVersionFileFromZip(File file, String name) {
+		String key = file.getAbsolutePath() + "|" + name;
+		long size = file.length();
+		long lastModified = file.lastModified();
+		VersionFileCacheEntry cached = VERSION_FILE_CACHE.getIfPresent(key);
+		if (cached != null && cached.size == size && cached.lastModified == lastModified) {
+			return cached.content;
+		}
+		String content = readVersionFileFromZip(file, name);
+		if (size > 0 && size == file.length() && lastModified == file.lastModified()) {
+			VERSION_FILE_CACHE.put(key, new VersionFileCacheEntry(size, lastModified, content));
+		}
+		return content;
+	}
+
+	/**
+	 * reads the String of the specified file contained in the ZIP-archive, without using the cache
+	 *
+	 * @see #getVersionFileFromZip(File, String)
+	 */
+	@SuppressWarnings("WeakerAccess")
+	public static String readVersionFileFromZip(File file, String name) {
 		try {
 			String out = null;
 			ZipFile modZip = new ZipFile(file);
@@ -244,13 +316,11 @@ public class ModInfo {
 			if (name.startsWith("*")) {
 				//search for file ending with given name
 				name = name.substring(1);
-				Enumeration<? extends ZipEntry> enumeration = modZip.entries();
-				while (enumeration.hasMoreElements()) {
-					ZipEntry zipEntry = enumeration.nextElement();
-					if (zipEntry.getName().endsWith(name)) {
-						entry = zipEntry;
-						break;
-					}
+				if (MOD_INFO.endsWith(name)) {
+					entry = modZip.getEntry(MOD_INFO);
+				}
+				if (entry == null) {
+					entry = findEntryEndingWith(modZip, file, name);
 				}
 			} else {
 				entry = modZip.getEntry(name);
@@ -284,6 +354,27 @@ public class ModInfo {
 		return null;
 	}
 
+	/**
+	 * finds the first entry ending with the given suffix, only matching entry names are decoded
+	 */
+	private static ZipEntry findEntryEndingWith(ZipFile modZip, File file, String suffix) {
+		try {
+			String entryName = ZipUtils.findEntryEndingWith(file, suffix);
+			return entryName == null ? null : modZip.getEntry(entryName);
+		} catch (IOException e) {
+			//eg. zip64, fall back to the entry list of the ZipFile
+			NwLogger.NW_LOGGER.fine("Could not read central directory of " + file + ": " + e.getMessage());
+		}
+		Enumeration<? extends ZipEntry> enumeration = modZip.entries();
+		while (enumeration.hasMoreElements()) {
+			ZipEntry zipEntry = enumeration.nextElement();
+			if (zipEntry.getName().endsWith(suffix)) {
+				return zipEntry;
+			}
+		}
+		return null;
+	}
+
 	/**
 	 * if this mod has no remote representative any more it should be deleted
 	 *
@@ -362,4 +453,20 @@ public class ModInfo {
 	public String toString() {
 		return name;
 	}
+
+	/**
+	 * cached content of a version file, only valid while size and modification time of the zip file match
+	 */
+	private static class VersionFileCacheEntry {
+
+		private final long size;
+		private final long lastModified;
+		private final String content;
+
+		private VersionFileCacheEntry(long size, long lastModified, String content) {
+			this.size = size;
+			this.lastModified = lastModified;
+			this.content = content;
+		}
+	}
 }
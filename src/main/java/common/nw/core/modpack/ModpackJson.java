@@ -0,0 +1,558 @@
+package common.nw.core.modpack;
+
+import com.google.gson.Gson;
+import com.google.gson.GsonBuilder;
+import com.google.gson.JsonParseException;
+import com.google.gson.TypeAdapter;
+import com.google.gson.stream.JsonReader;
+import com.google.gson.stream.JsonToken;
+import com.google.gson.stream.JsonWriter;
+import common.nw.core.gui.IDownloadProgressListener;
+import common.nw.core.utils.FileUtils;
+import common.nw.core.utils.ProgressInputStream;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * reads and writes modpack files
+ * <p>
+ * uses hand-written type adapters instead of reflection, documents are parsed directly from the stream in a single pass.
+ * The written json is the same Gson would write using reflection (fields in declaration order, null values omitted).
+ *
+ * @author Nuklearwurst
+ */
+public class ModpackJson {
+
+	/**
+	 * gson instance knowing all modpack types
+	 */
+	public static final Gson GSON = createBuilder().create();
+
+	/**
+	 * same as {@link #GSON}, but writes human readable json
+	 */
+	public static final Gson PRETTY_GSON = createBuilder().setPrettyPrinting().create();
+
+	private static GsonBuilder createBuilder() {
+		return new GsonBuilder()
+				.registerTypeAdapter(RepoModpack.class, new RepoModpackAdapter())
+				.registerTypeAdapter(RepoVersionInfo.class, new RepoVersionInfoAdapter())
+				.registerTypeAdapter(RepoMod.class, new RepoModAdapter())
+				.registerTypeAdapter(RepoPatch.class, new RepoPatchAdapter())
+				.registerTypeAdapter(LocalModpack.class, new LocalModpackAdapter());
+	}
+
+	/**
+	 * parses a remote modpack file
+	 *
+	 * @param listener progress listener, may be null
+	 * @throws JsonParseException if the file is no valid modpack
+	 */
+	public static RepoModpack readRepoModpack(File file, IDownloadProgressListener listener) throws IOException {
+		try (InputStream in = new FileInputStream(file)) {
+			return readRepoModpack(in, file.length(), listener);
+		}
+	}
+
+	/**
+	 * parses a remote modpack, the stream does not get closed
+	 *
+	 * @param length   length of the stream in bytes (used for progress), -1 if unknown
+	 * @param listener progress listener, may be null
+	 * @throws JsonParseException if the stream contains no valid modpack
+	 */
+	public static RepoModpack readRepoModpack(InputStream in, long length, IDownloadProgressListener listener) throws IOException {
+		Reader reader = new InputStreamReader(new ProgressInputStream(in, length, listener, "Parsing..."), StandardCharsets.UTF_8);
+		return GSON.fromJson(reader, RepoModpack.class);
+	}
+
+	/**
+	 * parses a local modpack file
+	 *
+	 * @throws JsonParseException if the file is no valid modpack
+	 */
+	public static LocalModpack readLocalModpack(File file) throws IOException {
+		try (Reader reader = new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8)) {
+			return GSON.fromJson(reader, LocalModpack.class);
+		}
+	}
+
+	/**
+	 * writes the modpack (either {@link RepoModpack} or {@link LocalModpack}) as human readable json
+	 * <p>
+	 * a temp file is used, so that the old file stays intact if writing fails
+	 */
+	public static void write(Object modpack, File file) throws IOException {
+		write(modpack, file, PRETTY_GSON);
+	}
+
+	/**
+	 * writes the modpack without whitespace, used for files that are only read by the updater
+	 *
+	 * @see #write(Object, File)
+	 */
+	public static void writeCompact(Object modpack, File file) throws IOException {
+		write(modpack, file, GSON);
+	}
+
+	private static void write(Object modpack, File file, Gson gson) throws IOException {
+		//the new content has to be on disk before it replaces the old file
+		FileUtils.writeJsonAtomically(gson, modpack, file, true);
+	}
+
+	private static String readString(JsonReader in) throws IOException {
+		switch (in.peek()) {
+			case NULL:
+				in.nextNull();
+				return null;
+			case BOOLEAN:
+				return Boolean.toString(in.nextBoolean());
+			default:
+				return in.nextString();
+		}
+	}
+
+	private static int readInt(JsonReader in) throws IOException {
+		if (in.peek() == JsonToken.NULL) {
+			in.nextNull();
+			return 0;
+		}
+		return in.nextInt();
+	}
+
+	private static boolean readBoolean(JsonReader in) throws IOException {
+		switch (in.peek()) {
+			case NULL:
+				in.nextNull();
+				return false;
+			case STRING:
+				return Boolean.parseBoolean(in.nextString());
+			default:
+				return in.nextBoolean();
+		}
+	}
+
+	private static List<String> readStringList(JsonReader in) throws IOException {
+		if (in.peek() == JsonToken.NULL) {
+			in.nextNull();
+			return null;
+		}
+		List<String> list = new ArrayList<>();
+		in.beginArray();
+		while (in.hasNext()) {
+			list.add(readString(in));
+		}
+		in.endArray();
+		return list;
+	}
+
+	private static void writeStringList(JsonWriter out, List<String> list) throws IOException {
+		if (list == null) {
+			out.nullValue();
+			return;
+		}
+		out.beginArray();
+		for (String s : list) {
+			out.value(s);
+		}
+		out.endArray();
+	}
+
+	private static List<RepoMod> readModList(JsonReader in, RepoModAdapter adapter) throws IOException {
+		if (in.peek() == JsonToken.NULL) {
+			in.nextNull();
+			return null;
+		}
+		List<RepoMod> list = new ArrayList<>();
+		in.beginArray();
+		while (in.hasNext()) {
+			list.add(adapter.read(in));
+		}
+		in.endArray();
+		return list;
+	}
+
+	private static void writeModList(JsonWriter out, List<RepoMod> list, RepoModAdapter adapter) throws IOException {
+		if (list == null) {
+			out.nullValue();
+			return;
+		}
+		out.beginArray();
+		for (RepoMod mod : list) {
+			adapter.write(out, mod);
+		}
+		out.endArray();
+	}
+
+	private static class RepoModpackAdapter extends TypeAdapter<RepoModpack> {
+
+		private final RepoVersionInfoAdapter versionInfoAdapter = new RepoVersionInfoAdapter();
+		private final RepoModAdapter modAdapter = new RepoModAdapter();
+
+		@Override
+		public void write(JsonWriter out, RepoModpack value) throws IOException {
+			if (value == null) {
+				out.nullValue();
+				return;
+			}
+			out.beginObject();
+			out.name("modpackName").value(value.modpackName);
+			out.name("updaterRevision").value(value.updaterRevision);
+			out.name("minecraft");
+			versionInfoAdapter.write(out, value.minecraft);
+			out.name("modpackRepo").value(value.modpackRepo);
+			out.name("mirrors");
+			writeStringList(out, value.mirrors);
+			out.name("blacklist");
+			writeModList(out, value.blacklist, modAdapter);
+			out.name("files");
+			writeModList(out, value.files, modAdapter);
+			out.endObject();
+		}
+
+		@Override
+		public RepoModpack read(JsonReader in) throws IOException {
+			if (in.peek() == JsonToken.NULL) {
+				in.nextNull();
+				return null;
+			}
+			RepoModpack modpack = new RepoModpack();
+			in.beginObject();
+			while (in.hasNext()) {
+				switch (in.nextName()) {
+					case "modpackName":
+						modpack.modpackName = readString(in);
+						break;
+					case "updaterRevision":
+						modpack.updaterRevision = readInt(in);
+						break;
+					case "minecraft":
+						modpack.minecraft = versionInfoAdapter.read(in);
+						break;
+					case "modpackRepo":
+						modpack.modpackRepo = readString(in);
+						break;
+					case "mirrors":
+						modpack.mirrors = readStringList(in);
+						break;
+					case "blacklist":
+						modpack.blacklist = readModList(in, modAdapter);
+						break;
+					case "files":
+						modpack.files = readModList(in, modAdapter);
+						break;
+					default:
+						in.skipValue();
+						break;
+				}
+			}
+			in.endObject();
+			return modpack;
+		}
+	}
+
+	private static class RepoVersionInfoAdapter extends TypeAdapter<RepoVersionInfo> {
+
+		@Override
+		public void write(JsonWriter out, RepoVersionInfo value) throws IOException {
+			if (value == null) {
+				out.nullValue();
+				return;
+			}
+			out.beginObject();
+			out.name("installInfoUrl").value(value.installInfoUrl);
+			out.name("version").value(value.version);
+			out.name("versionName").value(value.versionName);
+			out.name("jarUpdateType").value(value.jarUpdateType);
+			out.name("jsonName").value(value.jsonName);
+			out.name("jsonUpdateType").value(value.jsonUpdateType);
+			out.name("arguments");
+			writeStringList(out, value.arguments);
+			out.name("libraries");
+			writeStringList(out, value.libraries);
+			out.endObject();
+		}
+
+		@Override
+		public RepoVersionInfo read(JsonReader in) throws IOException {
+			if (in.peek() == JsonToken.NULL) {
+				in.nextNull();
+				return null;
+			}
+			RepoVersionInfo info = new RepoVersionInfo();
+			in.beginObject();
+			while (in.hasNext()) {
+				switch (in.nextName()) {
+					case "installInfoUrl":
+						info.installInfoUrl = readString(in);
+						break;
+					case "version":
+						info.version = readString(in);
+						break;
+					case "versionName":
+						info.versionName = readString(in);
+						break;
+					case "jarUpdateType":
+						info.jarUpdateType = readString(in);
+						break;
+					case "jsonName":
+						info.jsonName = readString(in);
+						break;
+					case "jsonUpdateType":
+						info.jsonUpdateType = readString(in);
+						break;
+					case "arguments":
+						info.arguments = readStringList(in);
+						break;
+					case "libraries":
+						info.libraries = readStringList(in);
+						break;
+					default:
+						in.skipValue();
+						break;
+				}
+			}
+			in.endObject();
+			return info;
+		}
+	}
+
+	private static class RepoModAdapter extends TypeAdapter<RepoMod> {
+
+		private final RepoPatchAdapter patchAdapter = new RepoPatchAdapter();
+
+		@Override
+		public void write(JsonWriter out, RepoMod value) throws IOException {
+			if (value == null) {
+				out.nullValue();
+				return;
+			}
+			out.beginObject();
+			out.name("name").value(value.name);
+			out.name("nameType").value(value.nameType);
+			out.name("version").value(value.version);
+			out.name("versionType").value(value.versionType);
+			out.name("downloadUrl").value(value.downloadUrl);
+			out.name("mirrors");
+			writeStringList(out, value.mirrors);
+			out.name("downloadType").value(value.downloadType);
+			out.name("md5").value(value.md5);
+			out.name("fileName").value(value.getFileName());
+			out.name("fileType").value(value.fileType);
+			out.name("patches");
+			if (value.patches == null) {
+				out.nullValue();
+			} else {
+				out.beginArray();
+				for (RepoPatch patch : value.patches) {
+					patchAdapter.write(out, patch);
+				}
+				out.endArray();
+			}
+			out.name("deferrable").value(value.deferrable);
+			out.endObject();
+		}
+
+		@Override
+		public RepoMod read(JsonReader in) throws IOException {
+			if (in.peek() == JsonToken.NULL) {
+				in.nextNull();
+				return null;
+			}
+			RepoMod mod = new RepoMod();
+			in.beginObject();
+			while (in.hasNext()) {
+				switch (in.nextName()) {
+					case "name":
+						mod.name = readString(in);
+						break;
+					case "nameType":
+						mod.nameType = readString(in);
+						break;
+					case "version":
+						mod.version = readString(in);
+						break;
+					case "versionType":
+						mod.versionType = readString(in);
+						break;
+					case "downloadUrl":
+						mod.downloadUrl = readString(in);
+						break;
+					case "mirrors":
+						mod.mirrors = readStringList(in);
+						break;
+					case "downloadType":
+						mod.downloadType = readString(in);
+						break;
+					case "md5":
+						mod.md5 = readString(in);
+						break;
+					case "fileName":
+						String fileName = readString(in);
+						if (fileName != null) {
+							mod.setFileName(fileName);
+						}
+						break;
+					case "fileType":
+						mod.fileType = readInt(in);
+						break;
+					case "patches":
+						if (in.peek() == JsonToken.NULL) {
+							in.nextNull();
+							break;
+						}
+						mod.patches = new ArrayList<>();
+						in.beginArray();
+						while (in.hasNext()) {
+							mod.patches.add(patchAdapter.read(in));
+						}
+						in.endArray();
+						break;
+					case "deferrable":
+						mod.deferrable = readBoolean(in);
+						break;
+					default:
+						in.skipValue();
+						break;
+				}
+			}
+			in.endObject();
+			return mod;
+		}
+	}
+
+	private static class RepoPatchAdapter extends TypeAdapter<RepoPatch> {
+
+		@Override
+		public void write(JsonWriter out, RepoPatch value) throws IOException {
+			if (value == null) {
+				out.nullValue();
+				return;
+			}
+			out.beginObject();
+			out.name("sourceMd5").value(value.sourceMd5);
+			out.name("downloadUrl").value(value.downloadUrl);
+			out.name("size").value(value.size);
+			out.endObject();
+		}
+
+		@Override
+		public RepoPatch read(JsonReader in) throws IOException {
+			if (in.peek() == JsonToken.NULL) {
+				in.nextNull();
+				return null;
+			}
+			RepoPatch patch = new RepoPatch();
+			in.beginObject();
+			while (in.hasNext()) {
+				switch (in.nextName()) {
+					case "sourceMd5":
+						patch.sourceMd5 = readString(in);
+						break;
+					case "downloadUrl":
+						patch.downloadUrl = readString(in);
+						break;
+					case "size":
+						if (in.peek() == JsonToken.NULL) {
+							in.nextNull();
+						} else {
+							patch.size = in.nextLong();
+						}
+						break;
+					default:
+						in.skipValue();
+						break;
+				}
+			}
+			in.endObject();
+			return patch;
+		}
+	}
+
+	private static class LocalModpackAdapter extends TypeAdapter<LocalModpack> {
+
+		@Override
+		public void write(JsonWriter out, LocalModpack value) throws IOException {
+			if (value == null) {
+				out.nullValue();
+				return;
+			}
+			out.beginObject();
+			out.name("name").value(value.name);
+			out.name("version").value(value.version);
+			out.name("url").value(value.url);
+			out.name("files");
+			writeStringList(out, value.files);
+			out.name("trackedFileVersions");
+			if (value.trackedFileVersions == null) {
+				out.nullValue();
+			} else {
+				out.beginObject();
+				for (Map.Entry<String, String> entry : value.trackedFileVersions.entrySet()) {
+					out.name(entry.getKey()).value(entry.getValue());
+				}
+				out.endObject();
+			}
+			out.endObject();
+		}
+
+		@Override
+		public LocalModpack read(JsonReader in) throws IOException {
+			if (in.peek() == JsonToken.NULL) {
+				in.nextNull();
+				return null;
+			}
+			String name = null;
+			String version = null;
+			String url = null;
+			List<String> files = null;
+			Map<String, String> trackedFileVersions = null;
+			in.beginObject();
+			while (in.hasNext()) {
+				switch (in.nextName()) {
+					case "name":
+						name = readString(in);
+						break;
+					case "version":
+						version = readString(in);
+						break;
+					case "url":
+						url = readString(in);
+						break;
+					case "files":
+						files = readStringList(in);
+						break;
+					case "trackedFileVersions":
+						if (in.peek() == JsonToken.NULL) {
+							in.nextNull();
+							break;
+						}
+						trackedFileVersions = new HashMap<>();
+						in.beginObject();
+						while (in.hasNext()) {
+							trackedFileVersions.put(in.nextName(), readString(in));
+						}
+						in.endObject();
+						break;
+					default:
+						in.skipValue();
+						break;
+				}
+			}
+			in.endObject();
+			LocalModpack modpack = new LocalModpack(name, url, version);
+			if (files != null) {
+				modpack.files = files;
+			}
+			if (trackedFileVersions != null) {
+				modpack.trackedFileVersions = trackedFileVersions;
+			}
+			return modpack;
+		}
+	}
+}
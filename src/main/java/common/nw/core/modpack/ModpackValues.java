@@ -9,6 +9,7 @@ public class ModpackValues {
 		private final static String userDownload = "userDownload";
 		private final static String localFile = "localFile";
 		private final static String extractArchive = "extractArchive";
+		private final static String zipEntryDelta = "zipEntryDelta";
 		private final static String minecraft = "minecraft";
 		private final static String minecraft_inherit = "minecraft_inherit";
 		private final static String forge_inherit = "forge_inherit";
@@ -50,6 +51,10 @@ public class ModpackValues {
 		public final static String modDirectDownload = directDownload;
 		public final static String modUserDownload = userDownload;
 		public final static String modExtractDownload = extractArchive;
+		/**
+		 * same as modDirectDownload, but only downloads the changed zip entries of an existing jar (needs range requests)
+		 */
+		public final static String modZipEntryDownload = zipEntryDelta;
 	}
 
 	public static class Name {
@@ -1,6 +1,8 @@
 package common.nw.core.modpack;
 
 import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
 
 public class RepoMod {
 
@@ -20,6 +22,13 @@ public class RepoMod {
 	 */
 	public String downloadUrl;
 
+	/**
+	 * additional download urls of the mod, may be null
+	 *
+	 * @see #getDownloadUrls()
+	 */
+	public List<String> mirrors;
+
 	/**
 	 * how the mod should be downloaded
 	 *
@@ -45,6 +54,16 @@ public class RepoMod {
 	@SuppressWarnings("unused")
 	public int fileType; // currently not supported
 
+	/**
+	 * patches creating this file from older versions, may be null
+	 */
+	public List<RepoPatch> patches;
+
+	/**
+	 * deferrable files (eg. resource packs) may be downloaded in the background while the game is running
+	 */
+	public boolean deferrable;
+
 	public String getFileNameSystem() {
 		return fileName.replace("/", File.separator);
 	}
@@ -57,4 +76,37 @@ public class RepoMod {
 		this.fileName = fileName.replace(File.separator, "/");
 	}
 
+	/**
+	 * @return the download url followed by the mirrors (without duplicates)
+	 */
+	public List<String> getDownloadUrls() {
+		List<String> urls = new ArrayList<>();
+		if (downloadUrl != null) {
+			urls.add(downloadUrl);
+		}
+		if (mirrors != null) {
+			for (String mirror : mirrors) {
+				if (mirror != null && !urls.contains(mirror)) {
+					urls.add(mirror);
+				}
+			}
+		}
+		return urls;
+	}
+
+	/**
+	 * @param sourceMd5 md5 of the local file
+	 * @return the patch applicable to the local file or null
+	 */
+	public RepoPatch getPatch(String sourceMd5) {
+		if (patches != null && sourceMd5 != null) {
+			for (RepoPatch patch : patches) {
+				if (sourceMd5.equalsIgnoreCase(patch.sourceMd5)) {
+					return patch;
+				}
+			}
+		}
+		return null;
+	}
+
 }
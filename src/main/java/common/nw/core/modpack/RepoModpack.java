@@ -1,5 +1,6 @@
 package common.nw.core.modpack;
 
+import java.util.ArrayList;
 import java.util.List;
 
 /**
@@ -27,6 +28,13 @@ public class RepoModpack {
 	 */
 	public String modpackRepo;
 
+	/**
+	 * base urls of mirrors of the whole {@link #modpackRepo}, may be null
+	 *
+	 * @see #resolveMirrors()
+	 */
+	public List<String> mirrors;
+
 	/**
 	 * blacklisted mods and files
 	 */
@@ -36,4 +44,29 @@ public class RepoModpack {
 	 * mods and files that get udpated
 	 */
 	public List<RepoMod> files;
+
+	/**
+	 * adds the repo mirrors to all files downloaded from the repo (eg. {@code <modpackRepo>mods/mod.jar}
+	 * gets {@code <mirror>mods/mod.jar} as mirror)
+	 */
+	public void resolveMirrors() {
+		if (mirrors == null || mirrors.isEmpty() || modpackRepo == null || modpackRepo.isEmpty() || files == null) {
+			return;
+		}
+		for (RepoMod mod : files) {
+			if (mod.downloadUrl == null || !mod.downloadUrl.startsWith(modpackRepo)) {
+				continue;
+			}
+			String path = mod.downloadUrl.substring(modpackRepo.length());
+			if (mod.mirrors == null) {
+				mod.mirrors = new ArrayList<>();
+			}
+			for (String mirror : mirrors) {
+				String url = (mirror.endsWith("/") || path.startsWith("/") ? mirror : mirror + "/") + path;
+				if (!mod.mirrors.contains(url)) {
+					mod.mirrors.add(url);
+				}
+			}
+		}
+	}
 }
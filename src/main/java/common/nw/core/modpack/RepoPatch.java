@@ -0,0 +1,25 @@
+package common.nw.core.modpack;
+
+/**
+ * binary patch creating a mod from an older version of it
+ *
+ * @author Nuklearwurst
+ * @see common.nw.core.utils.BinaryDelta
+ */
+public class RepoPatch {
+
+	/**
+	 * md5 of the file the patch has to be applied to
+	 */
+	public String sourceMd5;
+
+	/**
+	 * the download url of the patch
+	 */
+	public String downloadUrl;
+
+	/**
+	 * size of the patch in bytes
+	 */
+	public long size;
+}
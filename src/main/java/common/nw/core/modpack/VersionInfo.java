@@ -5,7 +5,15 @@ public class VersionInfo {
 	/**
 	 * revision of the modpack repo format</br>
 	 * these are only backward compatible
+	 * <p>
+	 * 4: download mirrors of files and of the whole repo<br>
+	 * 5: {@link ModpackValues.Download#modZipEntryDownload}, older updaters do not support this download type
 	 */
-	public static final int REPO_MODPACK_REVISION = 3;
+	public static final int REPO_MODPACK_REVISION = 5;
+
+	/**
+	 * first revision supporting {@link ModpackValues.Download#modZipEntryDownload}
+	 */
+	public static final int ZIP_ENTRY_DOWNLOAD_REVISION = 5;
 
 }
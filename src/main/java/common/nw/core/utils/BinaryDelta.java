@@ -0,0 +1,212 @@
+package common.nw.core.utils;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+/**
+ * creates and applies binary patches
+ * <p>
+ * a patch is a deflate compressed list of copy (range of the source file) and add (literal bytes) instructions.
+ * Matches are found using a rolling hash over blocks of the source file, similar to rsync.
+ * Unchanged zip entries of a jar keep their compressed data, so patches between mod versions are usually small.
+ *
+ * @author Nuklearwurst
+ */
+public class BinaryDelta {
+
+	private static final int MAGIC = 0x4E574431;
+
+	private static final int OP_END = 0;
+	private static final int OP_COPY = 1;
+	private static final int OP_ADD = 2;
+
+	/**
+	 * size of the hashed source blocks, the minimum length of a match
+	 */
+	private static final int BLOCK_SIZE = 32;
+
+	/**
+	 * maximum number of source blocks with the same hash that get compared
+	 */
+	private static final int MAX_CHAIN = 16;
+
+	private static final int PRIME = 31;
+
+	/**
+	 * creates a patch from source to target
+	 */
+	public static void create(File source, File target, OutputStream patch) throws IOException {
+		create(Files.readAllBytes(source.toPath()), Files.readAllBytes(target.toPath()), patch);
+	}
+
+	/**
+	 * creates a patch from source to target
+	 */
+	public static void create(byte[] source, byte[] target, OutputStream patch) throws IOException {
+		DeflaterOutputStream deflater = new DeflaterOutputStream(patch, new Deflater(Deflater.BEST_COMPRESSION));
+		DataOutputStream out = new DataOutputStream(new BufferedOutputStream(deflater));
+		out.writeInt(MAGIC);
+		out.writeLong(source.length);
+		out.writeLong(target.length);
+
+		//hash table of all source blocks (chained by block index)
+		int blocks = source.length / BLOCK_SIZE;
+		int tableSize = Integer.highestOneBit(Math.max(1, blocks) * 2);
+		int[] heads = new int[tableSize];
+		Arrays.fill(heads, -1);
+		int[] next = new int[blocks];
+		//insert in reverse order, so that chains start with the first block
+		for (int block = blocks - 1; block >= 0; block--) {
+			int bucket = hash(source, block * BLOCK_SIZE) & (tableSize - 1);
+			next[block] = heads[bucket];
+			heads[bucket] = block;
+		}
+
+		int power = 1;
+		for (int i = 1; i < BLOCK_SIZE; i++) {
+			power *= PRIME;
+		}
+
+		//start of the bytes not yet written
+		int literalStart = 0;
+		int pos = 0;
+		int hash = target.length >= BLOCK_SIZE ? hash(target, 0) : 0;
+		while (blocks > 0 && pos + BLOCK_SIZE <= target.length) {
+			int matchStart = -1;
+			int matchLength = 0;
+			for (int block = heads[hash & (tableSize - 1)], chain = 0; block >= 0 && chain < MAX_CHAIN; block = next[block], chain++) {
+				int start = block * BLOCK_SIZE;
+				int length = matchLength(source, start, target, pos);
+				if (length >= BLOCK_SIZE && length > matchLength) {
+					matchStart = start;
+					matchLength = length;
+				}
+			}
+			if (matchStart >= 0) {
+				//extend the match backwards into the pending literal bytes
+				int back = 0;
+				while (pos - back > literalStart && matchStart - back > 0
+						&& source[matchStart - back - 1] == target[pos - back - 1]) {
+					back++;
+				}
+				writeAdd(out, target, literalStart, pos - back);
+				writeCopy(out, matchStart - back, matchLength + back);
+				pos += matchLength;
+				literalStart = pos;
+				if (pos + BLOCK_SIZE <= target.length) {
+					hash = hash(target, pos);
+				}
+			} else {
+				if (pos + BLOCK_SIZE < target.length) {
+					hash = (hash - target[pos] * power) * PRIME + target[pos + BLOCK_SIZE];
+				}
+				pos++;
+			}
+		}
+		writeAdd(out, target, literalStart, target.length);
+		out.writeByte(OP_END);
+		out.flush();
+		deflater.finish();
+	}
+
+	/**
+	 * applies a patch
+	 *
+	 * @param source the file the patch was created from
+	 * @param patch  the patch, does not get closed
+	 * @param target receives the patched file, does not get closed
+	 * @throws IOException if the patch is invalid or does not belong to the source file
+	 */
+	public static void apply(File source, InputStream patch, OutputStream target) throws IOException {
+		DataInputStream in = new DataInputStream(new BufferedInputStream(new InflaterInputStream(patch)));
+		if (in.readInt() != MAGIC) {
+			throw new IOException("Invalid patch");
+		}
+		long sourceLength = in.readLong();
+		long targetLength = in.readLong();
+		try (FileChannel channel = FileChannel.open(source.toPath(), StandardOpenOption.READ)) {
+			if (channel.size() != sourceLength) {
+				throw new IOException("Patch does not belong to " + source);
+			}
+			byte[] buffer = new byte[65536];
+			long written = 0;
+			int op;
+			while ((op = in.readUnsignedByte()) != OP_END) {
+				if (op == OP_COPY) {
+					long offset = in.readLong();
+					int length = in.readInt();
+					if (offset < 0 || length < 0 || offset + length > sourceLength) {
+						throw new IOException("Invalid patch");
+					}
+					while (length > 0) {
+						ByteBuffer bytes = ByteBuffer.wrap(buffer, 0, Math.min(buffer.length, length));
+						while (bytes.hasRemaining()) {
+							if (channel.read(bytes, offset + bytes.position()) < 0) {
+								throw new EOFException();
+							}
+						}
+						target.write(buffer, 0, bytes.position());
+						offset += bytes.position();
+						length -= bytes.position();
+						written += bytes.position();
+					}
+				} else if (op == OP_ADD) {
+					int length = in.readInt();
+					if (length < 0) {
+						throw new IOException("Invalid patch");
+					}
+					while (length > 0) {
+						int read = Math.min(buffer.length, length);
+						in.readFully(buffer, 0, read);
+						target.write(buffer, 0, read);
+						length -= read;
+						written += read;
+					}
+				} else {
+					throw new IOException("Invalid patch instruction: " + op);
+				}
+			}
+			if (written != targetLength) {
+				throw new IOException("Invalid patch, expected " + targetLength + " bytes, got " + written);
+			}
+		}
+	}
+
+	private static int hash(byte[] data, int start) {
+		int hash = 0;
+		for (int i = start; i < start + BLOCK_SIZE; i++) {
+			hash = hash * PRIME + data[i];
+		}
+		return hash;
+	}
+
+	private static int matchLength(byte[] source, int sourceStart, byte[] target, int targetStart) {
+		int max = Math.min(source.length - sourceStart, target.length - targetStart);
+		int length = 0;
+		while (length < max && source[sourceStart + length] == target[targetStart + length]) {
+			length++;
+		}
+		return length;
+	}
+
+	private static void writeCopy(DataOutputStream out, int offset, int length) throws IOException {
+		out.writeByte(OP_COPY);
+		out.writeLong(offset);
+		out.writeInt(length);
+	}
+
+	private static void writeAdd(DataOutputStream out, byte[] data, int start, int end) throws IOException {
+		if (end > start) {
+			out.writeByte(OP_ADD);
+			out.writeInt(end - start);
+			out.write(data, start, end - start);
+		}
+	}
+}
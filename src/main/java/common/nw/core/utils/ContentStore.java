@@ -0,0 +1,398 @@
+package common.nw.core.utils;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import common.nw.core.utils.log.NwLogger;
+
+import java.io.*;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+/**
+ * user-level store of downloaded files keyed by their md5, shared by all game directories
+ * <p>
+ * objects are written atomically and never modified, so they can be read without locking.
+ * The index (size, modification time and last use of every object) is only updated by {@link #flush()}
+ * while holding a file lock, which also evicts the least recently used objects once the store gets too large.
+ * Objects whose size or modification time differ from the index are considered damaged and are not used.
+ *
+ * @author Nuklearwurst
+ */
+public class ContentStore {
+
+	/**
+	 * default maximum size of the store in MiB
+	 */
+	public static final int DEFAULT_MAX_SIZE = 2048;
+
+	private static final String INDEX_FILE_NAME = "index.json";
+	private static final String LOCK_FILE_NAME = "store.lock";
+
+	/**
+	 * revision of the index format, indices of other revisions are discarded
+	 */
+	private static final int INDEX_REVISION = 1;
+
+	private static final Pattern MD5 = Pattern.compile("[0-9a-f]{32}");
+
+	/**
+	 * files of these types are never modified in place, so they can be hardlinked instead of copied
+	 */
+	private static final Set<String> LINKABLE_EXTENSIONS = new HashSet<>(Arrays.asList("jar", "zip", "litemod"));
+
+	/**
+	 * used to prevent concurrent flushes of the same jvm, as file locks are held by the whole process
+	 */
+	private static final Object FLUSH_LOCK = new Object();
+
+	private final File dir;
+	private final long maxSize;
+
+	/**
+	 * the index as last read from disk plus objects added by this instance
+	 */
+	private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+	/**
+	 * objects used or added since the last flush (md5 - time of use)
+	 */
+	private final Map<String, Long> pending = new ConcurrentHashMap<>();
+
+	private volatile boolean loaded = false;
+
+	/**
+	 * modification time of the index when it was last read
+	 */
+	private volatile long indexModified;
+
+	/**
+	 * @param dir     directory of the store
+	 * @param maxSize maximum size in bytes, exceeding objects get evicted on {@link #flush()}
+	 */
+	public ContentStore(File dir, long maxSize) {
+		this.dir = dir;
+		this.maxSize = maxSize;
+	}
+
+	/**
+	 * @param maxSize maximum size in MiB
+	 * @return a store inside the default cache directory
+	 * @see Utils#getCacheDir()
+	 */
+	public static ContentStore createDefault(int maxSize) {
+		return new ContentStore(new File(Utils.getCacheDir(), "content"), maxSize * 1024L * 1024L);
+	}
+
+	/**
+	 * creates the given file from the store
+	 *
+	 * @param md5    md5 of the file
+	 * @param target file to create, an existing file gets replaced
+	 * @return true if the file was found in the store and created
+	 */
+	public boolean materialize(String md5, File target) {
+		md5 = normalize(md5);
+		if (md5 == null) {
+			return false;
+		}
+		ensureLoaded();
+		File object = getObjectFile(md5);
+		if (!isValid(object, entries.get(md5))) {
+			return false;
+		}
+		try {
+			Files.deleteIfExists(target.toPath());
+			if (!isLinkable(target) || !tryLink(target, object)) {
+				Files.copy(object.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+			}
+		} catch (IOException e) {
+			//the object might have been evicted concurrently
+			NwLogger.NW_LOGGER.fine("Could not restore " + target + " from the content store: " + e);
+			if (!target.delete()) {
+				target.deleteOnExit();
+			}
+			return false;
+		}
+		pending.put(md5, System.currentTimeMillis());
+		return true;
+	}
+
+	/**
+	 * returns the object with the given md5, the index is read again if it changed since it was last read
+	 *
+	 * @param md5 md5 of the file
+	 * @return the object or null if it is not in the store, objects must not be modified
+	 */
+	public File getObject(String md5) {
+		md5 = normalize(md5);
+		if (md5 == null) {
+			return null;
+		}
+		ensureLoaded();
+		File object = getObjectFile(md5);
+		Entry entry = entries.get(md5);
+		if (entry == null && reloadIfChanged()) {
+			//might have been added by another process
+			entry = entries.get(md5);
+		}
+		if (!isValid(object, entry)) {
+			return null;
+		}
+		pending.put(md5, System.currentTimeMillis());
+		return object;
+	}
+
+	/**
+	 * adds the given file to the store, failures are only logged
+	 *
+	 * @param file a file, which content was verified to match the given md5
+	 * @param md5  md5 of the file
+	 */
+	public void put(File file, String md5) {
+		md5 = normalize(md5);
+		if (md5 == null) {
+			return;
+		}
+		ensureLoaded();
+		File object = getObjectFile(md5);
+		if (isValid(object, entries.get(md5))) {
+			pending.put(md5, System.currentTimeMillis());
+			return;
+		}
+		File parent = object.getParentFile();
+		if (!parent.isDirectory() && !parent.mkdirs()) {
+			NwLogger.NW_LOGGER.warn("Could not create content store directory " + parent);
+			return;
+		}
+		try {
+			File tempFile = File.createTempFile(md5, ".tmp", parent);
+			if (!isLinkable(file) || !tempFile.delete() || !tryLink(tempFile, file)) {
+				Files.copy(file.toPath(), tempFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+			}
+			if (!FileUtils.moveAtomically(tempFile, object)) {
+				if (!tempFile.delete()) {
+					tempFile.deleteOnExit();
+				}
+				return;
+			}
+		} catch (IOException e) {
+			NwLogger.NW_LOGGER.warn("Could not add " + file + " to the content store", e);
+			return;
+		}
+		long now = System.currentTimeMillis();
+		entries.put(md5, new Entry(object.length(), object.lastModified(), now));
+		pending.put(md5, now);
+	}
+
+	/**
+	 * writes usage information and added objects to the index and evicts objects if the store is too large
+	 */
+	public void flush() {
+		if (pending.isEmpty()) {
+			return;
+		}
+		if (!dir.isDirectory() && !dir.mkdirs()) {
+			NwLogger.NW_LOGGER.warn("Could not create content store directory " + dir);
+			return;
+		}
+		synchronized (FLUSH_LOCK) {
+			try (FileChannel channel = FileChannel.open(new File(dir, LOCK_FILE_NAME).toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE)) {
+				FileLock lock = channel.lock();
+				try {
+					Map<String, Entry> index = readIndex();
+					for (String md5 : new ArrayList<>(pending.keySet())) {
+						Long used = pending.remove(md5);
+						Entry entry = entries.get(md5);
+						if (entry == null) {
+							continue;
+						}
+						Entry stored = index.get(md5);
+						if (stored == null || stored.size != entry.size || stored.modified != entry.modified) {
+							//added by this instance
+							stored = entry;
+							index.put(md5, stored);
+						}
+						stored.lastUsed = Math.max(stored.lastUsed, used);
+					}
+					evict(index);
+					writeIndex(index);
+					indexModified = new File(dir, INDEX_FILE_NAME).lastModified();
+					entries.clear();
+					entries.putAll(index);
+				} finally {
+					lock.release();
+				}
+			} catch (IOException e) {
+				NwLogger.NW_LOGGER.warn("Could not update the content store index", e);
+			}
+		}
+	}
+
+	/**
+	 * removes damaged entries and the least recently used objects until the store fits its maximum size
+	 */
+	private void evict(Map<String, Entry> index) {
+		long size = 0;
+		List<Map.Entry<String, Entry>> list = new ArrayList<>(index.size());
+		for (Map.Entry<String, Entry> entry : new ArrayList<>(index.entrySet())) {
+			File object = getObjectFile(entry.getKey());
+			if (!isValid(object, entry.getValue())) {
+				index.remove(entry.getKey());
+				if (object.exists() && !object.delete()) {
+					NwLogger.NW_LOGGER.fine("Could not delete damaged object " + object);
+				}
+				continue;
+			}
+			size += entry.getValue().size;
+			list.add(entry);
+		}
+		if (size <= maxSize) {
+			return;
+		}
+		Collections.sort(list, (e1, e2) -> Long.compare(e1.getValue().lastUsed, e2.getValue().lastUsed));
+		for (Map.Entry<String, Entry> entry : list) {
+			if (size <= maxSize) {
+				break;
+			}
+			//objects in use (windows) can not be deleted, they get evicted later
+			if (getObjectFile(entry.getKey()).delete()) {
+				index.remove(entry.getKey());
+				size -= entry.getValue().size;
+			}
+		}
+		NwLogger.NW_LOGGER.info("Evicted objects from the content store, new size: " + size / (1024 * 1024) + " MiB");
+	}
+
+	private void ensureLoaded() {
+		if (!loaded) {
+			synchronized (this) {
+				if (!loaded) {
+					//the index is replaced atomically, so it can be read without locking
+					indexModified = new File(dir, INDEX_FILE_NAME).lastModified();
+					entries.putAll(readIndex());
+					loaded = true;
+				}
+			}
+		}
+	}
+
+	/**
+	 * reads the index again if it was replaced since it was last read
+	 *
+	 * @return true if the index was read
+	 */
+	private boolean reloadIfChanged() {
+		long modified = new File(dir, INDEX_FILE_NAME).lastModified();
+		if (modified == indexModified) {
+			return false;
+		}
+		synchronized (this) {
+			indexModified = modified;
+			entries.putAll(readIndex());
+		}
+		return true;
+	}
+
+	private Map<String, Entry> readIndex() {
+		File file = new File(dir, INDEX_FILE_NAME);
+		if (file.exists()) {
+			try (Reader reader = new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8)) {
+				IndexData data = new Gson().fromJson(reader, IndexData.class);
+				if (data != null && data.revision == INDEX_REVISION && data.objects != null) {
+					return data.objects;
+				}
+			} catch (IOException | JsonParseException e) {
+				NwLogger.NW_LOGGER.warn("Error reading content store index, discarding it", e);
+			}
+		}
+		return new HashMap<>();
+	}
+
+	private void writeIndex(Map<String, Entry> index) throws IOException {
+		IndexData data = new IndexData();
+		data.revision = INDEX_REVISION;
+		data.objects = index;
+		FileUtils.writeJsonAtomically(data, new File(dir, INDEX_FILE_NAME), false);
+	}
+
+	File getObjectFile(String md5) {
+		return new File(dir, "objects" + File.separator + md5.substring(0, 2) + File.separator + md5);
+	}
+
+	private static boolean isValid(File object, Entry entry) {
+		return entry != null && object.length() == entry.size && object.lastModified() == entry.modified;
+	}
+
+	/**
+	 * @return true if the file is a mod or an archive, the kind of file the store is meant to share
+	 */
+	public static boolean isShareable(File file) {
+		String name = file.getName();
+		int dot = name.lastIndexOf('.');
+		return dot >= 0 && LINKABLE_EXTENSIONS.contains(name.substring(dot + 1).toLowerCase(Locale.ROOT));
+	}
+
+	private static boolean isLinkable(File file) {
+		String name = file.getName();
+		if (name.endsWith(".tmp")) {
+			name = name.substring(0, name.length() - 4);
+		}
+		int dot = name.lastIndexOf('.');
+		return dot >= 0 && LINKABLE_EXTENSIONS.contains(name.substring(dot + 1).toLowerCase(Locale.ROOT));
+	}
+
+	/**
+	 * @return true if a hardlink was created, false if hardlinks are not supported (eg. different file systems)
+	 */
+	private static boolean tryLink(File link, File existing) {
+		try {
+			Files.createLink(link.toPath(), existing.toPath());
+			return true;
+		} catch (IOException | UnsupportedOperationException | SecurityException e) {
+			return false;
+		}
+	}
+
+	/**
+	 * @return the lowercase md5 or null if it is no valid md5 (it is used as file name)
+	 */
+	private static String normalize(String md5) {
+		if (md5 == null) {
+			return null;
+		}
+		md5 = md5.toLowerCase(Locale.ROOT);
+		return MD5.matcher(md5).matches() ? md5 : null;
+	}
+
+	private static class Entry {
+		long size;
+		long modified;
+		long lastUsed;
+
+		Entry(long size, long modified, long lastUsed) {
+			this.size = size;
+			this.modified = modified;
+			this.lastUsed = lastUsed;
+		}
+	}
+
+	private static class IndexData {
+		int revision;
+		Map<String, Entry> objects;
+	}
+}
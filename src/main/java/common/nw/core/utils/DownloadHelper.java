@@ -1,7 +1,11 @@
 package common.nw.core.utils;
 
 import common.nw.core.gui.IDownloadProgressListener;
+import common.nw.core.modpack.LocalFileIndex;
 import common.nw.core.modpack.ModInfo;
+import common.nw.core.modpack.ModpackValues;
+import common.nw.core.modpack.RepoMod;
+import common.nw.core.modpack.RepoPatch;
 import common.nw.core.utils.log.NwLogger;
 import common.nw.updater.gui.IProgressWatcher;
 
@@ -9,36 +13,39 @@ import java.io.*;
 import java.math.BigInteger;
 import java.net.HttpURLConnection;
 import java.net.MalformedURLException;
-import java.net.URL;
 import java.net.URLConnection;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.StandardCopyOption;
 import java.security.DigestInputStream;
+import java.security.DigestOutputStream;
 import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.List;
 import java.util.zip.ZipEntry;
 import java.util.zip.ZipInputStream;
 
 @SuppressWarnings({"WeakerAccess", "EmptyCatchBlock"})
 public class DownloadHelper {
 
+	private static final int HTTP_RANGE_NOT_SATISFIABLE = 416;
+
 	public static String getString(String strUrl, IProgressWatcher watcher) throws IOException {
 		String result = "";
 
-		URL url = new URL(strUrl);
-
-		HttpURLConnection httpClient = (HttpURLConnection) url.openConnection();
-		httpClient.setDoInput(true);
-		httpClient.setDoOutput(false);
-		httpClient.setUseCaches(false);
+		URLConnection http = HttpClient.getShared().openConnection(strUrl);
 
-		httpClient.setRequestMethod("GET");
-		httpClient.setRequestProperty("Connection", "Close");
-		httpClient.addRequestProperty("User-Agent",
-				"Mozilla/4.0 (compatible; MSIE 6.0; Windows NT 5.0)");
-
-		InputStream httpStream = httpClient.getInputStream();
+		InputStream httpStream;
 		try {
-			result = readStringFromStream(httpStream, watcher, "Downloading...");
+			httpStream = HttpClient.getShared().getInputStream(http);
+		} catch (IOException ex) {
+			if (http instanceof HttpURLConnection) {
+				HttpClient.discardErrorStream((HttpURLConnection) http);
+			}
+			throw ex;
+		}
+		try (InputStream in = httpStream) {
+			result = readStringFromStream(in, http.getContentLengthLong(), watcher, "Downloading...");
 		} catch (IOException ex) {
 			NwLogger.NW_LOGGER.error("Error downloading String: " + strUrl, ex);
 		}
@@ -46,14 +53,17 @@ public class DownloadHelper {
 	}
 
 	public static boolean downloadFileNIO(String url, File out) {
-		URL website;
+		URLConnection http;
 		try {
-			website = new URL(url);
+			http = HttpClient.getShared().openConnection(url);
 		} catch (MalformedURLException e) {
 			NwLogger.NW_LOGGER.error("Malformed url!", e);
 			return false;
+		} catch (IOException e) {
+			NwLogger.NW_LOGGER.error("Error downloading!", e);
+			return false;
 		}
-		try (InputStream in = website.openStream()) {
+		try (InputStream in = HttpClient.getShared().getInputStream(http)) {
 			Files.copy(in, out.toPath(), StandardCopyOption.REPLACE_EXISTING);
 		} catch (IOException e) {
 			NwLogger.NW_LOGGER.error("Error downloading!", e);
@@ -69,11 +79,9 @@ public class DownloadHelper {
 
 		try {
 			byte[] buffer = new byte[4096];
-			http = new URL(url).openConnection();
-			http.setReadTimeout(10000);
-			http.addRequestProperty("User-Agent", "Mozilla/4.0 (compatible; MSIE 6.0; Windows NT 5.0)");
+			http = HttpClient.getShared().openConnection(url);
 
-			httpInputStream = http.getInputStream();
+			httpInputStream = HttpClient.getShared().getInputStream(http);
 			int contentLength = http.getContentLength();
 
 			if (out.exists()) {
@@ -136,11 +144,18 @@ public class DownloadHelper {
 	 * @param modValue         how much progress one mod is, --> used to set overall progress
 	 * @param baseDir          base directory of this minecraft instance
 	 * @param ignoreDuplicates if set to false this will try to use exsisting files by checking md5
+	 * @param fileIndex        index used to cache file hashes, may be null
+	 * @param contentStore     store checked before downloading and populated with downloaded files, may be null
+	 * @param mirrorUrl        url of a mirror (see {@link MirrorServer}) tried before the download url, may be null
+	 * @param hostLimiter      limits the connections to the host that is actually contacted (the mirror, the download
+	 *                         url or a mirror of the mod), may be null
 	 * @return success of the operation
 	 */
 	@SuppressWarnings("SameParameterValue")
 	public static UpdateResult getMod(IProgressWatcher listener, ModInfo mod,
-	                                  int modNumber, float modValue, File baseDir, boolean ignoreDuplicates) {
+	                                  int modNumber, float modValue, File baseDir, boolean ignoreDuplicates,
+	                                  LocalFileIndex fileIndex, ContentStore contentStore, String mirrorUrl,
+	                                  HostConnectionLimiter hostLimiter) {
 
 		/* mod file */
 		String file = baseDir + File.separator + mod.getFileNameSystem();
@@ -148,7 +163,8 @@ public class DownloadHelper {
 		// create dirs
 		if (file.lastIndexOf(File.separator) != -1) {
 			File dirs = new File(file.substring(0, file.lastIndexOf(File.separator)));
-			if (!dirs.exists() && !dirs.mkdirs()) {
+			//other downloads might create the same directory concurrently
+			if (!dirs.mkdirs() && !dirs.isDirectory()) {
 				//use better error messages
 				return UpdateResult.FailedCreatingDirs;
 			}
@@ -160,7 +176,7 @@ public class DownloadHelper {
 		if (!ignoreDuplicates) {
 			if (modFile.exists()) {
 				NwLogger.UPDATER_LOGGER.fine("ModFile " + mod.getFileNameSystem() + " does already exist, checking md5!");
-				String hash = getHash(modFile);
+				String hash = fileIndex != null ? fileIndex.getHash(modFile) : getHash(modFile);
 				if (hash != null && !hash.isEmpty() && hash.equals(mod.getRemoteInfo().md5)) {
 					NwLogger.UPDATER_LOGGER.info("Using already existing modFile! Skipping Download...");
 					return UpdateResult.Good;
@@ -178,43 +194,62 @@ public class DownloadHelper {
 		if (listener.isCancelled()) {
 			return UpdateResult.Cancelled;
 		}
-		//download the mod
-		UpdateResult result = downloadMod(tempFile, mod, listener);
-		if (result == UpdateResult.Good) {
+		DownloadResult download = null;
+		if (contentStore != null && contentStore.materialize(mod.getRemoteInfo().md5, tempFile)) {
+			NwLogger.UPDATER_LOGGER.info("Using " + mod.name + " from the content store! Skipping Download...");
+			download = new DownloadResult(UpdateResult.Good, mod.getRemoteInfo().md5);
+		}
+		if (download == null) {
+			download = downloadFromMirror(tempFile, mod, mirrorUrl, hostLimiter, listener);
+		}
+		if (download == null) {
+			download = downloadPatched(tempFile, mod, fileIndex, hostLimiter, listener);
+		}
+		if (download == null) {
+			download = downloadZipEntries(tempFile, mod, hostLimiter, listener);
+		}
+		if (download == null) {
+			//download the mod
+			download = downloadFromSources(tempFile, mod, hostLimiter, listener);
+		}
+		if (download.result == UpdateResult.Good) {
 			NwLogger.UPDATER_LOGGER.fine("HTTP fetch request for " + mod.name + " completed with success!");
 
-			if (!checkHash(mod.getRemoteInfo().md5, tempFile)) {
+			//the hash was computed while downloading
+			NwLogger.UPDATER_LOGGER.info("Remote MD5 is " + mod.getRemoteInfo().md5 + " local MD5 is " + download.md5);
+			if (!mod.getRemoteInfo().md5.equals(download.md5)) {
 				NwLogger.NW_LOGGER.severe("Downloading mod: " + mod.name + " failed!");
-				NwLogger.NW_LOGGER.severe("MD5 does not match! Remote: " + mod.getRemoteInfo().md5 + "; Local: " + getHash(tempFile));
+				NwLogger.NW_LOGGER.severe("MD5 does not match! Remote: " + mod.getRemoteInfo().md5 + "; Local: " + download.md5);
 				listener.setDownloadProgress("Downloading " + mod.name
 						+ "failed! MD5 does not match");
-				//noinspection ResultOfMethodCallIgnored
-				tempFile.delete();
+				deleteTempFile(tempFile);
 				return UpdateResult.BadDownload;
 			}
+			if (contentStore != null) {
+				contentStore.put(tempFile, download.md5);
+			}
 
 
 			//overall progress
 			listener.setOverallProgress((int) (10.0F + modNumber * modValue));
 
-			if (modFile.exists()) {
-				NwLogger.UPDATER_LOGGER.fine("Modfile " + modFile.getAbsolutePath().replace(File.separator, "/") + "already exists. Deleting...");
-				if (!modFile.delete()) {
-					NwLogger.UPDATER_LOGGER.warning("Modfile " + modFile.getAbsolutePath().replace(File.separator, "/") + "could not be deleted!");
-				}
-			}
-
 			//working?
+			//legacy files are only deleted when installing into their directory (not when staging an update)
 			File oldModFile = mod.file;
-			if ((oldModFile != null) && (oldModFile.exists())) {
+			if ((oldModFile != null) && (oldModFile.exists()) && !oldModFile.getAbsoluteFile().equals(modFile.getAbsoluteFile())
+					&& oldModFile.getAbsoluteFile().toPath().startsWith(baseDir.getAbsoluteFile().toPath())) {
 				listener.setDownloadProgress("Deleting old mod file...");
 				if (!oldModFile.delete()) {
 					NwLogger.UPDATER_LOGGER.warning("Deleting legacy file failed.");
 				}
 			}
 
+			//replaces an existing modFile
 			listener.setDownloadProgress("Renaming downloaded file...");
-			if (tempFile.renameTo(modFile)) {
+			if (FileUtils.moveAtomically(tempFile, modFile)) {
+				if (fileIndex != null) {
+					fileIndex.putHash(modFile, mod.getRemoteInfo().md5);
+				}
 				listener.setDownloadProgress("Download of " + modFile.getName()
 						+ " complete!");
 				return UpdateResult.Good;
@@ -228,6 +263,205 @@ public class DownloadHelper {
 		return UpdateResult.BadDownload;
 	}
 
+	/**
+	 * downloads the mod from the given mirror, if the mirror has it
+	 *
+	 * @return the result or null if the mirror does not have the mod or the download failed
+	 * (the download url should be used then)
+	 */
+	private static DownloadResult downloadFromMirror(File tempFile, ModInfo mod, String mirrorUrl,
+	                                                 HostConnectionLimiter hostLimiter, IDownloadProgressListener listener) {
+		String md5 = mod.getRemoteInfo().md5;
+		if (mirrorUrl == null || md5 == null || md5.isEmpty()) {
+			return null;
+		}
+		String url = MirrorServer.getObjectUrl(mirrorUrl, md5);
+		if (!acquire(hostLimiter, url)) {
+			return new DownloadResult(UpdateResult.Cancelled);
+		}
+		try {
+			try {
+				//mirrors are in the local network, checking first keeps misses out of the error log
+				HttpURLConnection head = (HttpURLConnection) HttpClient.getShared().openConnection(url);
+				head.setRequestMethod("HEAD");
+				int responseCode = head.getResponseCode();
+				HttpClient.discardErrorStream(head);
+				if (responseCode != HttpURLConnection.HTTP_OK) {
+					NwLogger.UPDATER_LOGGER.fine("Mirror does not have " + mod.getFileNameSystem() + " (" + responseCode + ")");
+					return null;
+				}
+			} catch (IOException | ClassCastException e) {
+				NwLogger.UPDATER_LOGGER.warn("Mirror " + mirrorUrl + " is not available: " + e);
+				return null;
+			}
+			NwLogger.UPDATER_LOGGER.info("Downloading " + mod.getFileNameSystem() + " from mirror " + url);
+			//a partial download of the temp file stays resumable if the mirror fails
+			File deltaFile = getDeltaFile(tempFile);
+			DownloadResult result = downloadModWithHash(deltaFile, mod, url, listener);
+			if (result.result == UpdateResult.Good && md5.equalsIgnoreCase(result.md5) && replaceTempFile(deltaFile, tempFile)) {
+				return result;
+			}
+			deleteTempFile(deltaFile);
+			if (result.result == UpdateResult.Cancelled) {
+				return result;
+			}
+			NwLogger.UPDATER_LOGGER.warn("Download of " + mod.getFileNameSystem() + " from mirror failed, using " + mod.getRemoteInfo().downloadUrl);
+			return null;
+		} finally {
+			release(hostLimiter, url);
+		}
+	}
+
+	/**
+	 * downloads the mod from its download url or one of its mirrors
+	 * <p>
+	 * the urls are tried in the order of their expected speed ({@link MirrorStats}). If a download fails, the partial
+	 * file is continued from the next url. As this mixes files of different servers, the md5 is checked after every
+	 * attempt and the download restarts from the next url on a mismatch.
+	 *
+	 * @return result of the last attempt
+	 */
+	private static DownloadResult downloadFromSources(File tempFile, ModInfo mod, HostConnectionLimiter hostLimiter,
+	                                                  IDownloadProgressListener listener) {
+		List<String> urls = mod.getRemoteInfo().getDownloadUrls();
+		if (urls.size() <= 1) {
+			String url = mod.getRemoteInfo().downloadUrl;
+			if (!acquire(hostLimiter, url)) {
+				return new DownloadResult(UpdateResult.Cancelled);
+			}
+			try {
+				return downloadModWithHash(tempFile, mod, url, listener);
+			} finally {
+				release(hostLimiter, url);
+			}
+		}
+		MirrorStats stats = MirrorStats.getShared();
+		urls = stats.rank(urls);
+		String md5 = mod.getRemoteInfo().md5;
+		DownloadResult result = new DownloadResult(UpdateResult.Failed);
+		for (String url : urls) {
+			long existingBytes = tempFile.exists() ? tempFile.length() : 0;
+			long start = System.nanoTime();
+			if (!acquire(hostLimiter, url)) {
+				return new DownloadResult(UpdateResult.Cancelled);
+			}
+			try {
+				result = downloadModWithHash(tempFile, mod, url, true, listener);
+			} finally {
+				release(hostLimiter, url);
+			}
+			long bytes = Math.max(0, (tempFile.exists() ? tempFile.length() : 0) - existingBytes);
+			stats.recordDownload(url, bytes, (System.nanoTime() - start) / 1000000);
+			if (result.result == UpdateResult.Cancelled) {
+				return result;
+			}
+			if (result.result == UpdateResult.Good) {
+				if (md5 == null || md5.equalsIgnoreCase(result.md5)) {
+					return result;
+				}
+				NwLogger.UPDATER_LOGGER.warn("MD5 of " + mod.getFileNameSystem() + " downloaded from " + url + " does not match");
+				deleteTempFile(tempFile);
+			}
+			stats.recordFailure(url);
+			NwLogger.UPDATER_LOGGER.info("Download of " + mod.getFileNameSystem() + " from " + url + " failed, trying next mirror");
+		}
+		return result;
+	}
+
+	/**
+	 * creates the mod by applying a patch to the local file, if the remote mod lists a patch for it
+	 *
+	 * @return the result or null if there is no patch or patching failed (the whole file should be downloaded then)
+	 */
+	private static DownloadResult downloadPatched(File tempFile, ModInfo mod, LocalFileIndex fileIndex, HostConnectionLimiter hostLimiter,
+	                                              IDownloadProgressListener listener) {
+		RepoMod remote = mod.getRemoteInfo();
+		File localFile = mod.file;
+		if (remote.patches == null || remote.patches.isEmpty() || localFile == null || !localFile.isFile()) {
+			return null;
+		}
+		RepoPatch patch = remote.getPatch(fileIndex != null ? fileIndex.getHash(localFile) : getHash(localFile));
+		if (patch == null) {
+			return null;
+		}
+		NwLogger.UPDATER_LOGGER.info("Patching " + mod.getFileNameSystem() + " using " + patch.downloadUrl + " (" + patch.size + " bytes)");
+		File deltaFile = getDeltaFile(tempFile);
+		if (!acquire(hostLimiter, patch.downloadUrl)) {
+			return new DownloadResult(UpdateResult.Cancelled);
+		}
+		URLConnection http = null;
+		try {
+			MessageDigest digest = MessageDigest.getInstance("MD5");
+			http = HttpClient.getShared().openConnection(patch.downloadUrl);
+			try (InputStream in = new ProgressInputStream(HttpClient.getShared().getInputStream(http),
+					patch.size > 0 ? patch.size : http.getContentLengthLong(), listener, "Patching " + mod.name);
+			     OutputStream out = new DigestOutputStream(new BufferedOutputStream(new FileOutputStream(deltaFile)), digest)) {
+				BinaryDelta.apply(localFile, in, out);
+			}
+			String md5 = toHexString(digest);
+			if (!md5.equalsIgnoreCase(remote.md5)) {
+				NwLogger.UPDATER_LOGGER.warn("Patched file " + mod.getFileNameSystem() + " does not match, downloading the whole file");
+				deleteTempFile(deltaFile);
+				return null;
+			}
+			if (!replaceTempFile(deltaFile, tempFile)) {
+				deleteTempFile(deltaFile);
+				return null;
+			}
+			return new DownloadResult(UpdateResult.Good, md5);
+		} catch (IOException | NoSuchAlgorithmException e) {
+			NwLogger.UPDATER_LOGGER.warn("Patching " + mod.getFileNameSystem() + " failed, downloading the whole file", e);
+			if (http instanceof HttpURLConnection) {
+				HttpClient.discardErrorStream((HttpURLConnection) http);
+			}
+			deleteTempFile(deltaFile);
+			return null;
+		} finally {
+			release(hostLimiter, patch.downloadUrl);
+		}
+	}
+
+	/**
+	 * creates the mod by reusing the unchanged zip entries of the local file, if the remote mod uses
+	 * {@link ModpackValues.Download#modZipEntryDownload}
+	 *
+	 * @return the result or null if the server does not support range requests or the result does not match
+	 * (the whole file should be downloaded then)
+	 * @see ZipDeltaDownload
+	 */
+	private static DownloadResult downloadZipEntries(File tempFile, ModInfo mod, HostConnectionLimiter hostLimiter,
+	                                                 IDownloadProgressListener listener) {
+		RepoMod remote = mod.getRemoteInfo();
+		File localFile = mod.file;
+		if (!ModpackValues.Download.modZipEntryDownload.equals(remote.downloadType) || localFile == null || !localFile.isFile()) {
+			return null;
+		}
+		NwLogger.UPDATER_LOGGER.info("Downloading changed entries of " + mod.getFileNameSystem() + " from " + remote.downloadUrl);
+		File deltaFile = getDeltaFile(tempFile);
+		if (!acquire(hostLimiter, remote.downloadUrl)) {
+			return new DownloadResult(UpdateResult.Cancelled);
+		}
+		try {
+			String md5 = new ZipDeltaDownload(remote.downloadUrl, listener).download(localFile, deltaFile);
+			if (md5 == null) {
+				NwLogger.UPDATER_LOGGER.info("Could not download the entries of " + mod.getFileNameSystem() + " separately, downloading the whole file");
+			} else if (!md5.equalsIgnoreCase(remote.md5)) {
+				NwLogger.UPDATER_LOGGER.warn("Reassembled file " + mod.getFileNameSystem() + " does not match, downloading the whole file");
+			} else if (replaceTempFile(deltaFile, tempFile)) {
+				return new DownloadResult(UpdateResult.Good, md5);
+			}
+		} catch (InterruptedIOException e) {
+			deleteTempFile(deltaFile);
+			return new DownloadResult(UpdateResult.Cancelled);
+		} catch (IOException e) {
+			NwLogger.UPDATER_LOGGER.warn("Downloading the entries of " + mod.getFileNameSystem() + " failed, downloading the whole file", e);
+		} finally {
+			release(hostLimiter, remote.downloadUrl);
+		}
+		deleteTempFile(deltaFile);
+		return null;
+	}
+
 	/**
 	 * compares the given hash with the file
 	 */
@@ -249,8 +483,7 @@ public class DownloadHelper {
 			byte[] ignored = new byte[65536];
 			//noinspection StatementWithEmptyBody
 			for (int readBytes = is.read(ignored); readBytes >= 1; readBytes = is.read(ignored)) ;
-			return String.format("%1$032x", new BigInteger(1, is
-					.getMessageDigest().digest()));
+			return toHexString(is.getMessageDigest());
 		} catch (Exception ex) {
 			ex.printStackTrace();
 		} finally {
@@ -264,53 +497,159 @@ public class DownloadHelper {
 		return "";
 	}
 
+	/**
+	 * @return the digest as hex String (the digest gets reset)
+	 */
+	static String toHexString(MessageDigest digest) {
+		return String.format("%1$032x", new BigInteger(1, digest.digest()));
+	}
+
+	/**
+	 * adds the first bytes of the given file to the digest
+	 */
+	private static void updateDigest(MessageDigest digest, File file, long length) throws IOException {
+		try (InputStream in = new FileInputStream(file)) {
+			byte[] buffer = new byte[65536];
+			long remaining = length;
+			while (remaining > 0) {
+				int readBytes = in.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+				if (readBytes < 0) {
+					throw new EOFException("Unexpected end of " + file);
+				}
+				digest.update(buffer, 0, readBytes);
+				remaining -= readBytes;
+			}
+		}
+	}
+
+	/**
+	 * downloads the given mod into the given file
+	 *
+	 * @see #downloadModWithHash(File, ModInfo, IDownloadProgressListener)
+	 */
 	public static UpdateResult downloadMod(File tempFile, ModInfo mod,
 	                                       IDownloadProgressListener listener) {
+		return downloadModWithHash(tempFile, mod, listener).result;
+	}
 
-		URLConnection http;
-		InputStream httpInputStream = null;
-		DataOutputStream fileOutputStream = null;
+	/**
+	 * downloads the given mod into the given file
+	 * <p>
+	 * if the file already contains a partial download of the same remote file (validated by
+	 * the ETag or Last-Modified header saved next to it) the download is resumed using a range request,
+	 * servers that ignore the range cause a full download.
+	 * The partial file is kept when the connection drops, so the next attempt can resume.
+	 * <p>
+	 * the md5 of the file is computed on the download stream, only the already downloaded part
+	 * of a resumed download has to be read again.
+	 *
+	 * @param tempFile file to download into
+	 * @param mod      mod to download
+	 * @param listener progress listener
+	 * @return result of the download and md5 of the downloaded file
+	 */
+	public static DownloadResult downloadModWithHash(File tempFile, ModInfo mod,
+	                                                 IDownloadProgressListener listener) {
+		return downloadModWithHash(tempFile, mod, mod.getRemoteInfo().downloadUrl, listener);
+	}
 
+	/**
+	 * downloads the given mod from the given url into the given file
+	 *
+	 * @param url url to download from, eg. a mirror of the download url
+	 * @see #downloadModWithHash(File, ModInfo, IDownloadProgressListener)
+	 */
+	public static DownloadResult downloadModWithHash(File tempFile, ModInfo mod, String url,
+	                                                 IDownloadProgressListener listener) {
+		return downloadModWithHash(tempFile, mod, url, false, listener);
+	}
 
-		try {
-			byte[] buffer = new byte[4096];
-			http = new URL(mod.getRemoteInfo().downloadUrl).openConnection();
-			http.setReadTimeout(10000);
-			http.addRequestProperty("User-Agent",
-					"Mozilla/4.0 (compatible; MSIE 6.0; Windows NT 5.0)");
+	/**
+	 * @param resumeAnySource continue partial downloads of other urls (without If-Range), the md5 has to be checked then
+	 */
+	private static DownloadResult downloadModWithHash(File tempFile, ModInfo mod, String url, boolean resumeAnySource,
+	                                                  IDownloadProgressListener listener) {
 
-			float progress = 0.0F;
-			float progressMax;
+		final File validatorFile = getValidatorFile(tempFile);
+		InputStream httpInputStream = null;
+		OutputStream fileOutputStream = null;
 
-			httpInputStream = http.getInputStream();
-			progressMax = http.getContentLength();
-			if (progressMax < 1) {
-				progressMax = 100;
+		try {
+			byte[] buffer = new byte[8192];
+			URLConnection http = HttpClient.getShared().openConnection(url);
+
+			//try to resume a previous download
+			long existingBytes = tempFile.exists() ? tempFile.length() : 0;
+			String validator = existingBytes > 0 ? readValidator(validatorFile) : null;
+			boolean rangeRequested = false;
+			if (http instanceof HttpURLConnection && (validator != null || resumeAnySource && existingBytes > 0)) {
+				http.setRequestProperty("Range", "bytes=" + existingBytes + "-");
+				if (!resumeAnySource) {
+					http.setRequestProperty("If-Range", validator);
+				}
+				rangeRequested = true;
 			}
-			int contentLength = http.getContentLength();
 
-			if (listener.isCancelled()) {
-				return UpdateResult.Cancelled;
+			long startOffset = 0;
+			if (http instanceof HttpURLConnection) {
+				int responseCode = ((HttpURLConnection) http).getResponseCode();
+				if (responseCode == HTTP_RANGE_NOT_SATISFIABLE && rangeRequested) {
+					//the partial file is either complete or larger than the remote file
+					long remoteLength = parseContentRangeLength(http.getHeaderField("Content-Range"));
+					HttpClient.discardErrorStream((HttpURLConnection) http);
+					if (remoteLength == existingBytes) {
+						NwLogger.UPDATER_LOGGER.fine("Temp file " + tempFile + " is already complete.");
+						deleteValidator(tempFile);
+						return new DownloadResult(UpdateResult.Good, getHash(tempFile));
+					}
+					NwLogger.UPDATER_LOGGER.info("Deleting " + tempFile + " as it does not match the remote file.");
+					if (!deleteTempFile(tempFile)) {
+						return new DownloadResult(UpdateResult.FailedDeletingFile);
+					}
+					return downloadModWithHash(tempFile, mod, url, resumeAnySource, listener);
+				}
+				if (responseCode >= 400) {
+					HttpClient.discardErrorStream((HttpURLConnection) http);
+					throw new IOException("Server returned HTTP response code: " + responseCode);
+				}
+				if (responseCode == HttpURLConnection.HTTP_PARTIAL) {
+					startOffset = parseContentRangeStart(http.getHeaderField("Content-Range"));
+					if (startOffset != existingBytes) {
+						//should not happen, we only asked for one range
+						throw new IOException("Unexpected Content-Range: " + http.getHeaderField("Content-Range"));
+					}
+					NwLogger.UPDATER_LOGGER.info("Resuming download of " + mod.name + " at byte " + startOffset);
+				} else if (existingBytes > 0) {
+					//server sent the whole file (no range support or file changed)
+					NwLogger.UPDATER_LOGGER.info("Deleting " + tempFile
+							+ " as the server sent the whole file (" + existingBytes + " bytes were already downloaded).");
+				}
 			}
 
-			if (tempFile.exists()) {
-				long receivedBytes = tempFile.length();
+			httpInputStream = HttpClient.getShared().getInputStream(http);
+			long contentLength = http.getContentLengthLong();
+			float progress = startOffset;
+			float progressMax = contentLength < 0 ? 100 : startOffset + contentLength;
 
-				if (receivedBytes == contentLength) {
-					return UpdateResult.Good;
-				}
+			if (listener.isCancelled()) {
+				return new DownloadResult(UpdateResult.Cancelled);
+			}
 
-				NwLogger.UPDATER_LOGGER.info("Deleting " + tempFile
-						+ " as it does not match what we currently have ("
-						+ contentLength + " vs our " + receivedBytes + ").");
-				if (!tempFile.delete()) {
-					return UpdateResult.FailedDeletingFile;
-				}
+			//remember the validator, so an interrupted download can be resumed
+			String newValidator = getValidator(http);
+			if (newValidator != null) {
+				writeValidator(validatorFile, newValidator);
+			} else {
+				deleteValidator(tempFile);
+			}
+
+			MessageDigest digest = MessageDigest.getInstance("MD5");
+			if (startOffset > 0) {
+				updateDigest(digest, tempFile, startOffset);
 			}
-			fileOutputStream = new DataOutputStream(new FileOutputStream(
-					tempFile));
+			fileOutputStream = new DigestOutputStream(new BufferedOutputStream(new FileOutputStream(tempFile, startOffset > 0), buffer.length), digest);
 
-			listener.setDownloadProgress("Downloading " + mod.name, 0,
+			listener.setDownloadProgress("Downloading " + mod.name, (int) progress,
 					(int) progressMax);
 			int readBytes;
 			while ((readBytes = httpInputStream.read(buffer)) >= 0) {
@@ -318,16 +657,21 @@ public class DownloadHelper {
 				fileOutputStream.write(buffer, 0, readBytes);
 				listener.setDownloadProgress((int) progress);
 				if (listener.isCancelled()) {
-					return UpdateResult.Cancelled;
+					return new DownloadResult(UpdateResult.Cancelled);
 				}
 			}
-			return UpdateResult.Good;
+			fileOutputStream.close();
+			if (contentLength >= 0 && tempFile.length() != startOffset + contentLength) {
+				throw new IOException("Premature end of download, expected " + (startOffset + contentLength) + " bytes, got " + tempFile.length());
+			}
+			deleteValidator(tempFile);
+			return new DownloadResult(UpdateResult.Good, toHexString(digest));
 
 		} catch (MalformedURLException e) {
 			listener.setDownloadProgress("Error during download of " + mod.getFileNameSystem() + ": " + e.getMessage());
 			NwLogger.UPDATER_LOGGER.severe("Failed downloading " + mod.getFileNameSystem().replace(File.separator, "/") + "!", e);
-			return UpdateResult.INVALID_URL;
-		} catch (IOException e) {
+			return new DownloadResult(UpdateResult.INVALID_URL);
+		} catch (IOException | NoSuchAlgorithmException e) {
 			listener.setDownloadProgress("Error during download of " + mod.getFileNameSystem() + ": " + e.getMessage());
 			NwLogger.UPDATER_LOGGER.severe("Failed downloading " + mod.getFileNameSystem().replace(File.separator, "/") + "!", e);
 		} finally {
@@ -344,19 +688,143 @@ public class DownloadHelper {
 			} catch (IOException localIOException5) {
 			}
 		}
+		return new DownloadResult(UpdateResult.Failed);
+	}
+
+	/**
+	 * deletes a temp file and the validator saved for it
+	 *
+	 * @return false if the temp file could not be deleted
+	 */
+	public static boolean deleteTempFile(File tempFile) {
+		deleteValidator(tempFile);
+		return !tempFile.exists() || tempFile.delete();
+	}
+
+	/**
+	 * waits for a connection to the host of the url
+	 *
+	 * @param hostLimiter may be null
+	 * @return false if the thread got interrupted
+	 */
+	private static boolean acquire(HostConnectionLimiter hostLimiter, String url) {
+		if (hostLimiter == null) {
+			return true;
+		}
 		try {
-			if (httpInputStream != null) {
-				httpInputStream.close();
-			}
-		} catch (IOException localIOException6) {
+			hostLimiter.acquire(url);
+			return true;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return false;
+		}
+	}
+
+	private static void release(HostConnectionLimiter hostLimiter, String url) {
+		if (hostLimiter != null) {
+			hostLimiter.release(url);
+		}
+	}
+
+	/**
+	 * @return the file a mod is assembled in (from a patch, zip entries or a mirror) before it replaces the temp file,
+	 * so a partial download in the temp file can still be resumed if this fails
+	 */
+	private static File getDeltaFile(File tempFile) {
+		return new File(tempFile.getPath() + ".delta");
+	}
+
+	/**
+	 * replaces the temp file (and its validator) with the completely assembled and verified delta file
+	 */
+	private static boolean replaceTempFile(File deltaFile, File tempFile) {
+		deleteValidator(tempFile);
+		return FileUtils.moveAtomically(deltaFile, tempFile);
+	}
+
+	/**
+	 * @return the file used to store the validator of a partial download
+	 */
+	private static File getValidatorFile(File tempFile) {
+		return new File(tempFile.getPath() + ".validator");
+	}
+
+	private static void deleteValidator(File tempFile) {
+		File validatorFile = getValidatorFile(tempFile);
+		if (validatorFile.exists() && !validatorFile.delete()) {
+			NwLogger.NW_LOGGER.warn("Could not delete " + validatorFile);
+		}
+	}
+
+	private static String readValidator(File validatorFile) {
+		if (!validatorFile.exists()) {
+			return null;
 		}
 		try {
-			if (fileOutputStream != null) {
-				fileOutputStream.close();
-			}
-		} catch (IOException localIOException7) {
+			String validator = new String(Files.readAllBytes(validatorFile.toPath()), StandardCharsets.UTF_8).trim();
+			return validator.isEmpty() ? null : validator;
+		} catch (IOException e) {
+			return null;
+		}
+	}
+
+	private static void writeValidator(File validatorFile, String validator) {
+		try {
+			Files.write(validatorFile.toPath(), validator.getBytes(StandardCharsets.UTF_8));
+		} catch (IOException e) {
+			NwLogger.NW_LOGGER.warn("Could not save download validator " + validatorFile, e);
+		}
+	}
+
+	/**
+	 * @return a validator that can be used in an If-Range header (strong ETag or Last-Modified), null if none is available
+	 */
+	private static String getValidator(URLConnection http) {
+		String eTag = http.getHeaderField("ETag");
+		if (eTag != null && !eTag.startsWith("W/")) {
+			return eTag;
+		}
+		return http.getHeaderField("Last-Modified");
+	}
+
+	/**
+	 * parses the start offset of a Content-Range header (eg. "bytes 100-199/200")
+	 *
+	 * @return the first byte, -1 if the header could not be parsed
+	 */
+	private static long parseContentRangeStart(String contentRange) {
+		if (contentRange == null || !contentRange.startsWith("bytes ")) {
+			return -1;
+		}
+		int dash = contentRange.indexOf('-');
+		if (dash < 0) {
+			return -1;
+		}
+		try {
+			return Long.parseLong(contentRange.substring(6, dash).trim());
+		} catch (NumberFormatException e) {
+			return -1;
+		}
+	}
+
+	/**
+	 * parses the complete length of a Content-Range header (eg. "bytes *&#47;200")
+	 *
+	 * @return the complete length, -1 if the header could not be parsed or the length is unknown
+	 */
+	private static long parseContentRangeLength(String contentRange) {
+		if (contentRange == null) {
+			return -1;
+		}
+		int slash = contentRange.lastIndexOf('/');
+		if (slash < 0) {
+			return -1;
+		}
+		try {
+			return Long.parseLong(contentRange.substring(slash + 1).trim());
+		} catch (NumberFormatException e) {
+			return -1;
 		}
-		return UpdateResult.Failed;
 	}
 
 	public static boolean extractArchive(File archive, File outputDir) {
@@ -424,7 +892,7 @@ public class DownloadHelper {
 
 		InputStream httpStream = new FileInputStream(file);
 		try {
-			result = readStringFromStream(httpStream, watcher, "Parsing...");
+			result = readStringFromStream(httpStream, file.length(), watcher, "Parsing...");
 		} catch (IOException ex) {
 			NwLogger.NW_LOGGER.error("Error reading file: " + strUrl, ex);
 		}
@@ -432,22 +900,23 @@ public class DownloadHelper {
 	}
 
 	public static String readStringFromStream(InputStream stream, IDownloadProgressListener watcher, String msg) throws IOException {
-		int max = stream.available();
-		if (watcher != null) {
-			watcher.setDownloadProgress(msg, 0, max);
-		}
-		StringBuilder readString = new StringBuilder();
-		BufferedReader reader = new BufferedReader(new InputStreamReader(
-				stream));
-		String readLine;
-		while ((readLine = reader.readLine()) != null) {
-			if (watcher != null) {
-				watcher.setDownloadProgress(max - stream.available());
+		return readStringFromStream(stream, -1, watcher, msg);
+	}
+
+	/**
+	 * reads the whole stream as UTF-8 String, progress is reported from the number of bytes read
+	 *
+	 * @param length expected length in bytes, -1 if unknown
+	 */
+	public static String readStringFromStream(InputStream stream, long length, IDownloadProgressListener watcher, String msg) throws IOException {
+		StringBuilder readString = new StringBuilder(length > 0 && length < Integer.MAX_VALUE ? (int) length : 8192);
+		try (Reader reader = new InputStreamReader(new ProgressInputStream(stream, length, watcher, msg), StandardCharsets.UTF_8)) {
+			char[] buffer = new char[8192];
+			int read;
+			while ((read = reader.read(buffer)) >= 0) {
+				readString.append(buffer, 0, read);
 			}
-			readString.append(readLine).append("\n");
 		}
-
-		reader.close();
 		return readString.toString();
 	}
 }
@@ -0,0 +1,25 @@
+package common.nw.core.utils;
+
+/**
+ * result of a download together with the md5 of the downloaded file
+ *
+ * @author Nuklearwurst
+ */
+public class DownloadResult {
+
+	public final UpdateResult result;
+
+	/**
+	 * md5 of the downloaded file, computed while downloading. null if the download did not succeed
+	 */
+	public final String md5;
+
+	public DownloadResult(UpdateResult result) {
+		this(result, null);
+	}
+
+	public DownloadResult(UpdateResult result, String md5) {
+		this.result = result;
+		this.md5 = md5;
+	}
+}
@@ -1,6 +1,13 @@
 package common.nw.core.utils;
 
-import java.io.File;
+import com.google.gson.Gson;
+import common.nw.core.utils.log.NwLogger;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
 
 /**
  * @author Nuklearwurst
@@ -29,6 +36,87 @@ public class FileUtils {
 		return file.mkdir();
 	}
 
+	/**
+	 * moves a file, replacing the target if it exists
+	 * <br>
+	 * the move is atomic if the filesystem supports it
+	 *
+	 * @param source file to move
+	 * @param target destination
+	 * @return success
+	 */
+	public static boolean moveAtomically(File source, File target) {
+		try {
+			try {
+				Files.move(source.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			} catch (AtomicMoveNotSupportedException e) {
+				Files.move(source.toPath(), target.toPath(), StandardCopyOption.REPLACE_EXISTING);
+			}
+			return true;
+		} catch (IOException e) {
+			NwLogger.NW_LOGGER.error("Error moving " + source + " to " + target, e);
+			return false;
+		}
+	}
+
+	/**
+	 * writes an object as json using a temp file, so that the old file stays intact if writing fails
+	 *
+	 * @param sync true if the new content has to be on disk before it replaces the old file
+	 *             (eg. journals that are trusted after a crash)
+	 * @see #writeJsonAtomically(Gson, Object, File, boolean)
+	 */
+	public static void writeJsonAtomically(Object object, File file, boolean sync) throws IOException {
+		writeJsonAtomically(new Gson(), object, file, sync);
+	}
+
+	/**
+	 * writes an object as json using a temp file, so that the old file stays intact if writing fails
+	 *
+	 * @param gson gson instance used to serialize the object
+	 * @param sync true if the new content has to be on disk before it replaces the old file
+	 * @throws IOException if the file could not be written or replaced
+	 */
+	public static void writeJsonAtomically(Gson gson, Object object, File file, boolean sync) throws IOException {
+		//a unique temp file, other processes (eg. sharing the cache directory) might write the same file
+		File tempFile = File.createTempFile(file.getName(), ".tmp", file.getAbsoluteFile().getParentFile());
+		boolean moved = false;
+		try {
+			try (FileOutputStream out = new FileOutputStream(tempFile);
+			     Writer writer = new OutputStreamWriter(new BufferedOutputStream(out), StandardCharsets.UTF_8)) {
+				gson.toJson(object, writer);
+				writer.flush();
+				if (sync) {
+					out.getFD().sync();
+				}
+			}
+			moved = moveAtomically(tempFile, file);
+			if (!moved) {
+				throw new IOException("Could not replace " + file);
+			}
+		} finally {
+			if (!moved && !tempFile.delete()) {
+				tempFile.deleteOnExit();
+			}
+		}
+	}
+
+	/**
+	 * deletes a file or a directory including its content
+	 *
+	 * @return true if the file does not exist anymore
+	 */
+	public static boolean deleteRecursively(File file) {
+		//do not follow links
+		File[] children = Files.isSymbolicLink(file.toPath()) ? null : file.listFiles();
+		if (children != null) {
+			for (File child : children) {
+				deleteRecursively(child);
+			}
+		}
+		return file.delete() || !file.exists();
+	}
+
 	public static int compareVersions(String v1, String v2) {
 		if (v1 == null) {
 			return v2 == null ? 0 : 1;
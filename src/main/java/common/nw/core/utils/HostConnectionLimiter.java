@@ -0,0 +1,71 @@
+package common.nw.core.utils;
+
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.Semaphore;
+
+/**
+ * limits the number of concurrent connections to a single host
+ *
+ * @author Nuklearwurst
+ */
+public class HostConnectionLimiter {
+
+	/**
+	 * maximum connections per host
+	 */
+	private final int connectionsPerHost;
+
+	private final ConcurrentMap<String, Semaphore> hosts = new ConcurrentHashMap<>();
+
+	public HostConnectionLimiter(int connectionsPerHost) {
+		this.connectionsPerHost = Math.max(1, connectionsPerHost);
+	}
+
+	/**
+	 * blocks until a connection to the host of the given url is available
+	 *
+	 * @param url url that is going to be downloaded
+	 * @throws InterruptedException if the thread got interrupted while waiting
+	 */
+	public void acquire(String url) throws InterruptedException {
+		getSemaphore(url).acquire();
+	}
+
+	/**
+	 * releases a connection acquired by {@link #acquire(String)}
+	 */
+	public void release(String url) {
+		getSemaphore(url).release();
+	}
+
+	private Semaphore getSemaphore(String url) {
+		String host = getHost(url);
+		Semaphore semaphore = hosts.get(host);
+		if (semaphore == null) {
+			Semaphore newSemaphore = new Semaphore(connectionsPerHost, true);
+			semaphore = hosts.putIfAbsent(host, newSemaphore);
+			if (semaphore == null) {
+				semaphore = newSemaphore;
+			}
+		}
+		return semaphore;
+	}
+
+	/**
+	 * @return the host of the given url, or the url itself if it could not be parsed
+	 */
+	private static String getHost(String url) {
+		if (url == null) {
+			return "";
+		}
+		try {
+			return new URL(url).getHost().toLowerCase(Locale.ENGLISH);
+		} catch (MalformedURLException e) {
+			return url;
+		}
+	}
+}
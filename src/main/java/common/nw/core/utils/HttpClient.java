@@ -0,0 +1,240 @@
+package common.nw.core.utils;
+
+import common.nw.core.utils.log.NwLogger;
+
+import javax.net.ssl.HttpsURLConnection;
+import javax.net.ssl.SSLSocketFactory;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.Socket;
+import java.net.URL;
+import java.net.URLConnection;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * shared http client used for all downloads
+ * <p>
+ * connections are kept alive and reused by the jvm's keep-alive cache as long as responses are read completely
+ * (or are small enough to be skipped) and no {@code Connection: close} header is sent.
+ * The pool size is raised to {@link #MAX_CONNECTIONS} unless {@code http.maxConnections} is set explicitly.
+ * HTTP/2 is not available on the Java 8 runtime this runs on, all requests use HTTP/1.1.
+ * <p>
+ * Connection reuse is tracked per run, see {@link #getMetrics()}. New connections can only be observed for https,
+ * where every new connection performs a TLS handshake through our socket factory.
+ *
+ * @author Nuklearwurst
+ */
+public class HttpClient {
+
+	public static final String USER_AGENT = "Mozilla/4.0 (compatible; MSIE 6.0; Windows NT 5.0)";
+
+	/**
+	 * number of idle connections kept alive per host
+	 */
+	private static final int MAX_CONNECTIONS = 16;
+
+	private static final int CONNECT_TIMEOUT = 15000;
+	private static final int READ_TIMEOUT = 10000;
+
+	private static final HttpClient SHARED;
+
+	static {
+		if (System.getProperty("http.maxConnections") == null) {
+			System.setProperty("http.maxConnections", Integer.toString(MAX_CONNECTIONS));
+		}
+		SHARED = new HttpClient();
+	}
+
+	private final AtomicLong requests = new AtomicLong();
+	private final AtomicLong httpsRequests = new AtomicLong();
+	private final AtomicLong tlsConnections = new AtomicLong();
+	private final AtomicLong bytesReceived = new AtomicLong();
+
+	/**
+	 * socket factory used for all https connections, has to stay the same instance for connections to be reused
+	 */
+	private final SSLSocketFactory socketFactory;
+
+	private HttpClient() {
+		socketFactory = new CountingSSLSocketFactory(HttpsURLConnection.getDefaultSSLSocketFactory());
+	}
+
+	/**
+	 * @return the client shared by updater, installer and creator
+	 */
+	public static HttpClient getShared() {
+		return SHARED;
+	}
+
+	/**
+	 * opens a connection to the given url, the request is not sent until the response is accessed
+	 */
+	public URLConnection openConnection(String url) throws IOException {
+		URLConnection connection = new URL(url).openConnection();
+		connection.setConnectTimeout(CONNECT_TIMEOUT);
+		connection.setReadTimeout(READ_TIMEOUT);
+		connection.setUseCaches(false);
+		connection.addRequestProperty("User-Agent", USER_AGENT);
+		if (connection instanceof HttpsURLConnection) {
+			((HttpsURLConnection) connection).setSSLSocketFactory(socketFactory);
+			httpsRequests.incrementAndGet();
+		}
+		requests.incrementAndGet();
+		return connection;
+	}
+
+	/**
+	 * returns the response body of the given connection, received bytes are counted
+	 */
+	public InputStream getInputStream(URLConnection connection) throws IOException {
+		return new FilterInputStream(connection.getInputStream()) {
+			@Override
+			public int read() throws IOException {
+				int read = super.read();
+				if (read >= 0) {
+					bytesReceived.incrementAndGet();
+				}
+				return read;
+			}
+
+			@Override
+			public int read(byte[] b, int off, int len) throws IOException {
+				int read = super.read(b, off, len);
+				if (read > 0) {
+					bytesReceived.addAndGet(read);
+				}
+				return read;
+			}
+		};
+	}
+
+	/**
+	 * reads and closes the error stream of a failed request, allowing the connection to be reused
+	 */
+	public static void discardErrorStream(HttpURLConnection connection) {
+		try (InputStream errorStream = connection.getErrorStream()) {
+			if (errorStream != null) {
+				byte[] buffer = new byte[1024];
+				//noinspection StatementWithEmptyBody
+				while (errorStream.read(buffer) >= 0) ;
+			}
+		} catch (IOException ignored) {
+		}
+	}
+
+	/**
+	 * @return a snapshot of the metrics collected since the last {@link #resetMetrics()}
+	 */
+	public Metrics getMetrics() {
+		return new Metrics(requests.get(), httpsRequests.get(), tlsConnections.get(), bytesReceived.get());
+	}
+
+	/**
+	 * resets the metrics, called at the start of a run
+	 */
+	public void resetMetrics() {
+		requests.set(0);
+		httpsRequests.set(0);
+		tlsConnections.set(0);
+		bytesReceived.set(0);
+	}
+
+	/**
+	 * logs the metrics of the current run
+	 */
+	public void logMetrics(NwLogger logger) {
+		logger.info("Http metrics: " + getMetrics());
+	}
+
+	/**
+	 * connection metrics of a run
+	 */
+	public static class Metrics {
+
+		public final long requests;
+		public final long httpsRequests;
+		public final long tlsConnections;
+		public final long bytesReceived;
+
+		private Metrics(long requests, long httpsRequests, long tlsConnections, long bytesReceived) {
+			this.requests = requests;
+			this.httpsRequests = httpsRequests;
+			this.tlsConnections = tlsConnections;
+			this.bytesReceived = bytesReceived;
+		}
+
+		/**
+		 * @return number of https requests that did not need a new connection
+		 */
+		public long getReusedConnections() {
+			return Math.max(0, httpsRequests - tlsConnections);
+		}
+
+		@Override
+		public String toString() {
+			return String.format("%d requests (%d https), %d TLS connections opened, %d reused, %.2f MB received",
+					requests, httpsRequests, tlsConnections, getReusedConnections(), bytesReceived / (1024.0 * 1024.0));
+		}
+	}
+
+	/**
+	 * counts the sockets created for https connections
+	 */
+	private class CountingSSLSocketFactory extends SSLSocketFactory {
+
+		private final SSLSocketFactory delegate;
+
+		private CountingSSLSocketFactory(SSLSocketFactory delegate) {
+			this.delegate = delegate;
+		}
+
+		@Override
+		public String[] getDefaultCipherSuites() {
+			return delegate.getDefaultCipherSuites();
+		}
+
+		@Override
+		public String[] getSupportedCipherSuites() {
+			return delegate.getSupportedCipherSuites();
+		}
+
+		@Override
+		public Socket createSocket() throws IOException {
+			tlsConnections.incrementAndGet();
+			return delegate.createSocket();
+		}
+
+		@Override
+		public Socket createSocket(Socket s, String host, int port, boolean autoClose) throws IOException {
+			tlsConnections.incrementAndGet();
+			return delegate.createSocket(s, host, port, autoClose);
+		}
+
+		@Override
+		public Socket createSocket(String host, int port) throws IOException {
+			tlsConnections.incrementAndGet();
+			return delegate.createSocket(host, port);
+		}
+
+		@Override
+		public Socket createSocket(String host, int port, InetAddress localHost, int localPort) throws IOException {
+			tlsConnections.incrementAndGet();
+			return delegate.createSocket(host, port, localHost, localPort);
+		}
+
+		@Override
+		public Socket createSocket(InetAddress host, int port) throws IOException {
+			tlsConnections.incrementAndGet();
+			return delegate.createSocket(host, port);
+		}
+
+		@Override
+		public Socket createSocket(InetAddress address, int port, InetAddress localAddress, int localPort) throws IOException {
+			tlsConnections.incrementAndGet();
+			return delegate.createSocket(address, port, localAddress, localPort);
+		}
+	}
+}
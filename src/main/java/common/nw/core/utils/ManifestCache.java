@@ -0,0 +1,226 @@
+package common.nw.core.utils;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import common.nw.core.gui.IDownloadProgressListener;
+import common.nw.core.utils.log.NwLogger;
+
+import java.io.*;
+import java.net.HttpURLConnection;
+import java.net.URLConnection;
+import java.nio.charset.StandardCharsets;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * stores downloaded manifests (eg. modpack.json) together with their ETag and Last-Modified header
+ * <p>
+ * cached manifests are revalidated using conditional requests (If-None-Match/If-Modified-Since),
+ * within the given time to live no request is made at all.
+ *
+ * @author Nuklearwurst
+ */
+public class ManifestCache {
+
+	private static final int HTTP_NOT_MODIFIED = 304;
+
+	/**
+	 * directory the manifests are stored in
+	 */
+	private final File dir;
+
+	public ManifestCache(File dir) {
+		this.dir = dir;
+	}
+
+	/**
+	 * @return the cache stored in the default cache directory
+	 * @see Utils#getCacheDir()
+	 */
+	public static ManifestCache getDefault() {
+		return new ManifestCache(new File(Utils.getCacheDir(), "manifests"));
+	}
+
+	/**
+	 * returns the manifest at the given url
+	 * <p>
+	 * the manifest is streamed to disk and never held in memory as a whole
+	 *
+	 * @param url      url of the manifest
+	 * @param ttl      time (in ms) in which a cached manifest is used without checking for changes, 0 always checks
+	 * @param listener progress listener, may be null
+	 * @return the manifest, never null
+	 * @throws IOException if the manifest could not be downloaded
+	 */
+	public Manifest get(String url, long ttl, IDownloadProgressListener listener) throws IOException {
+		String key = getKey(url);
+		File bodyFile = new File(dir, key + ".json");
+		File metaFile = new File(dir, key + ".meta");
+		Meta meta = readMeta(metaFile, url);
+		if (meta != null && bodyFile.length() != meta.length) {
+			meta = null;
+		}
+
+		long now = System.currentTimeMillis();
+		if (meta != null && ttl > 0 && now - meta.checked >= 0 && now - meta.checked < ttl) {
+			NwLogger.NW_LOGGER.info("Using cached manifest of " + url + " (checked " + (now - meta.checked) / 1000 + "s ago)");
+			return new Manifest(bodyFile, meta.md5, true);
+		}
+
+		URLConnection http = HttpClient.getShared().openConnection(url);
+		if (meta != null) {
+			if (meta.eTag != null) {
+				http.setRequestProperty("If-None-Match", meta.eTag);
+			}
+			if (meta.lastModified != null) {
+				http.setRequestProperty("If-Modified-Since", meta.lastModified);
+			}
+		}
+		if (http instanceof HttpURLConnection) {
+			HttpURLConnection httpConnection = (HttpURLConnection) http;
+			int responseCode = httpConnection.getResponseCode();
+			if (responseCode == HTTP_NOT_MODIFIED && meta != null) {
+				HttpClient.discardErrorStream(httpConnection);
+				NwLogger.NW_LOGGER.info("Manifest " + url + " not modified");
+				meta.checked = now;
+				writeMeta(metaFile, meta);
+				return new Manifest(bodyFile, meta.md5, true);
+			}
+			if (responseCode >= 400) {
+				HttpClient.discardErrorStream(httpConnection);
+				throw new IOException("Server returned HTTP response code: " + responseCode + " for URL: " + url);
+			}
+		}
+
+		boolean cacheable = dir.isDirectory() || dir.mkdirs();
+		File tempFile;
+		if (cacheable) {
+			tempFile = File.createTempFile(key, ".tmp", dir);
+		} else {
+			NwLogger.NW_LOGGER.warn("Could not create manifest cache directory " + dir);
+			tempFile = File.createTempFile(key, ".json");
+			tempFile.deleteOnExit();
+		}
+		MessageDigest digest = createDigest();
+		try (InputStream in = new DigestInputStream(new ProgressInputStream(HttpClient.getShared().getInputStream(http),
+				http.getContentLengthLong(), listener, "Downloading..."), digest);
+		     OutputStream out = new FileOutputStream(tempFile)) {
+			byte[] buffer = new byte[8192];
+			int read;
+			while ((read = in.read(buffer)) >= 0) {
+				out.write(buffer, 0, read);
+			}
+		} catch (IOException e) {
+			if (!tempFile.delete()) {
+				tempFile.deleteOnExit();
+			}
+			throw e;
+		}
+		Meta newMeta = new Meta();
+		newMeta.url = url;
+		newMeta.eTag = http.getHeaderField("ETag");
+		newMeta.lastModified = http.getHeaderField("Last-Modified");
+		newMeta.md5 = DownloadHelper.toHexString(digest);
+		newMeta.length = tempFile.length();
+		newMeta.checked = now;
+		boolean unchanged = meta != null && newMeta.md5.equals(meta.md5);
+		if (!cacheable) {
+			return new Manifest(tempFile, newMeta.md5, unchanged);
+		}
+		if (!FileUtils.moveAtomically(tempFile, bodyFile)) {
+			//the downloaded file is still valid, it just does not get cached
+			NwLogger.NW_LOGGER.warn("Could not store manifest " + bodyFile);
+			tempFile.deleteOnExit();
+			return new Manifest(tempFile, newMeta.md5, unchanged);
+		}
+		writeMeta(metaFile, newMeta);
+		return new Manifest(bodyFile, newMeta.md5, unchanged);
+	}
+
+	/**
+	 * @return the meta data of the manifest, null if there is none or it belongs to a different url
+	 */
+	private static Meta readMeta(File metaFile, String url) {
+		if (!metaFile.exists()) {
+			return null;
+		}
+		try (Reader reader = new InputStreamReader(new FileInputStream(metaFile), StandardCharsets.UTF_8)) {
+			Meta meta = new Gson().fromJson(reader, Meta.class);
+			return meta != null && url.equals(meta.url) ? meta : null;
+		} catch (IOException | JsonParseException e) {
+			NwLogger.NW_LOGGER.warn("Could not read cached manifest data " + metaFile, e);
+			return null;
+		}
+	}
+
+	/**
+	 * writes the meta data using a temp file, so that readers never see partial files
+	 */
+	private static void writeMeta(File metaFile, Meta meta) {
+		try {
+			FileUtils.writeJsonAtomically(meta, metaFile, false);
+		} catch (IOException e) {
+			NwLogger.NW_LOGGER.warn("Could not write " + metaFile, e);
+		}
+	}
+
+	private static MessageDigest createDigest() {
+		try {
+			return MessageDigest.getInstance("MD5");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/**
+	 * @return the name of the cache files of the given url
+	 */
+	private static String getKey(String url) {
+		MessageDigest digest = createDigest();
+		digest.update(url.getBytes(StandardCharsets.UTF_8));
+		return DownloadHelper.toHexString(digest);
+	}
+
+	/**
+	 * a manifest returned by the cache
+	 */
+	public static class Manifest {
+
+		/**
+		 * file containing the manifest, do not modify
+		 */
+		public final File file;
+
+		/**
+		 * md5 of the manifest, may be null
+		 */
+		public final String md5;
+
+		/**
+		 * true if the manifest did not change since it was last downloaded
+		 */
+		public final boolean unchanged;
+
+		private Manifest(File file, String md5, boolean unchanged) {
+			this.file = file;
+			this.md5 = md5;
+			this.unchanged = unchanged;
+		}
+	}
+
+	/**
+	 * validators of a cached manifest
+	 */
+	private static class Meta {
+		String url;
+		String eTag;
+		String lastModified;
+		String md5;
+		long length;
+		/**
+		 * time of the last successful check
+		 */
+		long checked;
+	}
+}
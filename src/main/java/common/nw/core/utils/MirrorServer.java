@@ -0,0 +1,205 @@
+package common.nw.core.utils;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import common.nw.core.utils.log.NwLogger;
+
+import java.io.*;
+import java.net.InetSocketAddress;
+import java.util.Locale;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * http server serving the objects of a {@link ContentStore}, used as a mirror by other updaters in the same network
+ * <p>
+ * objects are served at {@value #OBJECTS_PATH}&lt;md5&gt;. As objects never change, their md5 is used as ETag.
+ * Single byte ranges (including If-Range) and conditional requests (If-None-Match) are supported.
+ *
+ * @author Nuklearwurst
+ */
+public class MirrorServer implements AutoCloseable {
+
+	/**
+	 * path of the objects
+	 */
+	public static final String OBJECTS_PATH = "/objects/";
+
+	private static final int HTTP_RANGE_NOT_SATISFIABLE = 416;
+
+	private final ContentStore store;
+	private final HttpServer server;
+	private final ExecutorService executor;
+
+	private final AtomicLong requests = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+	private final AtomicLong bytesSent = new AtomicLong();
+
+	/**
+	 * starts the server
+	 *
+	 * @param store   store to serve
+	 * @param address address to listen on
+	 * @param threads number of concurrently served requests
+	 */
+	public MirrorServer(ContentStore store, InetSocketAddress address, int threads) throws IOException {
+		this.store = store;
+		server = HttpServer.create(address, 0);
+		executor = Executors.newFixedThreadPool(threads,
+				new ThreadFactoryBuilder().setDaemon(true).setNameFormat("Mirror Thread %d").build());
+		server.setExecutor(executor);
+		server.createContext(OBJECTS_PATH, this::handle);
+		server.start();
+		NwLogger.NW_LOGGER.info("Mirror listening on " + server.getAddress());
+	}
+
+	/**
+	 * @param mirrorUrl base url of a mirror
+	 * @param md5       md5 of the object
+	 * @return the url of the object on the mirror
+	 */
+	public static String getObjectUrl(String mirrorUrl, String md5) {
+		if (mirrorUrl.endsWith("/")) {
+			mirrorUrl = mirrorUrl.substring(0, mirrorUrl.length() - 1);
+		}
+		return mirrorUrl + OBJECTS_PATH + md5.toLowerCase(Locale.ROOT);
+	}
+
+	/**
+	 * @return the address the server is listening on
+	 */
+	public InetSocketAddress getAddress() {
+		return server.getAddress();
+	}
+
+	/**
+	 * stops the server and saves the usage information of the served objects
+	 */
+	@Override
+	public void close() {
+		server.stop(0);
+		executor.shutdown();
+		try {
+			executor.awaitTermination(5, TimeUnit.SECONDS);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+		store.flush();
+		NwLogger.NW_LOGGER.info(String.format("Mirror stopped, served %d requests (%d misses, %d KiB)",
+				requests.get(), misses.get(), bytesSent.get() / 1024));
+	}
+
+	private void handle(HttpExchange exchange) throws IOException {
+		try {
+			requests.incrementAndGet();
+			String method = exchange.getRequestMethod();
+			if (!"GET".equals(method) && !"HEAD".equals(method)) {
+				exchange.sendResponseHeaders(405, -1);
+				return;
+			}
+			String md5 = exchange.getRequestURI().getPath().substring(OBJECTS_PATH.length());
+			File object = store.getObject(md5);
+			if (object == null) {
+				misses.incrementAndGet();
+				exchange.sendResponseHeaders(404, -1);
+				return;
+			}
+			Headers requestHeaders = exchange.getRequestHeaders();
+			Headers responseHeaders = exchange.getResponseHeaders();
+			String eTag = "\"" + md5.toLowerCase(Locale.ROOT) + "\"";
+			responseHeaders.add("ETag", eTag);
+			responseHeaders.add("Accept-Ranges", "bytes");
+			responseHeaders.add("Content-Type", "application/octet-stream");
+			if (eTag.equals(requestHeaders.getFirst("If-None-Match"))) {
+				exchange.sendResponseHeaders(304, -1);
+				return;
+			}
+
+			long length = object.length();
+			long start = 0;
+			long end = length - 1;
+			int status = 200;
+			String range = requestHeaders.getFirst("Range");
+			String ifRange = requestHeaders.getFirst("If-Range");
+			if (range != null && (ifRange == null || ifRange.equals(eTag))) {
+				long[] parsed = parseRange(range, length);
+				if (parsed != null && parsed.length == 0) {
+					responseHeaders.add("Content-Range", "bytes */" + length);
+					exchange.sendResponseHeaders(HTTP_RANGE_NOT_SATISFIABLE, -1);
+					return;
+				}
+				if (parsed != null) {
+					start = parsed[0];
+					end = parsed[1];
+					status = 206;
+					responseHeaders.add("Content-Range", "bytes " + start + "-" + end + "/" + length);
+				}
+			}
+			if ("HEAD".equals(method)) {
+				responseHeaders.add("Content-Length", String.valueOf(end - start + 1));
+				exchange.sendResponseHeaders(status, -1);
+				return;
+			}
+			try (RandomAccessFile file = new RandomAccessFile(object, "r")) {
+				//-1: no body (0 would mean chunked encoding)
+				exchange.sendResponseHeaders(status, length == 0 ? -1 : end - start + 1);
+				OutputStream out = exchange.getResponseBody();
+				byte[] buffer = new byte[65536];
+				file.seek(start);
+				long remaining = end - start + 1;
+				while (remaining > 0) {
+					int read = file.read(buffer, 0, (int) Math.min(buffer.length, remaining));
+					if (read < 0) {
+						throw new EOFException("Object " + object + " was truncated");
+					}
+					out.write(buffer, 0, read);
+					remaining -= read;
+					bytesSent.addAndGet(read);
+				}
+			}
+		} catch (IOException e) {
+			NwLogger.NW_LOGGER.fine("Error serving " + exchange.getRequestURI() + ": " + e);
+		} finally {
+			exchange.close();
+		}
+	}
+
+	/**
+	 * parses a single byte range (eg. "bytes=0-99", "bytes=100-" or "bytes=-100")
+	 *
+	 * @return first and last byte, an empty array if the range can not be satisfied
+	 * or null if the range is not supported (the whole file is sent then)
+	 */
+	private static long[] parseRange(String range, long length) {
+		if (!range.startsWith("bytes=") || range.indexOf(',') >= 0) {
+			return null;
+		}
+		String[] parts = range.substring(6).trim().split("-", -1);
+		if (parts.length != 2) {
+			return null;
+		}
+		long start;
+		long end;
+		try {
+			if (parts[0].isEmpty()) {
+				//suffix range
+				long suffix = Long.parseLong(parts[1]);
+				start = Math.max(0, length - suffix);
+				end = suffix > 0 ? length - 1 : -1;
+			} else {
+				start = Long.parseLong(parts[0]);
+				end = parts[1].isEmpty() ? length - 1 : Math.min(length - 1, Long.parseLong(parts[1]));
+			}
+		} catch (NumberFormatException e) {
+			return null;
+		}
+		if (start < 0 || start >= length || end < start) {
+			return new long[0];
+		}
+		return new long[]{start, end};
+	}
+}
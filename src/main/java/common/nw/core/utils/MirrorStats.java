@@ -0,0 +1,261 @@
+package common.nw.core.utils;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import com.google.gson.reflect.TypeToken;
+import common.nw.core.utils.log.NwLogger;
+
+import java.io.*;
+import java.net.HttpURLConnection;
+import java.net.MalformedURLException;
+import java.net.URL;
+import java.net.URLConnection;
+import java.nio.charset.StandardCharsets;
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+/**
+ * measured speed of download hosts, used to choose between the download urls of a file
+ * <p>
+ * every host is probed once per run (latency of a HEAD request). The throughput of finished downloads is averaged
+ * per host and stored in the cache directory, so the next run starts with the fastest host.
+ *
+ * @author Nuklearwurst
+ */
+public class MirrorStats {
+
+	private static final String FILE_NAME = "mirrors.json";
+
+	/**
+	 * throughput (bytes per second) assumed for hosts without measurements
+	 */
+	private static final double DEFAULT_THROUGHPUT = 512 * 1024;
+
+	/**
+	 * size used to compare latency with throughput
+	 */
+	private static final double REFERENCE_SIZE = 1024 * 1024;
+
+	/**
+	 * weight of a new measurement in the average throughput
+	 */
+	private static final double SMOOTHING = 0.3;
+
+	/**
+	 * downloads smaller than this are dominated by latency and not used to measure throughput
+	 */
+	private static final long MIN_SAMPLE_SIZE = 64 * 1024;
+
+	private static final int PROBE_TIMEOUT = 3000;
+
+	/**
+	 * added to the score (in ms) of hosts that failed during this run
+	 */
+	private static final double FAILURE_PENALTY = 60000;
+
+	private static MirrorStats shared;
+
+	private final File file;
+
+	/**
+	 * stored throughput (bytes per second) by host
+	 */
+	private final Map<String, Double> throughput = new ConcurrentHashMap<>();
+
+	/**
+	 * latency (ms) by host measured during this run, -1 if the host could not be reached
+	 */
+	private final ConcurrentMap<String, FutureTask<Long>> latency = new ConcurrentHashMap<>();
+
+	/**
+	 * number of failed downloads by host during this run
+	 */
+	private final Map<String, Integer> failures = new ConcurrentHashMap<>();
+
+	private volatile boolean changed = false;
+
+	/**
+	 * @param file file the throughput is stored in, null if it should not be stored
+	 */
+	public MirrorStats(File file) {
+		this.file = file;
+		if (file != null && file.exists()) {
+			try (Reader reader = new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8)) {
+				Map<String, Double> stored = new Gson().fromJson(reader, new TypeToken<Map<String, Double>>() {
+				}.getType());
+				if (stored != null) {
+					throughput.putAll(stored);
+				}
+			} catch (IOException | JsonParseException e) {
+				NwLogger.NW_LOGGER.warn("Error reading " + file + ", discarding mirror statistics", e);
+			}
+		}
+	}
+
+	/**
+	 * @return the statistics stored in the cache directory, they get loaded on first use
+	 */
+	public static synchronized MirrorStats getShared() {
+		if (shared == null) {
+			shared = new MirrorStats(new File(Utils.getCacheDir(), FILE_NAME));
+		}
+		return shared;
+	}
+
+	/**
+	 * saves the shared statistics, if they were used
+	 */
+	public static synchronized void saveShared() {
+		if (shared != null) {
+			shared.save();
+		}
+	}
+
+	/**
+	 * sorts the given urls by the expected download time, fastest first
+	 * <p>
+	 * hosts that were not probed yet during this run get probed
+	 *
+	 * @return a new list
+	 */
+	public List<String> rank(List<String> urls) {
+		final Map<String, Double> scores = new HashMap<>();
+		for (String url : urls) {
+			scores.put(url, getScore(url));
+		}
+		List<String> ranked = new ArrayList<>(urls);
+		//stable, urls listed first win ties
+		ranked.sort(Comparator.comparingDouble(scores::get));
+		return ranked;
+	}
+
+	/**
+	 * records a finished (or partial) download
+	 *
+	 * @param bytes  number of downloaded bytes
+	 * @param millis time the download took
+	 */
+	public void recordDownload(String url, long bytes, long millis) {
+		if (bytes < MIN_SAMPLE_SIZE) {
+			return;
+		}
+		String host = getHost(url);
+		double measured = bytes * 1000.0 / Math.max(1, millis);
+		Double old = throughput.get(host);
+		throughput.put(host, old == null ? measured : old * (1 - SMOOTHING) + measured * SMOOTHING);
+		changed = true;
+	}
+
+	/**
+	 * records a failed download, the host is ranked last for the rest of this run
+	 */
+	public void recordFailure(String url) {
+		failures.merge(getHost(url), 1, Integer::sum);
+	}
+
+	/**
+	 * @return the average throughput of the host of the given url in bytes per second, -1 if unknown
+	 */
+	public double getThroughput(String url) {
+		Double value = throughput.get(getHost(url));
+		return value == null ? -1 : value;
+	}
+
+	/**
+	 * writes the throughput to disk, failures are only logged
+	 */
+	public void save() {
+		if (file == null || !changed) {
+			return;
+		}
+		changed = false;
+		File dir = file.getParentFile();
+		if (dir != null && !dir.isDirectory() && !dir.mkdirs()) {
+			NwLogger.NW_LOGGER.warn("Could not create " + dir);
+			return;
+		}
+		try {
+			FileUtils.writeJsonAtomically(new HashMap<>(throughput), file, false);
+		} catch (IOException e) {
+			NwLogger.NW_LOGGER.warn("Error writing " + file, e);
+		}
+	}
+
+	/**
+	 * @return expected time (in ms) to download {@link #REFERENCE_SIZE} bytes from the given url
+	 */
+	private double getScore(String url) {
+		String host = getHost(url);
+		long probed = probe(url);
+		double score = probed < 0 ? FAILURE_PENALTY : probed;
+		Double known = throughput.get(host);
+		score += REFERENCE_SIZE * 1000 / (known != null ? known : DEFAULT_THROUGHPUT);
+		Integer failed = failures.get(host);
+		if (failed != null) {
+			score += failed * FAILURE_PENALTY;
+		}
+		return score;
+	}
+
+	/**
+	 * @return the latency of the host of the given url, -1 if it could not be reached
+	 */
+	private long probe(final String url) {
+		String host = getHost(url);
+		FutureTask<Long> task = latency.get(host);
+		if (task == null) {
+			FutureTask<Long> newTask = new FutureTask<>(() -> measureLatency(url));
+			task = latency.putIfAbsent(host, newTask);
+			if (task == null) {
+				task = newTask;
+				task.run();
+			}
+		}
+		try {
+			return task.get();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return -1;
+		} catch (ExecutionException e) {
+			return -1;
+		}
+	}
+
+	private static long measureLatency(String url) {
+		long start = System.nanoTime();
+		try {
+			URLConnection connection = HttpClient.getShared().openConnection(url);
+			if (!(connection instanceof HttpURLConnection)) {
+				return 0;
+			}
+			HttpURLConnection http = (HttpURLConnection) connection;
+			http.setConnectTimeout(PROBE_TIMEOUT);
+			http.setReadTimeout(PROBE_TIMEOUT);
+			http.setRequestMethod("HEAD");
+			int responseCode = http.getResponseCode();
+			HttpClient.discardErrorStream(http);
+			long millis = (System.nanoTime() - start) / 1000000;
+			NwLogger.NW_LOGGER.fine("Probed " + getHost(url) + ": " + millis + "ms (" + responseCode + ")");
+			return responseCode >= 400 ? -1 : millis;
+		} catch (IOException e) {
+			NwLogger.NW_LOGGER.info("Could not reach " + getHost(url) + ": " + e);
+			return -1;
+		}
+	}
+
+	/**
+	 * @return the host (and port) of the given url, or the url itself if it could not be parsed
+	 */
+	private static String getHost(String url) {
+		try {
+			URL parsed = new URL(url);
+			String host = parsed.getHost().toLowerCase(Locale.ENGLISH);
+			return parsed.getPort() >= 0 ? host + ":" + parsed.getPort() : host;
+		} catch (MalformedURLException e) {
+			return url;
+		}
+	}
+}
@@ -0,0 +1,88 @@
+package common.nw.core.utils;
+
+import common.nw.core.gui.IDownloadProgressListener;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * reports the number of bytes read (in KiB) to a progress listener
+ *
+ * @author Nuklearwurst
+ */
+public class ProgressInputStream extends FilterInputStream {
+
+	/**
+	 * progress is reported after at least this many bytes were read
+	 */
+	private static final int REPORT_INTERVAL = 64 * 1024;
+
+	private final IDownloadProgressListener listener;
+
+	private long count;
+	private long reported;
+
+	/**
+	 * @param in       stream to read from
+	 * @param length   expected length in bytes, -1 if unknown
+	 * @param listener listener to report to, may be null
+	 * @param msg      message shown by the listener
+	 */
+	public ProgressInputStream(InputStream in, long length, IDownloadProgressListener listener, String msg) {
+		super(in);
+		this.listener = listener;
+		if (listener != null) {
+			listener.setDownloadProgress(msg, 0, length > 0 ? toKiB(length) : 0);
+		}
+	}
+
+	/**
+	 * @return the number of bytes read so far
+	 */
+	public long getCount() {
+		return count;
+	}
+
+	@Override
+	public int read() throws IOException {
+		int b = in.read();
+		if (b >= 0) {
+			count(1);
+		}
+		return b;
+	}
+
+	@Override
+	public int read(byte[] b, int off, int len) throws IOException {
+		int read = in.read(b, off, len);
+		if (read > 0) {
+			count(read);
+		}
+		return read;
+	}
+
+	@Override
+	public long skip(long n) throws IOException {
+		long skipped = in.skip(n);
+		count(skipped);
+		return skipped;
+	}
+
+	@Override
+	public boolean markSupported() {
+		return false;
+	}
+
+	private void count(long bytes) {
+		count += bytes;
+		if (listener != null && count - reported >= REPORT_INTERVAL) {
+			reported = count;
+			listener.setDownloadProgress(toKiB(count));
+		}
+	}
+
+	private static int toKiB(long bytes) {
+		return (int) Math.min(Integer.MAX_VALUE, bytes / 1024);
+	}
+}
@@ -13,6 +13,13 @@ import java.util.Locale;
 
 public class Utils {
 
+	/**
+	 * system property used to change the cache directory
+	 *
+	 * @see #getCacheDir()
+	 */
+	public static final String CACHE_DIR_PROPERTY = "nw.cacheDir";
+
 	/**
 	 * calculate the time passed since the given date(in Days)
 	 */
@@ -41,6 +48,19 @@ public class Utils {
 		return out;
 	}
 
+	/**
+	 * directory for data that is kept between runs (eg. downloaded manifests)
+	 * <p>
+	 * defaults to a directory inside the minecraft directory, can be changed using the system property {@value #CACHE_DIR_PROPERTY}
+	 */
+	public static File getCacheDir() {
+		String dir = System.getProperty(CACHE_DIR_PROPERTY);
+		if (dir != null && !dir.isEmpty()) {
+			return new File(dir);
+		}
+		return new File(getMinecraftDir(), "modpackupdater" + File.separator + "cache");
+	}
+
 	/**
 	 * recursively deletes the given file or directory
 	 * <br>
@@ -0,0 +1,509 @@
+package common.nw.core.utils;
+
+import common.nw.core.gui.IDownloadProgressListener;
+import common.nw.core.utils.log.NwLogger;
+
+import java.io.*;
+import java.net.HttpURLConnection;
+import java.net.URLConnection;
+import java.nio.charset.StandardCharsets;
+import java.security.DigestOutputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+
+/**
+ * downloads a zip file (eg. a mod jar) by reusing the unchanged entries of a local version of it
+ * <p>
+ * the central directory of the remote file is read using range requests and compared with the local file.
+ * Entries with the same name, crc, sizes and timestamp are copied from the local file, only the byte ranges of
+ * changed entries are downloaded. The remote file is reassembled byte by byte, so it can be verified using its md5.
+ * Small unchanged parts between changed entries are downloaded as well to save requests. If most of the file changed
+ * or it would need too many requests, the whole file should be downloaded instead.
+ * Zip64 files are not supported.
+ *
+ * @author Nuklearwurst
+ */
+public class ZipDeltaDownload {
+
+	private static final int CENTRAL_HEADER_SIGNATURE = 0x02014b50;
+	private static final int END_SIGNATURE = 0x06054b50;
+
+	private static final int CENTRAL_HEADER_SIZE = 46;
+	private static final int END_SIZE = 22;
+
+	/**
+	 * number of bytes requested from the end of the file, contains the central directory of most mods
+	 */
+	private static final int TAIL_SIZE = 64 * 1024;
+
+	/**
+	 * unchanged parts between two downloaded parts smaller than this are downloaded too
+	 */
+	private static final int MAX_GAP = 64 * 1024;
+
+	/**
+	 * maximum number of range requests for the changed parts
+	 */
+	private static final int MAX_REMOTE_PARTS = 64;
+
+	/**
+	 * the whole file is downloaded if more than this share of it changed
+	 */
+	private static final double MAX_DOWNLOAD_SHARE = 0.75;
+
+	private final String url;
+	private final IDownloadProgressListener listener;
+
+	/**
+	 * validator of the remote file, used to make sure all ranges belong to the same file
+	 */
+	private String validator;
+
+	/**
+	 * @param url      url of the remote file
+	 * @param listener progress listener, may be null
+	 */
+	public ZipDeltaDownload(String url, IDownloadProgressListener listener) {
+		this.url = url;
+		this.listener = listener;
+	}
+
+	/**
+	 * reassembles the remote file
+	 *
+	 * @param localFile local version of the file
+	 * @param target    file to write to
+	 * @return the md5 of the created file or null if the server does not support range requests, a file could not
+	 * be parsed or most of the file changed (the whole file should be downloaded then)
+	 * @throws IOException if the download failed
+	 */
+	public String download(File localFile, File target) throws IOException {
+		List<Entry> localEntries;
+		try (RandomAccessFile file = new RandomAccessFile(localFile, "r")) {
+			localEntries = readLocalEntries(file);
+		}
+		if (localEntries == null) {
+			NwLogger.NW_LOGGER.fine("Could not read the central directory of " + localFile);
+			return null;
+		}
+
+		//tail of the remote file, starting at the central directory
+		Range tailRange = new Range(-1, TAIL_SIZE);
+		byte[] tail = fetch(tailRange);
+		if (tail == null) {
+			return null;
+		}
+		long tailStart = tailRange.offset;
+		long remoteLength = tailStart + tail.length;
+		int end = findEnd(tail, 0, tail.length);
+		if (end < 0) {
+			return null;
+		}
+		long centralOffset = readInt(tail, end + 16);
+		long centralSize = readInt(tail, end + 12);
+		if (centralOffset + centralSize > tailStart + end) {
+			return null;
+		}
+		if (centralOffset < tailStart) {
+			byte[] missing = fetch(new Range(centralOffset, tailStart - centralOffset));
+			if (missing == null) {
+				return null;
+			}
+			byte[] joined = new byte[missing.length + tail.length];
+			System.arraycopy(missing, 0, joined, 0, missing.length);
+			System.arraycopy(tail, 0, joined, missing.length, tail.length);
+			tail = joined;
+		} else {
+			tail = Arrays.copyOfRange(tail, (int) (centralOffset - tailStart), tail.length);
+		}
+		List<Entry> remoteEntries = readEntries(tail, 0, (int) centralSize, centralOffset);
+		if (remoteEntries == null) {
+			return null;
+		}
+
+		//plan which parts of the file are copied and which are downloaded
+		Map<String, Entry> localByName = new HashMap<>();
+		for (Entry entry : localEntries) {
+			localByName.put(entry.name, entry);
+		}
+		List<Range> plan = new ArrayList<>();
+		long position = 0;
+		int reused = 0;
+		for (Entry remote : remoteEntries) {
+			if (remote.offset > position) {
+				//data in front of the entries
+				addPart(plan, new Range(position, remote.offset - position));
+			}
+			Entry local = localByName.get(remote.name);
+			if (local != null && local.isSameAs(remote)) {
+				addPart(plan, new Range(remote.offset, local.offset, local.getLength()));
+				reused++;
+			} else {
+				addPart(plan, new Range(remote.offset, remote.getLength()));
+			}
+			position = remote.end;
+		}
+		List<Range> parts = coalesce(plan);
+		long downloadSize = 0;
+		int remoteParts = 0;
+		for (Range part : parts) {
+			if (!part.local) {
+				downloadSize += part.length;
+				remoteParts++;
+			}
+		}
+		NwLogger.NW_LOGGER.info(String.format("Reusing %d of %d entries of %s, downloading %d of %d bytes in %d parts",
+				reused, remoteEntries.size(), localFile.getName(), downloadSize, remoteLength, remoteParts));
+		if (downloadSize > remoteLength * MAX_DOWNLOAD_SHARE || remoteParts > MAX_REMOTE_PARTS) {
+			NwLogger.NW_LOGGER.fine("Too many changes in " + localFile.getName() + " to download them separately");
+			return null;
+		}
+
+		MessageDigest digest;
+		try {
+			digest = MessageDigest.getInstance("MD5");
+		} catch (NoSuchAlgorithmException e) {
+			throw new IOException(e);
+		}
+		if (listener != null) {
+			listener.setDownloadProgress("Downloading changes of " + localFile.getName(), 0, (int) (downloadSize / 1024));
+		}
+		long downloaded = 0;
+		try (RandomAccessFile local = new RandomAccessFile(localFile, "r");
+		     OutputStream out = new DigestOutputStream(new BufferedOutputStream(new FileOutputStream(target)), digest)) {
+			byte[] buffer = new byte[65536];
+			for (Range part : parts) {
+				if (listener != null && listener.isCancelled()) {
+					throw new InterruptedIOException("Download cancelled");
+				}
+				if (part.local) {
+					local.seek(part.offset);
+					copy(local, out, part.length, buffer);
+				} else {
+					try (InputStream in = open(part)) {
+						if (in == null) {
+							//the remote file changed
+							return null;
+						}
+						copy(in, out, part.length, buffer);
+					}
+					downloaded += part.length;
+					if (listener != null) {
+						listener.setDownloadProgress((int) (downloaded / 1024));
+					}
+				}
+			}
+			out.write(tail);
+		}
+		if (target.length() != remoteLength) {
+			throw new IOException("Reassembled file has the wrong length, expected " + remoteLength + " bytes, got " + target.length());
+		}
+		return DownloadHelper.toHexString(digest);
+	}
+
+	/**
+	 * adds a part to the plan, joining it with the previous part if possible
+	 */
+	private static void addPart(List<Range> parts, Range part) {
+		if (!parts.isEmpty()) {
+			Range last = parts.get(parts.size() - 1);
+			if (last.local == part.local && last.offset + last.length == part.offset) {
+				last.length += part.length;
+				return;
+			}
+		}
+		parts.add(part);
+	}
+
+	/**
+	 * downloads small local parts between two remote parts as well, a request costs more than a few bytes
+	 *
+	 * @return the new plan
+	 */
+	private static List<Range> coalesce(List<Range> plan) {
+		List<Range> parts = new ArrayList<>();
+		for (int i = 0; i < plan.size(); i++) {
+			Range part = plan.get(i);
+			if (part.local && part.length < MAX_GAP && i > 0 && i + 1 < plan.size()
+					&& !plan.get(i - 1).local && !plan.get(i + 1).local) {
+				part = new Range(part.position, part.length);
+			}
+			addPart(parts, part);
+		}
+		return parts;
+	}
+
+	/**
+	 * downloads the given range
+	 *
+	 * @param range range to download, a negative offset requests the last bytes. Offset and length get updated to the returned range
+	 * @return the downloaded bytes or null if the server does not support range requests
+	 */
+	private byte[] fetch(Range range) throws IOException {
+		try (InputStream in = open(range)) {
+			if (in == null) {
+				return null;
+			}
+			ByteArrayOutputStream out = new ByteArrayOutputStream((int) range.length);
+			copy(in, out, range.length, new byte[8192]);
+			return out.toByteArray();
+		}
+	}
+
+	/**
+	 * requests the given range
+	 *
+	 * @return the stream of the range or null if the server does not support range requests or the file changed
+	 */
+	private InputStream open(Range range) throws IOException {
+		URLConnection connection = HttpClient.getShared().openConnection(url);
+		if (!(connection instanceof HttpURLConnection)) {
+			return null;
+		}
+		HttpURLConnection http = (HttpURLConnection) connection;
+		if (range.offset < 0) {
+			http.setRequestProperty("Range", "bytes=-" + range.length);
+		} else {
+			http.setRequestProperty("Range", "bytes=" + range.offset + "-" + (range.offset + range.length - 1));
+		}
+		if (validator != null) {
+			http.setRequestProperty("If-Range", validator);
+		}
+		int responseCode = http.getResponseCode();
+		if (responseCode != HttpURLConnection.HTTP_PARTIAL) {
+			if (responseCode >= 400) {
+				HttpClient.discardErrorStream(http);
+				throw new IOException("Server returned HTTP response code: " + responseCode);
+			}
+			NwLogger.NW_LOGGER.fine("Server did not return a range of " + url + " (" + responseCode + ")");
+			http.getInputStream().close();
+			return null;
+		}
+		String contentRange = http.getHeaderField("Content-Range");
+		long start = parseContentRange(contentRange, 0);
+		long end = parseContentRange(contentRange, 1);
+		long length = parseContentRange(contentRange, 2);
+		if (start < 0 || end < start || length <= end || range.offset >= 0 && start != range.offset) {
+			HttpClient.discardErrorStream(http);
+			throw new IOException("Unexpected Content-Range: " + contentRange);
+		}
+		if (validator == null) {
+			String eTag = http.getHeaderField("ETag");
+			validator = eTag != null && !eTag.startsWith("W/") ? eTag : http.getHeaderField("Last-Modified");
+		}
+		range.offset = start;
+		range.length = end - start + 1;
+		return HttpClient.getShared().getInputStream(http);
+	}
+
+	/**
+	 * parses a part of a Content-Range header (eg. "bytes 100-199/200")
+	 *
+	 * @param part 0: first byte, 1: last byte, 2: complete length
+	 * @return the value or -1 if it could not be parsed
+	 */
+	private static long parseContentRange(String contentRange, int part) {
+		if (contentRange == null || !contentRange.startsWith("bytes ")) {
+			return -1;
+		}
+		String[] values = contentRange.substring(6).split("[-/]");
+		if (values.length != 3) {
+			return -1;
+		}
+		try {
+			return Long.parseLong(values[part].trim());
+		} catch (NumberFormatException e) {
+			return -1;
+		}
+	}
+
+	private static List<Entry> readLocalEntries(RandomAccessFile file) throws IOException {
+		long length = file.length();
+		int tailLength = (int) Math.min(length, TAIL_SIZE);
+		byte[] tail = new byte[tailLength];
+		file.seek(length - tailLength);
+		file.readFully(tail);
+		int end = findEnd(tail, 0, tail.length);
+		if (end < 0) {
+			return null;
+		}
+		long centralOffset = readInt(tail, end + 16);
+		long centralSize = readInt(tail, end + 12);
+		if (centralOffset + centralSize > length || centralSize > Integer.MAX_VALUE) {
+			return null;
+		}
+		byte[] central = new byte[(int) centralSize];
+		file.seek(centralOffset);
+		file.readFully(central);
+		return readEntries(central, 0, central.length, centralOffset);
+	}
+
+	/**
+	 * @return the position of the end of central directory record or -1 if it was not found
+	 */
+	private static int findEnd(byte[] data, int start, int end) {
+		for (int i = end - END_SIZE; i >= start; i--) {
+			if (readInt(data, i) == END_SIGNATURE && i + END_SIZE + readShort(data, i + 20) == end) {
+				//zip64 files store their values in another record
+				if (readInt(data, i + 16) == 0xFFFFFFFFL || readShort(data, i + 10) == 0xFFFF) {
+					return -1;
+				}
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * parses the central directory
+	 *
+	 * @param centralOffset position of the central directory in the file, used as the end of the last entry
+	 * @return the entries sorted by position or null if the central directory is invalid
+	 */
+	private static List<Entry> readEntries(byte[] data, int start, int length, long centralOffset) {
+		List<Entry> entries = new ArrayList<>();
+		int pos = start;
+		while (pos + CENTRAL_HEADER_SIZE <= start + length) {
+			if (readInt(data, pos) != CENTRAL_HEADER_SIGNATURE) {
+				return null;
+			}
+			int nameLength = readShort(data, pos + 28);
+			int extraLength = readShort(data, pos + 30);
+			int commentLength = readShort(data, pos + 32);
+			if (pos + CENTRAL_HEADER_SIZE + nameLength > start + length) {
+				return null;
+			}
+			Entry entry = new Entry();
+			entry.flags = readShort(data, pos + 8);
+			entry.method = readShort(data, pos + 10);
+			entry.time = readInt(data, pos + 12);
+			entry.crc = readInt(data, pos + 16);
+			entry.compressedSize = readInt(data, pos + 20);
+			entry.size = readInt(data, pos + 24);
+			entry.offset = readInt(data, pos + 42);
+			entry.name = new String(data, pos + CENTRAL_HEADER_SIZE, nameLength, StandardCharsets.ISO_8859_1);
+			entries.add(entry);
+			pos += CENTRAL_HEADER_SIZE + nameLength + extraLength + commentLength;
+		}
+		entries.sort(Comparator.comparingLong(entry -> entry.offset));
+		for (int i = 0; i < entries.size(); i++) {
+			Entry entry = entries.get(i);
+			entry.end = i + 1 < entries.size() ? entries.get(i + 1).offset : centralOffset;
+			if (entry.end <= entry.offset || entry.offset + entry.compressedSize > entry.end) {
+				return null;
+			}
+		}
+		return entries;
+	}
+
+	private static void copy(RandomAccessFile in, OutputStream out, long length, byte[] buffer) throws IOException {
+		while (length > 0) {
+			int read = (int) Math.min(buffer.length, length);
+			in.readFully(buffer, 0, read);
+			out.write(buffer, 0, read);
+			length -= read;
+		}
+	}
+
+	private static void copy(InputStream in, OutputStream out, long length, byte[] buffer) throws IOException {
+		while (length > 0) {
+			int read = in.read(buffer, 0, (int) Math.min(buffer.length, length));
+			if (read < 0) {
+				throw new EOFException("Premature end of range, " + length + " bytes missing");
+			}
+			out.write(buffer, 0, read);
+			length -= read;
+		}
+	}
+
+	private static int readShort(byte[] data, int pos) {
+		return (data[pos] & 0xFF) | (data[pos + 1] & 0xFF) << 8;
+	}
+
+	private static long readInt(byte[] data, int pos) {
+		return readShort(data, pos) | (long) readShort(data, pos + 2) << 16;
+	}
+
+	/**
+	 * an entry of the central directory
+	 */
+	private static class Entry {
+		String name;
+		int flags;
+		int method;
+
+		/**
+		 * dos time and date
+		 */
+		long time;
+		long crc;
+		long compressedSize;
+		long size;
+
+		/**
+		 * position of the local header
+		 */
+		long offset;
+
+		/**
+		 * position of the next local header (or the central directory)
+		 */
+		long end;
+
+		long getLength() {
+			return end - offset;
+		}
+
+		/**
+		 * @return true if the local header and data of the entries are most likely identical
+		 */
+		boolean isSameAs(Entry other) {
+			return name.equals(other.name) && flags == other.flags && method == other.method && time == other.time
+					&& crc == other.crc && compressedSize == other.compressedSize && size == other.size
+					&& getLength() == other.getLength();
+		}
+	}
+
+	/**
+	 * a part of the file
+	 */
+	private static class Range {
+
+		/**
+		 * position in the remote file
+		 */
+		final long position;
+
+		/**
+		 * position in the file the part is read from
+		 */
+		long offset;
+		long length;
+
+		/**
+		 * true if the part is copied from the local file
+		 */
+		final boolean local;
+
+		/**
+		 * a part downloaded from the remote file
+		 */
+		Range(long offset, long length) {
+			this.position = offset;
+			this.offset = offset;
+			this.length = length;
+			this.local = false;
+		}
+
+		/**
+		 * a part copied from the local file
+		 */
+		Range(long position, long offset, long length) {
+			this.position = position;
+			this.offset = offset;
+			this.length = length;
+			this.local = true;
+		}
+	}
+}
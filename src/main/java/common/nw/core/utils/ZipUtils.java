@@ -0,0 +1,126 @@
+package common.nw.core.utils;
+
+import java.io.EOFException;
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.StandardOpenOption;
+import java.util.zip.ZipException;
+
+/**
+ * reads the central directory of zip files without creating objects for every entry
+ *
+ * @author Nuklearwurst
+ */
+public class ZipUtils {
+
+	private static final int END_OF_CENTRAL_DIRECTORY = 0x06054b50;
+	private static final int CENTRAL_DIRECTORY_HEADER = 0x02014b50;
+
+	private static final int END_OF_CENTRAL_DIRECTORY_SIZE = 22;
+	private static final int CENTRAL_DIRECTORY_HEADER_SIZE = 46;
+	private static final int MAX_COMMENT_LENGTH = 0xFFFF;
+
+	/**
+	 * returns the name of the first entry ending with the given suffix (in central directory order)
+	 * <p>
+	 * the central directory is read with a single read and names are compared as bytes, only the matching name gets decoded.
+	 *
+	 * @param file   zip file
+	 * @param suffix end of the entry name, entry names are expected to be UTF-8
+	 * @return the entry name or null if no entry matches
+	 * @throws ZipException if the file is no zip file or uses zip64, use {@link java.util.zip.ZipFile} in that case
+	 */
+	public static String findEntryEndingWith(File file, String suffix) throws IOException {
+		byte[] suffixBytes = suffix.getBytes(StandardCharsets.UTF_8);
+		try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+			ByteBuffer centralDirectory = readCentralDirectory(channel);
+			while (centralDirectory.remaining() >= CENTRAL_DIRECTORY_HEADER_SIZE) {
+				int start = centralDirectory.position();
+				if (centralDirectory.getInt(start) != CENTRAL_DIRECTORY_HEADER) {
+					throw new ZipException("Invalid central directory header in " + file);
+				}
+				int nameLength = centralDirectory.getShort(start + 28) & 0xFFFF;
+				int extraLength = centralDirectory.getShort(start + 30) & 0xFFFF;
+				int commentLength = centralDirectory.getShort(start + 32) & 0xFFFF;
+				int nameStart = start + CENTRAL_DIRECTORY_HEADER_SIZE;
+				if (nameStart + nameLength > centralDirectory.limit()) {
+					throw new ZipException("Truncated central directory in " + file);
+				}
+				if (endsWith(centralDirectory, nameStart, nameLength, suffixBytes)) {
+					byte[] name = new byte[nameLength];
+					centralDirectory.position(nameStart);
+					centralDirectory.get(name);
+					return new String(name, StandardCharsets.UTF_8);
+				}
+				centralDirectory.position(nameStart + nameLength + extraLength + commentLength);
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * @return the central directory of the zip file (little endian)
+	 */
+	private static ByteBuffer readCentralDirectory(FileChannel channel) throws IOException {
+		long fileSize = channel.size();
+		int tailSize = (int) Math.min(fileSize, END_OF_CENTRAL_DIRECTORY_SIZE + MAX_COMMENT_LENGTH);
+		if (tailSize < END_OF_CENTRAL_DIRECTORY_SIZE) {
+			throw new ZipException("File too small");
+		}
+		long tailStart = fileSize - tailSize;
+		ByteBuffer tail = read(channel, tailStart, tailSize);
+
+		//search the end of central directory record, the comment might contain the signature as well
+		for (int i = tailSize - END_OF_CENTRAL_DIRECTORY_SIZE; i >= 0; i--) {
+			if (tail.getInt(i) == END_OF_CENTRAL_DIRECTORY
+					&& i + END_OF_CENTRAL_DIRECTORY_SIZE + (tail.getShort(i + 20) & 0xFFFF) == tailSize) {
+				int entries = tail.getShort(i + 10) & 0xFFFF;
+				long size = tail.getInt(i + 12) & 0xFFFFFFFFL;
+				long offset = tail.getInt(i + 16) & 0xFFFFFFFFL;
+				if (entries == 0xFFFF || size == 0xFFFFFFFFL || offset == 0xFFFFFFFFL) {
+					throw new ZipException("Zip64 is not supported");
+				}
+				//the central directory ends where the end record starts (data might have been prepended to the zip)
+				long start = tailStart + i - size;
+				if (start < 0) {
+					throw new ZipException("Invalid central directory size");
+				}
+				if (start >= tailStart) {
+					tail.position((int) (start - tailStart));
+					tail.limit(i);
+					return tail.slice().order(ByteOrder.LITTLE_ENDIAN);
+				}
+				return read(channel, start, (int) size);
+			}
+		}
+		throw new ZipException("End of central directory not found");
+	}
+
+	private static ByteBuffer read(FileChannel channel, long position, int length) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate(length).order(ByteOrder.LITTLE_ENDIAN);
+		while (buffer.hasRemaining()) {
+			if (channel.read(buffer, position + buffer.position()) < 0) {
+				throw new EOFException();
+			}
+		}
+		buffer.flip();
+		return buffer;
+	}
+
+	private static boolean endsWith(ByteBuffer buffer, int start, int length, byte[] suffix) {
+		if (length < suffix.length) {
+			return false;
+		}
+		int offset = start + length - suffix.length;
+		for (int i = 0; i < suffix.length; i++) {
+			if (buffer.get(offset + i) != suffix[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+}
@@ -1,22 +1,40 @@
 package common.nw.creator;
 
-import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
+import common.nw.core.gui.IDownloadProgressListener;
 import common.nw.core.modpack.*;
+import common.nw.core.utils.BinaryDelta;
 import common.nw.core.utils.DownloadHelper;
 import common.nw.core.utils.log.NwLogger;
 
 import javax.swing.*;
 import java.awt.*;
+import java.io.ByteArrayOutputStream;
 import java.io.File;
-import java.io.FileWriter;
 import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.text.DateFormat;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
 
 public class Creator {
 
+	/**
+	 * patches are only used if they are smaller than this fraction of the file
+	 */
+	private static final double MAX_PATCH_RATIO = 0.5;
+
 	public RepoModpack modpack;
 
 	/**
@@ -44,8 +62,20 @@ public class Creator {
 	/**
 	 * reads folder structure
 	 */
-	@SuppressWarnings("SameReturnValue")
 	public boolean readFiles() {
+		return readFiles(null);
+	}
+
+	/**
+	 * reads folder structure
+	 * <p>
+	 * directories are walked and files are read (mod info, md5) in parallel,
+	 * files are added in the order of a depth-first walk with entries sorted by name.
+	 *
+	 * @param listener progress listener, may be null
+	 * @return false if the directory could not be read or the listener was cancelled
+	 */
+	public boolean readFiles(IDownloadProgressListener listener) {
 		if (modpack.files == null) {
 			modpack.files = new ArrayList<>();
 		}
@@ -53,37 +83,118 @@ public class Creator {
 		if (workingDir == null) {
 			workingDir = new File(fileLoc);
 		}
+		if (!workingDir.isDirectory()) {
+			return false;
+		}
 
-		findFiles(workingDir.listFiles(), "");
-
+		ScanProgress progress = new ScanProgress(listener);
+		ForkJoinPool pool = new ForkJoinPool(Runtime.getRuntime().availableProcessors());
+		try {
+			List<RepoMod> mods = pool.invoke(new DirectoryTask(workingDir, "", progress));
+			if (progress.isCancelled()) {
+				return false;
+			}
+			modpack.files.addAll(mods);
+		} finally {
+			pool.shutdown();
+		}
 		return true;
 	}
 
 	/**
-	 * searches a folder for files
+	 * creates binary patches from the files of a previous version of the modpack
+	 * <p>
+	 * the previous version of a file is the file with the same path or (for mods identified by their mod info)
+	 * the file with the same mod name. Patches are only added if they are considerably smaller than the file.
+	 *
+	 * @param previousDir directory containing the previous version of the modpack
+	 * @param patchDir    directory the patches get written to
+	 * @param patchUrl    url of the patch directory once uploaded
+	 * @param listener    progress listener, may be null
+	 * @return the number of created patches
 	 */
-	private void findFiles(File[] files, String base) {
-		System.out.println(base);
-		for (File file : files) {
-
-			if (base.startsWith("/")) {
-				base = base.substring(1); // needed?
+	public int createPatches(File previousDir, File patchDir, String patchUrl, IDownloadProgressListener listener) throws IOException {
+		if (!patchDir.isDirectory() && !patchDir.mkdirs()) {
+			throw new IOException("Could not create " + patchDir);
+		}
+		if (!patchUrl.endsWith("/")) {
+			patchUrl = patchUrl + "/";
+		}
+		if (workingDir == null) {
+			workingDir = new File(fileLoc);
+		}
+		Map<String, File> previousMods = null;
+		int created = 0;
+		for (int i = 0; i < modpack.files.size(); i++) {
+			RepoMod mod = modpack.files.get(i);
+			if (listener != null) {
+				if (listener.isCancelled()) {
+					break;
+				}
+				listener.setDownloadProgress("Creating patch for " + mod.getFileName(), i, modpack.files.size());
+			}
+			File file = new File(workingDir, mod.getFileNameSystem());
+			File previous = new File(previousDir, mod.getFileNameSystem());
+			if (!previous.isFile() && ModpackValues.Name.nameTypeZipEntry.equals(mod.nameType)) {
+				if (previousMods == null) {
+					previousMods = readModNames(previousDir);
+				}
+				previous = previousMods.get(mod.name);
+			}
+			if (previous == null || !previous.isFile() || !file.isFile() || !DownloadHelper.getHash(file).equals(mod.md5)) {
+				continue;
+			}
+			String sourceMd5 = DownloadHelper.getHash(previous);
+			if (sourceMd5.equals(mod.md5) || mod.getPatch(sourceMd5) != null) {
+				continue;
 			}
 
-			if (file.isDirectory()) {
-				findFiles(file.listFiles(), base + "/" + file.getName());
-			} else {
-				addMod(file, base);
+			ByteArrayOutputStream patch = new ByteArrayOutputStream();
+			BinaryDelta.create(previous, file, patch);
+			if (patch.size() > file.length() * MAX_PATCH_RATIO) {
+				NwLogger.CREATOR_LOGGER.fine("Patch for " + mod.getFileName() + " is too large, skipping");
+				continue;
+			}
+			String name = sourceMd5 + "-" + mod.md5 + ".patch";
+			Files.write(new File(patchDir, name).toPath(), patch.toByteArray());
+
+			RepoPatch repoPatch = new RepoPatch();
+			repoPatch.sourceMd5 = sourceMd5;
+			repoPatch.downloadUrl = patchUrl + name;
+			repoPatch.size = patch.size();
+			if (mod.patches == null) {
+				mod.patches = new ArrayList<>();
 			}
+			mod.patches.add(repoPatch);
+			created++;
+			NwLogger.CREATOR_LOGGER.info("Created patch for " + mod.getFileName() + ": " + patch.size() + " of " + file.length() + " bytes");
 		}
+		return created;
 	}
 
 	/**
-	 * adds a modFile to the list
+	 * @return the files of the given directory by the mod name read from their mod info
+	 */
+	private static Map<String, File> readModNames(File dir) throws IOException {
+		Map<String, File> mods = new HashMap<>();
+		try (Stream<Path> files = Files.walk(dir.toPath())) {
+			files.filter(Files::isRegularFile).forEach(path -> {
+				ModInfo info = new ModInfo(dir.toPath().relativize(path).toString());
+				info.loadInfoFromFile(path.toFile());
+				if (info.hasName && !mods.containsKey(info.name)) {
+					mods.put(info.name, path.toFile());
+				}
+			});
+		}
+		return mods;
+	}
+
+	/**
+	 * creates the remote representation of a file
 	 *
 	 * @param base the path to the file (the directory the file is in) relative to the working dir
 	 */
-	private void addMod(File file, String base) {
+	private RepoMod createMod(File file, String base) {
 		NwLogger.CREATOR_LOGGER.info("Adding Mod: " + base + "  Filename: " + file.getName());
 
 		RepoMod mod = new RepoMod();
@@ -136,7 +247,121 @@ public class Creator {
 //		mod.versionType = ModpackValues.versionTypeFileName;
 //		mod.nameType = ModpackValues.nameTypeFileName;
 
-		modpack.files.add(mod);
+		return mod;
+	}
+
+	/**
+	 * reads all files of a directory (recursively)
+	 */
+	private class DirectoryTask extends RecursiveTask<List<RepoMod>> {
+
+		private final File dir;
+		/**
+		 * path of the directory relative to the working dir
+		 */
+		private final String base;
+		private final ScanProgress progress;
+
+		private DirectoryTask(File dir, String base, ScanProgress progress) {
+			this.dir = dir;
+			this.base = base;
+			this.progress = progress;
+		}
+
+		@Override
+		protected List<RepoMod> compute() {
+			File[] files = dir.listFiles();
+			if (files == null || progress.isCancelled()) {
+				return Collections.emptyList();
+			}
+			Arrays.sort(files, Comparator.comparing(File::getName));
+
+			List<ForkJoinTask<List<RepoMod>>> tasks = new ArrayList<>(files.length);
+			for (File file : files) {
+				if (file.isDirectory()) {
+					tasks.add(new DirectoryTask(file, base.isEmpty() ? file.getName() : base + "/" + file.getName(), progress).fork());
+				} else {
+					progress.onFileFound();
+					tasks.add(new FileTask(file, base, progress).fork());
+				}
+			}
+			List<RepoMod> mods = new ArrayList<>();
+			for (ForkJoinTask<List<RepoMod>> task : tasks) {
+				mods.addAll(task.join());
+			}
+			return mods;
+		}
+	}
+
+	/**
+	 * reads a single file
+	 */
+	private class FileTask extends RecursiveTask<List<RepoMod>> {
+
+		private final File file;
+		private final String base;
+		private final ScanProgress progress;
+
+		private FileTask(File file, String base, ScanProgress progress) {
+			this.file = file;
+			this.base = base;
+			this.progress = progress;
+		}
+
+		@Override
+		protected List<RepoMod> compute() {
+			if (progress.isCancelled()) {
+				return Collections.emptyList();
+			}
+			RepoMod mod = createMod(file, base);
+			progress.onFileRead(file);
+			return Collections.singletonList(mod);
+		}
+	}
+
+	/**
+	 * forwards the progress of a directory scan to a listener
+	 */
+	private static class ScanProgress {
+
+		/**
+		 * minimum time between two progress updates (in ms)
+		 */
+		private static final long UPDATE_INTERVAL = 100;
+
+		private final IDownloadProgressListener listener;
+
+		private final AtomicInteger found = new AtomicInteger();
+		private final AtomicInteger read = new AtomicInteger();
+
+		private long lastUpdate = 0;
+
+		private ScanProgress(IDownloadProgressListener listener) {
+			this.listener = listener;
+		}
+
+		private boolean isCancelled() {
+			return listener != null && listener.isCancelled();
+		}
+
+		private void onFileFound() {
+			found.incrementAndGet();
+		}
+
+		private void onFileRead(File file) {
+			int current = read.incrementAndGet();
+			if (listener == null) {
+				return;
+			}
+			synchronized (this) {
+				long time = System.currentTimeMillis();
+				if (time - lastUpdate >= UPDATE_INTERVAL) {
+					lastUpdate = time;
+					int max = found.get();
+					listener.setDownloadProgress("Reading files (" + current + "/" + max + "): " + file.getName(), current, max);
+				}
+			}
+		}
 	}
 
 	/**
@@ -191,11 +416,16 @@ public class Creator {
 			}
 		}
 
-		Gson gson = new GsonBuilder().setPrettyPrinting().create();
+		//updaters not knowing the download type would skip these mods, they get updated first
+		for (RepoMod mod : modpack.files != null ? modpack.files : Collections.<RepoMod>emptyList()) {
+			if (ModpackValues.Download.modZipEntryDownload.equals(mod.downloadType)) {
+				modpack.updaterRevision = Math.max(modpack.updaterRevision, VersionInfo.ZIP_ENTRY_DOWNLOAD_REVISION);
+				break;
+			}
+		}
+
 		try {
-			FileWriter fileWriter = new FileWriter(output);
-			gson.toJson(modpack, fileWriter);
-			fileWriter.close();
+			ModpackJson.write(modpack, output);
 		} catch (IOException ex) {
 			JOptionPane.showMessageDialog(c, "Error writing file!", "Error",
 					JOptionPane.ERROR_MESSAGE);
@@ -45,6 +45,7 @@ public class DialogEditMod extends JDialog {
 	private JButton btnRemove;
 	private JButton btnDownload;
 	private JRadioButton rdbtnDownloadExtract;
+	private JRadioButton rdbtnDownloadZipEntries;
 	private ButtonGroup btnGroupDownloadType;
 	private ButtonGroup btnGroupVersionType;
 	private ButtonGroup btnGroupNameType;
@@ -78,6 +79,7 @@ public class DialogEditMod extends JDialog {
 		rdbtnDownloadDirect.setActionCommand(ModpackValues.Download.modDirectDownload);
 		rdbtnDownloadFolder.setActionCommand(ModpackValues.Download.modUserDownload);
 		rdbtnDownloadExtract.setActionCommand(ModpackValues.Download.modExtractDownload);
+		rdbtnDownloadZipEntries.setActionCommand(ModpackValues.Download.modZipEntryDownload);
 
 		btnOk.addActionListener(e -> onOK());
 
@@ -268,10 +270,19 @@ public class DialogEditMod extends JDialog {
 
 			// modDownloadType
 			if (mod.downloadType != null) {
-				if (mod.downloadType.equals(ModpackValues.Download.modUserDownload)) {
-					rdbtnDownloadFolder.setSelected(true);
-				} else {
-					rdbtnDownloadDirect.setSelected(true);
+				switch (mod.downloadType) {
+					case ModpackValues.Download.modUserDownload:
+						rdbtnDownloadFolder.setSelected(true);
+						break;
+					case ModpackValues.Download.modExtractDownload:
+						rdbtnDownloadExtract.setSelected(true);
+						break;
+					case ModpackValues.Download.modZipEntryDownload:
+						rdbtnDownloadZipEntries.setSelected(true);
+						break;
+					default:
+						rdbtnDownloadDirect.setSelected(true);
+						break;
 				}
 			}
 		}
@@ -482,6 +493,14 @@ public class DialogEditMod extends JDialog {
 		gbc.gridy = 5;
 		gbc.anchor = GridBagConstraints.WEST;
 		panel1.add(rdbtnDownloadExtract, gbc);
+		rdbtnDownloadZipEntries = new JRadioButton();
+		rdbtnDownloadZipEntries.setText("Changed entries");
+		rdbtnDownloadZipEntries.setToolTipText("Only downloads the changed entries of a jar, needs a server supporting range requests");
+		gbc = new GridBagConstraints();
+		gbc.gridx = 5;
+		gbc.gridy = 5;
+		gbc.anchor = GridBagConstraints.WEST;
+		panel1.add(rdbtnDownloadZipEntries, gbc);
 		final JPanel panel2 = new JPanel();
 		panel2.setLayout(new GridLayoutManager(1, 2, new Insets(0, 0, 0, 0), -1, -1));
 		contentPane.add(panel2, new GridConstraints(1, 0, 1, 1, GridConstraints.ANCHOR_CENTER, GridConstraints.FILL_BOTH, GridConstraints.SIZEPOLICY_CAN_SHRINK | GridConstraints.SIZEPOLICY_CAN_GROW, 1, null, null, null, 0, false));
@@ -522,6 +541,7 @@ public class DialogEditMod extends JDialog {
 		btnGroupDownloadType.add(rdbtnDownloadDirect);
 		btnGroupDownloadType.add(rdbtnDownloadFolder);
 		btnGroupDownloadType.add(rdbtnDownloadExtract);
+		btnGroupDownloadType.add(rdbtnDownloadZipEntries);
 	}
 
 	/**
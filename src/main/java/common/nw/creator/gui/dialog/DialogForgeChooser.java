@@ -1,11 +1,9 @@
 package common.nw.creator.gui.dialog;
 
-import argo.jdom.*;
 import com.intellij.uiDesigner.core.GridConstraints;
 import com.intellij.uiDesigner.core.GridLayoutManager;
 import com.intellij.uiDesigner.core.Spacer;
-import common.nw.core.modpack.ModpackValues;
-import common.nw.core.utils.DownloadHelper;
+import common.nw.core.modpack.ForgeVersionCatalog;
 import common.nw.core.utils.log.NwLogger;
 
 import javax.swing.*;
@@ -15,7 +13,7 @@ import java.awt.event.WindowAdapter;
 import java.awt.event.WindowEvent;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Map;
+import java.util.concurrent.ExecutionException;
 
 public class DialogForgeChooser extends JDialog {
 	private JPanel contentPane;
@@ -25,8 +23,7 @@ public class DialogForgeChooser extends JDialog {
 	private JComboBox<String> cmboxForgeVersion;
 	private JProgressBar progressBar;
 
-	private JsonRootNode forgeVersionData;
-	private Map<JsonStringNode, JsonNode> mcVersion;
+	private ForgeVersionCatalog catalog;
 
 	private String lastSelection;
 	private String result;
@@ -82,10 +79,7 @@ public class DialogForgeChooser extends JDialog {
 
 	private void createMCVersions() {
 		try {
-			ArrayList<String> versions = new ArrayList<>(mcVersion.size());
-			for (JsonStringNode node : mcVersion.keySet()) {
-				versions.add(node.getText());
-			}
+			List<String> versions = catalog.getMinecraftVersions();
 			cmboxMcVersion.setModel(new DefaultComboBoxModel<>(versions.toArray(new String[versions.size()])));
 			cmboxMcVersion.setSelectedIndex(cmboxMcVersion.getItemCount() - 1);
 			createForgeVersions();
@@ -97,10 +91,10 @@ public class DialogForgeChooser extends JDialog {
 
 	private void createForgeVersions() {
 		try {
-			List<JsonNode> versions = mcVersion.get(JsonNodeFactories.string((String) cmboxMcVersion.getSelectedItem())).getElements();
-			ArrayList<String> forgeVersions = new ArrayList<>(versions.size());
-			for (JsonNode node : versions) {
-				forgeVersions.add(forgeVersionData.getStringValue("number", node.getText(), "version"));
+			List<ForgeVersionCatalog.Build> builds = catalog.getBuilds((String) cmboxMcVersion.getSelectedItem());
+			ArrayList<String> forgeVersions = new ArrayList<>(builds.size());
+			for (ForgeVersionCatalog.Build build : builds) {
+				forgeVersions.add(build.version);
 			}
 			cmboxForgeVersion.setModel(new DefaultComboBoxModel<>(forgeVersions.toArray(new String[forgeVersions.size()])));
 			cmboxForgeVersion.setSelectedIndex(cmboxForgeVersion.getItemCount() - 1);
@@ -172,40 +166,37 @@ public class DialogForgeChooser extends JDialog {
 		return contentPane;
 	}
 
-	private class DownloadForgeJsonTask extends SwingWorker<Void, Void> {
+	private class DownloadForgeJsonTask extends SwingWorker<ForgeVersionCatalog, Void> {
+
+		@Override
+		protected ForgeVersionCatalog doInBackground() throws Exception {
+			return ForgeVersionCatalog.getShared();
+		}
 
 		@Override
-		protected Void doInBackground() throws Exception {
-			//parse as build number
-			String s = DownloadHelper.getString(ModpackValues.URL.forgeVersionJson, null);
-			if (s != null) {
+		protected void done() {
+			try {
+				catalog = get();
+			} catch (InterruptedException | ExecutionException e) {
+				NwLogger.CREATOR_LOGGER.error("Error downloading forge version data!", e instanceof ExecutionException ? e.getCause() : e);
+				progressBar.setVisible(false);
+				return;
+			}
+			createMCVersions();
+			if (lastSelection != null && !lastSelection.isEmpty()) {
 				try {
-					JdomParser forgeParser = new JdomParser();
-					forgeVersionData = forgeParser.parse(s);
-					mcVersion = forgeVersionData.getObjectNode("mcversion");
-					createMCVersions();
-					if (lastSelection != null && !lastSelection.isEmpty()) {
-						try {
-							JsonNode version = forgeVersionData.getNode("number", lastSelection);
-							String mcversion = version.getStringValue("mcversion");
-							String forgeVersion = version.getStringValue("version");
-							cmboxMcVersion.setSelectedItem(mcversion);
-							cmboxForgeVersion.setSelectedItem(forgeVersion);
-						} catch (Exception e) {
-							NwLogger.CREATOR_LOGGER.warn("Could not restore last forge version selection!", e);
-						}
+					ForgeVersionCatalog.Build build = catalog.getBuild(lastSelection);
+					if (build != null) {
+						cmboxMcVersion.setSelectedItem(build.mcversion);
+						cmboxForgeVersion.setSelectedItem(build.version);
 					}
-					cmboxForgeVersion.setEnabled(true);
-					cmboxMcVersion.setEnabled(true);
 				} catch (Exception e) {
-					NwLogger.CREATOR_LOGGER.error("Error parsing forge version data!", e);
+					NwLogger.CREATOR_LOGGER.warn("Could not restore last forge version selection!", e);
 				}
-			} else {
-				NwLogger.CREATOR_LOGGER.error("Error downloading forge version data!");
 			}
+			cmboxForgeVersion.setEnabled(true);
+			cmboxMcVersion.setEnabled(true);
 			progressBar.setVisible(false);
-			return null;
 		}
 	}
-
 }
@@ -1,11 +1,15 @@
 package common.nw.creator.gui.pages;
 
 import common.nw.core.gui.PageHolder;
+import common.nw.core.utils.log.NwLogger;
 import common.nw.creator.Creator;
+import common.nw.creator.gui.dialog.DialogProgress;
 import common.nw.creator.util.Reference;
 
 import javax.swing.*;
 import java.awt.*;
+import java.io.File;
+import java.util.concurrent.ExecutionException;
 
 /**
  * @author Nuklearwurst
@@ -36,6 +40,7 @@ public class PanelFinish implements PageHolder.IExtendedPageHandler {
 	public void onPageOpened(PageHolder holder, boolean forward) {
 		if (forward) {
 			txtMain.setText("Loading...");
+			createPatches();
 			if (creator.createOutputFile(txtMain)) {
 				txtMain.setText("Modpack creation finished!");
 			} else {
@@ -44,6 +49,68 @@ public class PanelFinish implements PageHolder.IExtendedPageHandler {
 		}
 	}
 
+	/**
+	 * optionally creates patches from a previous version of the modpack
+	 */
+	private void createPatches() {
+		if (creator.fileLoc == null || creator.fileLoc.isEmpty()) {
+			return;
+		}
+		if (JOptionPane.showConfirmDialog(panelFinish,
+				"Create patches from a previous version of this modpack?\nClients can then download only the changes of updated files.",
+				"Patches", JOptionPane.YES_NO_OPTION) != JOptionPane.YES_OPTION) {
+			return;
+		}
+		JFileChooser chooser = new JFileChooser(new File(creator.fileLoc).getParentFile());
+		chooser.setDialogTitle("Select the directory of the previous version");
+		chooser.setFileSelectionMode(JFileChooser.DIRECTORIES_ONLY);
+		if (chooser.showOpenDialog(panelFinish) != JFileChooser.APPROVE_OPTION) {
+			return;
+		}
+		final File previousDir = chooser.getSelectedFile();
+		final String patchUrl = (String) JOptionPane.showInputDialog(panelFinish,
+				"Url the patches will be uploaded to:", "Patches", JOptionPane.QUESTION_MESSAGE, null, null,
+				(creator.modpack.modpackRepo == null ? "" : creator.modpack.modpackRepo) + "patches/");
+		if (patchUrl == null || patchUrl.isEmpty()) {
+			return;
+		}
+		final File patchDir = new File(new File(creator.fileLoc).getParentFile(), "patches");
+
+		final DialogProgress dialog = new DialogProgress(SwingUtilities.getWindowAncestor(panelFinish));
+		dialog.setTitle("Creating Patches");
+		dialog.setDownloadProgress("Creating patches...");
+		dialog.pack();
+		SwingWorker<Integer, Void> worker = new SwingWorker<Integer, Void>() {
+			@Override
+			protected Integer doInBackground() throws Exception {
+				return creator.createPatches(previousDir, patchDir, patchUrl, dialog);
+			}
+
+			@Override
+			protected void done() {
+				dialog.dispose();
+			}
+		};
+		worker.execute();
+		//blocks until the worker is done or the dialog got cancelled
+		dialog.setVisible(true);
+		if (dialog.isCancelled() && !worker.isDone()) {
+			//do not block the ui until the running patch is created, the worker stops before the next file
+			worker.cancel(true);
+			JOptionPane.showMessageDialog(panelFinish, "Creating patches cancelled.\nThe patches created so far are written to "
+					+ patchDir + " and listed in modpack.json.\nUpload them to " + patchUrl, "Patches", JOptionPane.WARNING_MESSAGE);
+			return;
+		}
+		try {
+			int count = worker.get();
+			JOptionPane.showMessageDialog(panelFinish, count + " patches written to " + patchDir
+					+ ".\nUpload them to " + patchUrl, "Patches", JOptionPane.INFORMATION_MESSAGE);
+		} catch (InterruptedException | ExecutionException e) {
+			NwLogger.CREATOR_LOGGER.error("Error creating patches!", e);
+			JOptionPane.showMessageDialog(panelFinish, "Error creating patches!", "Error", JOptionPane.ERROR_MESSAGE);
+		}
+	}
+
 	@Override
 	public boolean onPageClosed(PageHolder holder, boolean forward) {
 		return true;
@@ -1,8 +1,7 @@
 package common.nw.creator.gui.pages;
 
-import com.google.gson.Gson;
 import common.nw.core.gui.PageHolder;
-import common.nw.core.modpack.RepoModpack;
+import common.nw.core.modpack.ModpackJson;
 import common.nw.core.utils.SwingUtils;
 import common.nw.creator.Creator;
 import common.nw.creator.gui.transfer.IDropFileHandler;
@@ -14,7 +13,6 @@ import javax.swing.border.Border;
 import java.awt.*;
 import java.awt.event.ActionListener;
 import java.io.File;
-import java.io.FileReader;
 
 /**
  * @author Nuklearwurst
@@ -87,13 +85,9 @@ public class PanelInit implements PageHolder.IExtendedPageHandler, IDropFileHand
 			lblLoading.setVisible(true);
 			File file = new File(txtLoadFrom.getText());
 			if (file.exists() && !file.isDirectory()) {
-				Gson gson = new Gson();
 				try {
-					FileReader reader = new FileReader(file);
-					creator.modpack = gson.fromJson(reader,
-							RepoModpack.class);
+					creator.modpack = ModpackJson.readRepoModpack(file, null);
 					creator.outputLoc = txtLoadFrom.getText();
-					reader.close();
 
 				} catch (Exception e) {
 					e.printStackTrace();
@@ -7,16 +7,19 @@ import common.nw.core.gui.PageHolder;
 import common.nw.core.modpack.Library;
 import common.nw.core.modpack.MCArgument;
 import common.nw.core.modpack.ModpackValues;
+import common.nw.core.utils.log.NwLogger;
 import common.nw.creator.Creator;
 import common.nw.creator.gui.CreatorWindow;
 import common.nw.creator.gui.dialog.DialogEditArguments;
 import common.nw.creator.gui.dialog.DialogEditLibraries;
 import common.nw.creator.gui.dialog.DialogForgeChooser;
+import common.nw.creator.gui.dialog.DialogProgress;
 import common.nw.creator.util.Reference;
 
 import javax.swing.*;
 import java.awt.*;
 import java.io.File;
+import java.util.concurrent.ExecutionException;
 
 /**
  * @author Nuklearwurst
@@ -301,7 +304,7 @@ public class PanelMinecraftSettings implements PageHolder.IExtendedPageHandler {
 
 			//read values
 			if (creator.shouldReadFiles) {
-				if (!new File(creator.fileLoc).exists() || !creator.readFiles()) {
+				if (!new File(creator.fileLoc).exists() || !readFiles()) {
 					JOptionPane.showMessageDialog(frame,
 							"Error when reading Files!", "Error",
 							JOptionPane.ERROR_MESSAGE);
@@ -312,6 +315,41 @@ public class PanelMinecraftSettings implements PageHolder.IExtendedPageHandler {
 		return true;
 	}
 
+	/**
+	 * reads the files of the modpack in the background, showing a progress dialog
+	 *
+	 * @return false if reading failed or was cancelled
+	 */
+	private boolean readFiles() {
+		final DialogProgress dialog = new DialogProgress(frame);
+		dialog.setTitle("Reading Files");
+		dialog.setDownloadProgress("Reading files...");
+		dialog.pack();
+		SwingWorker<Boolean, Void> worker = new SwingWorker<Boolean, Void>() {
+			@Override
+			protected Boolean doInBackground() throws Exception {
+				return creator.readFiles(dialog);
+			}
+
+			@Override
+			protected void done() {
+				dialog.dispose();
+			}
+		};
+		worker.execute();
+		//blocks until the worker is done or the dialog got cancelled
+		dialog.setVisible(true);
+		if (dialog.isCancelled()) {
+			return false;
+		}
+		try {
+			return worker.get();
+		} catch (InterruptedException | ExecutionException e) {
+			NwLogger.CREATOR_LOGGER.error("Error reading files!", e);
+			return false;
+		}
+	}
+
 	{
 // GUI initializer generated by IntelliJ IDEA GUI Designer
 // >>> IMPORTANT!! <<<
@@ -4,7 +4,9 @@ import common.nw.core.gui.IDownloadProgressListener;
 import common.nw.core.modpack.ModInfo;
 import common.nw.core.modpack.RepoMod;
 import common.nw.core.utils.DownloadHelper;
+import common.nw.core.utils.HttpClient;
 import common.nw.core.utils.UpdateResult;
+import common.nw.core.utils.log.NwLogger;
 
 import java.io.File;
 
@@ -29,13 +31,13 @@ public class DownloadModTask extends Thread {
 	@Override
 	public void run() {
 		UpdateResult result = DownloadHelper.downloadMod(outputFile, modInfo, listener);
+		NwLogger.CREATOR_LOGGER.fine("Http metrics: " + HttpClient.getShared().getMetrics());
 		onFinished(result);
 	}
 
 	private void onFinished(UpdateResult result) {
 		if (listener.isCancelled()) {
-			//noinspection ResultOfMethodCallIgnored
-			outputFile.delete();
+			DownloadHelper.deleteTempFile(outputFile);
 			finishedHandler.onDownloadFinished(outputFile, UpdateResult.Cancelled);
 		} else {
 			finishedHandler.onDownloadFinished(outputFile, result);
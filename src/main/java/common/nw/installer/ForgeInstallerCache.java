@@ -0,0 +1,124 @@
+package common.nw.installer;
+
+import common.nw.core.utils.DownloadHelper;
+import common.nw.core.utils.FileUtils;
+import common.nw.core.utils.Utils;
+import common.nw.core.utils.log.NwLogger;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+/**
+ * stores downloaded Minecraft Forge installers, so installing the same build again needs no network at all
+ * <p>
+ * installers are stored by the file name of their url (which contains the forge version) next to a sidecar file
+ * holding their md5. A cached installer is only used if it still matches its md5, new downloads are checked against
+ * the md5 published next to the installer (if there is one).
+ *
+ * @author Nuklearwurst
+ */
+public class ForgeInstallerCache {
+
+	private static final String MD5_SUFFIX = ".md5";
+
+	/**
+	 * directory the installers are stored in
+	 */
+	private final File dir;
+
+	public ForgeInstallerCache(File dir) {
+		this.dir = dir;
+	}
+
+	/**
+	 * @return the cache stored in the default cache directory
+	 * @see Utils#getCacheDir()
+	 */
+	public static ForgeInstallerCache getDefault() {
+		return new ForgeInstallerCache(new File(Utils.getCacheDir(), "forge" + File.separator + "installers"));
+	}
+
+	/**
+	 * returns the installer at the given url, it is downloaded if it is not cached yet
+	 *
+	 * @param url url of the installer jar
+	 * @return the verified local copy
+	 * @throws IOException if the installer could not be downloaded or is corrupted
+	 */
+	public synchronized File get(String url) throws IOException {
+		String name = getFileName(url);
+		File file = new File(dir, name);
+		File md5File = new File(dir, name + MD5_SUFFIX);
+		if (file.isFile() && md5File.isFile()) {
+			String md5 = readMd5(md5File);
+			if (md5 != null && md5.equalsIgnoreCase(DownloadHelper.getHash(file))) {
+				NwLogger.INSTALLER_LOGGER.info("Using cached Minecraft Forge installer " + file);
+				return file;
+			}
+			NwLogger.INSTALLER_LOGGER.warn("Cached Minecraft Forge installer " + file + " is corrupted, downloading it again");
+		}
+
+		if (!FileUtils.createDirectoriesIfNecessary(dir)) {
+			throw new IOException("Could not create " + dir);
+		}
+		File tempFile = new File(dir, name + ".part");
+		NwLogger.INSTALLER_LOGGER.info("Downloading Minecraft Forge installer " + url);
+		if (!DownloadHelper.downloadFileNIO(url, tempFile)) {
+			DownloadHelper.deleteTempFile(tempFile);
+			throw new IOException("Could not download " + url);
+		}
+		String md5 = DownloadHelper.getHash(tempFile);
+		String remoteMd5 = getRemoteMd5(url);
+		if (remoteMd5 != null && !remoteMd5.equalsIgnoreCase(md5)) {
+			DownloadHelper.deleteTempFile(tempFile);
+			throw new IOException("Checksum mismatch of " + url + ": expected " + remoteMd5 + ", got " + md5);
+		}
+		//the md5 is written last, an interrupted download is never used
+		if (md5File.exists() && !md5File.delete() || !FileUtils.moveAtomically(tempFile, file)) {
+			throw new IOException("Could not store " + file);
+		}
+		Files.write(md5File.toPath(), md5.getBytes(StandardCharsets.UTF_8));
+		return file;
+	}
+
+	/**
+	 * @return the md5 published next to the file at the given url or null
+	 */
+	private static String getRemoteMd5(String url) {
+		try {
+			String md5 = DownloadHelper.getString(url + MD5_SUFFIX, null).trim();
+			//the file might also contain the file name
+			int end = md5.indexOf(' ');
+			if (end >= 0) {
+				md5 = md5.substring(0, end);
+			}
+			if (md5.matches("[0-9a-fA-F]{32}")) {
+				return md5;
+			}
+		} catch (IOException e) {
+			NwLogger.INSTALLER_LOGGER.fine("No md5 available for " + url + ": " + e);
+		}
+		return null;
+	}
+
+	private static String readMd5(File md5File) {
+		try {
+			return new String(Files.readAllBytes(md5File.toPath()), StandardCharsets.UTF_8).trim();
+		} catch (IOException e) {
+			NwLogger.INSTALLER_LOGGER.warn("Error reading " + md5File, e);
+			return null;
+		}
+	}
+
+	private static String getFileName(String url) {
+		String name = url.substring(url.lastIndexOf('/') + 1);
+		int query = name.indexOf('?');
+		if (query >= 0) {
+			name = name.substring(0, query);
+		}
+		name = name.replaceAll("[^A-Za-z0-9._-]", "_");
+		return name.isEmpty() ? "forge-installer.jar" : name;
+	}
+}
@@ -7,10 +7,10 @@ import com.google.common.base.Charsets;
 import com.google.common.base.Throwables;
 import com.google.common.collect.Maps;
 import com.google.common.io.Files;
-import com.google.gson.Gson;
 import common.nw.core.modpack.*;
 import common.nw.core.utils.DownloadHelper;
 import common.nw.core.utils.FileUtils;
+import common.nw.core.utils.ManifestCache;
 import common.nw.core.utils.Utils;
 import common.nw.core.utils.log.NwLogger;
 
@@ -35,6 +35,27 @@ public class Installer {
 	private static final String JSON_MC_ARGUMENTS_MINECRAFT = "--username ${auth_player_name} --version ${version_name} --gameDir ${game_directory} --assetsDir ${assets_root} --assetIndex ${assets_index_name} --uuid ${auth_uuid} --accessToken ${auth_access_token} --userProperties ${user_properties} --userType ${user_type} ";
 	private static final String JSON_MC_ARGUMENTS_UPDATER = "--tweakClass common.nw.updater.launch.Launch --modpackrepo %s --modpackversion %s";
 
+	/**
+	 * names of the installation steps
+	 *
+	 * @see #createTaskGraph(boolean, Component)
+	 */
+	public static final String STEP_DIRS = "Creating directories";
+	public static final String STEP_JSON = "Creating version json";
+	public static final String STEP_WRITE_JSON = "Writing version json";
+	public static final String STEP_JAR = "Creating version jar";
+	public static final String STEP_LIBRARIES = "Downloading libraries";
+
+	/**
+	 * maximum number of installation steps running at the same time
+	 */
+	public static final int STEP_THREADS = 3;
+
+	/**
+	 * maximum number of parallel library downloads
+	 */
+	private static final int LIBRARY_THREADS = 4;
+
 	/**
 	 * version Name (mc-launcher)
 	 */
@@ -99,26 +120,39 @@ public class Installer {
 	 */
 	public static RepoModpack downloadModpack(String url) {
 		try {
-			String json = null;
+			File file = null;
 			if (!url.startsWith("http:") && !url.startsWith("www.") && !url.startsWith("https:") || !url.contains("/")) {
 				//try and read local file
 				NwLogger.INSTALLER_LOGGER.info("Modpack URL does not seem to be an internet url! Trying to get local File");
-				json = DownloadHelper.getStringFromFile(url, null);
-			}
-			if (json == null || json.isEmpty()) {
-				json = DownloadHelper.getString(url, null);
+				file = new File(url);
+				if (!file.isFile() || file.length() == 0) {
+					NwLogger.INSTALLER_LOGGER.info("File not found: " + url);
+					file = null;
+				}
 			}
-			if (json == null || json.isEmpty()) {
-				return null;
+			if (file == null) {
+				file = ManifestCache.getDefault().get(url, 0, null).file;
 			}
-			Gson gson = new Gson();
-			return gson.fromJson(json, RepoModpack.class);
+			return ModpackJson.readRepoModpack(file, null);
 		} catch (Exception e) {
 			NwLogger.INSTALLER_LOGGER.error("Error downloading Modpack.json", e);
 		}
 		return null;
 	}
 
+	/**
+	 * looks up the given minecraft forge build
+	 *
+	 * @throws IllegalArgumentException if the build does not exist
+	 */
+	private static ForgeVersionCatalog.Build getForgeBuild(String buildNumber) throws IOException {
+		ForgeVersionCatalog.Build build = ForgeVersionCatalog.getShared().getBuild(buildNumber);
+		if (build == null) {
+			throw new IllegalArgumentException("Unknown Minecraft Forge build: " + buildNumber);
+		}
+		return build;
+	}
+
 	/**
 	 * are all entries valid?
 	 */
@@ -165,9 +199,10 @@ public class Installer {
 	}
 
 	/**
-	 * downloads libraries (only nw-updater atm)
+	 * downloads all libraries of the version json, libraries that are present and valid are skipped
 	 *
 	 * @return success
+	 * @see LibraryDownloader
 	 */
 	@SuppressWarnings("BooleanMethodIsAlwaysInverted")
 	public boolean downloadLibraries() {
@@ -175,38 +210,21 @@ public class Installer {
 			return true;
 		}
 		try {
-			List<JsonNode> libCopy = data.getArrayNode("libraries");
-			for (JsonNode node : libCopy) {
-				final String libName = node.getStringValue("name");
-				if (libName.contains("common.nuklearwurst:updater")) {
-					String url = node.getStringValue("url");
-					if (url.endsWith("/")) {
-						url = url.substring(0, url.length() - 1);
-					}
-					File libraryDirectory = new File(minecraftDirectory, "libraries");
-					if (!FileUtils.createDirectoryIfNecessary(libraryDirectory)) {
-						NwLogger.INSTALLER_LOGGER.error("Error creating library directory!");
-						return false;
-					}
-					final String version = libName.substring(libName.lastIndexOf(":") + 1);
-					File updaterDirectory = new File(libraryDirectory, "common" + File.separator + "nuklearwurst" + File.separator + "updater" + File.separator + version);
-					if (!FileUtils.createDirectoriesIfNecessary(updaterDirectory)) {
-						NwLogger.INSTALLER_LOGGER.error("Error creating library directory!");
-						return false;
-					}
-					File updaterJarFile = new File(updaterDirectory, "updater-" + version + ".jar");
-					String realUrl = url + "/common/nuklearwurst/updater/" + version + "/updater-" + version + ".jar";
-					if (!DownloadHelper.downloadFile(realUrl, updaterJarFile)) {
-						NwLogger.INSTALLER_LOGGER.error("Error downloading updater jar-file!");
-						return false;
-					}
-				}
+			List<LibraryDownloader.Artifact> artifacts = LibraryDownloader.resolve(data.getArrayNode("libraries"));
+			File libraryDirectory = new File(minecraftDirectory, "libraries");
+			if (!FileUtils.createDirectoryIfNecessary(libraryDirectory)) {
+				NwLogger.INSTALLER_LOGGER.error("Error creating library directory!");
+				return false;
 			}
+			return new LibraryDownloader(libraryDirectory, LIBRARY_THREADS).downloadAll(artifacts);
+		} catch (InterruptedException e) {
+			NwLogger.INSTALLER_LOGGER.warn("Library download interrupted!");
+			Thread.currentThread().interrupt();
+			return false;
 		} catch (Exception e) {
 			NwLogger.INSTALLER_LOGGER.error("Unknown error when downloading libraries!", e);
 			return false;
 		}
-		return true;
 	}
 
 
@@ -289,26 +307,12 @@ public class Installer {
 					forgeVersionFull = repo.minecraft.versionName;
 				} else {
 					//parse as build number
-					String s = DownloadHelper.getString(ModpackValues.URL.forgeVersionJson, null);
-					JdomParser forgeParser = new JdomParser();
-					JsonRootNode forgeVersionData = forgeParser.parse(s);
-					JsonNode build = forgeVersionData.getNode("number", repo.minecraft.versionName);
-					String branch = build.isStringValue("branch") ? "-" + build.getStringValue("branch") : "";
-					String mcversion = build.getStringValue("mcversion");
-					String forgeversion = build.getStringValue("version");
-
-					if (FileUtils.compareVersions(mcversion, "1.10.0") == -1) {
-						forgeVersionFull = String.format("%s-Forge%s%s", mcversion, forgeversion, branch);
-					} else {
-						forgeVersionFull = String.format("%s-forge%s-%s%s", mcversion, mcversion, forgeversion, branch);
-					}
+					forgeVersionFull = getForgeBuild(repo.minecraft.versionName).getVersionId();
 				}
 			} catch (MalformedURLException e) {
 				NwLogger.INSTALLER_LOGGER.error("Error parsing Minecraft Forge Installer version...", e);
 			} catch (IOException e) {
 				NwLogger.INSTALLER_LOGGER.error("Error reading Minecraft Forge Version Data", e);
-			} catch (InvalidSyntaxException e) {
-				NwLogger.INSTALLER_LOGGER.error("Error parsing Minecraft Forge Version Data", e);
 			} catch (NumberFormatException e) {
 				NwLogger.INSTALLER_LOGGER.error("Error parsing Minecraft Forge Build Number", e);
 			} catch (IllegalArgumentException e) {
@@ -416,21 +420,10 @@ public class Installer {
 							url = new URL(ModpackValues.URL.forgeInstaller + repo.minecraft.versionName + "/forge-" + repo.minecraft.versionName + "-installer.jar");
 						} else {
 							//parse as build number
-							String s = DownloadHelper.getString(ModpackValues.URL.forgeVersionJson, null);
-							JdomParser parser = new JdomParser();
-							JsonRootNode versionData = parser.parse(s);
-							JsonNode build = versionData.getNode("number", repo.minecraft.versionName);
-							String branch = build.isStringValue("branch") ? "-" + build.getStringValue("branch") : "";
-							String mcversion = build.getStringValue("mcversion");
-							String forgeversion = build.getStringValue("version");
+							ForgeVersionCatalog.Build build = getForgeBuild(repo.minecraft.versionName);
 
 							if (allowGui) {
-								String forgeDir;
-								if (FileUtils.compareVersions(mcversion, "1.10.0") == -1) {
-									forgeDir = String.format("%s-Forge%s%s", mcversion, forgeversion, branch);
-								} else {
-									forgeDir = String.format("%s-forge%s-%s%s", mcversion, mcversion, forgeversion, branch);
-								}
+								String forgeDir = build.getVersionId();
 								File forgeVersionDir = new File(minecraftDirectory, "versions/" + forgeDir);
 								NwLogger.INSTALLER_LOGGER.fine("Searching for minecraftforge Installation at: " + forgeVersionDir.getAbsolutePath());
 								if (forgeVersionDir.exists() && forgeVersionDir.isDirectory()) {
@@ -444,68 +437,33 @@ public class Installer {
 								}
 							}
 
-							url = new URL(ModpackValues.URL.forgeInstaller + mcversion + "-" + forgeversion + branch + "/forge-" + mcversion + "-" + forgeversion + branch + "-installer.jar");
+							url = new URL(build.getInstallerUrl());
 						}
 
+						//the installer is loaded from a verified local copy, repeated installs need no download
+						URL localUrl;
 						try {
+							localUrl = ForgeInstallerCache.getDefault().get(url.toString()).toURI().toURL();
+						} catch (IOException e) {
+							NwLogger.INSTALLER_LOGGER.error("Error downloading Minecraft Forge Installer...", e);
+							return false;
+						}
 
-							//Class loading
-							NwLogger.INSTALLER_LOGGER.fine("Loading MC-Forge Installer...");
-							URLClassLoader child = new URLClassLoader(new URL[]{url}, Installer.class.getClassLoader().getParent());
-							Class forgeClientInstall = Class.forName("net.minecraftforge.installer.ClientInstall", true, child);
-
-							Object result;
+						//one loader is used for both the automatic and the manual installation, it gets closed afterwards
+						URLClassLoader child = new URLClassLoader(new URL[]{localUrl}, Installer.class.getClassLoader().getParent());
+						try {
+							return runForgeInstaller(child, allowGui, parentWindow);
+						} finally {
 							try {
-								Method runMethod = forgeClientInstall.getDeclaredMethod("run", File.class);
-								Object instance = forgeClientInstall.newInstance();
-
-								//Invoking Run Method
-								NwLogger.INSTALLER_LOGGER.fine("Starting Client Installation...");
-								result = runMethod.invoke(instance, minecraftDirectory);
-							} catch (Exception e) {
-								NwLogger.INSTALLER_LOGGER.warn("Error Initializing Minecraft Forge Installer...", e);
-								Method runMethod = Arrays.stream(forgeClientInstall.getDeclaredMethods())
-										.filter((m) -> m.getName().equals("run"))
-										.findAny().orElseThrow(NoSuchMethodException::new);
-								Object instance = forgeClientInstall.newInstance();
-
-								//Invoking Run Method
-								NwLogger.INSTALLER_LOGGER.fine("Starting Client Installation...");
-								Object pred = Class.forName("com.google.common.base.Predicates", true, child).getDeclaredMethod("alwaysTrue").invoke(null);
-								result = runMethod.invoke(instance, minecraftDirectory, pred);
-							}
-							if ((Boolean) result) {
-								NwLogger.INSTALLER_LOGGER.info("Minecraft Forge Installation finished.");
-								return true;
-							} else {
-								NwLogger.INSTALLER_LOGGER.error("Minecraft Forge Installation has encountered an error!");
-								return false;
-							}
-						} catch (Exception e) {
-							NwLogger.INSTALLER_LOGGER.error("Error Executing Minecraft Forge Installer...", e);
-							if (allowGui) {
-								int result = JOptionPane.showConfirmDialog(parentWindow, "Do you want to manually execute the installer?", "MinecraftForge Installation failed!", JOptionPane.YES_NO_OPTION, JOptionPane.QUESTION_MESSAGE);
-								if (result == JOptionPane.YES_OPTION) {
-									try {
-										NwLogger.INSTALLER_LOGGER.fine("Loading MC-Forge Installer for manual installation...");
-										URLClassLoader child = new URLClassLoader(new URL[]{url}, Installer.class.getClassLoader().getParent());
-										Class mainClass = Class.forName("net.minecraftforge.installer.SimpleInstaller", true, child);
-										Method main = mainClass.getDeclaredMethod("main", String[].class);
-										main.invoke(null, new Object[]{new String[0]});
-										return true;
-									} catch (Exception ex) {
-										NwLogger.INSTALLER_LOGGER.error("Minecraft Forge Installation has encountered an error!", ex);
-										return false;
-									}
-								}
+								child.close();
+							} catch (IOException e) {
+								NwLogger.INSTALLER_LOGGER.warn("Error closing Minecraft Forge Installer", e);
 							}
 						}
 					} catch (MalformedURLException e) {
 						NwLogger.INSTALLER_LOGGER.error("Error parsing Minecraft Forge Installer version...", e);
 					} catch (IOException e) {
 						NwLogger.INSTALLER_LOGGER.error("Error reading Minecraft Forge Version Data", e);
-					} catch (InvalidSyntaxException e) {
-						NwLogger.INSTALLER_LOGGER.error("Error parsing Minecraft Forge Version Data", e);
 					} catch (NumberFormatException e) {
 						NwLogger.INSTALLER_LOGGER.error("Error parsing Minecraft Forge Build Number", e);
 					} catch (IllegalArgumentException e) {
@@ -523,6 +481,94 @@ public class Installer {
 		return true;
 	}
 
+	/**
+	 * runs the Minecraft Forge client installation, the manual installation is offered if it fails
+	 *
+	 * @param child class loader of the installer jar
+	 * @return success
+	 */
+	@SuppressWarnings("unchecked")
+	private boolean runForgeInstaller(URLClassLoader child, boolean allowGui, Component parentWindow) {
+		try {
+
+			//Class loading
+			NwLogger.INSTALLER_LOGGER.fine("Loading MC-Forge Installer...");
+			Class forgeClientInstall = Class.forName("net.minecraftforge.installer.ClientInstall", true, child);
+
+			Object result;
+			try {
+				Method runMethod = forgeClientInstall.getDeclaredMethod("run", File.class);
+				Object instance = forgeClientInstall.newInstance();
+
+				//Invoking Run Method
+				NwLogger.INSTALLER_LOGGER.fine("Starting Client Installation...");
+				result = runMethod.invoke(instance, minecraftDirectory);
+			} catch (Exception e) {
+				NwLogger.INSTALLER_LOGGER.warn("Error Initializing Minecraft Forge Installer...", e);
+				Method runMethod = Arrays.stream(forgeClientInstall.getDeclaredMethods())
+						.filter((m) -> m.getName().equals("run"))
+						.findAny().orElseThrow(NoSuchMethodException::new);
+				Object instance = forgeClientInstall.newInstance();
+
+				//Invoking Run Method
+				NwLogger.INSTALLER_LOGGER.fine("Starting Client Installation...");
+				Object pred = Class.forName("com.google.common.base.Predicates", true, child).getDeclaredMethod("alwaysTrue").invoke(null);
+				result = runMethod.invoke(instance, minecraftDirectory, pred);
+			}
+			if ((Boolean) result) {
+				NwLogger.INSTALLER_LOGGER.info("Minecraft Forge Installation finished.");
+				return true;
+			} else {
+				NwLogger.INSTALLER_LOGGER.error("Minecraft Forge Installation has encountered an error!");
+				return false;
+			}
+		} catch (Exception e) {
+			NwLogger.INSTALLER_LOGGER.error("Error Executing Minecraft Forge Installer...", e);
+			if (allowGui) {
+				int result = JOptionPane.showConfirmDialog(parentWindow, "Do you want to manually execute the installer?", "MinecraftForge Installation failed!", JOptionPane.YES_NO_OPTION, JOptionPane.QUESTION_MESSAGE);
+				if (result == JOptionPane.YES_OPTION) {
+					try {
+						NwLogger.INSTALLER_LOGGER.fine("Loading MC-Forge Installer for manual installation...");
+						Class mainClass = Class.forName("net.minecraftforge.installer.SimpleInstaller", true, child);
+						Method main = mainClass.getDeclaredMethod("main", String[].class);
+						main.invoke(null, new Object[]{new String[0]});
+						return true;
+					} catch (Exception ex) {
+						NwLogger.INSTALLER_LOGGER.error("Minecraft Forge Installation has encountered an error!", ex);
+						return false;
+					}
+				}
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * creates the installation steps (without the launcher profile)
+	 * <p>
+	 * only the real data dependencies are serialised: the version json is downloaded while the version directory is
+	 * prepared and the jar (or Minecraft Forge) gets installed.
+	 * The libraries are downloaded after the jar, as the Minecraft Forge installer writes into the libraries folder
+	 * as well. This way both never write the same file and libraries installed by Forge are not downloaded again.
+	 * <pre>
+	 * dirs ---+--> write json
+	 * json ---+
+	 * dirs -----> jar ---+--> libraries
+	 * json --------------+
+	 * </pre>
+	 *
+	 * @return the graph, run it using {@link TaskGraph#run(int)} with {@link #STEP_THREADS}
+	 */
+	public TaskGraph createTaskGraph(boolean allowGui, Component parentWindow) {
+		TaskGraph graph = new TaskGraph();
+		TaskGraph.Task dirs = graph.add(STEP_DIRS, this::createDirs);
+		TaskGraph.Task json = graph.add(STEP_JSON, this::createJson);
+		graph.add(STEP_WRITE_JSON, this::writeJson, dirs, json);
+		TaskGraph.Task jar = graph.add(STEP_JAR, () -> createJar(allowGui, parentWindow), dirs);
+		graph.add(STEP_LIBRARIES, this::downloadLibraries, json, jar);
+		return graph;
+	}
+
 	/**
 	 * create minecraft launcher profile <br>
 	 * code is based on the MinecraftForge-Installer <br>
@@ -598,13 +644,9 @@ public class Installer {
 			//modpack data
 			if (modpack.exists()) {
 				try {
-					Gson gson = new Gson();
-					LocalModpack local = gson.fromJson(new FileReader(modpack),
-							LocalModpack.class);
+					LocalModpack local = ModpackJson.readLocalModpack(modpack);
 					local.version = repo.minecraft.version;
-					FileWriter fileWriter = new FileWriter(modpack);
-					gson.toJson(local, fileWriter);
-					fileWriter.close();
+					ModpackJson.writeCompact(local, modpack);
 				} catch (Exception e) {
 					NwLogger.INSTALLER_LOGGER.warn("Could not read local modpack.json file of profile: " + profileName, e);
 					JOptionPane.showMessageDialog(null, "Error when reading existing modpack.json file!\nInstalltion will continue...", "Warning!", JOptionPane.WARNING_MESSAGE);
@@ -0,0 +1,393 @@
+package common.nw.installer;
+
+import argo.jdom.JsonNode;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import common.nw.core.utils.DownloadHelper;
+import common.nw.core.utils.FileUtils;
+import common.nw.core.utils.HttpClient;
+import common.nw.core.utils.log.NwLogger;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.math.BigInteger;
+import java.net.HttpURLConnection;
+import java.net.URLConnection;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * downloads the libraries of a version json into the libraries folder of the minecraft directory
+ * <p>
+ * every library is resolved to its maven path. Libraries that are already present and match their sha1 are skipped,
+ * the others are downloaded in parallel and verified before they are moved into place. This way the launcher does not
+ * have to fetch them one by one on the first start.
+ * Libraries without any sha1 (eg. the updater) are only compared with the length of the remote file and downloaded
+ * again if it is unknown.
+ *
+ * @author Nuklearwurst
+ */
+public class LibraryDownloader {
+
+	/**
+	 * repository used for libraries without url
+	 */
+	public static final String DEFAULT_REPOSITORY = "https://libraries.minecraft.net/";
+
+	private static final String SHA1_SUFFIX = ".sha1";
+
+	private final File librariesDir;
+	private final int threads;
+
+	/**
+	 * @param librariesDir the libraries folder of the minecraft directory
+	 * @param threads      maximum number of parallel downloads
+	 */
+	public LibraryDownloader(File librariesDir, int threads) {
+		this.librariesDir = librariesDir;
+		this.threads = threads;
+	}
+
+	/**
+	 * resolves the libraries of a version json, libraries not used on this system are left out
+	 *
+	 * @param libraries the "libraries" array of the version json
+	 * @return the artifacts to download
+	 */
+	public static List<Artifact> resolve(List<JsonNode> libraries) {
+		List<Artifact> artifacts = new ArrayList<>();
+		String os = getOsName();
+		for (JsonNode library : libraries) {
+			if (!library.isStringValue("name") || !isAllowed(library, os)) {
+				continue;
+			}
+			String name = library.getStringValue("name");
+			String classifier = null;
+			if (library.isStringValue("natives", os)) {
+				classifier = library.getStringValue("natives", os)
+						.replace("${arch}", System.getProperty("os.arch").contains("64") ? "64" : "32");
+			}
+			Artifact artifact;
+			if (classifier == null && library.isObjectNode("downloads", "artifact")) {
+				artifact = fromDownloads(name, library.getNode("downloads", "artifact"));
+			} else if (classifier != null && library.isObjectNode("downloads", "classifiers", classifier)) {
+				artifact = fromDownloads(name, library.getNode("downloads", "classifiers", classifier));
+			} else {
+				String path = getMavenPath(name, classifier);
+				if (path == null) {
+					NwLogger.INSTALLER_LOGGER.warn("Invalid library name: " + name);
+					continue;
+				}
+				String repository = library.isStringValue("url") ? library.getStringValue("url") : DEFAULT_REPOSITORY;
+				if (!repository.endsWith("/")) {
+					repository += "/";
+				}
+				List<String> checksums = new ArrayList<>();
+				if (library.isArrayNode("checksums")) {
+					for (JsonNode checksum : library.getArrayNode("checksums")) {
+						checksums.add(checksum.getText());
+					}
+				}
+				artifact = new Artifact(name, path, repository + path, checksums, -1);
+			}
+			if (artifact != null) {
+				artifacts.add(artifact);
+			}
+		}
+		return artifacts;
+	}
+
+	/**
+	 * downloads all artifacts that are missing or invalid
+	 *
+	 * @return true if all artifacts are present and valid afterwards
+	 */
+	public boolean downloadAll(List<Artifact> artifacts) throws InterruptedException {
+		if (artifacts.isEmpty()) {
+			return true;
+		}
+		//libraries listed twice would be downloaded into the same file concurrently
+		artifacts = mergeByPath(artifacts);
+		long start = System.currentTimeMillis();
+		ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(threads, artifacts.size())),
+				new ThreadFactoryBuilder().setDaemon(true).setNameFormat("Library Download Thread %d").build());
+		List<Future<Boolean>> futures = new ArrayList<>(artifacts.size());
+		try {
+			for (Artifact artifact : artifacts) {
+				futures.add(executor.submit(() -> download(artifact)));
+			}
+			int failed = 0;
+			for (Future<Boolean> future : futures) {
+				try {
+					if (!future.get()) {
+						failed++;
+					}
+				} catch (ExecutionException e) {
+					NwLogger.INSTALLER_LOGGER.error("Unknown error when downloading libraries!", e);
+					failed++;
+				}
+			}
+			NwLogger.INSTALLER_LOGGER.info("Checked " + artifacts.size() + " libraries in "
+					+ (System.currentTimeMillis() - start) + "ms, " + failed + " failed");
+			return failed == 0;
+		} finally {
+			executor.shutdownNow();
+		}
+	}
+
+	/**
+	 * downloads the given artifact if it is missing or invalid
+	 *
+	 * @return true if the artifact is present and valid
+	 */
+	private boolean download(Artifact artifact) {
+		File file = new File(librariesDir, artifact.path.replace("/", File.separator));
+		List<String> checksums = artifact.sha1;
+		long size = artifact.size;
+		//libraries with a known checksum are checked without any request
+		if (!checksums.isEmpty() && file.isFile() && isValid(file, checksums, size)) {
+			NwLogger.INSTALLER_LOGGER.fine("Library " + artifact.name + " is up to date");
+			return true;
+		}
+		if (checksums.isEmpty()) {
+			String remote = getRemoteSha1(artifact.url);
+			if (remote != null) {
+				checksums = Collections.singletonList(remote);
+			}
+			if (file.isFile()) {
+				if (checksums.isEmpty() && size < 0) {
+					size = getRemoteLength(artifact.url);
+				}
+				//a present library is kept if the remote has nothing to compare it with
+				if (isValid(file, checksums, size)) {
+					NwLogger.INSTALLER_LOGGER.fine("Library " + artifact.name + " is up to date");
+					return true;
+				}
+			}
+		}
+		if (!FileUtils.createDirectoriesIfNecessary(file.getParentFile())) {
+			NwLogger.INSTALLER_LOGGER.error("Error creating library directory " + file.getParentFile());
+			return false;
+		}
+		File tempFile = new File(file.getPath() + ".part");
+		NwLogger.INSTALLER_LOGGER.info("Downloading library " + artifact.name);
+		if (!DownloadHelper.downloadFileNIO(artifact.url, tempFile)) {
+			DownloadHelper.deleteTempFile(tempFile);
+			NwLogger.INSTALLER_LOGGER.error("Error downloading library " + artifact.name + " from " + artifact.url);
+			return false;
+		}
+		if (!isValid(tempFile, checksums, size)) {
+			DownloadHelper.deleteTempFile(tempFile);
+			NwLogger.INSTALLER_LOGGER.error("Checksum mismatch of library " + artifact.name + " from " + artifact.url);
+			return false;
+		}
+		if (checksums.isEmpty()) {
+			NwLogger.INSTALLER_LOGGER.fine("No checksum available for library " + artifact.name);
+		}
+		return FileUtils.moveAtomically(tempFile, file);
+	}
+
+	/**
+	 * merges artifacts with the same path, their checksums are combined
+	 *
+	 * @return one artifact per path, in the original order
+	 */
+	private static List<Artifact> mergeByPath(List<Artifact> artifacts) {
+		Map<String, Artifact> byPath = new LinkedHashMap<>();
+		for (Artifact artifact : artifacts) {
+			Artifact other = byPath.get(artifact.path);
+			if (other == null) {
+				byPath.put(artifact.path, artifact);
+				continue;
+			}
+			List<String> checksums = new ArrayList<>(other.sha1);
+			for (String checksum : artifact.sha1) {
+				if (!checksums.contains(checksum)) {
+					checksums.add(checksum);
+				}
+			}
+			long size = other.size < 0 ? artifact.size : artifact.size < 0 || artifact.size == other.size ? other.size : -1;
+			byPath.put(artifact.path, new Artifact(other.name, other.path, other.url, checksums, size));
+		}
+		return new ArrayList<>(byPath.values());
+	}
+
+	/**
+	 * @param checksums valid sha1s, any file of the expected size is valid if there is none
+	 * @param size      expected size, -1 if unknown
+	 */
+	private static boolean isValid(File file, List<String> checksums, long size) {
+		if (size >= 0 && file.length() != size) {
+			return false;
+		}
+		if (checksums.isEmpty()) {
+			return file.length() > 0;
+		}
+		String sha1 = getSha1(file);
+		for (String checksum : checksums) {
+			if (checksum.equalsIgnoreCase(sha1)) {
+				return true;
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * @return the sha1 published next to the file at the given url (maven repositories do this) or null
+	 */
+	private static String getRemoteSha1(String url) {
+		try {
+			String sha1 = DownloadHelper.getString(url + SHA1_SUFFIX, null).trim();
+			//the file might also contain the file name
+			int end = sha1.indexOf(' ');
+			if (end >= 0) {
+				sha1 = sha1.substring(0, end);
+			}
+			if (sha1.matches("[0-9a-fA-F]{40}")) {
+				return sha1;
+			}
+		} catch (IOException e) {
+			NwLogger.INSTALLER_LOGGER.fine("No sha1 available for " + url + ": " + e);
+		}
+		return null;
+	}
+
+	/**
+	 * @return the length of the file at the given url or -1 if it is unknown
+	 */
+	private static long getRemoteLength(String url) {
+		try {
+			URLConnection connection = HttpClient.getShared().openConnection(url);
+			if (!(connection instanceof HttpURLConnection)) {
+				return -1;
+			}
+			HttpURLConnection head = (HttpURLConnection) connection;
+			head.setRequestMethod("HEAD");
+			int responseCode = head.getResponseCode();
+			HttpClient.discardErrorStream(head);
+			if (responseCode == HttpURLConnection.HTTP_OK) {
+				return head.getContentLengthLong();
+			}
+			NwLogger.INSTALLER_LOGGER.fine("No length available for " + url + " (" + responseCode + ")");
+		} catch (IOException e) {
+			NwLogger.INSTALLER_LOGGER.fine("No length available for " + url + ": " + e);
+		}
+		return -1;
+	}
+
+	/**
+	 * creates an sha1 of the given file
+	 *
+	 * @return the sha1 or an empty string if the file could not be read
+	 */
+	private static String getSha1(File file) {
+		try (InputStream in = new FileInputStream(file)) {
+			MessageDigest digest = MessageDigest.getInstance("SHA-1");
+			byte[] buffer = new byte[65536];
+			int readBytes;
+			while ((readBytes = in.read(buffer)) >= 0) {
+				digest.update(buffer, 0, readBytes);
+			}
+			return String.format("%1$040x", new BigInteger(1, digest.digest()));
+		} catch (IOException | NoSuchAlgorithmException e) {
+			NwLogger.INSTALLER_LOGGER.warn("Error reading " + file, e);
+			return "";
+		}
+	}
+
+	/**
+	 * @param name       maven name (group:artifact:version)
+	 * @param classifier classifier, may be null
+	 * @return the path relative to the repository or null if the name is invalid
+	 */
+	public static String getMavenPath(String name, String classifier) {
+		String[] parts = name.split(":");
+		if (parts.length < 3) {
+			return null;
+		}
+		if (classifier == null && parts.length > 3) {
+			classifier = parts[3];
+		}
+		String fileName = parts[1] + "-" + parts[2] + (classifier != null ? "-" + classifier : "") + ".jar";
+		return parts[0].replace('.', '/') + "/" + parts[1] + "/" + parts[2] + "/" + fileName;
+	}
+
+	/**
+	 * evaluates the rules of a library, libraries without rules are always allowed
+	 */
+	private static boolean isAllowed(JsonNode library, String os) {
+		if (!library.isArrayNode("rules")) {
+			return true;
+		}
+		boolean allowed = false;
+		for (JsonNode rule : library.getArrayNode("rules")) {
+			if (rule.isStringValue("os", "name") && !rule.getStringValue("os", "name").equals(os)) {
+				continue;
+			}
+			allowed = rule.isStringValue("action") && rule.getStringValue("action").equals("allow");
+		}
+		return allowed;
+	}
+
+	private static Artifact fromDownloads(String name, JsonNode download) {
+		if (!download.isStringValue("path") || !download.isStringValue("url") || download.getStringValue("url").isEmpty()) {
+			//not downloadable (eg. created by the forge installer)
+			return null;
+		}
+		List<String> checksums = download.isStringValue("sha1")
+				? Collections.singletonList(download.getStringValue("sha1")) : Collections.emptyList();
+		long size = download.isNumberValue("size") ? Long.parseLong(download.getNumberValue("size")) : -1;
+		return new Artifact(name, download.getStringValue("path"), download.getStringValue("url"), checksums, size);
+	}
+
+	/**
+	 * @return the os name used in the rules of the version json
+	 */
+	private static String getOsName() {
+		String os = System.getProperty("os.name").toLowerCase(Locale.ROOT);
+		if (os.contains("win")) {
+			return "windows";
+		} else if (os.contains("mac")) {
+			return "osx";
+		}
+		return "linux";
+	}
+
+	/**
+	 * a single file of a library
+	 */
+	public static class Artifact {
+
+		public final String name;
+
+		/**
+		 * path relative to the libraries folder, separated by '/'
+		 */
+		public final String path;
+		public final String url;
+
+		/**
+		 * valid sha1s, may be empty
+		 */
+		public final List<String> sha1;
+
+		/**
+		 * -1 if unknown
+		 */
+		public final long size;
+
+		public Artifact(String name, String path, String url, List<String> sha1, long size) {
+			this.name = name;
+			this.path = path;
+			this.url = url;
+			this.sha1 = sha1;
+			this.size = size;
+		}
+	}
+}
@@ -0,0 +1,265 @@
+package common.nw.installer;
+
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+import common.nw.core.utils.log.NwLogger;
+
+import java.util.*;
+import java.util.concurrent.*;
+import java.util.function.Predicate;
+
+/**
+ * small graph of installation steps
+ * <p>
+ * every step starts as soon as all of its dependencies succeeded, independent steps run concurrently. Steps whose
+ * dependencies failed are skipped. The start and end of each step are recorded, so the steps that determined the
+ * total duration (the critical path) can be reported.
+ *
+ * @author Nuklearwurst
+ */
+public class TaskGraph {
+
+	public enum State {
+		PENDING, RUNNING, SUCCEEDED, FAILED, SKIPPED
+	}
+
+	/**
+	 * gets notified when steps start and finish, called from the worker threads
+	 */
+	public interface Listener {
+
+		void taskStarted(Task task);
+
+		void taskFinished(Task task);
+	}
+
+	private final List<Task> tasks = new ArrayList<>();
+	private final Object retryLock = new Object();
+
+	private Listener listener;
+	private Predicate<Task> retryPolicy;
+	private long startTime;
+	private long endTime;
+
+	/**
+	 * adds a step, dependencies have to be added first (so the graph can not contain cycles)
+	 *
+	 * @param name         name of the step, used in the report
+	 * @param action       the step, returns true on success
+	 * @param dependencies steps that have to succeed before this step starts
+	 * @return the new step
+	 */
+	public Task add(String name, Callable<Boolean> action, Task... dependencies) {
+		for (Task dependency : dependencies) {
+			if (!tasks.contains(dependency)) {
+				throw new IllegalArgumentException("Unknown dependency of " + name + ": " + dependency.name);
+			}
+		}
+		Task task = new Task(name, action, Arrays.asList(dependencies));
+		tasks.add(task);
+		return task;
+	}
+
+	/**
+	 * @return the step with the given name or null
+	 */
+	public Task getTask(String name) {
+		for (Task task : tasks) {
+			if (task.name.equals(name)) {
+				return task;
+			}
+		}
+		return null;
+	}
+
+	public List<Task> getTasks() {
+		return Collections.unmodifiableList(tasks);
+	}
+
+	public void setListener(Listener listener) {
+		this.listener = listener;
+	}
+
+	/**
+	 * @param retryPolicy decides whether a failed step is run again, it is never asked for two steps at the same time
+	 *                    (so it can show dialogs)
+	 */
+	public void setRetryPolicy(Predicate<Task> retryPolicy) {
+		this.retryPolicy = retryPolicy;
+	}
+
+	/**
+	 * runs all steps and logs the timing report
+	 *
+	 * @param threads maximum number of steps running at the same time
+	 * @return true if all steps succeeded
+	 */
+	public boolean run(int threads) {
+		ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(threads, tasks.size())),
+				new ThreadFactoryBuilder().setDaemon(true).setNameFormat("Installer Thread %d").build());
+		Map<Task, CompletableFuture<Boolean>> futures = new HashMap<>();
+		startTime = System.nanoTime();
+		try {
+			for (Task task : tasks) {
+				CompletableFuture<?>[] dependencies = new CompletableFuture<?>[task.dependencies.size()];
+				for (int i = 0; i < dependencies.length; i++) {
+					dependencies[i] = futures.get(task.dependencies.get(i));
+				}
+				futures.put(task, CompletableFuture.allOf(dependencies).thenApplyAsync(v -> execute(task), executor));
+			}
+			CompletableFuture.allOf(futures.values().toArray(new CompletableFuture<?>[futures.size()])).get();
+		} catch (InterruptedException e) {
+			NwLogger.INSTALLER_LOGGER.warn("Installation interrupted!");
+			Thread.currentThread().interrupt();
+		} catch (ExecutionException e) {
+			//exceptions of the steps are handled in execute
+			NwLogger.INSTALLER_LOGGER.error("Unknown error when running installation steps!", e);
+		} finally {
+			executor.shutdownNow();
+			endTime = System.nanoTime();
+		}
+		NwLogger.INSTALLER_LOGGER.info(getReport());
+		for (Task task : tasks) {
+			if (task.state != State.SUCCEEDED) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	private boolean execute(Task task) {
+		for (Task dependency : task.dependencies) {
+			if (dependency.state != State.SUCCEEDED) {
+				task.state = State.SKIPPED;
+				NwLogger.INSTALLER_LOGGER.warn("Skipping " + task.name + ", " + dependency.name + " did not succeed");
+				return false;
+			}
+		}
+		task.start = System.nanoTime();
+		task.state = State.RUNNING;
+		if (listener != null) {
+			listener.taskStarted(task);
+		}
+		boolean success;
+		do {
+			try {
+				success = task.action.call();
+			} catch (Exception e) {
+				NwLogger.INSTALLER_LOGGER.error("Error in installation step " + task.name, e);
+				success = false;
+			}
+			task.attempts++;
+		} while (!success && shouldRetry(task));
+		task.end = System.nanoTime();
+		task.state = success ? State.SUCCEEDED : State.FAILED;
+		if (listener != null) {
+			listener.taskFinished(task);
+		}
+		return success;
+	}
+
+	private boolean shouldRetry(Task task) {
+		if (retryPolicy == null || Thread.currentThread().isInterrupted()) {
+			return false;
+		}
+		synchronized (retryLock) {
+			return retryPolicy.test(task);
+		}
+	}
+
+	/**
+	 * the chain of steps that determined the total duration: starting with the step that finished last, each step is
+	 * preceded by the dependency that finished last
+	 *
+	 * @return the critical path in execution order
+	 */
+	public List<Task> getCriticalPath() {
+		LinkedList<Task> path = new LinkedList<>();
+		Task current = latest(tasks);
+		while (current != null) {
+			path.addFirst(current);
+			current = latest(current.dependencies);
+		}
+		return path;
+	}
+
+	private static Task latest(List<Task> candidates) {
+		Task latest = null;
+		for (Task task : candidates) {
+			if (task.end != 0 && (latest == null || task.end - latest.end > 0)) {
+				latest = task;
+			}
+		}
+		return latest;
+	}
+
+	/**
+	 * @return the start, duration and state of every step, steps on the critical path are marked
+	 */
+	public String getReport() {
+		List<Task> criticalPath = getCriticalPath();
+		StringBuilder builder = new StringBuilder("Installation steps finished in ")
+				.append(TimeUnit.NANOSECONDS.toMillis(endTime - startTime)).append("ms");
+		for (Task task : tasks) {
+			builder.append("\n").append(criticalPath.contains(task) ? " * " : "   ").append(task.name).append(": ");
+			if (task.end == 0) {
+				builder.append(task.state.name().toLowerCase());
+			} else {
+				builder.append(task.state.name().toLowerCase())
+						.append(", started after ").append(TimeUnit.NANOSECONDS.toMillis(task.start - startTime)).append("ms")
+						.append(", took ").append(task.getDuration()).append("ms");
+				if (task.attempts > 1) {
+					builder.append(" (").append(task.attempts).append(" attempts)");
+				}
+			}
+		}
+		builder.append("\n(* critical path)");
+		return builder.toString();
+	}
+
+	/**
+	 * a single step of the graph
+	 */
+	public static class Task {
+
+		private final String name;
+		private final Callable<Boolean> action;
+		private final List<Task> dependencies;
+
+		private volatile State state = State.PENDING;
+		private volatile long start;
+		private volatile long end;
+		private volatile int attempts;
+
+		private Task(String name, Callable<Boolean> action, List<Task> dependencies) {
+			this.name = name;
+			this.action = action;
+			this.dependencies = dependencies;
+		}
+
+		public String getName() {
+			return name;
+		}
+
+		public State getState() {
+			return state;
+		}
+
+		/**
+		 * @return how often the step was run (so far)
+		 */
+		public int getAttempts() {
+			return attempts;
+		}
+
+		public boolean isSucceeded() {
+			return state == State.SUCCEEDED;
+		}
+
+		/**
+		 * @return time (in ms) the step took, including retries
+		 */
+		public long getDuration() {
+			return end == 0 ? 0 : TimeUnit.NANOSECONDS.toMillis(end - start);
+		}
+	}
+}
@@ -4,9 +4,11 @@ import common.nw.core.gui.PageHolder;
 import common.nw.core.modpack.ModpackValues;
 import common.nw.core.modpack.RepoModpack;
 import common.nw.core.modpack.VersionInfo;
+import common.nw.core.utils.HttpClient;
 import common.nw.core.utils.Utils;
 import common.nw.core.utils.log.NwLogger;
 import common.nw.installer.Installer;
+import common.nw.installer.TaskGraph;
 import common.nw.installer.gui.dialog.DialogProfileSettings;
 import common.nw.installer.gui.pages.*;
 
@@ -124,6 +126,7 @@ public class InstallerWindow {
 		@SuppressWarnings("Duplicates")
 		@Override
 		public void run() {
+			HttpClient.getShared().resetMetrics();
 			try {
 				// Install
 				setProgress("Starting installation...", 0);
@@ -142,94 +145,47 @@ public class InstallerWindow {
 					return;
 				}
 
-				setProgress("Preparing Minecraft directories", 10);
-				if (!installer.createDirs()) {
-					warnings.add("An error occurred while creating directories! \nPlease check if you have permission!");
-					finishInstallation();
-					return;
-				}
-				setProgress("Downloading Minecraft Version file", 20);
-				if (!installer.createJson()) {
-					if (JOptionPane.showConfirmDialog(mainFrame,
-							"Failed creating version.json file! \nDo you want to try again?",
-							"Error", JOptionPane.YES_NO_OPTION,
-							JOptionPane.ERROR_MESSAGE) == JOptionPane.YES_OPTION) {
-						if (!installer.createJson()) {
-							warnings.add("An error occurred while creating version.json file!");
-							warnings.add("Please check your internet connection!");
-							finishInstallation();
-							return;
-						}
-					} else {
-						warnings.add("An error occurred while creating version.json file!");
-						warnings.add("Please  check your internet connection!");
-						finishInstallation();
-						return;
+				//independent steps run concurrently, see Installer#createTaskGraph
+				TaskGraph graph = installer.createTaskGraph(true, content_panel);
+				graph.setListener(new TaskGraph.Listener() {
+					private int finished = 0;
+
+					@Override
+					public void taskStarted(TaskGraph.Task task) {
+						setProgress(getStepMessage(task.getName()), getStepProgress());
 					}
-				}
-				setProgress("Writing Minecraft Version file", 35);
-				if (!installer.writeJson()) {
-					if (JOptionPane.showConfirmDialog(mainFrame,
-							"Failed saving version.json file! \nDo you want to try again?",
-							"Error", JOptionPane.YES_NO_OPTION,
-							JOptionPane.ERROR_MESSAGE) == JOptionPane.YES_OPTION) {
-						if (!installer.writeJson()) {
-							warnings.add("An error occurred while saving version.json file!");
-							warnings.add("Please check if you have permission!");
-							finishInstallation();
-							return;
+
+					@Override
+					public synchronized void taskFinished(TaskGraph.Task task) {
+						finished++;
+					}
+
+					private synchronized int getStepProgress() {
+						return 10 + finished * 80 / graph.getTasks().size();
+					}
+				});
+				graph.setRetryPolicy(task -> !task.getName().equals(Installer.STEP_DIRS) && task.getAttempts() == 1
+						&& JOptionPane.showConfirmDialog(mainFrame,
+						"Failed " + getStepMessage(task.getName()).toLowerCase() + "! \nDo you want to try again?",
+						"Error", JOptionPane.YES_NO_OPTION,
+						JOptionPane.ERROR_MESSAGE) == JOptionPane.YES_OPTION);
+				if (!graph.run(Installer.STEP_THREADS)) {
+					for (TaskGraph.Task task : graph.getTasks()) {
+						if (task.getState() == TaskGraph.State.FAILED) {
+							addStepWarnings(task.getName());
 						}
-					} else {
-						warnings.add("An error occurred while creating version.json file!");
-						warnings.add("Please check if you have permission!");
-						finishInstallation();
-						return;
 					}
-				}
-				setProgress(modpack.minecraft.jarUpdateType.equals(ModpackValues.Download.jarForgeInherit) ? "Downloading and executing MinecraftForge, this may take a while..." : "Downloading Minecraft Jar", 40);
-				if (!installer.createJar(true, content_panel)) {
-					if (JOptionPane.showConfirmDialog(mainFrame,
-							"Failed creating version.jar file! "
-									+ "\nDo you want to try again?", "Error",
-							JOptionPane.YES_NO_OPTION, JOptionPane.ERROR_MESSAGE) == JOptionPane.YES_OPTION) {
-						if (!installer.createJar(true, content_panel)) {
-							warnings.add("An error occurred while creating version.jar file!");
-							warnings.add("Please check if you have permission!");
-							warnings.add("Please  check your internet connection!");
-							finishInstallation();
-							return;
+					boolean onlyLibraries = true;
+					for (TaskGraph.Task task : graph.getTasks()) {
+						if (!task.isSucceeded() && !task.getName().equals(Installer.STEP_LIBRARIES)) {
+							onlyLibraries = false;
 						}
-					} else {
-						warnings.add("An error occurred while creating version.jar file!");
-						warnings.add("Please check if you have permission!");
-						warnings.add("Please  check your internet connection!");
-						finishInstallation();
-						return;
 					}
-				}
-				setProgress("Downloading updater...", 75);
-				if (!installer.downloadLibraries()) {
-					if (JOptionPane.showConfirmDialog(mainFrame,
+					if (!onlyLibraries || JOptionPane.showConfirmDialog(mainFrame,
 							"Failed downloading libraries! "
-									+ "\nDo you want to try again?", "Error",
-							JOptionPane.YES_NO_OPTION, JOptionPane.ERROR_MESSAGE) == JOptionPane.YES_OPTION) {
-						if (!installer.downloadLibraries()) {
-							warnings.add("An error occurred while downloading libraries!");
-							warnings.add("Please check if you have permission!");
-							warnings.add("Please  check your internet connection!");
-							if (JOptionPane.showConfirmDialog(mainFrame,
-									"Failed downloading libraries! "
-											+ "\nDo you want to continue anyway?",
-									"Error", JOptionPane.YES_NO_OPTION,
-									JOptionPane.ERROR_MESSAGE) != JOptionPane.YES_OPTION) {
-								finishInstallation();
-								return;
-							}
-						}
-					} else {
-						warnings.add("An error occurred while downloading libraries!");
-						warnings.add("Please check if you have permission!");
-						warnings.add("Please  check your internet connection!");
+									+ "\nDo you want to continue anyway?",
+							"Error", JOptionPane.YES_NO_OPTION,
+							JOptionPane.ERROR_MESSAGE) != JOptionPane.YES_OPTION) {
 						finishInstallation();
 						return;
 					}
@@ -251,6 +207,49 @@ public class InstallerWindow {
 			finishInstallation();
 		}
 
+		private String getStepMessage(String step) {
+			switch (step) {
+				case Installer.STEP_DIRS:
+					return "Preparing Minecraft directories";
+				case Installer.STEP_JSON:
+					return "Downloading Minecraft Version file";
+				case Installer.STEP_WRITE_JSON:
+					return "Writing Minecraft Version file";
+				case Installer.STEP_JAR:
+					return modpack.minecraft.jarUpdateType.equals(ModpackValues.Download.jarForgeInherit) ? "Downloading and executing MinecraftForge, this may take a while..." : "Downloading Minecraft Jar";
+				case Installer.STEP_LIBRARIES:
+					return "Downloading libraries";
+				default:
+					return step;
+			}
+		}
+
+		private void addStepWarnings(String step) {
+			switch (step) {
+				case Installer.STEP_DIRS:
+					warnings.add("An error occurred while creating directories! \nPlease check if you have permission!");
+					break;
+				case Installer.STEP_JSON:
+					warnings.add("An error occurred while creating version.json file!");
+					warnings.add("Please check your internet connection!");
+					break;
+				case Installer.STEP_WRITE_JSON:
+					warnings.add("An error occurred while saving version.json file!");
+					warnings.add("Please check if you have permission!");
+					break;
+				case Installer.STEP_JAR:
+					warnings.add("An error occurred while creating version.jar file!");
+					warnings.add("Please check if you have permission!");
+					warnings.add("Please  check your internet connection!");
+					break;
+				case Installer.STEP_LIBRARIES:
+					warnings.add("An error occurred while downloading libraries!");
+					warnings.add("Please check if you have permission!");
+					warnings.add("Please  check your internet connection!");
+					break;
+			}
+		}
+
 	}
 
 	/**
@@ -447,6 +446,7 @@ public class InstallerWindow {
 	 * finish installing (and open next page)
 	 */
 	private void finishInstallation() {
+		HttpClient.getShared().logMetrics(NwLogger.INSTALLER_LOGGER);
 		installing = false;
 		nextPage();
 	}
@@ -0,0 +1,221 @@
+package common.nw.updater;
+
+import com.google.common.util.concurrent.RateLimiter;
+import common.nw.core.gui.IDownloadProgressListener;
+import common.nw.core.modpack.ModInfo;
+import common.nw.core.modpack.RepoMod;
+import common.nw.core.utils.ContentStore;
+import common.nw.core.utils.DownloadHelper;
+import common.nw.core.utils.DownloadResult;
+import common.nw.core.utils.FileUtils;
+import common.nw.core.utils.UpdateResult;
+import common.nw.core.utils.log.NwLogger;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * downloads deferrable files into the {@link StagedUpdates} while the game is running
+ * <p>
+ * the thread runs with the lowest priority and a limited download rate, so it does not slow down the game.
+ * Unfinished downloads are resumed by the next run.
+ *
+ * @author Nuklearwurst
+ */
+public class BackgroundStager extends Thread {
+
+	private static final int MAX_ATTEMPTS = 3;
+
+	/**
+	 * staging files that are currently downloaded, the prefetcher and the background update might stage the same file
+	 * and would write into the same temp file otherwise
+	 */
+	private static final Set<File> IN_PROGRESS = ConcurrentHashMap.newKeySet();
+
+	private final StagedUpdates staged;
+	private final List<ModInfo> mods;
+	protected final ContentStore contentStore;
+	protected final long startDelay;
+	private final RateLimiter rateLimiter;
+
+	/**
+	 * @param staged       staging area of the game directory
+	 * @param mods         mods to download
+	 * @param contentStore content store, may be null
+	 * @param startDelay   time (in ms) to wait before the first download, so the game can load first
+	 * @param rateLimiter  limits the download rate (permits are bytes), may be shared with other background downloads
+	 */
+	public BackgroundStager(StagedUpdates staged, List<ModInfo> mods, ContentStore contentStore, long startDelay,
+	                        RateLimiter rateLimiter) {
+		this("Background Update Thread", staged, mods, contentStore, startDelay, rateLimiter);
+	}
+
+	protected BackgroundStager(String name, StagedUpdates staged, List<ModInfo> mods, ContentStore contentStore,
+	                           long startDelay, RateLimiter rateLimiter) {
+		super(name);
+		this.staged = staged;
+		this.mods = new ArrayList<>(mods);
+		this.contentStore = contentStore;
+		this.startDelay = startDelay;
+		this.rateLimiter = rateLimiter;
+		setDaemon(true);
+		setPriority(MIN_PRIORITY);
+	}
+
+	@Override
+	public void run() {
+		try {
+			if (startDelay > 0) {
+				Thread.sleep(startDelay);
+			}
+			int count = stageAll(mods, false);
+			NwLogger.UPDATER_LOGGER.info("Staged " + count + " of " + mods.size()
+					+ " files in the background, they get installed on the next start");
+		} catch (InterruptedException e) {
+			NwLogger.UPDATER_LOGGER.info("Background update interrupted");
+		} finally {
+			if (contentStore != null) {
+				contentStore.flush();
+			}
+		}
+	}
+
+	/**
+	 * downloads the given mods into the staging area
+	 *
+	 * @param prefetched true if the mods belong to a newer version of the modpack
+	 * @return the number of staged mods
+	 */
+	protected int stageAll(List<ModInfo> mods, boolean prefetched) throws InterruptedException {
+		int count = 0;
+		for (ModInfo mod : mods) {
+			if (stage(mod, prefetched)) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * downloads a single mod into the staging area
+	 *
+	 * @return true if the mod is staged
+	 */
+	private boolean stage(ModInfo mod, boolean prefetched) throws InterruptedException {
+		RepoMod remote = mod.getRemoteInfo();
+		if (staged.isStaged(remote.getFileName(), remote.md5)) {
+			return true;
+		}
+		File stagingFile = staged.getStagingFile(remote.getFileName()).getAbsoluteFile();
+		if (!IN_PROGRESS.add(stagingFile)) {
+			NwLogger.UPDATER_LOGGER.fine("Skipping " + remote.getFileName() + ", it is already being staged");
+			return false;
+		}
+		try {
+			//the other download might have finished in the meantime
+			return staged.isStaged(remote.getFileName(), remote.md5) || download(mod, stagingFile, prefetched);
+		} finally {
+			IN_PROGRESS.remove(stagingFile);
+		}
+	}
+
+	private boolean download(ModInfo mod, File stagingFile, boolean prefetched) throws InterruptedException {
+		RepoMod remote = mod.getRemoteInfo();
+		File parent = stagingFile.getParentFile();
+		if (!parent.isDirectory() && !parent.mkdirs()) {
+			NwLogger.UPDATER_LOGGER.warn("Could not create " + parent);
+			return false;
+		}
+		if (contentStore != null && contentStore.materialize(remote.md5, stagingFile)) {
+			NwLogger.UPDATER_LOGGER.fine("Staged " + remote.getFileName() + " from the content store");
+			return addToJournal(mod, prefetched);
+		}
+		File tempFile = new File(stagingFile.getPath() + ".tmp");
+		for (int attempt = 1; attempt <= MAX_ATTEMPTS; attempt++) {
+			DownloadResult result = DownloadHelper.downloadModWithHash(tempFile, mod, new ThrottlingListener(rateLimiter));
+			if (result.result == UpdateResult.Good && remote.md5.equalsIgnoreCase(result.md5)) {
+				if (!FileUtils.moveAtomically(tempFile, stagingFile)) {
+					NwLogger.UPDATER_LOGGER.warn("Could not move " + tempFile + " to " + stagingFile);
+					return false;
+				}
+				if (contentStore != null) {
+					contentStore.put(stagingFile, remote.md5);
+				}
+				return addToJournal(mod, prefetched);
+			}
+			if (result.result == UpdateResult.Good) {
+				NwLogger.UPDATER_LOGGER.warn("Background download of " + remote.getFileName() + " has a wrong md5");
+				DownloadHelper.deleteTempFile(tempFile);
+			}
+			//the partial file is kept, the next attempt resumes it
+			Thread.sleep(attempt * 5000L);
+		}
+		NwLogger.UPDATER_LOGGER.warn("Background download of " + remote.getFileName() + " failed, retrying on the next start");
+		return false;
+	}
+
+	private boolean addToJournal(ModInfo mod, boolean prefetched) {
+		RepoMod remote = mod.getRemoteInfo();
+		try {
+			staged.add(remote.getFileName(), remote.md5, remote.version, mod.shouldBeTracked(), prefetched);
+			return true;
+		} catch (IOException e) {
+			NwLogger.UPDATER_LOGGER.error("Could not add " + remote.getFileName() + " to the staged files", e);
+			return false;
+		}
+	}
+
+	/**
+	 * limits the download rate, the download blocks in the progress callbacks
+	 */
+	private static class ThrottlingListener implements IDownloadProgressListener {
+
+		private final RateLimiter rateLimiter;
+
+		/**
+		 * last reported progress (bytes)
+		 */
+		private int last;
+
+		private ThrottlingListener(RateLimiter rateLimiter) {
+			this.rateLimiter = rateLimiter;
+		}
+
+		@Override
+		public boolean isCancelled() {
+			return false;
+		}
+
+		@Override
+		public boolean isPaused() {
+			return false;
+		}
+
+		@Override
+		public void setDownloadProgress(String msg) {
+		}
+
+		@Override
+		public void setDownloadProgress(int progress) {
+			if (progress > last) {
+				rateLimiter.acquire(progress - last);
+			}
+			last = progress;
+		}
+
+		@Override
+		public void setDownloadProgress(String msg, int progress) {
+			setDownloadProgress(progress);
+		}
+
+		@Override
+		public void setDownloadProgress(String msg, int progress, int maxProgress) {
+			//progress of a resumed download starts at the already downloaded bytes
+			last = progress;
+		}
+	}
+}
@@ -0,0 +1,244 @@
+package common.nw.updater;
+
+import common.nw.core.modpack.ModInfo;
+import common.nw.core.utils.log.NwLogger;
+import common.nw.updater.gui.IProgressWatcher;
+
+import javax.swing.*;
+import java.awt.*;
+import java.io.File;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * combines the progress of concurrently running mod downloads
+ * <p>
+ * every download gets its own {@link IProgressWatcher} (see {@link #createWatcher(ModInfo)}),
+ * byte progress of all running downloads is summed up and forwarded to the parent watcher,
+ * overall progress is calculated from the number of finished downloads.
+ * Dialogs are forwarded to the parent one at a time.
+ *
+ * @author Nuklearwurst
+ */
+public class DownloadProgressTracker {
+
+	/**
+	 * minimum time between two download progress updates of the parent (in ms)
+	 */
+	private static final long UPDATE_INTERVAL = 50;
+
+	private final IProgressWatcher parent;
+
+	/**
+	 * number of mods that will be downloaded
+	 */
+	private final int modCount;
+
+	/**
+	 * progress bar -- value of one mod (first 10% is checking for update)
+	 */
+	private final float modValue;
+
+	/**
+	 * progress of the running downloads, {current, max}
+	 */
+	private final Map<TaskWatcher, long[]> running = new LinkedHashMap<>();
+
+	private int finished = 0;
+
+	private long lastUpdate = 0;
+
+	public DownloadProgressTracker(IProgressWatcher parent, int modCount) {
+		this.parent = parent;
+		this.modCount = modCount;
+		this.modValue = 90.0F / Math.max(1, modCount);
+	}
+
+	/**
+	 * creates the progress watcher used for the download of the given mod
+	 */
+	public IProgressWatcher createWatcher(ModInfo mod) {
+		return new TaskWatcher(mod);
+	}
+
+	/**
+	 * @return number of finished downloads
+	 */
+	public synchronized int getFinished() {
+		return finished;
+	}
+
+	/**
+	 * called when a download has finished (successfully or not)
+	 */
+	public synchronized void onFinished(IProgressWatcher watcher) {
+		running.remove(watcher);
+		finished++;
+		parent.setOverallProgress((int) (10.0F + finished * modValue));
+		updateParent(true);
+	}
+
+	private synchronized void setMax(TaskWatcher watcher, long max) {
+		long[] progress = getProgress(watcher);
+		progress[0] = 0;
+		progress[1] = Math.max(0, max);
+		updateParent(true);
+	}
+
+	private synchronized void setCurrent(TaskWatcher watcher, long current) {
+		getProgress(watcher)[0] = current;
+		updateParent(false);
+	}
+
+	private long[] getProgress(TaskWatcher watcher) {
+		long[] progress = running.get(watcher);
+		if (progress == null) {
+			progress = new long[2];
+			running.put(watcher, progress);
+		}
+		return progress;
+	}
+
+	/**
+	 * forwards the summed up download progress to the parent
+	 *
+	 * @param force ignore the update interval
+	 */
+	private void updateParent(boolean force) {
+		long time = System.currentTimeMillis();
+		if (!force && time - lastUpdate < UPDATE_INTERVAL) {
+			return;
+		}
+		lastUpdate = time;
+		long current = 0;
+		long max = 0;
+		for (long[] progress : running.values()) {
+			current += Math.min(progress[0], progress[1]);
+			max += progress[1];
+		}
+		//use kB to stay within the int range of the progress bar
+		parent.setDownloadProgress(String.format("Downloading %d file(s), %d of %d done", running.size(), finished, modCount),
+				(int) (current / 1024), (int) Math.max(1, max / 1024));
+	}
+
+	/**
+	 * progress watcher of a single download
+	 */
+	private class TaskWatcher implements IProgressWatcher {
+
+		private final ModInfo mod;
+
+		private TaskWatcher(ModInfo mod) {
+			this.mod = mod;
+		}
+
+		@Override
+		public boolean isCancelled() {
+			return parent.isCancelled();
+		}
+
+		@Override
+		public boolean isPaused() {
+			return parent.isPaused();
+		}
+
+		@Override
+		public void setDownloadProgress(String msg) {
+			//status messages of single downloads would flicker, only log them
+			NwLogger.UPDATER_LOGGER.fine("[" + mod.name + "] " + msg);
+		}
+
+		@Override
+		public void setDownloadProgress(int progress) {
+			setCurrent(this, progress);
+		}
+
+		@Override
+		public void setDownloadProgress(String msg, int progress) {
+			setDownloadProgress(msg);
+			setDownloadProgress(progress);
+		}
+
+		@Override
+		public void setDownloadProgress(String msg, int progress, int maxProgress) {
+			setDownloadProgress(msg);
+			setMax(this, maxProgress);
+			setCurrent(this, progress);
+		}
+
+		@Override
+		public void setOverallProgress(int progress) {
+			//overall progress is handled by the tracker
+		}
+
+		@Override
+		public void setOverallProgress(String msg, int progress) {
+			//overall progress is handled by the tracker
+		}
+
+		@Override
+		public boolean quitToLauncher() {
+			return parent.quitToLauncher();
+		}
+
+		@Override
+		public int showErrorDialog(String title, String message) {
+			synchronized (parent) {
+				return parent.showErrorDialog(title, message);
+			}
+		}
+
+		@Override
+		public int showConfirmDialog(String message, String title, int optionType, int messageType) {
+			synchronized (parent) {
+				return parent.showConfirmDialog(message, title, optionType, messageType);
+			}
+		}
+
+		@Override
+		public void showMessageDialog(String message, String title, int messageType) {
+			synchronized (parent) {
+				parent.showMessageDialog(message, title, messageType);
+			}
+		}
+
+		@Override
+		public String showInputDialog(String message) {
+			synchronized (parent) {
+				return parent.showInputDialog(message);
+			}
+		}
+
+		@Override
+		public int showOptionDialog(String msg, String title, int optionType, int messageType, Icon icon, String[] options, String defaultOption) {
+			synchronized (parent) {
+				return parent.showOptionDialog(msg, title, optionType, messageType, icon, options, defaultOption);
+			}
+		}
+
+		@Override
+		public boolean hasGui() {
+			return parent.hasGui();
+		}
+
+		@Override
+		public Component getGui() {
+			return parent.getGui();
+		}
+
+		@Override
+		public File selectFile(String directory, int mode, String title) {
+			synchronized (parent) {
+				return parent.selectFile(directory, mode, title);
+			}
+		}
+
+		@Override
+		public void show() {
+		}
+
+		@Override
+		public void close() {
+		}
+	}
+}
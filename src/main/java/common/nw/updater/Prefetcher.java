@@ -0,0 +1,125 @@
+package common.nw.updater;
+
+import com.google.common.util.concurrent.RateLimiter;
+import common.nw.core.modpack.ModInfo;
+import common.nw.core.modpack.ModpackJson;
+import common.nw.core.modpack.RepoMod;
+import common.nw.core.modpack.RepoModpack;
+import common.nw.core.utils.ContentStore;
+import common.nw.core.utils.ManifestCache;
+import common.nw.core.utils.log.NwLogger;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * checks the remote modpack.json periodically while the game is running and stages new or changed files,
+ * so the next update only has to rename them
+ * <p>
+ * the manifest is requested conditionally, files are only written to the staging area and never to the game
+ * directory (the running game might have them open).
+ *
+ * @author Nuklearwurst
+ */
+public class Prefetcher extends BackgroundStager {
+
+	private final String url;
+	private final long interval;
+
+	/**
+	 * md5 by file name of the files known to be current
+	 */
+	private final Map<String, String> current = new HashMap<>();
+
+	/**
+	 * md5 of the last checked manifest
+	 */
+	private String lastManifest;
+
+	/**
+	 * @param staged       staging area of the game directory
+	 * @param url          url of the modpack.json
+	 * @param files        files of the modpack version that is running
+	 * @param contentStore content store, may be null
+	 * @param startDelay   time (in ms) to wait before the first check, so the game can load first
+	 * @param interval     time (in ms) between two checks
+	 * @param rateLimiter  limits the download rate (permits are bytes), may be shared with other background downloads
+	 */
+	public Prefetcher(StagedUpdates staged, String url, List<RepoMod> files, ContentStore contentStore,
+	                  long startDelay, long interval, RateLimiter rateLimiter) {
+		super("Prefetch Thread", staged, Collections.emptyList(), contentStore, startDelay, rateLimiter);
+		this.url = url;
+		this.interval = interval;
+		if (files != null) {
+			for (RepoMod file : files) {
+				current.put(file.getFileName(), file.md5);
+			}
+		}
+	}
+
+	@Override
+	public void run() {
+		try {
+			if (startDelay > 0) {
+				Thread.sleep(startDelay);
+			}
+			while (!isInterrupted()) {
+				check();
+				Thread.sleep(interval);
+			}
+		} catch (InterruptedException e) {
+			NwLogger.UPDATER_LOGGER.info("Prefetching interrupted");
+		}
+	}
+
+	/**
+	 * checks the manifest once and stages the files that changed
+	 *
+	 * @return the number of staged files
+	 */
+	public int check() throws InterruptedException {
+		RepoModpack next;
+		ManifestCache.Manifest manifest;
+		try {
+			manifest = ManifestCache.getDefault().get(url, 0, null);
+			if (manifest.md5 != null && manifest.md5.equals(lastManifest)) {
+				return 0;
+			}
+			next = ModpackJson.readRepoModpack(manifest.file, null);
+		} catch (IOException | RuntimeException e) {
+			NwLogger.UPDATER_LOGGER.warn("Could not check " + url + " for updates: " + e);
+			return 0;
+		}
+		if (next == null || next.files == null) {
+			return 0;
+		}
+		next.resolveMirrors();
+		List<ModInfo> changed = new ArrayList<>();
+		for (RepoMod file : next.files) {
+			if (StagedUpdates.canStage(file) && !file.md5.equalsIgnoreCase(current.get(file.getFileName()))) {
+				changed.add(new ModInfo(file));
+			}
+		}
+		int count = 0;
+		if (!changed.isEmpty()) {
+			NwLogger.UPDATER_LOGGER.info("Remote modpack changed " + changed.size() + " files, prefetching them...");
+			try {
+				count = stageAll(changed, true);
+			} finally {
+				if (contentStore != null) {
+					contentStore.flush();
+				}
+			}
+			NwLogger.UPDATER_LOGGER.info("Prefetched " + count + " of " + changed.size() + " files");
+		}
+		if (count == changed.size()) {
+			//failed files are tried again on the next check
+			lastManifest = manifest.md5;
+		}
+		return count;
+	}
+}
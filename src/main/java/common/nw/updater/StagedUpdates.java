@@ -0,0 +1,280 @@
+package common.nw.updater;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import common.nw.core.modpack.LocalModpack;
+import common.nw.core.modpack.ModpackValues;
+import common.nw.core.modpack.RepoMod;
+import common.nw.core.utils.DownloadHelper;
+import common.nw.core.utils.FileUtils;
+import common.nw.core.utils.log.NwLogger;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+
+/**
+ * files downloaded in the background while the game is running, they get installed on the next start
+ * <p>
+ * staged files are stored in {@value #DIR_NAME} inside the game directory. A file is only listed in the journal
+ * ({@value #JOURNAL_FILE_NAME}) once it is complete and verified, partial downloads are resumed by the next run.
+ * <p>
+ * deferred files (of the current modpack version) are installed before the local files are read. Prefetched files
+ * (of a newer modpack version) are only installed if the next update needs them, see {@link #install}.
+ *
+ * @author Nuklearwurst
+ */
+public class StagedUpdates {
+
+	public static final String DIR_NAME = "modpack.staged";
+
+	private static final String JOURNAL_FILE_NAME = "staged.json";
+
+	private final File gameDir;
+	private final File dir;
+
+	public StagedUpdates(File gameDir) {
+		this.gameDir = gameDir;
+		this.dir = new File(gameDir, DIR_NAME);
+	}
+
+	/**
+	 * @return true if the given file can be staged (archives get extracted, files without md5 can not be verified)
+	 */
+	public static boolean canStage(RepoMod file) {
+		return file.md5 != null && file.getFileName() != null
+				&& !ModpackValues.Download.modExtractDownload.equals(file.downloadType)
+				&& !ModpackValues.Download.modUserDownload.equals(file.downloadType);
+	}
+
+	/**
+	 * @param fileName file name relative to the game directory
+	 * @return the file the given file gets staged in
+	 */
+	public File getStagingFile(String fileName) {
+		return new File(dir, fileName.replace("/", File.separator));
+	}
+
+	/**
+	 * @return true if the given file is already staged with the given md5
+	 */
+	public synchronized boolean isStaged(String fileName, String md5) {
+		for (Entry entry : readJournal()) {
+			if (entry.fileName.equals(toJournalName(fileName)) && entry.md5.equalsIgnoreCase(md5)) {
+				return getStagingFile(entry.fileName).isFile();
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * adds a completely downloaded and verified file to the journal
+	 *
+	 * @param fileName   file name relative to the game directory
+	 * @param md5        md5 of the staged file
+	 * @param version    version of the staged file
+	 * @param tracked    true if the version has to be stored in the local modpack
+	 * @param prefetched true if the file belongs to a newer version of the modpack
+	 */
+	public synchronized void add(String fileName, String md5, String version, boolean tracked, boolean prefetched) throws IOException {
+		List<Entry> entries = readJournal();
+		String name = toJournalName(fileName);
+		entries.removeIf(entry -> entry.fileName.equals(name));
+		Entry entry = new Entry();
+		entry.fileName = name;
+		entry.md5 = md5;
+		entry.version = version;
+		entry.tracked = tracked;
+		entry.prefetched = prefetched;
+		entries.add(entry);
+		writeJournal(entries);
+	}
+
+	/**
+	 * installs all deferred files into the game directory
+	 *
+	 * @param local local modpack, file list and tracked versions get updated
+	 * @return the number of installed files
+	 */
+	public synchronized int commit(LocalModpack local) {
+		List<Entry> entries = readJournal();
+		if (entries.isEmpty()) {
+			return 0;
+		}
+		int committed = 0;
+		int size = entries.size();
+		for (Iterator<Entry> iterator = entries.iterator(); iterator.hasNext(); ) {
+			Entry entry = iterator.next();
+			if (entry.prefetched) {
+				continue;
+			}
+			File staged = getStagingFile(entry.fileName);
+			File target = new File(gameDir, entry.fileName.replace("/", File.separator));
+			if (!staged.isFile() || !entry.md5.equalsIgnoreCase(DownloadHelper.getHash(staged))) {
+				NwLogger.UPDATER_LOGGER.warn("Staged file " + staged + " is damaged, discarding it");
+				if (staged.exists() && !staged.delete()) {
+					NwLogger.UPDATER_LOGGER.warn("Could not delete " + staged);
+				}
+				iterator.remove();
+				continue;
+			}
+			File parent = target.getParentFile();
+			if (!parent.isDirectory() && !parent.mkdirs()) {
+				NwLogger.UPDATER_LOGGER.warn("Could not create " + parent + ", keeping staged file " + staged);
+				continue;
+			}
+			if (!FileUtils.moveAtomically(staged, target)) {
+				//eg. the file is in use, try again next time
+				NwLogger.UPDATER_LOGGER.warn("Could not install staged file " + staged);
+				continue;
+			}
+			String systemName = entry.fileName.replace("/", File.separator);
+			if (local.files == null) {
+				local.files = new ArrayList<>();
+			}
+			if (!local.files.contains(systemName)) {
+				local.files.add(systemName);
+			}
+			if (entry.tracked) {
+				if (local.trackedFileVersions == null) {
+					local.trackedFileVersions = new HashMap<>();
+				}
+				local.trackedFileVersions.put(systemName, entry.version);
+			}
+			iterator.remove();
+			committed++;
+		}
+		if (entries.size() != size) {
+			try {
+				writeJournal(entries);
+			} catch (IOException e) {
+				NwLogger.UPDATER_LOGGER.error("Could not update " + JOURNAL_FILE_NAME, e);
+			}
+			NwLogger.UPDATER_LOGGER.info("Installed " + committed + " files downloaded in the background");
+		}
+		return committed;
+	}
+
+	/**
+	 * installs a staged file with a local rename instead of downloading it
+	 *
+	 * @param fileName file name relative to the game directory
+	 * @param md5      expected md5
+	 * @param target   file to replace
+	 * @return true if a matching staged file was installed
+	 */
+	public synchronized boolean install(String fileName, String md5, File target) {
+		if (md5 == null) {
+			return false;
+		}
+		List<Entry> entries = readJournal();
+		String name = toJournalName(fileName);
+		for (Iterator<Entry> iterator = entries.iterator(); iterator.hasNext(); ) {
+			Entry entry = iterator.next();
+			if (!entry.fileName.equals(name) || !entry.md5.equalsIgnoreCase(md5)) {
+				continue;
+			}
+			File staged = getStagingFile(entry.fileName);
+			boolean installed = staged.isFile() && md5.equalsIgnoreCase(DownloadHelper.getHash(staged))
+					&& (target.getParentFile().isDirectory() || target.getParentFile().mkdirs())
+					&& FileUtils.moveAtomically(staged, target);
+			if (!installed) {
+				NwLogger.UPDATER_LOGGER.warn("Could not install staged file " + staged);
+				if (staged.exists() && !staged.delete()) {
+					NwLogger.UPDATER_LOGGER.warn("Could not delete " + staged);
+				}
+			}
+			iterator.remove();
+			try {
+				writeJournal(entries);
+			} catch (IOException e) {
+				NwLogger.UPDATER_LOGGER.error("Could not update " + JOURNAL_FILE_NAME, e);
+			}
+			return installed;
+		}
+		return false;
+	}
+
+	/**
+	 * deletes all prefetched files, called after an update as they are either installed or outdated
+	 */
+	public synchronized void discardPrefetched() {
+		List<Entry> entries = readJournal();
+		int size = entries.size();
+		for (Iterator<Entry> iterator = entries.iterator(); iterator.hasNext(); ) {
+			Entry entry = iterator.next();
+			if (entry.prefetched) {
+				File staged = getStagingFile(entry.fileName);
+				if (staged.exists() && !staged.delete()) {
+					NwLogger.UPDATER_LOGGER.warn("Could not delete " + staged);
+				}
+				iterator.remove();
+			}
+		}
+		if (entries.size() != size) {
+			try {
+				writeJournal(entries);
+			} catch (IOException e) {
+				NwLogger.UPDATER_LOGGER.error("Could not update " + JOURNAL_FILE_NAME, e);
+			}
+			NwLogger.UPDATER_LOGGER.info("Discarded " + (size - entries.size()) + " unused prefetched files");
+		}
+	}
+
+	private List<Entry> readJournal() {
+		File file = new File(dir, JOURNAL_FILE_NAME);
+		if (file.exists()) {
+			try (Reader reader = new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8)) {
+				Journal journal = new Gson().fromJson(reader, Journal.class);
+				if (journal != null && journal.entries != null) {
+					List<Entry> entries = new ArrayList<>();
+					for (Entry entry : journal.entries) {
+						if (entry != null && entry.fileName != null && entry.md5 != null) {
+							entries.add(entry);
+						}
+					}
+					return entries;
+				}
+			} catch (IOException | JsonParseException e) {
+				NwLogger.UPDATER_LOGGER.warn("Error reading " + file + ", discarding staged files", e);
+			}
+		}
+		return new ArrayList<>();
+	}
+
+	private void writeJournal(List<Entry> entries) throws IOException {
+		File file = new File(dir, JOURNAL_FILE_NAME);
+		if (entries.isEmpty()) {
+			if (file.exists() && !file.delete()) {
+				throw new IOException("Could not delete " + file);
+			}
+			return;
+		}
+		if (!dir.isDirectory() && !dir.mkdirs()) {
+			throw new IOException("Could not create " + dir);
+		}
+		Journal journal = new Journal();
+		journal.entries = entries;
+		//staged files are trusted as complete and verified after a crash
+		FileUtils.writeJsonAtomically(journal, file, true);
+	}
+
+	private static String toJournalName(String fileName) {
+		return fileName.replace(File.separator, "/");
+	}
+
+	private static class Journal {
+		List<Entry> entries;
+	}
+
+	private static class Entry {
+		String fileName;
+		String md5;
+		String version;
+		boolean tracked;
+		boolean prefetched;
+	}
+}
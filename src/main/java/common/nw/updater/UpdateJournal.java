@@ -0,0 +1,197 @@
+package common.nw.updater;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import common.nw.core.modpack.LocalFileIndex;
+import common.nw.core.modpack.LocalModpack;
+import common.nw.core.utils.log.NwLogger;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+
+/**
+ * append-only journal of the files verified during an update, so an interrupted update does not have to check or
+ * download them again
+ * <p>
+ * every verified file is appended as one line of json. Lines are handed to the operating system immediately
+ * (surviving a crash of the updater), they are synced to disk in batches. The journal is replayed into the local
+ * modpack on the next start and deleted once modpack.json was saved.
+ *
+ * @author Nuklearwurst
+ */
+public class UpdateJournal implements Closeable {
+
+	public static final String FILE_NAME = "modpack.journal";
+
+	/**
+	 * maximum number of records that are not synced to disk
+	 */
+	private static final int SYNC_RECORDS = 32;
+
+	/**
+	 * maximum time (in ms) a record stays unsynced
+	 */
+	private static final long SYNC_INTERVAL = 1000;
+
+	private final File file;
+	private final Gson gson = new Gson();
+
+	private FileOutputStream out;
+	private Writer writer;
+	private int unsynced = 0;
+	private long lastSync;
+
+	public UpdateJournal(File gameDir) {
+		this.file = new File(gameDir, FILE_NAME);
+	}
+
+	/**
+	 * applies the records of an interrupted update to the local modpack
+	 *
+	 * @param local     local modpack, file list and tracked versions get updated
+	 * @param fileIndex index the verified hashes are added to (if the files did not change since), may be null
+	 * @return number of replayed records
+	 */
+	public synchronized int replay(LocalModpack local, LocalFileIndex fileIndex) {
+		if (!file.exists()) {
+			return 0;
+		}
+		int count = 0;
+		try (BufferedReader reader = new BufferedReader(new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8))) {
+			String line;
+			while ((line = reader.readLine()) != null) {
+				Record record;
+				try {
+					record = gson.fromJson(line, Record.class);
+				} catch (JsonParseException e) {
+					//the last line might be incomplete
+					NwLogger.UPDATER_LOGGER.fine("Skipping invalid journal record: " + line);
+					continue;
+				}
+				if (record == null || record.fileName == null) {
+					continue;
+				}
+				String fileName = record.fileName.replace("/", File.separator);
+				if (local.files == null) {
+					local.files = new ArrayList<>();
+				}
+				if (!local.files.contains(fileName)) {
+					local.files.add(fileName);
+				}
+				if (record.tracked) {
+					if (local.trackedFileVersions == null) {
+						local.trackedFileVersions = new HashMap<>();
+					}
+					local.trackedFileVersions.put(fileName, record.version);
+				}
+				if (fileIndex != null && record.md5 != null) {
+					fileIndex.putHash(new File(file.getParentFile(), fileName), record.md5, record.size, record.lastModified);
+				}
+				count++;
+			}
+		} catch (IOException e) {
+			NwLogger.UPDATER_LOGGER.warn("Error reading " + file, e);
+		}
+		if (count > 0) {
+			NwLogger.UPDATER_LOGGER.info("Resuming interrupted update, " + count + " files were already verified");
+		}
+		return count;
+	}
+
+	/**
+	 * appends a verified file to the journal, failures are only logged
+	 *
+	 * @param fileName name of the file relative to the game directory
+	 * @param md5      verified md5 of the file
+	 * @param version  version of the file
+	 * @param tracked  true if the version has to be stored in the local modpack
+	 */
+	public synchronized void record(String fileName, String md5, String version, boolean tracked) {
+		Record record = new Record();
+		record.fileName = fileName.replace(File.separator, "/");
+		record.md5 = md5;
+		record.version = version;
+		record.tracked = tracked;
+		File target = new File(file.getParentFile(), fileName);
+		record.size = target.length();
+		record.lastModified = target.lastModified();
+		try {
+			if (writer == null) {
+				boolean torn = endsWithIncompleteRecord();
+				out = new FileOutputStream(file, true);
+				writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+				lastSync = System.currentTimeMillis();
+				if (torn) {
+					//do not append to a record that was interrupted by a crash
+					writer.write('\n');
+				}
+			}
+			writer.write(gson.toJson(record));
+			writer.write('\n');
+			writer.flush();
+			unsynced++;
+			if (unsynced >= SYNC_RECORDS || System.currentTimeMillis() - lastSync >= SYNC_INTERVAL) {
+				sync();
+			}
+		} catch (IOException e) {
+			NwLogger.UPDATER_LOGGER.warn("Error writing " + file, e);
+		}
+	}
+
+	/**
+	 * syncs and closes the journal, it is kept until {@link #delete()} gets called
+	 */
+	@Override
+	public synchronized void close() {
+		if (writer == null) {
+			return;
+		}
+		try {
+			sync();
+			writer.close();
+		} catch (IOException e) {
+			NwLogger.UPDATER_LOGGER.warn("Error closing " + file, e);
+		}
+		writer = null;
+		out = null;
+	}
+
+	/**
+	 * deletes the journal, called after its records were saved to modpack.json
+	 */
+	public synchronized void delete() {
+		close();
+		if (file.exists() && !file.delete()) {
+			NwLogger.UPDATER_LOGGER.warn("Could not delete " + file);
+		}
+	}
+
+	private boolean endsWithIncompleteRecord() throws IOException {
+		if (!file.exists() || file.length() == 0) {
+			return false;
+		}
+		try (RandomAccessFile in = new RandomAccessFile(file, "r")) {
+			in.seek(in.length() - 1);
+			return in.read() != '\n';
+		}
+	}
+
+	private void sync() throws IOException {
+		if (unsynced > 0) {
+			out.getFD().sync();
+			unsynced = 0;
+		}
+		lastSync = System.currentTimeMillis();
+	}
+
+	private static class Record {
+		String fileName;
+		String md5;
+		String version;
+		boolean tracked;
+		long size;
+		long lastModified;
+	}
+}
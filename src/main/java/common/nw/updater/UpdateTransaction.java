@@ -0,0 +1,308 @@
+package common.nw.updater;
+
+import com.google.gson.Gson;
+import com.google.gson.JsonParseException;
+import common.nw.core.utils.FileUtils;
+import common.nw.core.utils.log.NwLogger;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * complete update prepared in a staging directory while the old game (eg. a server) keeps running
+ * <p>
+ * the staging directory ({@value #DIR_NAME}) contains every new or changed file (including modpack.json) at its
+ * relative path. Once it is complete the journal ({@value #JOURNAL_FILE_NAME}) lists these files and the files
+ * to delete. The next start commits the update with a batch of renames, replaced and deleted files are moved to
+ * {@value #BACKUP_DIR_NAME} first. The journal is updated before the first rename, so an interrupted commit is
+ * rolled forward on the next start (or back, if a rename fails).
+ *
+ * @author Nuklearwurst
+ */
+public class UpdateTransaction {
+
+	public static final String DIR_NAME = "modpack.next";
+
+	public static final String BACKUP_DIR_NAME = "modpack.backup";
+
+	private static final String JOURNAL_FILE_NAME = "transaction.json";
+
+	private static final String STATE_PREPARED = "prepared";
+
+	private static final String STATE_COMMITTING = "committing";
+
+	private final File gameDir;
+	private final File dir;
+	private final File backupDir;
+
+	public UpdateTransaction(File gameDir) {
+		this.gameDir = gameDir;
+		this.dir = new File(gameDir, DIR_NAME);
+		this.backupDir = new File(gameDir, BACKUP_DIR_NAME);
+	}
+
+	/**
+	 * @return the directory the next state is built in
+	 */
+	public File getStagingDir() {
+		return dir;
+	}
+
+	/**
+	 * deletes a previously staged update and creates an empty staging directory
+	 * <p>
+	 * backups left over from an earlier commit are deleted as well, otherwise they would be taken for backups of
+	 * this update
+	 */
+	public void begin() throws IOException {
+		Journal journal = readJournal();
+		if (journal != null && STATE_COMMITTING.equals(journal.state)) {
+			throw new IOException("An update is being committed in " + gameDir);
+		}
+		if (!FileUtils.deleteRecursively(backupDir)) {
+			throw new IOException("Could not clear " + backupDir);
+		}
+		if (!FileUtils.deleteRecursively(dir) || !dir.mkdirs()) {
+			throw new IOException("Could not clear " + dir);
+		}
+	}
+
+	/**
+	 * marks the staged update as complete, it gets committed on the next start
+	 *
+	 * @param deletions files to delete (relative to the game directory)
+	 */
+	public void prepare(List<String> deletions) throws IOException {
+		List<Path> staged;
+		try (Stream<Path> stream = Files.walk(dir.toPath())) {
+			staged = stream.filter(Files::isRegularFile).collect(Collectors.toList());
+		}
+		Journal journal = new Journal();
+		journal.state = STATE_PREPARED;
+		journal.files = new ArrayList<>();
+		for (Path path : staged) {
+			String fileName = dir.toPath().relativize(path).toString().replace(File.separator, "/");
+			if (!fileName.equals(JOURNAL_FILE_NAME)) {
+				Entry entry = new Entry();
+				entry.fileName = fileName;
+				entry.size = Files.size(path);
+				journal.files.add(entry);
+			}
+		}
+		journal.deletions = new ArrayList<>();
+		for (String deletion : deletions) {
+			journal.deletions.add(deletion.replace(File.separator, "/"));
+		}
+		writeJournal(journal);
+		NwLogger.UPDATER_LOGGER.info("Staged update with " + journal.files.size() + " files and "
+				+ journal.deletions.size() + " deletions, it gets applied on the next start");
+	}
+
+	/**
+	 * @return true if a complete update is staged
+	 */
+	public boolean isPrepared() {
+		Journal journal = readJournal();
+		return journal != null && STATE_PREPARED.equals(journal.state);
+	}
+
+	/**
+	 * applies a staged update, an interrupted commit is completed
+	 *
+	 * @return true if an update was applied
+	 */
+	public boolean commit() {
+		Journal journal = readJournal();
+		if (journal == null) {
+			if (backupDir.exists() && !FileUtils.deleteRecursively(backupDir)) {
+				//left over from a commit that was interrupted after it was complete
+				NwLogger.UPDATER_LOGGER.warn("Could not delete " + backupDir);
+			}
+			return false;
+		}
+		if (STATE_PREPARED.equals(journal.state)) {
+			for (Entry entry : journal.files) {
+				File staged = getStagedFile(entry.fileName);
+				if (!staged.isFile() || staged.length() != entry.size) {
+					NwLogger.UPDATER_LOGGER.warn("Staged update is incomplete (" + staged + "), discarding it");
+					discard();
+					return false;
+				}
+			}
+			//nothing was moved yet, so existing backups belong to an earlier update and would not get replaced
+			if (!FileUtils.deleteRecursively(backupDir)) {
+				NwLogger.UPDATER_LOGGER.error("Could not delete " + backupDir + ", not committing the staged update");
+				return false;
+			}
+			journal.state = STATE_COMMITTING;
+			try {
+				writeJournal(journal);
+			} catch (IOException e) {
+				NwLogger.UPDATER_LOGGER.error("Could not start committing the staged update", e);
+				return false;
+			}
+		} else if (!STATE_COMMITTING.equals(journal.state)) {
+			NwLogger.UPDATER_LOGGER.warn("Unknown state of the staged update: " + journal.state + ", discarding it");
+			discard();
+			return false;
+		} else {
+			NwLogger.UPDATER_LOGGER.info("Completing an interrupted commit of the staged update...");
+		}
+
+		long start = System.currentTimeMillis();
+		if (!rollForward(journal)) {
+			NwLogger.UPDATER_LOGGER.error("Could not commit the staged update, rolling back...");
+			rollBack(journal);
+			journal.state = STATE_PREPARED;
+			try {
+				writeJournal(journal);
+			} catch (IOException e) {
+				NwLogger.UPDATER_LOGGER.error("Could not update " + JOURNAL_FILE_NAME, e);
+			}
+			return false;
+		}
+		//the journal is the commit point, backups are only deleted afterwards
+		discard();
+		if (!FileUtils.deleteRecursively(backupDir)) {
+			NwLogger.UPDATER_LOGGER.warn("Could not delete " + backupDir);
+		}
+		NwLogger.UPDATER_LOGGER.info("Committed staged update (" + journal.files.size() + " files, "
+				+ journal.deletions.size() + " deletions) in " + (System.currentTimeMillis() - start) + "ms");
+		return true;
+	}
+
+	/**
+	 * deletes the staged update
+	 */
+	public void discard() {
+		File journal = new File(dir, JOURNAL_FILE_NAME);
+		if (journal.exists() && !journal.delete()) {
+			NwLogger.UPDATER_LOGGER.warn("Could not delete " + journal);
+			return;
+		}
+		if (!FileUtils.deleteRecursively(dir)) {
+			NwLogger.UPDATER_LOGGER.warn("Could not delete " + dir);
+		}
+	}
+
+	/**
+	 * performs all renames that are not done yet, a file is done when its staged copy is gone
+	 */
+	private boolean rollForward(Journal journal) {
+		for (String deletion : journal.deletions) {
+			File target = getTargetFile(deletion);
+			if (target.exists() && !moveToBackup(deletion, target)) {
+				return false;
+			}
+		}
+		for (Entry entry : journal.files) {
+			File staged = getStagedFile(entry.fileName);
+			if (!staged.exists()) {
+				continue;
+			}
+			File target = getTargetFile(entry.fileName);
+			File backup = getBackupFile(entry.fileName);
+			if (target.exists() && !backup.exists() && !moveToBackup(entry.fileName, target)) {
+				return false;
+			}
+			File parent = target.getParentFile();
+			if (!parent.isDirectory() && !parent.mkdirs()) {
+				NwLogger.UPDATER_LOGGER.error("Could not create " + parent);
+				return false;
+			}
+			if (!FileUtils.moveAtomically(staged, target)) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * undoes all renames, the staged update can be committed again
+	 */
+	private void rollBack(Journal journal) {
+		for (Entry entry : journal.files) {
+			File staged = getStagedFile(entry.fileName);
+			File target = getTargetFile(entry.fileName);
+			if (!staged.exists() && target.exists()) {
+				File parent = staged.getParentFile();
+				if (!parent.isDirectory() && !parent.mkdirs() || !FileUtils.moveAtomically(target, staged)) {
+					NwLogger.UPDATER_LOGGER.error("Could not roll back " + target);
+				}
+			}
+			restoreBackup(entry.fileName);
+		}
+		for (String deletion : journal.deletions) {
+			restoreBackup(deletion);
+		}
+	}
+
+	private boolean moveToBackup(String fileName, File target) {
+		File backup = getBackupFile(fileName);
+		File parent = backup.getParentFile();
+		if (!parent.isDirectory() && !parent.mkdirs()) {
+			NwLogger.UPDATER_LOGGER.error("Could not create " + parent);
+			return false;
+		}
+		return FileUtils.moveAtomically(target, backup);
+	}
+
+	private void restoreBackup(String fileName) {
+		File backup = getBackupFile(fileName);
+		if (backup.exists() && !FileUtils.moveAtomically(backup, getTargetFile(fileName))) {
+			NwLogger.UPDATER_LOGGER.error("Could not restore " + backup);
+		}
+	}
+
+	private File getStagedFile(String fileName) {
+		return new File(dir, fileName.replace("/", File.separator));
+	}
+
+	private File getTargetFile(String fileName) {
+		return new File(gameDir, fileName.replace("/", File.separator));
+	}
+
+	private File getBackupFile(String fileName) {
+		return new File(backupDir, fileName.replace("/", File.separator));
+	}
+
+	private Journal readJournal() {
+		File file = new File(dir, JOURNAL_FILE_NAME);
+		if (!file.exists()) {
+			return null;
+		}
+		try (Reader reader = new InputStreamReader(new FileInputStream(file), StandardCharsets.UTF_8)) {
+			Journal journal = new Gson().fromJson(reader, Journal.class);
+			if (journal != null && journal.files != null && journal.deletions != null) {
+				return journal;
+			}
+			NwLogger.UPDATER_LOGGER.warn("Invalid " + file);
+		} catch (IOException | JsonParseException e) {
+			NwLogger.UPDATER_LOGGER.warn("Error reading " + file, e);
+		}
+		return null;
+	}
+
+	private void writeJournal(Journal journal) throws IOException {
+		File file = new File(dir, JOURNAL_FILE_NAME);
+		//the journal has to be on disk before any file is renamed
+		FileUtils.writeJsonAtomically(journal, file, true);
+	}
+
+	private static class Journal {
+		String state;
+		List<Entry> files;
+		List<String> deletions;
+	}
+
+	private static class Entry {
+		String fileName;
+		long size;
+	}
+}
@@ -1,13 +1,20 @@
 package common.nw.updater;
 
-import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
+import com.google.common.util.concurrent.RateLimiter;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
 import common.nw.core.modpack.*;
+import common.nw.core.utils.ContentStore;
 import common.nw.core.utils.DownloadHelper;
+import common.nw.core.utils.HostConnectionLimiter;
+import common.nw.core.utils.HttpClient;
+import common.nw.core.utils.ManifestCache;
+import common.nw.core.utils.MirrorServer;
+import common.nw.core.utils.MirrorStats;
 import common.nw.core.utils.UpdateResult;
 import common.nw.core.utils.Utils;
 import common.nw.core.utils.log.NwLogger;
 import common.nw.installer.Installer;
+import common.nw.installer.TaskGraph;
 import common.nw.updater.gui.IProgressWatcher;
 import joptsimple.ArgumentAcceptingOptionSpec;
 import joptsimple.OptionParser;
@@ -16,17 +23,46 @@ import joptsimple.OptionSet;
 import javax.swing.*;
 import java.awt.*;
 import java.io.File;
-import java.io.FileReader;
-import java.io.FileWriter;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 public class Updater extends Thread {
 
 	private static final int FLAG_SERVER = 1;
 
+	/**
+	 * default number of concurrent mod downloads
+	 */
+	private static final int DEFAULT_DOWNLOAD_THREADS = 6;
+
+	/**
+	 * default number of concurrent connections to a single host
+	 */
+	private static final int DEFAULT_CONNECTIONS_PER_HOST = 4;
+
+	/**
+	 * default number of threads reading local mod files
+	 */
+	private static final int DEFAULT_SCAN_THREADS = 4;
+
+	/**
+	 * default maximum download rate (in KiB/s) of the background downloads
+	 */
+	private static final int DEFAULT_BACKGROUND_RATE = 512;
+
+	/**
+	 * time (in ms) the background downloads wait for the game to load
+	 */
+	private static final long BACKGROUND_START_DELAY = 30000;
+
 	/**
 	 * arguments
 	 */
@@ -50,6 +86,91 @@ public class Updater extends Thread {
 	 */
 	private int flags = 0;
 
+	/**
+	 * number of mods that get downloaded concurrently
+	 */
+	private int downloadThreads = DEFAULT_DOWNLOAD_THREADS;
+
+	/**
+	 * maximum number of concurrent downloads from the same host
+	 */
+	private int connectionsPerHost = DEFAULT_CONNECTIONS_PER_HOST;
+
+	/**
+	 * number of threads reading local mod files
+	 */
+	private int scanThreads = DEFAULT_SCAN_THREADS;
+
+	/**
+	 * time (in ms) in which a cached modpack.json is used without checking for changes
+	 */
+	private long manifestTtl = 0;
+
+	/**
+	 * maximum size (in MiB) of the content store shared by all game directories, 0 disables the store
+	 */
+	private int contentStoreSize = ContentStore.DEFAULT_MAX_SIZE;
+
+	/**
+	 * store used to reuse files downloaded for other game directories, created on first use
+	 */
+	private ContentStore contentStore;
+
+	/**
+	 * url of a mirror in the local network (see {@link MirrorServer}), null if no mirror is used
+	 */
+	private String mirrorUrl;
+
+	/**
+	 * limits the parallel connections to a single host during the mod downloads
+	 */
+	private HostConnectionLimiter hostLimiter;
+
+	/**
+	 * download deferrable files in the background after the game started
+	 */
+	private boolean deferUpdates = false;
+
+	/**
+	 * maximum download rate (in KiB/s) of the background downloads
+	 */
+	private int backgroundRate = DEFAULT_BACKGROUND_RATE;
+
+	/**
+	 * deferrable mods that need an update, downloaded by the {@link BackgroundStager}
+	 */
+	private final List<ModInfo> deferredMods = new ArrayList<>();
+
+	/**
+	 * time (in ms) between two checks for a new modpack version while the game is running, 0 disables prefetching
+	 */
+	private long prefetchInterval = 0;
+
+	/**
+	 * staging area of background downloads
+	 */
+	private StagedUpdates stagedUpdates;
+
+	/**
+	 * journal of the files verified during this update, null when staging an update
+	 */
+	private UpdateJournal journal;
+
+	/**
+	 * build the next state in a staging directory instead of updating the game directory, see {@link UpdateTransaction}
+	 */
+	private boolean stageUpdate = false;
+
+	/**
+	 * update staged while the game was running, or built by this run if {@link #stageUpdate} is set
+	 */
+	private UpdateTransaction transaction;
+
+	/**
+	 * files deleted when the staged update gets committed
+	 */
+	private final List<String> stagedDeletions = Collections.synchronizedList(new ArrayList<>());
+
 	/**
 	 * should we quit to launcher (--> error)
 	 */
@@ -73,9 +194,9 @@ public class Updater extends Thread {
 	/**
 	 * error messages
 	 */
-	private List<String> warnings = new ArrayList<>();
+	private final List<String> warnings = Collections.synchronizedList(new ArrayList<>());
 
-	private boolean errored = false;
+	private volatile boolean errored = false;
 
 	/**
 	 * local modpack data
@@ -87,15 +208,26 @@ public class Updater extends Thread {
 	 */
 	private RepoModpack remote;
 
+	/**
+	 * remote modpack data, downloaded while the local files are read
+	 */
+	private Future<RepoModpack> remotePrefetch;
+
 	/**
 	 * mod list --> all
 	 */
 	private List<ModInfo> mods;
 
+	/**
+	 * cached hashes and mod.info data of the local files
+	 */
+	private LocalFileIndex fileIndex;
+
 	public Updater(List<String> args, File gameDir, String versionName) {
 		this.args = args;
 		this.gameDir = gameDir;
 		this.versionName = versionName;
+		this.transaction = new UpdateTransaction(gameDir);
 
 		setDaemon(true);
 		setName("Modpack Update Thread");
@@ -137,16 +269,45 @@ public class Updater extends Thread {
 			addErrorMessage("Error:  " + ex.getMessage() + "\nData: " + ex.toString());
 			errored = true;
 		}
+		if (journal != null) {
+			journal.close();
+		}
+		HttpClient.getShared().logMetrics(NwLogger.UPDATER_LOGGER);
 		onUpdateFinished();
+		if (!retry && !quitToLauncher && !stageUpdate && !listener.isCancelled()) {
+			startBackgroundDownloads();
+		}
 		finished = true;
 	}
 
+	/**
+	 * starts downloading deferred files and prefetching the next modpack version, both share the download rate
+	 */
+	private void startBackgroundDownloads() {
+		boolean prefetch = prefetchInterval > 0 && remote != null && local.url != null;
+		if (deferredMods.isEmpty() && !prefetch) {
+			return;
+		}
+		RateLimiter rateLimiter = RateLimiter.create(backgroundRate * 1024.0);
+		if (!deferredMods.isEmpty()) {
+			new BackgroundStager(stagedUpdates, deferredMods, contentStore, BACKGROUND_START_DELAY, rateLimiter).start();
+		}
+		if (prefetch) {
+			new Prefetcher(stagedUpdates, local.url, remote.files, contentStore, BACKGROUND_START_DELAY + prefetchInterval,
+					prefetchInterval, rateLimiter).start();
+		}
+	}
+
 	/**
 	 * performs the update
 	 */
 	private void doUpdate() {
 		//init vars
+		HttpClient.getShared().resetMetrics();
 		finished = false;
+		remotePrefetch = null;
+		deferredMods.clear();
+		stagedDeletions.clear();
 		retry = false;
 		quitToLauncher = false;
 		//listener
@@ -163,8 +324,21 @@ public class Updater extends Thread {
 			return;
 		}
 
+		// install files downloaded in the background during the last run
+		stagedUpdates = new StagedUpdates(gameDir);
+		if (!stageUpdate) {
+			stagedUpdates.commit(local);
+			// files verified by an interrupted update
+			fileIndex = LocalFileIndex.load(gameDir);
+			journal = new UpdateJournal(gameDir);
+			journal.replay(local, fileIndex);
+		}
+
 		waitForUi();
 
+		// download modpack.json while reading local files
+		startRemotePrefetch();
+
 		// read local mod info
 		listener.setOverallProgress(2);
 		if (!readLocalData()) {
@@ -191,6 +365,18 @@ public class Updater extends Thread {
 			return;
 		}
 
+		// everything written in stage mode (including modpack.json) goes into the staging directory
+		if (stageUpdate) {
+			try {
+				transaction.begin();
+			} catch (IOException e) {
+				NwLogger.UPDATER_LOGGER.error("Could not create " + UpdateTransaction.DIR_NAME, e);
+				addErrorMessage("Could not stage the update: " + e.getMessage());
+				errored = true;
+				return;
+			}
+		}
+
 		// update mc
 		if ((flags & FLAG_SERVER) == 0) {
 			listener.setOverallProgress("Checking for minecraft update", 6);
@@ -246,12 +432,20 @@ public class Updater extends Thread {
 		if (!updateMods()) {
 			addErrorMessage("Error updating mods!");
 			errored = true;
+		} else {
+			//prefetched files that were not needed belong to an outdated modpack version
+			stagedUpdates.discardPrefetched();
 		}
 		waitForUi();
 		if (listener.isCancelled()) {
 			return;
 		}
 
+		if (stageUpdate) {
+			finishStaging();
+			return;
+		}
+
 		// save
 		if (!save()) {
 			int ans = listener.showConfirmDialog(
@@ -293,6 +487,16 @@ public class Updater extends Thread {
 	 * <li>modpackrepo [string] - url of the modpack</li>
 	 * <li>modpackversion [string] - version of the modpack</li>
 	 * <li>serverMode [true/false] - whether to run in serverMode and skip launcher profile updates</li>
+	 * <li>downloadThreads [int] - number of mods that get downloaded concurrently</li>
+	 * <li>connectionsPerHost [int] - maximum number of concurrent downloads from the same host</li>
+	 * <li>scanThreads [int] - number of threads reading local mod files</li>
+	 * <li>manifestTtl [int] - time (in seconds) in which the last downloaded modpack.json is used without checking for changes</li>
+	 * <li>contentStoreSize [int] - maximum size (in MiB) of the download cache shared by all game directories, 0 disables it</li>
+	 * <li>mirror [url] - mirror in the local network that is tried before the download urls</li>
+	 * <li>deferUpdates [true/false] - download deferrable files in the background and install them on the next start</li>
+	 * <li>backgroundRate [int] - maximum download rate (in KiB/s) of the background downloads</li>
+	 * <li>stageUpdate [true/false] - download the update into a staging directory while the game (eg. a server) keeps running, it is applied on the next start</li>
+	 * <li>prefetchInterval [int] - time (in minutes) between checks for a new modpack version while the game is running, 0 disables prefetching</li>
 	 * </ul>
 	 */
 	private LocalModpack parseCommandLineModpack() {
@@ -309,6 +513,26 @@ public class Updater extends Thread {
 					.withRequiredArg().ofType(String.class);
 			ArgumentAcceptingOptionSpec<Boolean> serverOption = optionParser
 					.accepts("serverMode").withOptionalArg().ofType(Boolean.class).defaultsTo(true);
+			ArgumentAcceptingOptionSpec<Integer> downloadThreadsOption = optionParser
+					.accepts("downloadThreads").withRequiredArg().ofType(Integer.class);
+			ArgumentAcceptingOptionSpec<Integer> connectionsPerHostOption = optionParser
+					.accepts("connectionsPerHost").withRequiredArg().ofType(Integer.class);
+			ArgumentAcceptingOptionSpec<Integer> scanThreadsOption = optionParser
+					.accepts("scanThreads").withRequiredArg().ofType(Integer.class);
+			ArgumentAcceptingOptionSpec<Integer> manifestTtlOption = optionParser
+					.accepts("manifestTtl").withRequiredArg().ofType(Integer.class);
+			ArgumentAcceptingOptionSpec<Integer> contentStoreSizeOption = optionParser
+					.accepts("contentStoreSize").withRequiredArg().ofType(Integer.class);
+			ArgumentAcceptingOptionSpec<String> mirrorOption = optionParser
+					.accepts("mirror").withRequiredArg().ofType(String.class);
+			ArgumentAcceptingOptionSpec<Boolean> deferUpdatesOption = optionParser
+					.accepts("deferUpdates").withOptionalArg().ofType(Boolean.class).defaultsTo(true);
+			ArgumentAcceptingOptionSpec<Integer> backgroundRateOption = optionParser
+					.accepts("backgroundRate").withRequiredArg().ofType(Integer.class);
+			ArgumentAcceptingOptionSpec<Boolean> stageUpdateOption = optionParser
+					.accepts("stageUpdate").withOptionalArg().ofType(Boolean.class).defaultsTo(true);
+			ArgumentAcceptingOptionSpec<Integer> prefetchIntervalOption = optionParser
+					.accepts("prefetchInterval").withRequiredArg().ofType(Integer.class);
 
 			optionParser.allowsUnrecognizedOptions();
 			OptionSet options = optionParser.parse(args.toArray(new String[args.size()]));
@@ -334,6 +558,38 @@ public class Updater extends Thread {
 				}
 			}
 
+			if (options.has(downloadThreadsOption)) {
+				downloadThreads = Math.max(1, downloadThreadsOption.value(options));
+			}
+			if (options.has(connectionsPerHostOption)) {
+				connectionsPerHost = Math.max(1, connectionsPerHostOption.value(options));
+			}
+			if (options.has(scanThreadsOption)) {
+				scanThreads = Math.max(1, scanThreadsOption.value(options));
+			}
+			if (options.has(manifestTtlOption)) {
+				manifestTtl = Math.max(0, manifestTtlOption.value(options)) * 1000L;
+			}
+			if (options.has(contentStoreSizeOption)) {
+				contentStoreSize = Math.max(0, contentStoreSizeOption.value(options));
+			}
+			if (options.has(mirrorOption)) {
+				mirrorUrl = mirrorOption.value(options);
+				NwLogger.UPDATER_LOGGER.info("Using mirror " + mirrorUrl);
+			}
+			if (options.has(deferUpdatesOption)) {
+				deferUpdates = deferUpdatesOption.value(options);
+			}
+			if (options.has(backgroundRateOption)) {
+				backgroundRate = Math.max(1, backgroundRateOption.value(options));
+			}
+			if (options.has(stageUpdateOption)) {
+				stageUpdate = stageUpdateOption.value(options);
+			}
+			if (options.has(prefetchIntervalOption)) {
+				prefetchInterval = Math.max(0, prefetchIntervalOption.value(options)) * 60000L;
+			}
+
 			///////////////////
 			// Parse modpack //
 			///////////////////
@@ -356,17 +612,21 @@ public class Updater extends Thread {
 	 * commandline
 	 */
 	private boolean readLocalModpack() {
+		LocalModpack commandLine = parseCommandLineModpack();
+		if (!stageUpdate) {
+			//apply an update staged while the game was running, this replaces modpack.json
+			transaction.commit();
+		}
 		File modpackJson = new File(gameDir, "modpack.json");
 		local = null;
 		if (modpackJson.exists()) {
 			NwLogger.UPDATER_LOGGER.info("modpack.json found, parsing...");
 			try {
-				local = new Gson().fromJson(new FileReader(modpackJson), LocalModpack.class);
+				local = ModpackJson.readLocalModpack(modpackJson);
 			} catch (Exception e) {
 				NwLogger.UPDATER_LOGGER.severe("Error parsing modpack.json, try to use commandline modpack", e);
 			}
 		}
-		LocalModpack commandLine = parseCommandLineModpack();
 		if (local == null) {
 			local = commandLine;
 			NwLogger.UPDATER_LOGGER.info("Using commandlineModpack!");
@@ -438,6 +698,9 @@ public class Updater extends Thread {
 		if (mods == null) {
 			mods = new ArrayList<>();
 		}
+		if (fileIndex == null) {
+			fileIndex = LocalFileIndex.load(gameDir);
+		}
 		// no mods found
 		//continue updating
 		if (local.files == null) {
@@ -445,35 +708,83 @@ public class Updater extends Thread {
 			return true;
 		}
 		listener.setDownloadProgress("Checking Local files...", 0, local.files.size());
+		//files are read concurrently, the mod list keeps the order of local.files
+		ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(scanThreads, local.files.size())),
+				new ThreadFactoryBuilder().setDaemon(true).setNameFormat("Local Scan Thread %d").build());
 		try {
-			for (int i = 0; i < local.files.size(); i++) {
-				listener.setDownloadProgress(i);
-				ModInfo info = new ModInfo(local.files.get(i));
-				info.loadInfo(gameDir); // load info
-				//update tracked version information
-				if (info.version != null && local.trackedFileVersions != null && local.trackedFileVersions.containsKey(info.getFileNameSystem())) {
-					info.version = local.trackedFileVersions.get(info.getFileNameSystem());
-				}
-				mods.add(info);
+			List<Future<ModInfo>> results = new ArrayList<>(local.files.size());
+			for (final String fileName : local.files) {
+				results.add(executor.submit(() -> readLocalMod(fileName)));
 			}
-		} catch (Exception e) {
-			NwLogger.UPDATER_LOGGER.warning("error reading local info!");
-			e.printStackTrace();
+			for (int i = 0; i < results.size(); i++) {
+				mods.add(results.get(i).get());
+				listener.setDownloadProgress(i + 1);
+			}
+		} catch (ExecutionException e) {
+			NwLogger.UPDATER_LOGGER.error("error reading local info!", e.getCause());
+			return false;
+		} catch (InterruptedException e) {
+			NwLogger.UPDATER_LOGGER.warning("Interrupted while reading local info!");
+			Thread.currentThread().interrupt();
 			return false;
+		} finally {
+			executor.shutdownNow();
 		}
 		return true;
 	}
 
+	/**
+	 * reads the data of a single local mod
+	 *
+	 * @param fileName file name relative to the game directory
+	 */
+	private ModInfo readLocalMod(String fileName) {
+		ModInfo info = new ModInfo(fileName);
+		info.setFileIndex(fileIndex);
+		info.loadInfo(gameDir); // load info
+		//update tracked version information
+		if (info.version != null && local.trackedFileVersions != null && local.trackedFileVersions.containsKey(info.getFileNameSystem())) {
+			info.version = local.trackedFileVersions.get(info.getFileNameSystem());
+		}
+		return info;
+	}
+
+	/**
+	 * starts downloading and parsing the remote modpack.json in the background
+	 *
+	 * @see #readRemoteData()
+	 */
+	private void startRemotePrefetch() {
+		final String url = local.url;
+		if (url == null) {
+			return;
+		}
+		ExecutorService executor = Executors.newSingleThreadExecutor(
+				new ThreadFactoryBuilder().setDaemon(true).setNameFormat("Modpack Download Thread").build());
+		remotePrefetch = executor.submit(() -> downloadRemoteModpack(url, null));
+		executor.shutdown();
+	}
+
 	/**
 	 * downloads remote modpack.json information
 	 */
 	private boolean readRemoteData() {
 		try {
-			String json = DownloadHelper.getString(local.url, listener);
-			listener.setOverallProgress(4);
-			listener.setDownloadProgress("Parsing...");
-			remote = new Gson().fromJson(json, RepoModpack.class);
+			if (remotePrefetch != null) {
+				//started before reading the local files
+				listener.setDownloadProgress("Downloading modpack.json...");
+				try {
+					remote = remotePrefetch.get();
+				} finally {
+					remotePrefetch = null;
+				}
+				listener.setOverallProgress(4);
+			} else {
+				remote = downloadRemoteModpack(local.url, listener);
+				listener.setOverallProgress(4);
+			}
 			listener.setOverallProgress(5);
+			remote.resolveMirrors();
 			if (local.name == null) {
 				local.name = remote.modpackName;
 			}
@@ -491,7 +802,7 @@ public class Updater extends Thread {
 				}
 			}
 		} catch (Exception e) {
-			NwLogger.UPDATER_LOGGER.error("Error downloading!", e);
+			NwLogger.UPDATER_LOGGER.error("Error downloading!", e instanceof ExecutionException ? e.getCause() : e);
 			addErrorMessage("error downloading modpack.json from: " + local.url);
 			errored = true;
 			return false;
@@ -499,6 +810,19 @@ public class Updater extends Thread {
 		return true;
 	}
 
+	/**
+	 * downloads and parses the remote modpack.json, a cached copy is used if it did not change
+	 *
+	 * @param watcher progress listener, may be null
+	 */
+	private RepoModpack downloadRemoteModpack(String url, IProgressWatcher watcher) throws IOException {
+		ManifestCache.Manifest manifest = ManifestCache.getDefault().get(url, manifestTtl, watcher);
+		if (manifest.unchanged) {
+			NwLogger.UPDATER_LOGGER.info("Remote modpack.json did not change since the last download.");
+		}
+		return ModpackJson.readRepoModpack(manifest.file, watcher);
+	}
+
 	/**
 	 * checks for minecraft or library update
 	 */
@@ -524,22 +848,7 @@ public class Updater extends Thread {
 	 */
 	@SuppressWarnings("SameReturnValue")
 	private boolean addRemoteInformation() {
-		for (RepoMod remoteMod : remote.files) {
-			// updating entries
-			boolean missing = true;
-			for (ModInfo mod : mods) {
-				if (mod.equals(remoteMod)) {
-					mod.setRemoteInfo(remoteMod);
-					missing = false;
-					break;
-				}
-			}
-			// adding missing entries (only if we need that mod, if mods are added manually we don't remove them)
-			if (missing && Utils.doFlagCombine(remoteMod.fileType, flags)) {
-				ModInfo info = new ModInfo(remoteMod);
-				mods.add(info);
-			}
-		}
+		ModIndex.addRemoteInformation(mods, remote.files, flags);
 		return true;
 	}
 
@@ -572,32 +881,25 @@ public class Updater extends Thread {
 
 			Installer installer = new Installer(remote, versionName, mcDir, local.url, false, true);
 
-			listener.setDownloadProgress("Creating directories...", 10);
-			if (!installer.createDirs()) {
-				addErrorMessage("Error when creating dirs.");
-				errored = true;
-				return false;
-			}
-			listener.setDownloadProgress("Creating version .json...", 20);
-			if (!installer.createJson()) {
-				addErrorMessage("Error when creating version.json file.");
-				errored = true;
-				return false;
-			}
-			listener.setDownloadProgress("Writing version .json...", 40);
-			if (!installer.writeJson()) {
-				addErrorMessage("Error when creating version.json file.");
-				errored = true;
-				return false;
-			}
-			listener.setDownloadProgress("Creating jar...", 50);
-			if (!installer.createJar(listener.hasGui(), listener.getGui())) {
-				addErrorMessage("Error when creating version.jar file.");
-				errored = true;
-				return false;
-			}
-			listener.setDownloadProgress("Updating updater...", 80);
-			if (!installer.downloadLibraries()) {
+			listener.setDownloadProgress("Installing version .json and .jar...", 10);
+			//independent steps run concurrently, see Installer#createTaskGraph
+			TaskGraph graph = installer.createTaskGraph(listener.hasGui(), listener.getGui());
+			if (!graph.run(Installer.STEP_THREADS)) {
+				if (!graph.getTask(Installer.STEP_DIRS).isSucceeded()) {
+					addErrorMessage("Error when creating dirs.");
+					errored = true;
+					return false;
+				}
+				if (!graph.getTask(Installer.STEP_JSON).isSucceeded() || !graph.getTask(Installer.STEP_WRITE_JSON).isSucceeded()) {
+					addErrorMessage("Error when creating version.json file.");
+					errored = true;
+					return false;
+				}
+				if (!graph.getTask(Installer.STEP_JAR).isSucceeded()) {
+					addErrorMessage("Error when creating version.jar file.");
+					errored = true;
+					return false;
+				}
 				addErrorMessage("Error when downloading updater.\nRun the installer manually if you experience problems");
 				errored = true;
 				//do not return as error is not critical
@@ -662,6 +964,13 @@ public class Updater extends Thread {
 		if (modsToDelete.size() > 0) {
 			for (ModInfo mod : modsToDelete) {
 				File fileToDelete = new File(gameDir, mod.getFileNameSystem());
+				if (stageUpdate) {
+					//the old files are still in use
+					if (fileToDelete.exists()) {
+						stagedDeletions.add(mod.getFileNameSystem());
+					}
+					continue;
+				}
 				if (fileToDelete.exists()) {
 					if (!fileToDelete.delete()) {
 						success = false;
@@ -676,90 +985,226 @@ public class Updater extends Thread {
 
 	/**
 	 * downloads all mods that need an update
+	 * <p>
+	 * mods are downloaded concurrently, using {@link #downloadThreads} threads and at most
+	 * {@link #connectionsPerHost} connections to the same host
 	 */
 	private boolean updateMods() {
 		//collect mods that need updating
 		List<ModInfo> modsToUpdate = new ArrayList<>();
 		for (ModInfo mod : mods) {
 			if (mod.needUpdate()) {
-				modsToUpdate.add(mod);
+				if (installStaged(mod)) {
+					continue;
+				}
+				if (isDeferred(mod)) {
+					deferredMods.add(mod);
+				} else {
+					modsToUpdate.add(mod);
+				}
 			}
 		}
 		NwLogger.UPDATER_LOGGER.info("Found " + modsToUpdate.size() + " files to Update!");
+		if (!deferredMods.isEmpty()) {
+			NwLogger.UPDATER_LOGGER.info("Deferring " + deferredMods.size() + " files to the background!");
+			if (contentStore == null && contentStoreSize > 0) {
+				contentStore = ContentStore.createDefault(contentStoreSize);
+			}
+		}
 
 		if (modsToUpdate.size() < 1) {
 			listener.setOverallProgress("All mods up to date", 100);
 			listener.setDownloadProgress("", 2, 2);
 			return true;
 		}
-		// number of the current mod
-		int modNumber = 0;
-		// progress bar -- value of one mod (first 10% is checking for update)
-		float modValue = 90.0F / modsToUpdate.size();
-
-		for (ModInfo mod : modsToUpdate) {
-
-			//cancel if needed
-			waitForUi();
-			if (listener.isCancelled()) {
-				return true;
-			}
-
-			NwLogger.UPDATER_LOGGER.info(String.format("Starting update for %s mod %s [%s] to version [%s] from %s",
-					mod.isMissing() ? "MISSING" : "OUTDATED", mod.name, mod.version,
-					mod.getRemoteInfo().version,
-					mod.getRemoteInfo().downloadUrl));
 
-			modNumber++;
-			//fallback to default downloadtype
-			if (mod.getRemoteInfo().downloadType == null) {
-				mod.getRemoteInfo().downloadType = ModpackValues.Download.modDirectDownload;
-			}
-			switch (mod.getRemoteInfo().downloadType) {
-				case ModpackValues.Download.modDirectDownload:
-					if (!performDirectModDownload(mod, modNumber, modValue)) {
-						addErrorMessage("Failed downloading Mod: " + mod);
-						return false;
-					}
-					break;
-				case ModpackValues.Download.modExtractDownload:
-					if (!performDirectModDownload(mod, modNumber, modValue)) {
-						addErrorMessage("Failed downloading Mod: " + mod);
+		if (contentStore == null && contentStoreSize > 0) {
+			contentStore = ContentStore.createDefault(contentStoreSize);
+		}
+		final DownloadProgressTracker tracker = new DownloadProgressTracker(listener, modsToUpdate.size());
+		hostLimiter = new HostConnectionLimiter(connectionsPerHost);
+		//set when a download failed, remaining downloads get skipped
+		final AtomicBoolean failed = new AtomicBoolean(false);
+
+		ExecutorService executor = Executors.newFixedThreadPool(Math.min(downloadThreads, modsToUpdate.size()),
+				new ThreadFactoryBuilder().setDaemon(true).setNameFormat("Mod Download Thread %d").build());
+		List<Future<Boolean>> results = new ArrayList<>(modsToUpdate.size());
+		for (int i = 0; i < modsToUpdate.size(); i++) {
+			final ModInfo mod = modsToUpdate.get(i);
+			final int modNumber = i + 1;
+			results.add(executor.submit(() -> {
+				//cancel if needed
+				waitForUi();
+				if (listener.isCancelled() || failed.get()) {
+					return true;
+				}
+				final IProgressWatcher watcher = tracker.createWatcher(mod);
+				try {
+					if (!updateMod(mod, modNumber, watcher)) {
+						failed.set(true);
 						return false;
 					}
-					if (!DownloadHelper.extractArchive(mod.file, mod.file.getParentFile())) {
-						addErrorMessage("Failed extracting Archive from: " + mod.file + ", to: " + mod.file.getParentFile());
-						return false;
+					return true;
+				} finally {
+					tracker.onFinished(watcher);
+				}
+			}));
+		}
+		executor.shutdown();
+
+		boolean success = true;
+		try {
+			for (Future<Boolean> result : results) {
+				try {
+					if (!result.get()) {
+						success = false;
 					}
-					//keep zip file for version tracking
-					break;
-				case ModpackValues.Download.modUserDownload:
-					addErrorMessage("Unsupported downloadType: " + mod.getRemoteInfo().downloadType + " \nConsider updating your updater.jar to the newest version!");
+				} catch (ExecutionException e) {
+					NwLogger.UPDATER_LOGGER.error("Error downloading mod!", e.getCause());
+					addErrorMessage("Error downloading mod: " + e.getCause());
 					errored = true;
+					success = false;
+				} catch (InterruptedException e) {
+					NwLogger.UPDATER_LOGGER.error("Interrupted while waiting for downloads!", e);
+					executor.shutdownNow();
 					return false;
-				default:
-					//defaulting to direct download
-					addErrorMessage("Unsupported downloadType: " + mod.getRemoteInfo().downloadType + " \nDefaulting to " + ModpackValues.Download.modDirectDownload + "\nConsider updating your updater.jar to the newest version!");
-					if (!performDirectModDownload(mod, modNumber, modValue)) {
-						addErrorMessage("Failed downloading Mod with unsupported downloadType: " + mod);
-						addErrorMessage("Try reinstalling the modpack, otherwise contact your modpack author!");
-						errored = true;
-						return false;
-					}
-					break;
+				}
+			}
+		} finally {
+			if (contentStore != null) {
+				//usage information is stored even if downloads failed
+				contentStore.flush();
 			}
+			MirrorStats.saveShared();
+		}
+		return success;
+	}
+
+	/**
+	 * installs a file prefetched during the last run
+	 *
+	 * @return true if the mod is up to date now
+	 */
+	private boolean installStaged(ModInfo mod) {
+		RepoMod remote = mod.getRemoteInfo();
+		File target = new File(getInstallDir(), mod.getFileNameSystem());
+		if (!StagedUpdates.canStage(remote) || !stagedUpdates.install(remote.getFileName(), remote.md5, target)) {
+			return false;
+		}
+		NwLogger.UPDATER_LOGGER.info("Installed prefetched file " + mod.getFileNameSystem() + "! Skipping Download...");
+		if (stageUpdate) {
+			stageLegacyFileDeletion(mod);
+		} else if (mod.file != null && mod.file.exists() && !mod.file.getAbsoluteFile().equals(target.getAbsoluteFile())) {
+			if (!mod.file.delete()) {
+				NwLogger.UPDATER_LOGGER.warning("Deleting legacy file failed.");
+			}
+		}
+		if (fileIndex != null) {
+			fileIndex.putHash(target, remote.md5);
+		}
+		mod.version = remote.version;
+		recordVerified(mod);
+		return true;
+	}
+
+	/**
+	 * records an updated mod in the journal, so an interrupted update does not check it again
+	 */
+	private void recordVerified(ModInfo mod) {
+		if (journal != null && mod.getRemoteInfo().md5 != null && !listener.isCancelled()) {
+			journal.record(mod.getFileNameSystem(), mod.getRemoteInfo().md5, mod.version, mod.shouldBeTracked());
+		}
+	}
+
+	/**
+	 * @return the directory files get downloaded to
+	 */
+	private File getInstallDir() {
+		return stageUpdate ? transaction.getStagingDir() : gameDir;
+	}
+
+	/**
+	 * deletes the old file of a renamed mod when the staged update gets committed
+	 */
+	private void stageLegacyFileDeletion(ModInfo mod) {
+		File target = new File(gameDir, mod.getFileNameSystem());
+		if (stageUpdate && mod.file != null && mod.file.exists() && !mod.file.getAbsoluteFile().equals(target.getAbsoluteFile())) {
+			stagedDeletions.add(gameDir.getAbsoluteFile().toPath().relativize(mod.file.getAbsoluteFile().toPath()).toString());
+		}
+	}
+
+	/**
+	 * @return true if the given mod should be downloaded in the background
+	 */
+	private boolean isDeferred(ModInfo mod) {
+		return !stageUpdate && deferUpdates && mod.getRemoteInfo().deferrable && StagedUpdates.canStage(mod.getRemoteInfo());
+	}
+
+	/**
+	 * downloads a single mod
+	 *
+	 * @param mod       the mod to update
+	 * @param modNumber number of the mod, used for progressbar information
+	 * @param watcher   progress watcher of this download
+	 * @return false if the update should be aborted
+	 */
+	private boolean updateMod(ModInfo mod, int modNumber, IProgressWatcher watcher) {
+		NwLogger.UPDATER_LOGGER.info(String.format("Starting update for %s mod %s [%s] to version [%s] from %s",
+				mod.isMissing() ? "MISSING" : "OUTDATED", mod.name, mod.version,
+				mod.getRemoteInfo().version,
+				mod.getRemoteInfo().downloadUrl));
+
+		//fallback to default downloadtype
+		if (mod.getRemoteInfo().downloadType == null) {
+			mod.getRemoteInfo().downloadType = ModpackValues.Download.modDirectDownload;
+		}
+		switch (mod.getRemoteInfo().downloadType) {
+			case ModpackValues.Download.modDirectDownload:
+			case ModpackValues.Download.modZipEntryDownload:
+				if (!performDirectModDownload(mod, modNumber, watcher)) {
+					addErrorMessage("Failed downloading Mod: " + mod);
+					return false;
+				}
+				break;
+			case ModpackValues.Download.modExtractDownload:
+				if (!performDirectModDownload(mod, modNumber, watcher)) {
+					addErrorMessage("Failed downloading Mod: " + mod);
+					return false;
+				}
+				File archive = new File(getInstallDir(), mod.getFileNameSystem());
+				if (!DownloadHelper.extractArchive(archive, archive.getParentFile())) {
+					addErrorMessage("Failed extracting Archive from: " + archive + ", to: " + archive.getParentFile());
+					return false;
+				}
+				recordVerified(mod);
+				//keep zip file for version tracking
+				break;
+			case ModpackValues.Download.modUserDownload:
+				addErrorMessage("Unsupported downloadType: " + mod.getRemoteInfo().downloadType + " \nConsider updating your updater.jar to the newest version!");
+				errored = true;
+				return false;
+			default:
+				//defaulting to direct download
+				addErrorMessage("Unsupported downloadType: " + mod.getRemoteInfo().downloadType + " \nDefaulting to " + ModpackValues.Download.modDirectDownload + "\nConsider updating your updater.jar to the newest version!");
+				if (!performDirectModDownload(mod, modNumber, watcher)) {
+					addErrorMessage("Failed downloading Mod with unsupported downloadType: " + mod);
+					addErrorMessage("Try reinstalling the modpack, otherwise contact your modpack author!");
+					errored = true;
+					return false;
+				}
+				break;
 		}
 		return true;
 	}
 
 	@SuppressWarnings("BooleanMethodIsAlwaysInverted")
-	private boolean performDirectModDownload(ModInfo mod, int modNumber, float modValue) {
+	private boolean performDirectModDownload(ModInfo mod, int modNumber, IProgressWatcher watcher) {
 		int attempts = 0;
 		boolean retry;
 		do {
 			//download mod
-			UpdateResult result = DownloadHelper.getMod(listener, mod,
-					modNumber, modValue, gameDir, false);
+			UpdateResult result = DownloadHelper.getMod(watcher, mod,
+					modNumber, 0, getInstallDir(), false, fileIndex, contentStore, mirrorUrl, hostLimiter);
 			//automatically try again if download failed (up to 4 times)
 			if (result != UpdateResult.Good) {
 				attempts++;
@@ -775,7 +1220,7 @@ public class Updater extends Thread {
 			//display dialog when download finally failed
 			//giving user the opportunity to retry the download
 			if ((result != UpdateResult.Good) && (!retry)) {
-				final int dialogResult = listener.showErrorDialog("Retry?", "Downloading mod \"" + mod.name + "\" version: \"" + mod.version + "\" failed!\nDo you want to retry?");
+				final int dialogResult = watcher.showErrorDialog("Retry?", "Downloading mod \"" + mod.name + "\" version: \"" + mod.version + "\" failed!\nDo you want to retry?");
 				switch (dialogResult) {
 					case JOptionPane.YES_OPTION:
 						retry = true;
@@ -799,11 +1244,37 @@ public class Updater extends Thread {
 				retry = false;
 				//updating local version information
 				mod.version = mod.getRemoteInfo().version;
+				stageLegacyFileDeletion(mod);
+				if (!ModpackValues.Download.modExtractDownload.equals(mod.getRemoteInfo().downloadType)) {
+					//archives are recorded once they are extracted
+					recordVerified(mod);
+				}
 			}
 		} while (retry);
 		return true;
 	}
 
+	/**
+	 * marks the staged update as complete, it is applied on the next start
+	 */
+	private void finishStaging() {
+		if (errored || !save()) {
+			addErrorMessage("The update could not be staged!");
+			errored = true;
+			transaction.discard();
+			return;
+		}
+		try {
+			transaction.prepare(new ArrayList<>(stagedDeletions));
+			listener.setOverallProgress("Update staged, it gets applied on the next start", 100);
+		} catch (IOException e) {
+			NwLogger.UPDATER_LOGGER.error("Could not prepare the staged update", e);
+			addErrorMessage("The update could not be staged!");
+			errored = true;
+			transaction.discard();
+		}
+	}
+
 	/**
 	 * saves data to modpack.json file
 	 */
@@ -823,16 +1294,25 @@ public class Updater extends Thread {
 				}
 			}
 		}
-		Gson gson = new GsonBuilder().setPrettyPrinting().create();
 		try {
-			FileWriter fileWriter = new FileWriter(new File(gameDir, "modpack.json"));
-			gson.toJson(local, fileWriter);
-			fileWriter.close();
+			ModpackJson.writeCompact(local, new File(getInstallDir(), "modpack.json"));
 		} catch (IOException ex) {
 			NwLogger.UPDATER_LOGGER.severe("Error writing modpack.json", ex);
 			addErrorMessage("Could not save modpack.json!");
 			return false;
 		}
+		if (fileIndex != null) {
+			//drop entries of files that are no longer managed
+			fileIndex.retain(local.files);
+			if (!fileIndex.save()) {
+				//not critical, the index gets rebuilt on the next start
+				NwLogger.UPDATER_LOGGER.warning("Could not save " + LocalFileIndex.FILE_NAME);
+			}
+		}
+		if (journal != null) {
+			//the verified files are stored in modpack.json now
+			journal.delete();
+		}
 		return true;
 	}
 
@@ -855,8 +1335,10 @@ public class Updater extends Thread {
 
 	private String getErrorMessageString() {
 		StringBuilder builder = new StringBuilder();
-		for (String s : warnings) {
-			builder.append(s).append("\n");
+		synchronized (warnings) {
+			for (String s : warnings) {
+				builder.append(s).append("\n");
+			}
 		}
 		return builder.toString();
 	}
@@ -0,0 +1,132 @@
+package common.nw.updater.launch;
+
+import com.google.gson.JsonParseException;
+import common.nw.core.modpack.LocalModpack;
+import common.nw.core.modpack.ModpackJson;
+import common.nw.core.utils.ContentStore;
+import common.nw.core.utils.DownloadHelper;
+import common.nw.core.utils.MirrorServer;
+import common.nw.core.utils.log.NwLogger;
+import joptsimple.ArgumentAcceptingOptionSpec;
+import joptsimple.OptionParser;
+import joptsimple.OptionSet;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * runs a mirror serving the content store of this machine to other updaters in the local network
+ * <p>
+ * other updaters use it by passing "--mirror http://&lt;host&gt;:&lt;port&gt;/"
+ *
+ * @author Nuklearwurst
+ */
+public class MirrorLaunch {
+
+	/**
+	 * default port of the mirror
+	 */
+	public static final int DEFAULT_PORT = 8765;
+
+	private static final int DEFAULT_THREADS = 16;
+
+	/**
+	 * Main entry point
+	 * <p>
+	 * Allowed arguments:
+	 * <ul>
+	 * <li>port [int] - port to listen on</li>
+	 * <li>bind [string] - address to listen on, all addresses by default</li>
+	 * <li>threads [int] - number of concurrently served requests</li>
+	 * <li>contentStoreSize [int] - maximum size (in MiB) of the content store</li>
+	 * <li>seed [dir] - adds the files of a directory (eg. a game directory) to the content store, can be repeated</li>
+	 * </ul>
+	 */
+	public static void main(String[] args) throws Exception {
+		OptionParser optionParser = new OptionParser();
+		ArgumentAcceptingOptionSpec<Integer> portOption = optionParser
+				.accepts("port").withRequiredArg().ofType(Integer.class).defaultsTo(DEFAULT_PORT);
+		ArgumentAcceptingOptionSpec<String> bindOption = optionParser
+				.accepts("bind").withRequiredArg().ofType(String.class);
+		ArgumentAcceptingOptionSpec<Integer> threadsOption = optionParser
+				.accepts("threads").withRequiredArg().ofType(Integer.class).defaultsTo(DEFAULT_THREADS);
+		ArgumentAcceptingOptionSpec<Integer> contentStoreSizeOption = optionParser
+				.accepts("contentStoreSize").withRequiredArg().ofType(Integer.class).defaultsTo(ContentStore.DEFAULT_MAX_SIZE);
+		ArgumentAcceptingOptionSpec<String> seedOption = optionParser
+				.accepts("seed").withRequiredArg().ofType(String.class);
+		optionParser.allowsUnrecognizedOptions();
+		OptionSet options = optionParser.parse(args);
+
+		ContentStore store = ContentStore.createDefault(Math.max(1, contentStoreSizeOption.value(options)));
+		for (String seed : seedOption.values(options)) {
+			seed(store, new File(seed));
+		}
+		store.flush();
+
+		InetSocketAddress address = options.has(bindOption)
+				? new InetSocketAddress(bindOption.value(options), portOption.value(options))
+				: new InetSocketAddress(portOption.value(options));
+		final MirrorServer server = new MirrorServer(store, address, Math.max(1, threadsOption.value(options)));
+		final CountDownLatch stopped = new CountDownLatch(1);
+		Runtime.getRuntime().addShutdownHook(new Thread(() -> {
+			server.close();
+			stopped.countDown();
+		}, "Mirror Shutdown"));
+		stopped.await();
+	}
+
+	/**
+	 * adds the files of the given directory to the store
+	 * <p>
+	 * only the files listed in the modpack.json of the directory are added. Directories without modpack.json
+	 * contribute their mods and archives ({@link ContentStore#isShareable(File)}), worlds, configs or logs
+	 * would only evict the mods from the store.
+	 */
+	public static void seed(ContentStore store, File dir) throws IOException {
+		List<File> files = getModpackFiles(dir);
+		if (files == null) {
+			try (Stream<Path> stream = Files.walk(dir.toPath())) {
+				files = stream.filter(Files::isRegularFile).map(Path::toFile)
+						.filter(ContentStore::isShareable).collect(Collectors.toList());
+			}
+		}
+		NwLogger.NW_LOGGER.info("Adding " + files.size() + " files of " + dir + " to the content store...");
+		files.parallelStream().forEach(file -> store.put(file, DownloadHelper.getHash(file)));
+	}
+
+	/**
+	 * @return the existing files listed in the modpack.json of the directory, null if there is no valid modpack.json
+	 */
+	private static List<File> getModpackFiles(File dir) {
+		File modpackFile = new File(dir, "modpack.json");
+		if (!modpackFile.isFile()) {
+			return null;
+		}
+		LocalModpack modpack;
+		try {
+			modpack = ModpackJson.readLocalModpack(modpackFile);
+		} catch (IOException | JsonParseException e) {
+			NwLogger.NW_LOGGER.warn("Error reading " + modpackFile + ", adding all mods of " + dir, e);
+			return null;
+		}
+		if (modpack == null || modpack.files == null) {
+			return null;
+		}
+		List<File> files = new ArrayList<>();
+		for (String fileName : modpack.files) {
+			File file = new File(dir, fileName.replace("/", File.separator));
+			if (file.isFile()) {
+				files.add(file);
+			}
+		}
+		return files;
+	}
+}
@@ -0,0 +1,227 @@
+package common.nw.core;
+
+import com.sun.net.httpserver.Headers;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * minimal http server on the loopback interface used by tests
+ * <p>
+ * supports range requests, ETags (including If-None-Match), slow responses and dropping connections in the middle of
+ * a response. Requests are handled concurrently.
+ */
+public class LocalHttpServer implements AutoCloseable {
+
+	private final HttpServer server;
+	private final ExecutorService executor = Executors.newCachedThreadPool();
+
+	private final Map<String, Resource> resources = new ConcurrentHashMap<>();
+
+	/**
+	 * request headers of all requests, in order
+	 */
+	private final List<Headers> requests = Collections.synchronizedList(new ArrayList<>());
+
+	private final AtomicInteger running = new AtomicInteger();
+	private final AtomicInteger maxRunning = new AtomicInteger();
+
+	public LocalHttpServer() throws IOException {
+		server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 0);
+		server.createContext("/", exchange -> {
+			maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+			try {
+				handle(exchange);
+			} finally {
+				running.decrementAndGet();
+			}
+		});
+		server.setExecutor(executor);
+		server.start();
+	}
+
+	/**
+	 * serves the given content at the given path
+	 *
+	 * @return the served resource, used to configure its behaviour
+	 */
+	public Resource serve(String path, byte[] content) {
+		Resource resource = new Resource(content);
+		resources.put(path, resource);
+		return resource;
+	}
+
+	/**
+	 * @return the url of the given path
+	 */
+	public String getUrl(String path) {
+		return "http://" + server.getAddress().getAddress().getHostAddress() + ":" + server.getAddress().getPort() + path;
+	}
+
+	public List<Headers> getRequests() {
+		synchronized (requests) {
+			return new ArrayList<>(requests);
+		}
+	}
+
+	/**
+	 * @return the maximum number of requests that were handled at the same time
+	 */
+	public int getMaxConcurrentRequests() {
+		return maxRunning.get();
+	}
+
+	@Override
+	public void close() {
+		server.stop(0);
+		executor.shutdownNow();
+	}
+
+	private void handle(HttpExchange exchange) throws IOException {
+		requests.add(exchange.getRequestHeaders());
+		Resource resource = resources.get(exchange.getRequestURI().getPath());
+		if (resource == null) {
+			exchange.sendResponseHeaders(404, -1);
+			exchange.close();
+			return;
+		}
+		resource.requests.incrementAndGet();
+		if ("HEAD".equals(exchange.getRequestMethod())) {
+			resource.headRequests.incrementAndGet();
+		}
+		if (resource.delay > 0) {
+			try {
+				Thread.sleep(resource.delay);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+		byte[] content = resource.content;
+		Headers responseHeaders = exchange.getResponseHeaders();
+		if (resource.eTag != null) {
+			responseHeaders.add("ETag", resource.eTag);
+			if (resource.eTag.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+				exchange.sendResponseHeaders(304, -1);
+				exchange.close();
+				return;
+			}
+		}
+		int start = 0;
+		int status = 200;
+		String range = exchange.getRequestHeaders().getFirst("Range");
+		String ifRange = exchange.getRequestHeaders().getFirst("If-Range");
+		if (resource.supportsRanges && range != null && range.startsWith("bytes=")
+				&& (ifRange == null || ifRange.equals(resource.eTag))) {
+			String[] parts = range.substring(6).split("-", -1);
+			int end;
+			if (parts[0].isEmpty()) {
+				//suffix range: the last bytes
+				start = Math.max(0, content.length - Integer.parseInt(parts[1]));
+				end = content.length - 1;
+			} else {
+				start = Integer.parseInt(parts[0]);
+				end = parts[1].isEmpty() ? content.length - 1 : Math.min(content.length - 1, Integer.parseInt(parts[1]));
+			}
+			if (start >= content.length) {
+				responseHeaders.add("Content-Range", "bytes */" + content.length);
+				exchange.sendResponseHeaders(416, -1);
+				exchange.close();
+				return;
+			}
+			responseHeaders.add("Content-Range", "bytes " + start + "-" + end + "/" + content.length);
+			content = java.util.Arrays.copyOfRange(content, start, end + 1);
+			status = 206;
+		}
+		if (resource.supportsRanges) {
+			responseHeaders.add("Accept-Ranges", "bytes");
+		}
+		if ("HEAD".equals(exchange.getRequestMethod())) {
+			responseHeaders.set("Content-Length", String.valueOf(content.length));
+			exchange.sendResponseHeaders(status, -1);
+			exchange.close();
+			return;
+		}
+		exchange.sendResponseHeaders(status, content.length);
+		OutputStream out = exchange.getResponseBody();
+		int disconnectAfter = resource.disconnectAfter.getAndSet(-1);
+		try {
+			if (disconnectAfter >= 0 && disconnectAfter < content.length) {
+				out.write(content, 0, disconnectAfter);
+				out.flush();
+				//closing the stream before all bytes were written drops the connection
+				out.close();
+				return;
+			}
+			out.write(content);
+		} finally {
+			exchange.close();
+		}
+	}
+
+	/**
+	 * a file served by the server
+	 */
+	public static class Resource {
+
+		private final byte[] content;
+		private volatile String eTag;
+		private volatile boolean supportsRanges = true;
+		private volatile long delay;
+		private final AtomicInteger disconnectAfter = new AtomicInteger(-1);
+		private final AtomicInteger requests = new AtomicInteger();
+		private final AtomicInteger headRequests = new AtomicInteger();
+
+		private Resource(byte[] content) {
+			this.content = content;
+		}
+
+		public Resource setETag(String eTag) {
+			this.eTag = eTag;
+			return this;
+		}
+
+		public Resource setSupportsRanges(boolean supportsRanges) {
+			this.supportsRanges = supportsRanges;
+			return this;
+		}
+
+		/**
+		 * delays every response by the given time (in ms)
+		 */
+		public Resource setDelay(long delay) {
+			this.delay = delay;
+			return this;
+		}
+
+		/**
+		 * drops the connection of the next request after the given number of bytes
+		 */
+		public Resource disconnectAfter(int bytes) {
+			disconnectAfter.set(bytes);
+			return this;
+		}
+
+		public int getRequestCount() {
+			return requests.get();
+		}
+
+		/**
+		 * @return number of HEAD requests, included in {@link #getRequestCount()}
+		 */
+		public int getHeadRequestCount() {
+			return headRequests.get();
+		}
+	}
+}
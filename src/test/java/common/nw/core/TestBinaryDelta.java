@@ -0,0 +1,112 @@
+package common.nw.core;
+
+import common.nw.core.utils.BinaryDelta;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Random;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * testclass for {@link common.nw.core.utils.BinaryDelta}
+ */
+public class TestBinaryDelta {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testRoundTrip() throws Exception {
+		Random random = new Random(1);
+		byte[] source = new byte[200000];
+		random.nextBytes(source);
+
+		ByteArrayOutputStream target = new ByteArrayOutputStream();
+		target.write(source, 0, 50000);
+		//inserted
+		byte[] inserted = new byte[1000];
+		random.nextBytes(inserted);
+		target.write(inserted);
+		//deleted 10000 bytes
+		target.write(source, 60000, 40000);
+		//modified
+		byte[] modified = new byte[500];
+		random.nextBytes(modified);
+		target.write(modified);
+		target.write(source, 100500, source.length - 100500);
+
+		byte[] patch = assertRoundTrip(source, target.toByteArray());
+		Assert.assertTrue("patch too large: " + patch.length, patch.length < 3000);
+	}
+
+	@Test
+	public void testJar() throws Exception {
+		Random random = new Random(2);
+		byte[][] classes = new byte[50][];
+		for (int i = 0; i < classes.length; i++) {
+			classes[i] = new byte[2000 + random.nextInt(2000)];
+			random.nextBytes(classes[i]);
+		}
+		byte[] source = createJar(classes);
+		classes[10] = new byte[3000];
+		random.nextBytes(classes[10]);
+		byte[] target = createJar(classes);
+
+		byte[] patch = assertRoundTrip(source, target);
+		Assert.assertTrue("patch too large: " + patch.length, patch.length < target.length / 10);
+	}
+
+	@Test
+	public void testEdgeCases() throws Exception {
+		assertRoundTrip(new byte[0], new byte[0]);
+		assertRoundTrip(new byte[0], "new file".getBytes());
+		assertRoundTrip("old file".getBytes(), new byte[0]);
+		assertRoundTrip("short".getBytes(), "shorter".getBytes());
+	}
+
+	@Test(expected = IOException.class)
+	public void testWrongSource() throws Exception {
+		byte[] source = new byte[10000];
+		new Random(3).nextBytes(source);
+		ByteArrayOutputStream patch = new ByteArrayOutputStream();
+		BinaryDelta.create(source, source, patch);
+
+		File other = folder.newFile("other.jar");
+		Files.write(other.toPath(), new byte[9999]);
+		BinaryDelta.apply(other, new ByteArrayInputStream(patch.toByteArray()), new ByteArrayOutputStream());
+	}
+
+	private byte[] assertRoundTrip(byte[] source, byte[] target) throws IOException {
+		ByteArrayOutputStream patch = new ByteArrayOutputStream();
+		BinaryDelta.create(source, target, patch);
+
+		File sourceFile = folder.newFile();
+		Files.write(sourceFile.toPath(), source);
+		ByteArrayOutputStream result = new ByteArrayOutputStream();
+		BinaryDelta.apply(sourceFile, new ByteArrayInputStream(patch.toByteArray()), result);
+		Assert.assertArrayEquals(target, result.toByteArray());
+		return patch.toByteArray();
+	}
+
+	private static byte[] createJar(byte[][] classes) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		try (ZipOutputStream zip = new ZipOutputStream(out)) {
+			for (int i = 0; i < classes.length; i++) {
+				ZipEntry entry = new ZipEntry("test/Class" + i + ".class");
+				entry.setTime(0);
+				zip.putNextEntry(entry);
+				zip.write(classes[i]);
+				zip.closeEntry();
+			}
+		}
+		return out.toByteArray();
+	}
+}
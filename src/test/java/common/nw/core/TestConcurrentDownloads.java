@@ -0,0 +1,257 @@
+package common.nw.core;
+
+import common.nw.core.modpack.ModInfo;
+import common.nw.core.modpack.ModpackJson;
+import common.nw.core.modpack.RepoMod;
+import common.nw.core.modpack.RepoModpack;
+import common.nw.core.utils.DownloadHelper;
+import common.nw.core.utils.Utils;
+import common.nw.updater.ConsoleListener;
+import common.nw.updater.DownloadProgressTracker;
+import common.nw.updater.Updater;
+import common.nw.updater.gui.IProgressWatcher;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import javax.swing.*;
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * testclass for the concurrent mod downloads of the {@link common.nw.updater.Updater}
+ * ({@link common.nw.core.utils.HostConnectionLimiter} and {@link common.nw.updater.DownloadProgressTracker})
+ */
+public class TestConcurrentDownloads {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private LocalHttpServer server;
+	private File gameDir;
+	private final List<LocalHttpServer.Resource> modResources = new ArrayList<>();
+	private final List<byte[]> modContents = new ArrayList<>();
+
+	@Before
+	public void setUp() throws Exception {
+		System.setProperty(Utils.CACHE_DIR_PROPERTY, folder.newFolder("cache").getPath());
+		server = new LocalHttpServer();
+		gameDir = folder.newFolder("game");
+	}
+
+	@After
+	public void tearDown() {
+		server.close();
+		System.clearProperty(Utils.CACHE_DIR_PROPERTY);
+	}
+
+	@Test
+	public void testConnectionsPerHost() throws Exception {
+		serveModpack(8, 200);
+		TestListener listener = new TestListener();
+		runUpdater(listener, 6, 2);
+
+		assertDownloaded(8);
+		//all mods are served by the same host
+		Assert.assertEquals(2, server.getMaxConcurrentRequests());
+		Assert.assertEquals(100, listener.overallProgress);
+	}
+
+	@Test
+	public void testAggregatedProgress() {
+		TestListener parent = new TestListener();
+		DownloadProgressTracker tracker = new DownloadProgressTracker(parent, 3);
+		ModInfo mod = new ModInfo("mods" + File.separator + "mod.jar");
+		IProgressWatcher first = tracker.createWatcher(mod);
+		IProgressWatcher second = tracker.createWatcher(mod);
+
+		first.setDownloadProgress("first", 5 * 1024, 10 * 1024);
+		second.setDownloadProgress("second", 4 * 1024, 20 * 1024);
+		//progress of both downloads is summed up (in kB)
+		Assert.assertEquals(5, parent.downloadProgress);
+		Assert.assertEquals(30, parent.maxDownloadProgress);
+		Assert.assertEquals("Downloading 2 file(s), 0 of 3 done", parent.downloadMessage);
+
+		tracker.onFinished(first);
+		Assert.assertEquals(4, parent.downloadProgress);
+		Assert.assertEquals(20, parent.maxDownloadProgress);
+		Assert.assertEquals(40, parent.overallProgress);
+		Assert.assertEquals(1, tracker.getFinished());
+
+		tracker.onFinished(second);
+		Assert.assertEquals(70, parent.overallProgress);
+		Assert.assertEquals("Downloading 0 file(s), 2 of 3 done", parent.downloadMessage);
+	}
+
+	@Test
+	public void testCancelStopsQueuedDownloads() throws Exception {
+		serveModpack(4, 0);
+		TestListener listener = new TestListener() {
+			@Override
+			public void setOverallProgress(int progress) {
+				super.setOverallProgress(progress);
+				//the tracker reports the first finished download
+				if (progress > 10) {
+					cancelled = true;
+				}
+			}
+		};
+		runUpdater(listener, 1, 1);
+
+		Assert.assertEquals(1, getModRequests());
+	}
+
+	@Test
+	public void testPauseStopsQueuedDownloads() throws Exception {
+		serveModpack(4, 0);
+		TestListener listener = new TestListener() {
+			private boolean pausedOnce = false;
+
+			@Override
+			public synchronized void setOverallProgress(int progress) {
+				super.setOverallProgress(progress);
+				if (progress > 10 && !pausedOnce) {
+					pausedOnce = true;
+					paused = true;
+				}
+			}
+		};
+		Updater updater = createUpdater(listener, 1, 1);
+		updater.start();
+		long start = System.currentTimeMillis();
+		while (!listener.paused && updater.isAlive() && System.currentTimeMillis() - start < 30000) {
+			Thread.sleep(10);
+		}
+		Assert.assertTrue(listener.paused);
+		Thread.sleep(500);
+		Assert.assertEquals(1, getModRequests());
+
+		listener.paused = false;
+		updater.join(30000);
+		Assert.assertFalse(updater.isAlive());
+		assertDownloaded(4);
+	}
+
+	private void serveModpack(int count, long delay) throws Exception {
+		RepoModpack modpack = new RepoModpack();
+		modpack.modpackName = "test";
+		modpack.files = new ArrayList<>();
+		Random random = new Random(count);
+		for (int i = 0; i < count; i++) {
+			byte[] content = new byte[20000];
+			random.nextBytes(content);
+			File file = folder.newFile("mod" + i + ".jar");
+			Files.write(file.toPath(), content);
+			modContents.add(content);
+			modResources.add(server.serve("/mods/mod" + i + ".jar", content).setDelay(delay));
+
+			RepoMod mod = new RepoMod();
+			mod.name = "mod" + i;
+			mod.version = "1.0";
+			mod.md5 = DownloadHelper.getHash(file);
+			mod.downloadUrl = server.getUrl("/mods/mod" + i + ".jar");
+			mod.setFileName("mods/mod" + i + ".jar");
+			modpack.files.add(mod);
+		}
+		File manifest = folder.newFile("modpack.json");
+		ModpackJson.write(modpack, manifest);
+		server.serve("/modpack.json", Files.readAllBytes(manifest.toPath()));
+	}
+
+	private Updater createUpdater(IProgressWatcher listener, int downloadThreads, int connectionsPerHost) {
+		Updater updater = new Updater(Arrays.asList("--modpack", "test", "--modpackrepo", server.getUrl("/modpack.json"),
+				"--modpackversion", "1.0", "--serverMode", "true", "--contentStoreSize", "0",
+				"--downloadThreads", String.valueOf(downloadThreads), "--connectionsPerHost", String.valueOf(connectionsPerHost)),
+				gameDir, null);
+		updater.setListener(listener);
+		return updater;
+	}
+
+	private void runUpdater(IProgressWatcher listener, int downloadThreads, int connectionsPerHost) {
+		createUpdater(listener, downloadThreads, connectionsPerHost).run();
+	}
+
+	private int getModRequests() {
+		int requests = 0;
+		for (LocalHttpServer.Resource resource : modResources) {
+			requests += resource.getRequestCount();
+		}
+		return requests;
+	}
+
+	private void assertDownloaded(int count) throws Exception {
+		for (int i = 0; i < count; i++) {
+			File file = new File(gameDir, "mods" + File.separator + "mod" + i + ".jar");
+			Assert.assertArrayEquals(modContents.get(i), Files.readAllBytes(file.toPath()));
+			Assert.assertEquals(1, modResources.get(i).getRequestCount());
+		}
+	}
+
+	/**
+	 * records the progress and never blocks on dialogs
+	 */
+	private static class TestListener extends ConsoleListener {
+
+		volatile boolean cancelled = false;
+		volatile boolean paused = false;
+		volatile int overallProgress;
+		volatile int downloadProgress;
+		volatile int maxDownloadProgress;
+		volatile String downloadMessage;
+
+		@Override
+		public boolean isCancelled() {
+			return cancelled;
+		}
+
+		@Override
+		public boolean isPaused() {
+			return paused;
+		}
+
+		@Override
+		public void setDownloadProgress(String msg, int progress, int maxProgress) {
+			downloadMessage = msg;
+			downloadProgress = progress;
+			maxDownloadProgress = maxProgress;
+		}
+
+		@Override
+		public void setOverallProgress(int progress) {
+			overallProgress = progress;
+		}
+
+		@Override
+		public void setOverallProgress(String msg, int progress) {
+			overallProgress = progress;
+		}
+
+		@Override
+		public int showErrorDialog(String title, String message) {
+			Assert.fail(message);
+			return JOptionPane.CANCEL_OPTION;
+		}
+
+		@Override
+		public int showConfirmDialog(String message, String title, int optionType, int messageType) {
+			return JOptionPane.NO_OPTION;
+		}
+
+		@Override
+		public String showInputDialog(String message) {
+			return null;
+		}
+
+		@Override
+		public int showOptionDialog(String message, String title, int optionType, int messageType, Icon icon, String[] options, String defaultOption) {
+			return JOptionPane.CANCEL_OPTION;
+		}
+	}
+}
@@ -0,0 +1,103 @@
+package common.nw.core;
+
+import common.nw.core.utils.ContentStore;
+import common.nw.core.utils.DownloadHelper;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Random;
+
+/**
+ * testclass for {@link common.nw.core.utils.ContentStore}
+ */
+public class TestContentStore {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testMaterialize() throws Exception {
+		File storeDir = folder.newFolder("store");
+		ContentStore store = new ContentStore(storeDir, Long.MAX_VALUE);
+		File mod = createFile("instance1/mods/mod.jar", 1000, 1);
+		String md5 = DownloadHelper.getHash(mod);
+		store.put(mod, md5);
+		store.flush();
+
+		//another updater (eg. for a different game directory) uses the flushed index
+		File target = new File(folder.newFolder("instance2"), "mod.jar.tmp");
+		Assert.assertTrue(new ContentStore(storeDir, Long.MAX_VALUE).materialize(md5, target));
+		Assert.assertArrayEquals(Files.readAllBytes(mod.toPath()), Files.readAllBytes(target.toPath()));
+
+		Assert.assertFalse(store.materialize("0123456789abcdef0123456789abcdef", new File(folder.getRoot(), "missing.jar")));
+		Assert.assertFalse(store.materialize("../../instance1/mods/mod.jar", new File(folder.getRoot(), "invalid.jar")));
+	}
+
+	@Test
+	public void testConfigsAreCopied() throws Exception {
+		ContentStore store = new ContentStore(folder.newFolder("store"), Long.MAX_VALUE);
+		File config = createFile("instance1/config/mod.cfg", 100, 2);
+		String md5 = DownloadHelper.getHash(config);
+		store.put(config, md5);
+
+		File target = new File(folder.newFolder("instance2"), "mod.cfg.tmp");
+		Assert.assertTrue(store.materialize(md5, target));
+		Assert.assertFalse(Files.isSameFile(config.toPath(), target.toPath()));
+
+		//editing the config of one instance does not affect other instances or the store
+		Files.write(target.toPath(), "changed".getBytes("UTF-8"));
+		Assert.assertEquals(md5, DownloadHelper.getHash(config));
+		Assert.assertTrue(store.materialize(md5, new File(folder.getRoot(), "mod.cfg")));
+	}
+
+	@Test
+	public void testDamagedObjectIsNotUsed() throws Exception {
+		File storeDir = folder.newFolder("store");
+		ContentStore store = new ContentStore(storeDir, Long.MAX_VALUE);
+		File mod = createFile("instance1/mods/mod.jar", 1000, 3);
+		String md5 = DownloadHelper.getHash(mod);
+		store.put(mod, md5);
+		store.flush();
+
+		//the store object is a hardlink of the downloaded file (if supported), modifying it damages the object
+		Files.write(mod.toPath(), new byte[10]);
+		File object = new File(storeDir, "objects/" + md5.substring(0, 2) + "/" + md5);
+		Files.write(object.toPath(), new byte[10]);
+		Assert.assertFalse(new ContentStore(storeDir, Long.MAX_VALUE).materialize(md5, new File(folder.getRoot(), "mod.jar")));
+	}
+
+	@Test
+	public void testEviction() throws Exception {
+		File storeDir = folder.newFolder("store");
+		ContentStore store = new ContentStore(storeDir, 2500);
+		String[] md5 = new String[3];
+		for (int i = 0; i < md5.length; i++) {
+			File file = createFile("instance/config/file" + i + ".cfg", 1000, i);
+			md5[i] = DownloadHelper.getHash(file);
+			store.put(file, md5[i]);
+			Thread.sleep(5);
+		}
+		//used most recently
+		Assert.assertTrue(store.materialize(md5[0], new File(folder.getRoot(), "file0.cfg")));
+		store.flush();
+
+		store = new ContentStore(storeDir, 2500);
+		Assert.assertTrue(store.materialize(md5[0], new File(folder.getRoot(), "file0.cfg")));
+		Assert.assertFalse(store.materialize(md5[1], new File(folder.getRoot(), "file1.cfg")));
+		Assert.assertTrue(store.materialize(md5[2], new File(folder.getRoot(), "file2.cfg")));
+	}
+
+	private File createFile(String path, int size, int seed) throws IOException {
+		File file = new File(folder.getRoot(), path);
+		Assert.assertTrue(file.getParentFile().mkdirs() || file.getParentFile().isDirectory());
+		byte[] content = new byte[size];
+		new Random(seed).nextBytes(content);
+		Files.write(file.toPath(), content);
+		return file;
+	}
+}
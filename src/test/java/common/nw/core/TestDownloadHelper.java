@@ -0,0 +1,201 @@
+package common.nw.core;
+
+import com.sun.net.httpserver.Headers;
+import common.nw.core.gui.IDownloadProgressListener;
+import common.nw.core.modpack.ModInfo;
+import common.nw.core.modpack.ModpackValues;
+import common.nw.core.modpack.RepoMod;
+import common.nw.core.utils.DownloadHelper;
+import common.nw.core.utils.DownloadResult;
+import common.nw.core.utils.HttpClient;
+import common.nw.core.utils.UpdateResult;
+import common.nw.updater.ConsoleListener;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * testclass for {@link common.nw.core.utils.DownloadHelper}
+ */
+public class TestDownloadHelper {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private LocalHttpServer server;
+
+	private byte[] content;
+
+	@Before
+	public void setUp() throws Exception {
+		server = new LocalHttpServer();
+		content = new byte[256 * 1024];
+		new Random(42).nextBytes(content);
+	}
+
+	@After
+	public void tearDown() {
+		server.close();
+	}
+
+	@Test
+	public void testDownload() throws Exception {
+		server.serve("/mod.jar", content).setETag("\"v1\"");
+		File tempFile = new File(folder.getRoot(), "mod.jar.tmp");
+
+		DownloadResult result = DownloadHelper.downloadModWithHash(tempFile, createMod("/mod.jar"), new SilentListener());
+		Assert.assertEquals(UpdateResult.Good, result.result);
+		Assert.assertArrayEquals(content, Files.readAllBytes(tempFile.toPath()));
+		Assert.assertEquals(DownloadHelper.getHash(tempFile), result.md5);
+	}
+
+	@Test
+	public void testKeepAlive() throws Exception {
+		server.serve("/modpack.json", "{}".getBytes("UTF-8"));
+		HttpClient.getShared().resetMetrics();
+
+		Assert.assertEquals("{}", DownloadHelper.getString(server.getUrl("/modpack.json"), null));
+		Assert.assertEquals("{}", DownloadHelper.getString(server.getUrl("/modpack.json"), null));
+		for (Headers request : server.getRequests()) {
+			Assert.assertFalse("close".equalsIgnoreCase(request.getFirst("Connection")));
+		}
+		Assert.assertEquals(2, HttpClient.getShared().getMetrics().requests);
+		Assert.assertEquals(4, HttpClient.getShared().getMetrics().bytesReceived);
+	}
+
+	@Test
+	public void testResumeAfterDisconnect() throws Exception {
+		LocalHttpServer.Resource resource = server.serve("/mod.jar", content).setETag("\"v1\"").disconnectAfter(100000);
+		File tempFile = new File(folder.getRoot(), "mod.jar.tmp");
+		ModInfo mod = createMod("/mod.jar");
+
+		Assert.assertNotEquals(UpdateResult.Good, DownloadHelper.downloadMod(tempFile, mod, new SilentListener()));
+		Assert.assertEquals(100000, tempFile.length());
+
+		DownloadResult result = DownloadHelper.downloadModWithHash(tempFile, mod, new SilentListener());
+		Assert.assertEquals(UpdateResult.Good, result.result);
+		Assert.assertArrayEquals(content, Files.readAllBytes(tempFile.toPath()));
+		Assert.assertEquals(DownloadHelper.getHash(tempFile), result.md5);
+		Assert.assertEquals(2, resource.getRequestCount());
+
+		List<Headers> requests = server.getRequests();
+		Headers resumed = requests.get(requests.size() - 1);
+		Assert.assertEquals("bytes=100000-", resumed.getFirst("Range"));
+		Assert.assertEquals("\"v1\"", resumed.getFirst("If-Range"));
+	}
+
+	@Test
+	public void testFullDownloadWhenRangesAreIgnored() throws Exception {
+		server.serve("/mod.jar", content).setETag("\"v1\"").setSupportsRanges(false).disconnectAfter(50000);
+		File tempFile = new File(folder.getRoot(), "mod.jar.tmp");
+		ModInfo mod = createMod("/mod.jar");
+
+		Assert.assertNotEquals(UpdateResult.Good, DownloadHelper.downloadMod(tempFile, mod, new SilentListener()));
+		Assert.assertEquals(UpdateResult.Good, DownloadHelper.downloadMod(tempFile, mod, new SilentListener()));
+		Assert.assertArrayEquals(content, Files.readAllBytes(tempFile.toPath()));
+	}
+
+	@Test
+	public void testFullDownloadWhenRemoteFileChanged() throws Exception {
+		server.serve("/mod.jar", content).setETag("\"v1\"").disconnectAfter(50000);
+		File tempFile = new File(folder.getRoot(), "mod.jar.tmp");
+		ModInfo mod = createMod("/mod.jar");
+		Assert.assertNotEquals(UpdateResult.Good, DownloadHelper.downloadMod(tempFile, mod, new SilentListener()));
+
+		//a new version gets uploaded, the If-Range check fails and the whole file gets sent
+		byte[] newContent = new byte[200 * 1024];
+		new Random(7).nextBytes(newContent);
+		server.serve("/mod.jar", newContent).setETag("\"v2\"");
+		Assert.assertEquals(UpdateResult.Good, DownloadHelper.downloadMod(tempFile, mod, new SilentListener()));
+		Assert.assertArrayEquals(newContent, Files.readAllBytes(tempFile.toPath()));
+	}
+
+	@Test
+	public void testCompleteTempFile() throws Exception {
+		LocalHttpServer.Resource resource = server.serve("/mod.jar", content).setETag("\"v1\"");
+		File tempFile = new File(folder.getRoot(), "mod.jar.tmp");
+		ModInfo mod = createMod("/mod.jar");
+		//simulate a process that died after downloading but before renaming
+		Files.write(tempFile.toPath(), content);
+		Files.write(new File(tempFile.getPath() + ".validator").toPath(), "\"v1\"".getBytes("UTF-8"));
+
+		Assert.assertEquals(UpdateResult.Good, DownloadHelper.downloadMod(tempFile, mod, new SilentListener()));
+		Assert.assertArrayEquals(content, Files.readAllBytes(tempFile.toPath()));
+		Assert.assertEquals(1, resource.getRequestCount());
+	}
+
+	@Test
+	public void testFailedZipEntryDownloadKeepsPartialFile() throws Exception {
+		server.serve("/mod.jar", content).setETag("\"v1\"").disconnectAfter(100000);
+		File baseDir = folder.newFolder("game");
+		File tempFile = new File(baseDir, "mods" + File.separator + "mod.jar.tmp");
+		ModInfo mod = createMod("/mod.jar");
+		Assert.assertTrue(tempFile.getParentFile().mkdirs());
+		Assert.assertNotEquals(UpdateResult.Good, DownloadHelper.downloadMod(tempFile, mod, new SilentListener()));
+		Assert.assertEquals(100000, tempFile.length());
+
+		//the local version is no zip file, so the entries cannot be reused
+		LocalHttpServer.Resource resource = server.serve("/mod.jar", content).setETag("\"v1\"");
+		File complete = folder.newFile("complete.jar");
+		Files.write(complete.toPath(), content);
+		mod.getRemoteInfo().md5 = DownloadHelper.getHash(complete);
+		mod.getRemoteInfo().downloadType = ModpackValues.Download.modZipEntryDownload;
+		mod.file = new File(baseDir, "mods" + File.separator + "old.jar");
+		Files.write(mod.file.toPath(), new byte[1000]);
+
+		Assert.assertEquals(UpdateResult.Good, DownloadHelper.getMod(new ConsoleListener(), mod, 0, 1, baseDir, false, null, null, null, null));
+		Assert.assertArrayEquals(content, Files.readAllBytes(new File(baseDir, "mods" + File.separator + "mod.jar").toPath()));
+		Assert.assertEquals(1, resource.getRequestCount());
+		List<Headers> requests = server.getRequests();
+		Assert.assertEquals("bytes=100000-", requests.get(requests.size() - 1).getFirst("Range"));
+		Assert.assertFalse(new File(tempFile.getPath() + ".delta").exists());
+	}
+
+	private ModInfo createMod(String path) {
+		ModInfo mod = new ModInfo("mods" + path);
+		RepoMod repoMod = new RepoMod();
+		repoMod.downloadUrl = server.getUrl(path);
+		mod.setRemoteInfo(repoMod);
+		return mod;
+	}
+
+	/**
+	 * progress listener that ignores all progress
+	 */
+	static class SilentListener implements IDownloadProgressListener {
+
+		@Override
+		public boolean isCancelled() {
+			return false;
+		}
+
+		@Override
+		public boolean isPaused() {
+			return false;
+		}
+
+		@Override
+		public void setDownloadProgress(String msg) {
+		}
+
+		@Override
+		public void setDownloadProgress(int progress) {
+		}
+
+		@Override
+		public void setDownloadProgress(String msg, int progress) {
+		}
+
+		@Override
+		public void setDownloadProgress(String msg, int progress, int maxProgress) {
+		}
+	}
+}
@@ -0,0 +1,86 @@
+package common.nw.core;
+
+import common.nw.core.utils.DownloadHelper;
+import common.nw.installer.ForgeInstallerCache;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Arrays;
+
+/**
+ * testclass for {@link common.nw.installer.ForgeInstallerCache}
+ */
+public class TestForgeInstallerCache {
+
+	private static final String PATH = "/1.10.2-12.18.3.2185/forge-1.10.2-12.18.3.2185-installer.jar";
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private LocalHttpServer server;
+	private byte[] installer;
+
+	@Before
+	public void setUp() throws Exception {
+		server = new LocalHttpServer();
+		installer = new byte[100000];
+		for (int i = 0; i < installer.length; i++) {
+			installer[i] = (byte) (i * 31);
+		}
+	}
+
+	@After
+	public void tearDown() {
+		server.close();
+	}
+
+	@Test
+	public void testRepeatedInstallNeedsNoNetwork() throws Exception {
+		LocalHttpServer.Resource resource = server.serve(PATH, installer);
+		File file = new ForgeInstallerCache(folder.getRoot()).get(server.getUrl(PATH));
+		Assert.assertArrayEquals(installer, Files.readAllBytes(file.toPath()));
+		Assert.assertEquals(1, resource.getRequestCount());
+
+		//a new cache instance only uses the files on disk
+		Assert.assertEquals(file, new ForgeInstallerCache(folder.getRoot()).get(server.getUrl(PATH)));
+		Assert.assertEquals(1, resource.getRequestCount());
+	}
+
+	@Test
+	public void testCorruptedCopyIsDownloadedAgain() throws Exception {
+		LocalHttpServer.Resource resource = server.serve(PATH, installer);
+		ForgeInstallerCache cache = new ForgeInstallerCache(folder.getRoot());
+		File file = cache.get(server.getUrl(PATH));
+		Files.write(file.toPath(), Arrays.copyOf(installer, 1000));
+
+		Assert.assertArrayEquals(installer, Files.readAllBytes(cache.get(server.getUrl(PATH)).toPath()));
+		Assert.assertEquals(2, resource.getRequestCount());
+	}
+
+	@Test
+	public void testPublishedChecksum() throws Exception {
+		server.serve(PATH, installer);
+		File tempFile = folder.newFile("installer.jar");
+		Files.write(tempFile.toPath(), installer);
+		server.serve(PATH + ".md5", DownloadHelper.getHash(tempFile).getBytes(StandardCharsets.UTF_8));
+		Assert.assertTrue(new ForgeInstallerCache(folder.newFolder("valid")).get(server.getUrl(PATH)).isFile());
+
+		server.serve(PATH + ".md5", "0123456789abcdef0123456789abcdef".getBytes(StandardCharsets.UTF_8));
+		File dir = folder.newFolder("invalid");
+		try {
+			new ForgeInstallerCache(dir).get(server.getUrl(PATH));
+			Assert.fail("corrupted download was accepted");
+		} catch (IOException e) {
+			//expected
+		}
+		Assert.assertArrayEquals(new String[0], dir.list());
+	}
+}
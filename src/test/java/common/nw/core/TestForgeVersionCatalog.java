@@ -0,0 +1,85 @@
+package common.nw.core;
+
+import common.nw.core.modpack.ForgeVersionCatalog;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * testclass for {@link common.nw.core.modpack.ForgeVersionCatalog}
+ */
+public class TestForgeVersionCatalog {
+
+	private static final String VERSION_JSON = "{\"adfocus\":\"271934\",\"artifact\":\"forge\","
+			+ "\"branches\":{\"1.7.10\":[1614]},"
+			+ "\"mcversion\":{\"1.7.10\":[1614,1558],\"1.12.2\":[2847]},"
+			+ "\"number\":{"
+			+ "\"1558\":{\"branch\":\"1.7.10\",\"build\":1558,\"files\":[[\"zip\",\"src\",\"0\"]],\"mcversion\":\"1.7.10\",\"modified\":1.0,\"version\":\"10.13.4.1558\"},"
+			+ "\"1614\":{\"branch\":\"1.7.10\",\"build\":1614,\"files\":[],\"mcversion\":\"1.7.10\",\"modified\":1.0,\"version\":\"10.13.4.1614\"},"
+			+ "\"2847\":{\"branch\":null,\"build\":2847,\"files\":[],\"mcversion\":\"1.12.2\",\"modified\":1.0,\"version\":\"14.23.5.2847\"}"
+			+ "},\"promos\":{\"1.12.2-latest\":2847}}";
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private LocalHttpServer server;
+
+	@Before
+	public void setUp() throws Exception {
+		server = new LocalHttpServer();
+	}
+
+	@After
+	public void tearDown() {
+		server.close();
+	}
+
+	@Test
+	public void testLookup() throws Exception {
+		server.serve("/json", VERSION_JSON.getBytes(StandardCharsets.UTF_8));
+		ForgeVersionCatalog catalog = ForgeVersionCatalog.load(folder.getRoot(), server.getUrl("/json"), null);
+
+		Assert.assertEquals(Arrays.asList("1.7.10", "1.12.2"), catalog.getMinecraftVersions());
+		List<ForgeVersionCatalog.Build> builds = catalog.getBuilds("1.7.10");
+		Assert.assertEquals(2, builds.size());
+		Assert.assertEquals(1558, builds.get(0).number);
+		Assert.assertEquals(1614, builds.get(1).number);
+		Assert.assertTrue(catalog.getBuilds("1.0").isEmpty());
+		Assert.assertNull(catalog.getBuild(1));
+
+		ForgeVersionCatalog.Build build = catalog.getBuild("1614");
+		Assert.assertEquals("1.7.10-Forge10.13.4.1614-1.7.10", build.getVersionId());
+		Assert.assertEquals("http://files.minecraftforge.net/maven/net/minecraftforge/forge/1.7.10-10.13.4.1614-1.7.10/forge-1.7.10-10.13.4.1614-1.7.10-installer.jar", build.getInstallerUrl());
+		build = catalog.getBuild(2847);
+		Assert.assertNull(build.branch);
+		Assert.assertEquals("1.12.2-forge1.12.2-14.23.5.2847", build.getVersionId());
+	}
+
+	@Test
+	public void testCachedIndex() throws Exception {
+		LocalHttpServer.Resource resource = server.serve("/json", VERSION_JSON.getBytes(StandardCharsets.UTF_8)).setETag("\"v1\"");
+		ForgeVersionCatalog.load(folder.getRoot(), server.getUrl("/json"), null);
+		File index = new File(folder.getRoot(), "forge-index.json");
+		Assert.assertTrue(index.exists());
+		long modified = index.lastModified();
+
+		//not modified: the index gets reused
+		ForgeVersionCatalog catalog = ForgeVersionCatalog.load(folder.getRoot(), server.getUrl("/json"), null);
+		Assert.assertEquals(2, resource.getRequestCount());
+		Assert.assertEquals(modified, index.lastModified());
+		Assert.assertEquals("10.13.4.1614", catalog.getBuild(1614).version);
+
+		//offline: the index gets used as well
+		server.close();
+		catalog = ForgeVersionCatalog.load(folder.getRoot(), server.getUrl("/json"), null);
+		Assert.assertEquals("14.23.5.2847", catalog.getBuild(2847).version);
+	}
+}
@@ -0,0 +1,147 @@
+package common.nw.core;
+
+import argo.jdom.JdomParser;
+import argo.jdom.JsonNode;
+import common.nw.installer.LibraryDownloader;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * testclass for {@link common.nw.installer.LibraryDownloader}
+ */
+public class TestLibraryDownloader {
+
+	private static final String UPDATER_PATH = "common/nuklearwurst/updater/1.0/updater-1.0.jar";
+	private static final String LIB_PATH = "org/example/lib/2.0/lib-2.0.jar";
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private LocalHttpServer server;
+	private final byte[] updater = "updater jar".getBytes(StandardCharsets.UTF_8);
+	private final byte[] lib = "library jar".getBytes(StandardCharsets.UTF_8);
+
+	@Before
+	public void setUp() throws Exception {
+		server = new LocalHttpServer();
+	}
+
+	@After
+	public void tearDown() {
+		server.close();
+	}
+
+	@Test
+	public void testMavenPath() {
+		Assert.assertEquals(UPDATER_PATH, LibraryDownloader.getMavenPath("common.nuklearwurst:updater:1.0", null));
+		Assert.assertEquals("org/lwjgl/lwjgl-platform/2.9.4/lwjgl-platform-2.9.4-natives-linux.jar",
+				LibraryDownloader.getMavenPath("org.lwjgl:lwjgl-platform:2.9.4", "natives-linux"));
+		Assert.assertNull(LibraryDownloader.getMavenPath("invalid", null));
+	}
+
+	@Test
+	public void testDownload() throws Exception {
+		LocalHttpServer.Resource updaterResource = server.serve("/repo/" + UPDATER_PATH, updater);
+		server.serve("/repo/" + UPDATER_PATH + ".sha1", sha1(updater).getBytes(StandardCharsets.UTF_8));
+		LocalHttpServer.Resource libResource = server.serve("/" + LIB_PATH, lib);
+		List<LibraryDownloader.Artifact> artifacts = resolve(sha1(lib));
+		Assert.assertEquals(2, artifacts.size());
+
+		File libraries = folder.newFolder("libraries");
+		LibraryDownloader downloader = new LibraryDownloader(libraries, 2);
+		Assert.assertTrue(downloader.downloadAll(artifacts));
+		Assert.assertArrayEquals(updater, Files.readAllBytes(new File(libraries, UPDATER_PATH).toPath()));
+		Assert.assertArrayEquals(lib, Files.readAllBytes(new File(libraries, LIB_PATH).toPath()));
+
+		//valid libraries are not downloaded again, invalid ones are replaced
+		Files.write(new File(libraries, LIB_PATH).toPath(), "corrupted!!".getBytes(StandardCharsets.UTF_8));
+		Assert.assertTrue(downloader.downloadAll(artifacts));
+		Assert.assertEquals(1, updaterResource.getRequestCount());
+		Assert.assertEquals(2, libResource.getRequestCount());
+		Assert.assertArrayEquals(lib, Files.readAllBytes(new File(libraries, LIB_PATH).toPath()));
+	}
+
+	@Test
+	public void testChecksumMismatch() throws Exception {
+		server.serve("/repo/" + UPDATER_PATH, updater);
+		server.serve("/" + LIB_PATH, lib);
+		File libraries = folder.newFolder("libraries");
+		Assert.assertFalse(new LibraryDownloader(libraries, 2).downloadAll(resolve(sha1(updater))));
+		//the library without checksum is still downloaded
+		Assert.assertTrue(new File(libraries, UPDATER_PATH).isFile());
+		Assert.assertFalse(new File(libraries, LIB_PATH).exists());
+		Assert.assertFalse(new File(libraries, LIB_PATH + ".part").exists());
+	}
+
+	@Test
+	public void testNoChecksum() throws Exception {
+		//the updater repository publishes no sha1
+		LocalHttpServer.Resource resource = server.serve("/repo/" + UPDATER_PATH, updater);
+		List<LibraryDownloader.Artifact> artifacts = Collections.singletonList(createUpdaterArtifact(Collections.emptyList()));
+		File libraries = folder.newFolder("libraries");
+		File file = new File(libraries, UPDATER_PATH);
+		LibraryDownloader downloader = new LibraryDownloader(libraries, 1);
+		Assert.assertTrue(downloader.downloadAll(artifacts));
+		Assert.assertArrayEquals(updater, Files.readAllBytes(file.toPath()));
+		Assert.assertEquals(1, resource.getRequestCount() - resource.getHeadRequestCount());
+
+		//an unchanged library is only compared with the remote length
+		Assert.assertTrue(downloader.downloadAll(artifacts));
+		Assert.assertEquals(1, resource.getRequestCount() - resource.getHeadRequestCount());
+
+		//a library of another length gets replaced
+		Files.write(file.toPath(), "updater".getBytes(StandardCharsets.UTF_8));
+		Assert.assertTrue(downloader.downloadAll(artifacts));
+		Assert.assertEquals(2, resource.getRequestCount() - resource.getHeadRequestCount());
+		Assert.assertArrayEquals(updater, Files.readAllBytes(file.toPath()));
+
+		//a present library is kept if the remote gives nothing to compare it with
+		Files.write(file.toPath(), "updater".getBytes(StandardCharsets.UTF_8));
+		Assert.assertTrue(downloader.downloadAll(Collections.singletonList(new LibraryDownloader.Artifact(
+				"common.nuklearwurst:updater:1.0", UPDATER_PATH, server.getUrl("/missing/updater.jar"), Collections.emptyList(), -1))));
+		Assert.assertEquals("updater", new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8));
+	}
+
+	@Test
+	public void testDuplicateLibraries() throws Exception {
+		LocalHttpServer.Resource resource = server.serve("/repo/" + UPDATER_PATH, updater);
+		File libraries = folder.newFolder("libraries");
+		Assert.assertTrue(new LibraryDownloader(libraries, 4).downloadAll(Arrays.asList(
+				createUpdaterArtifact(Collections.emptyList()), createUpdaterArtifact(Collections.singletonList(sha1(updater))))));
+		Assert.assertArrayEquals(updater, Files.readAllBytes(new File(libraries, UPDATER_PATH).toPath()));
+		Assert.assertEquals(1, resource.getRequestCount());
+	}
+
+	private LibraryDownloader.Artifact createUpdaterArtifact(List<String> sha1) {
+		return new LibraryDownloader.Artifact("common.nuklearwurst:updater:1.0", UPDATER_PATH,
+				server.getUrl("/repo/" + UPDATER_PATH), sha1, -1);
+	}
+
+	private List<LibraryDownloader.Artifact> resolve(String libSha1) throws Exception {
+		String json = "{\"libraries\":["
+				+ "{\"name\":\"common.nuklearwurst:updater:1.0\",\"url\":\"" + server.getUrl("/repo") + "\"},"
+				+ "{\"name\":\"org.example:lib:2.0\",\"downloads\":{\"artifact\":{\"path\":\"" + LIB_PATH + "\",\"url\":\""
+				+ server.getUrl("/" + LIB_PATH) + "\",\"sha1\":\"" + libSha1 + "\",\"size\":" + lib.length + "}}},"
+				+ "{\"name\":\"org.example:disallowed:1.0\",\"rules\":[{\"action\":\"disallow\"}]}"
+				+ "]}";
+		List<JsonNode> libraries = new JdomParser().parse(json).getArrayNode("libraries");
+		return LibraryDownloader.resolve(libraries);
+	}
+
+	private static String sha1(byte[] data) throws Exception {
+		return String.format("%040x", new BigInteger(1, MessageDigest.getInstance("SHA-1").digest(data)));
+	}
+}
@@ -0,0 +1,142 @@
+package common.nw.core;
+
+import common.nw.core.modpack.LocalFileIndex;
+import common.nw.core.utils.DownloadHelper;
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.util.Collections;
+
+/**
+ * testclass for {@link common.nw.core.modpack.LocalFileIndex}
+ */
+public class TestLocalFileIndex {
+
+	/**
+	 * not the real hash of any file, returned only if the cached entry is used
+	 */
+	private static final String CACHED_MD5 = "0123456789abcdef0123456789abcdef";
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private File gameDir;
+	private File file;
+
+	@Before
+	public void setUp() throws Exception {
+		gameDir = folder.newFolder("game");
+		File mods = new File(gameDir, "mods");
+		Assert.assertTrue(mods.mkdirs());
+		file = new File(mods, "mod.jar");
+		write(file, "content");
+	}
+
+	@Test
+	public void testCachedHash() {
+		LocalFileIndex index = new LocalFileIndex(gameDir);
+		String md5 = index.getHash(file);
+		Assert.assertEquals(DownloadHelper.getHash(file), md5);
+
+		index.putHash(file, CACHED_MD5);
+		Assert.assertEquals(CACHED_MD5, index.getHash(file));
+	}
+
+	@Test
+	public void testSizeChangeInvalidates() throws Exception {
+		LocalFileIndex index = new LocalFileIndex(gameDir);
+		index.putHash(file, CACHED_MD5);
+		long lastModified = file.lastModified();
+		write(file, "changed content");
+		Assert.assertTrue(file.setLastModified(lastModified));
+		Assert.assertEquals(DownloadHelper.getHash(file), index.getHash(file));
+	}
+
+	@Test
+	public void testModificationTimeChangeInvalidates() {
+		LocalFileIndex index = new LocalFileIndex(gameDir);
+		index.putHash(file, CACHED_MD5);
+		Assert.assertTrue(file.setLastModified(file.lastModified() - 10000));
+		Assert.assertEquals(DownloadHelper.getHash(file), index.getHash(file));
+	}
+
+	@Test
+	public void testFileKeyChangeInvalidates() throws Exception {
+		Assume.assumeNotNull(Files.readAttributes(file.toPath(), BasicFileAttributes.class).fileKey());
+		LocalFileIndex index = new LocalFileIndex(gameDir);
+		index.putHash(file, CACHED_MD5);
+
+		//same size and modification time, but a different file
+		File replacement = folder.newFile("replacement.jar");
+		write(replacement, "CONTENT");
+		Assert.assertTrue(replacement.setLastModified(file.lastModified()));
+		Files.move(replacement.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING);
+		Assert.assertEquals(DownloadHelper.getHash(file), index.getHash(file));
+	}
+
+	@Test
+	public void testPutHashRejectsChangedFile() throws Exception {
+		long size = file.length();
+		long lastModified = file.lastModified();
+		LocalFileIndex index = new LocalFileIndex(gameDir);
+
+		index.putHash(file, CACHED_MD5, size + 1, lastModified);
+		Assert.assertNotEquals(CACHED_MD5, index.getHash(file));
+
+		index = new LocalFileIndex(gameDir);
+		index.putHash(file, CACHED_MD5, size, lastModified - 10000);
+		Assert.assertNotEquals(CACHED_MD5, index.getHash(file));
+
+		index = new LocalFileIndex(gameDir);
+		index.putHash(file, CACHED_MD5, size, lastModified);
+		Assert.assertEquals(CACHED_MD5, index.getHash(file));
+	}
+
+	@Test
+	public void testSaveAndLoad() throws Exception {
+		File other = new File(gameDir, "mods" + File.separator + "other.jar");
+		write(other, "other");
+		LocalFileIndex index = new LocalFileIndex(gameDir);
+		index.putHash(file, CACHED_MD5);
+		index.putHash(other, CACHED_MD5);
+		index.putModInfo(file, true, "mod", "1.0");
+		index.retain(Collections.singletonList("mods" + File.separator + "mod.jar"));
+		Assert.assertTrue(index.save());
+
+		LocalFileIndex loaded = LocalFileIndex.load(gameDir);
+		Assert.assertEquals(CACHED_MD5, loaded.getHash(file));
+		Assert.assertNotEquals(CACHED_MD5, loaded.getHash(other));
+		LocalFileIndex.Entry entry = loaded.getModInfo(file);
+		Assert.assertNotNull(entry);
+		Assert.assertTrue(entry.hasModInfo());
+		Assert.assertEquals("mod", entry.getModName());
+		Assert.assertEquals("1.0", entry.getModVersion());
+	}
+
+	@Test
+	public void testOtherRevisionIsDiscarded() throws Exception {
+		LocalFileIndex index = new LocalFileIndex(gameDir);
+		index.putHash(file, CACHED_MD5);
+		Assert.assertTrue(index.save());
+
+		File indexFile = new File(gameDir, LocalFileIndex.FILE_NAME);
+		String json = new String(Files.readAllBytes(indexFile.toPath()), StandardCharsets.UTF_8);
+		Assert.assertTrue(json.contains("\"revision\":1"));
+		write(indexFile, json.replace("\"revision\":1", "\"revision\":2"));
+
+		Assert.assertNotEquals(CACHED_MD5, LocalFileIndex.load(gameDir).getHash(file));
+	}
+
+	private static void write(File file, String content) throws Exception {
+		Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+	}
+}
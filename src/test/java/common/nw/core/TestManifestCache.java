@@ -0,0 +1,87 @@
+package common.nw.core;
+
+import common.nw.core.utils.ManifestCache;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+
+/**
+ * testclass for {@link common.nw.core.utils.ManifestCache}
+ */
+public class TestManifestCache {
+
+	private static final String MANIFEST = "{\"modpackName\":\"test\"}";
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private LocalHttpServer server;
+
+	@Before
+	public void setUp() throws Exception {
+		server = new LocalHttpServer();
+	}
+
+	@After
+	public void tearDown() {
+		server.close();
+	}
+
+	@Test
+	public void testNotModified() throws Exception {
+		LocalHttpServer.Resource resource = server.serve("/modpack.json", MANIFEST.getBytes(StandardCharsets.UTF_8)).setETag("\"v1\"");
+		ManifestCache cache = new ManifestCache(folder.getRoot());
+
+		ManifestCache.Manifest manifest = cache.get(server.getUrl("/modpack.json"), 0, null);
+		Assert.assertEquals(MANIFEST, read(manifest));
+		Assert.assertFalse(manifest.unchanged);
+
+		//a new cache instance only uses the files on disk
+		manifest = new ManifestCache(folder.getRoot()).get(server.getUrl("/modpack.json"), 0, null);
+		Assert.assertEquals(MANIFEST, read(manifest));
+		Assert.assertTrue(manifest.unchanged);
+		Assert.assertEquals(2, resource.getRequestCount());
+		Assert.assertEquals("\"v1\"", server.getRequests().get(1).getFirst("If-None-Match"));
+	}
+
+	@Test
+	public void testChanged() throws Exception {
+		server.serve("/modpack.json", MANIFEST.getBytes(StandardCharsets.UTF_8)).setETag("\"v1\"");
+		ManifestCache cache = new ManifestCache(folder.getRoot());
+		cache.get(server.getUrl("/modpack.json"), 0, null);
+
+		String changed = "{\"modpackName\":\"changed\"}";
+		server.serve("/modpack.json", changed.getBytes(StandardCharsets.UTF_8)).setETag("\"v2\"");
+		ManifestCache.Manifest manifest = cache.get(server.getUrl("/modpack.json"), 0, null);
+		Assert.assertEquals(changed, read(manifest));
+		Assert.assertFalse(manifest.unchanged);
+	}
+
+	@Test
+	public void testTimeToLive() throws Exception {
+		LocalHttpServer.Resource resource = server.serve("/modpack.json", MANIFEST.getBytes(StandardCharsets.UTF_8));
+		ManifestCache cache = new ManifestCache(folder.getRoot());
+		cache.get(server.getUrl("/modpack.json"), 0, null);
+
+		ManifestCache.Manifest manifest = cache.get(server.getUrl("/modpack.json"), 60000, null);
+		Assert.assertEquals(MANIFEST, read(manifest));
+		Assert.assertTrue(manifest.unchanged);
+		Assert.assertEquals(1, resource.getRequestCount());
+	}
+
+	@Test(expected = IOException.class)
+	public void testMissing() throws Exception {
+		new ManifestCache(folder.getRoot()).get(server.getUrl("/missing.json"), 0, null);
+	}
+
+	private static String read(ManifestCache.Manifest manifest) throws IOException {
+		return new String(Files.readAllBytes(manifest.file.toPath()), StandardCharsets.UTF_8);
+	}
+}
@@ -0,0 +1,185 @@
+package common.nw.core;
+
+import common.nw.core.modpack.LocalModpack;
+import common.nw.core.modpack.ModInfo;
+import common.nw.core.modpack.ModpackJson;
+import common.nw.core.modpack.RepoMod;
+import common.nw.core.utils.ContentStore;
+import common.nw.core.utils.DownloadHelper;
+import common.nw.core.utils.MirrorServer;
+import common.nw.core.utils.UpdateResult;
+import common.nw.updater.ConsoleListener;
+import common.nw.updater.launch.MirrorLaunch;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Random;
+
+/**
+ * testclass for {@link common.nw.core.utils.MirrorServer}
+ */
+public class TestMirrorServer {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private ContentStore store;
+	private MirrorServer mirror;
+	private String mirrorUrl;
+
+	@Before
+	public void setUp() throws IOException {
+		store = new ContentStore(folder.newFolder("store"), Long.MAX_VALUE);
+		mirror = new MirrorServer(store, new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 2);
+		mirrorUrl = "http://" + mirror.getAddress().getAddress().getHostAddress() + ":" + mirror.getAddress().getPort() + "/";
+	}
+
+	@After
+	public void tearDown() {
+		mirror.close();
+	}
+
+	@Test
+	public void testServe() throws Exception {
+		byte[] content = createContent(10000, 1);
+		String md5 = addToStore("mod.jar", content);
+		String url = MirrorServer.getObjectUrl(mirrorUrl, md5);
+
+		HttpURLConnection http = open(url);
+		Assert.assertEquals(200, http.getResponseCode());
+		Assert.assertArrayEquals(content, read(http));
+		String eTag = http.getHeaderField("ETag");
+		Assert.assertEquals("\"" + md5 + "\"", eTag);
+
+		http = open(url);
+		http.setRequestProperty("Range", "bytes=100-199");
+		http.setRequestProperty("If-Range", eTag);
+		Assert.assertEquals(206, http.getResponseCode());
+		Assert.assertEquals("bytes 100-199/10000", http.getHeaderField("Content-Range"));
+		Assert.assertArrayEquals(Arrays.copyOfRange(content, 100, 200), read(http));
+
+		http = open(url);
+		http.setRequestProperty("Range", "bytes=20000-");
+		Assert.assertEquals(416, http.getResponseCode());
+
+		http = open(url);
+		http.setRequestProperty("If-None-Match", eTag);
+		Assert.assertEquals(304, http.getResponseCode());
+
+		Assert.assertEquals(404, open(MirrorServer.getObjectUrl(mirrorUrl, "0123456789abcdef0123456789abcdef")).getResponseCode());
+		Assert.assertEquals(404, open(mirrorUrl + "objects/../index.json").getResponseCode());
+	}
+
+	@Test
+	public void testMirrorBeforeDownloadUrl() throws Exception {
+		byte[] mirrored = createContent(50000, 2);
+		byte[] notMirrored = createContent(50000, 3);
+		String mirroredMd5 = addToStore("mirrored.jar", mirrored);
+		File notMirroredFile = folder.newFile("notMirrored.jar");
+		Files.write(notMirroredFile.toPath(), notMirrored);
+
+		File gameDir = folder.newFolder("game");
+		try (LocalHttpServer origin = new LocalHttpServer()) {
+			LocalHttpServer.Resource mirroredOrigin = origin.serve("/mirrored.jar", mirrored);
+			LocalHttpServer.Resource notMirroredOrigin = origin.serve("/notMirrored.jar", notMirrored);
+
+			ModInfo mod = createMod(origin.getUrl("/mirrored.jar"), "mods/mirrored.jar", mirroredMd5);
+			Assert.assertEquals(UpdateResult.Good, DownloadHelper.getMod(new ConsoleListener(), mod, 1, 0, gameDir, false, null, null, mirrorUrl, null));
+			Assert.assertArrayEquals(mirrored, Files.readAllBytes(new File(gameDir, "mods/mirrored.jar").toPath()));
+			Assert.assertEquals(0, mirroredOrigin.getRequestCount());
+
+			mod = createMod(origin.getUrl("/notMirrored.jar"), "mods/notMirrored.jar", DownloadHelper.getHash(notMirroredFile));
+			Assert.assertEquals(UpdateResult.Good, DownloadHelper.getMod(new ConsoleListener(), mod, 2, 0, gameDir, false, null, null, mirrorUrl, null));
+			Assert.assertArrayEquals(notMirrored, Files.readAllBytes(new File(gameDir, "mods/notMirrored.jar").toPath()));
+			Assert.assertEquals(1, notMirroredOrigin.getRequestCount());
+		}
+	}
+
+	@Test
+	public void testSeed() throws Exception {
+		File gameDir = folder.newFolder("game");
+		String listed = writeFile(gameDir, "mods/listed.jar", createContent(1000, 2));
+		String unlisted = writeFile(gameDir, "mods/unlisted.jar", createContent(1000, 3));
+		String world = writeFile(gameDir, "world/level.dat", createContent(1000, 4));
+		LocalModpack modpack = new LocalModpack("test", null, "1.0");
+		modpack.files.add("mods" + File.separator + "listed.jar");
+		ModpackJson.write(modpack, new File(gameDir, "modpack.json"));
+
+		MirrorLaunch.seed(store, gameDir);
+		Assert.assertNotNull(store.getObject(listed));
+		Assert.assertNull(store.getObject(unlisted));
+		Assert.assertNull(store.getObject(world));
+
+		//without modpack.json only mods and archives are added
+		Assert.assertTrue(new File(gameDir, "modpack.json").delete());
+		String config = writeFile(gameDir, "config/mod.cfg", createContent(1000, 5));
+		String temp = writeFile(gameDir, "mods/other.jar.tmp", createContent(1000, 6));
+		MirrorLaunch.seed(store, gameDir);
+		Assert.assertNotNull(store.getObject(unlisted));
+		Assert.assertNull(store.getObject(world));
+		Assert.assertNull(store.getObject(config));
+		Assert.assertNull(store.getObject(temp));
+	}
+
+	private static String writeFile(File dir, String name, byte[] content) throws IOException {
+		File file = new File(dir, name.replace("/", File.separator));
+		Assert.assertTrue(file.getParentFile().isDirectory() || file.getParentFile().mkdirs());
+		Files.write(file.toPath(), content);
+		return DownloadHelper.getHash(file);
+	}
+
+	private String addToStore(String name, byte[] content) throws IOException {
+		File file = folder.newFile(name);
+		Files.write(file.toPath(), content);
+		String md5 = DownloadHelper.getHash(file);
+		store.put(file, md5);
+		return md5;
+	}
+
+	private static ModInfo createMod(String url, String fileName, String md5) {
+		ModInfo mod = new ModInfo(fileName);
+		RepoMod repoMod = new RepoMod();
+		repoMod.name = fileName;
+		repoMod.downloadUrl = url;
+		repoMod.md5 = md5;
+		repoMod.setFileName(fileName);
+		mod.setRemoteInfo(repoMod);
+		return mod;
+	}
+
+	private static HttpURLConnection open(String url) throws IOException {
+		return (HttpURLConnection) new URL(url).openConnection();
+	}
+
+	private static byte[] read(HttpURLConnection http) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		try (InputStream in = http.getInputStream()) {
+			byte[] buffer = new byte[8192];
+			int read;
+			while ((read = in.read(buffer)) >= 0) {
+				out.write(buffer, 0, read);
+			}
+		}
+		return out.toByteArray();
+	}
+
+	private static byte[] createContent(int length, long seed) {
+		byte[] content = new byte[length];
+		new Random(seed).nextBytes(content);
+		return content;
+	}
+}
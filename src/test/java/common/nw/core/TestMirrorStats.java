@@ -0,0 +1,110 @@
+package common.nw.core;
+
+import com.sun.net.httpserver.Headers;
+import common.nw.core.modpack.ModInfo;
+import common.nw.core.modpack.RepoMod;
+import common.nw.core.modpack.RepoModpack;
+import common.nw.core.utils.DownloadHelper;
+import common.nw.core.utils.MirrorStats;
+import common.nw.core.utils.UpdateResult;
+import common.nw.core.utils.Utils;
+import common.nw.updater.ConsoleListener;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * testclass for {@link common.nw.core.utils.MirrorStats} and downloads from multiple mirrors
+ */
+public class TestMirrorStats {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testRank() throws Exception {
+		try (LocalHttpServer slow = new LocalHttpServer(); LocalHttpServer fast = new LocalHttpServer();
+		     LocalHttpServer missing = new LocalHttpServer()) {
+			slow.serve("/mod.jar", new byte[10]);
+			fast.serve("/mod.jar", new byte[10]);
+			List<String> urls = Arrays.asList(missing.getUrl("/mod.jar"), slow.getUrl("/mod.jar"), fast.getUrl("/mod.jar"));
+
+			File file = new File(folder.getRoot(), "mirrors.json");
+			MirrorStats stats = new MirrorStats(file);
+			stats.recordDownload(slow.getUrl("/other.jar"), 1024 * 1024, 10000);
+			stats.recordDownload(fast.getUrl("/other.jar"), 1024 * 1024, 100);
+			Assert.assertEquals(Arrays.asList(urls.get(2), urls.get(1), urls.get(0)), stats.rank(urls));
+
+			//throughput is kept for the next run
+			stats.save();
+			MirrorStats loaded = new MirrorStats(file);
+			Assert.assertEquals(stats.getThroughput(urls.get(2)), loaded.getThroughput(urls.get(2)), 0.001);
+			Assert.assertEquals(-1, loaded.getThroughput(urls.get(0)), 0.001);
+
+			//failed hosts are tried last
+			loaded.recordFailure(urls.get(2));
+			Assert.assertEquals(urls.get(1), loaded.rank(urls).get(0));
+		}
+	}
+
+	@Test
+	public void testResolveRepoMirrors() {
+		RepoModpack modpack = new RepoModpack();
+		modpack.modpackRepo = "http://example.com/pack/";
+		modpack.mirrors = Collections.singletonList("http://mirror.example.com/pack");
+		RepoMod mod = new RepoMod();
+		mod.downloadUrl = "http://example.com/pack/mods/mod.jar";
+		RepoMod external = new RepoMod();
+		external.downloadUrl = "http://other.example.com/mod.jar";
+		modpack.files = Arrays.asList(mod, external);
+
+		modpack.resolveMirrors();
+		Assert.assertEquals(Arrays.asList("http://example.com/pack/mods/mod.jar", "http://mirror.example.com/pack/mods/mod.jar"), mod.getDownloadUrls());
+		Assert.assertEquals(Collections.singletonList("http://other.example.com/mod.jar"), external.getDownloadUrls());
+	}
+
+	@Test
+	public void testFailoverMidFile() throws Exception {
+		System.setProperty(Utils.CACHE_DIR_PROPERTY, folder.newFolder("cache").getPath());
+		byte[] content = new byte[300000];
+		new Random(1).nextBytes(content);
+		File expected = folder.newFile("expected.jar");
+		Files.write(expected.toPath(), content);
+
+		try (LocalHttpServer first = new LocalHttpServer(); LocalHttpServer second = new LocalHttpServer()) {
+			first.serve("/mod.jar", content).setETag("\"first\"").disconnectAfter(100000);
+			second.serve("/mod.jar", content).setETag("\"second\"");
+
+			ModInfo mod = new ModInfo("mods/mod.jar");
+			RepoMod repoMod = new RepoMod();
+			repoMod.name = "mod";
+			repoMod.setFileName("mods/mod.jar");
+			repoMod.md5 = DownloadHelper.getHash(expected);
+			repoMod.downloadUrl = first.getUrl("/mod.jar");
+			repoMod.mirrors = Collections.singletonList(second.getUrl("/mod.jar"));
+			mod.setRemoteInfo(repoMod);
+
+			//make sure the failing mirror is tried first
+			MirrorStats.getShared().recordDownload(first.getUrl("/other.jar"), 100 * 1024 * 1024, 1);
+
+			File gameDir = folder.newFolder("game");
+			Assert.assertEquals(UpdateResult.Good, DownloadHelper.getMod(new ConsoleListener(), mod, 1, 0, gameDir, false, null, null, null, null));
+			Assert.assertArrayEquals(content, Files.readAllBytes(new File(gameDir, "mods/mod.jar").toPath()));
+
+			//the second mirror continued the partial download
+			Headers request = second.getRequests().get(second.getRequests().size() - 1);
+			Assert.assertEquals("bytes=100000-", request.getFirst("Range"));
+			Assert.assertTrue(MirrorStats.getShared().getThroughput(second.getUrl("/mod.jar")) > 0);
+		} finally {
+			System.clearProperty(Utils.CACHE_DIR_PROPERTY);
+		}
+	}
+}
@@ -0,0 +1,79 @@
+package common.nw.core;
+
+import common.nw.core.modpack.ModIndex;
+import common.nw.core.modpack.ModInfo;
+import common.nw.core.modpack.ModpackValues;
+import common.nw.core.modpack.RepoMod;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+/**
+ * testclass for {@link common.nw.core.modpack.ModIndex}
+ */
+public class TestModIndex {
+
+	private static final String[] NAME_TYPES = {null, ModpackValues.Name.nameTypeFileName, ModpackValues.Name.nameTypeZipEntry, "unknown"};
+
+	@Test
+	public void testFindMatchesEquals() {
+		Random random = new Random(42);
+		//few different names, so that names and file names collide
+		List<ModInfo> mods = new ArrayList<>();
+		for (int i = 0; i < 200; i++) {
+			ModInfo mod = new ModInfo("mods/mod" + random.nextInt(50) + ".jar");
+			if (random.nextBoolean()) {
+				mod.name = "mod" + random.nextInt(50);
+				mod.hasName = true;
+			}
+			mods.add(mod);
+		}
+		ModIndex index = new ModIndex(mods);
+
+		for (int i = 0; i < 1000; i++) {
+			RepoMod remoteMod = new RepoMod();
+			remoteMod.nameType = NAME_TYPES[random.nextInt(NAME_TYPES.length)];
+			remoteMod.name = random.nextBoolean() ? "mod" + random.nextInt(60) : "mods/mod" + random.nextInt(60) + ".jar";
+			Assert.assertSame(remoteMod.name + " (" + remoteMod.nameType + ")", findFirst(mods, remoteMod), index.find(remoteMod));
+		}
+	}
+
+	@Test
+	public void testAddRemoteInformation() {
+		List<ModInfo> mods = new ArrayList<>();
+		ModInfo local = new ModInfo("mods/local.jar");
+		mods.add(local);
+
+		List<RepoMod> remoteFiles = new ArrayList<>();
+		remoteFiles.add(createRemoteMod("mods/local.jar", "mods/local.jar"));
+		remoteFiles.add(createRemoteMod("missing", "mods/missing.jar"));
+		//matches the mod added for the previous entry
+		RepoMod duplicate = createRemoteMod("missing", "mods/missing.jar");
+		remoteFiles.add(duplicate);
+
+		ModIndex.addRemoteInformation(mods, remoteFiles, 0);
+		Assert.assertEquals(2, mods.size());
+		Assert.assertSame(remoteFiles.get(0), local.getRemoteInfo());
+		Assert.assertSame(duplicate, mods.get(1).getRemoteInfo());
+	}
+
+	private static RepoMod createRemoteMod(String name, String fileName) {
+		RepoMod remoteMod = new RepoMod();
+		remoteMod.name = name;
+		remoteMod.nameType = ModpackValues.Name.nameTypeFileName;
+		remoteMod.setFileName(fileName);
+		return remoteMod;
+	}
+
+	private static ModInfo findFirst(List<ModInfo> mods, RepoMod remoteMod) {
+		for (ModInfo mod : mods) {
+			if (mod.equals(remoteMod)) {
+				return mod;
+			}
+		}
+		return null;
+	}
+}
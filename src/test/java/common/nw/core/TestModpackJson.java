@@ -0,0 +1,158 @@
+package common.nw.core;
+
+import com.google.gson.Gson;
+import common.nw.core.gui.IDownloadProgressListener;
+import common.nw.core.modpack.LocalModpack;
+import common.nw.core.modpack.ModpackJson;
+import common.nw.core.modpack.ModpackValues;
+import common.nw.core.modpack.RepoMod;
+import common.nw.core.modpack.RepoModpack;
+import common.nw.core.modpack.RepoPatch;
+import common.nw.core.modpack.RepoVersionInfo;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+
+/**
+ * testclass for {@link common.nw.core.modpack.ModpackJson}
+ */
+public class TestModpackJson {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testRepoModpackMatchesReflection() throws Exception {
+		RepoModpack modpack = createRepoModpack(100);
+		String json = new Gson().toJson(modpack);
+
+		Assert.assertEquals(json, ModpackJson.GSON.toJson(modpack));
+
+		RepoModpack read = ModpackJson.readRepoModpack(new ByteArrayInputStream(json.getBytes(StandardCharsets.UTF_8)), -1, null);
+		Assert.assertEquals(json, new Gson().toJson(read));
+	}
+
+	@Test
+	public void testLocalModpackMatchesReflection() {
+		LocalModpack modpack = new LocalModpack("test", "http://example.com/modpack.json", "1.0");
+		modpack.files.add("mods/mod.jar");
+		modpack.trackedFileVersions.put("config/mod.cfg", "2");
+		String json = new Gson().toJson(modpack);
+
+		Assert.assertEquals(json, ModpackJson.GSON.toJson(modpack));
+		Assert.assertEquals(json, new Gson().toJson(ModpackJson.GSON.fromJson(json, LocalModpack.class)));
+	}
+
+	@Test
+	public void testWriteCompact() throws Exception {
+		LocalModpack modpack = new LocalModpack("test", "http://example.com/modpack.json", "1.0");
+		modpack.files.add("mods/mod.jar");
+		File file = new File(folder.getRoot(), "modpack.json");
+		ModpackJson.write(modpack, file);
+		Assert.assertTrue(new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8).contains("\n"));
+
+		ModpackJson.writeCompact(modpack, file);
+		Assert.assertEquals(new Gson().toJson(modpack), new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8));
+		Assert.assertEquals(modpack.files, ModpackJson.readLocalModpack(file).files);
+		Assert.assertFalse(new File(folder.getRoot(), "modpack.json.tmp").exists());
+	}
+
+	@Test
+	public void testUnknownAndMissingFields() {
+		RepoModpack modpack = ModpackJson.GSON.fromJson("{\"modpackName\":\"test\",\"unknown\":{\"a\":[1,2]},"
+				+ "\"updaterRevision\":\"3\",\"files\":[{\"name\":\"mod\",\"fileName\":\"mods/mod.jar\",\"md5\":null}]}", RepoModpack.class);
+		Assert.assertEquals("test", modpack.modpackName);
+		Assert.assertEquals(3, modpack.updaterRevision);
+		Assert.assertNull(modpack.blacklist);
+		Assert.assertNull(modpack.minecraft);
+		Assert.assertEquals("mods/mod.jar", modpack.files.get(0).getFileName());
+		Assert.assertNull(modpack.files.get(0).md5);
+
+		LocalModpack local = ModpackJson.GSON.fromJson("{\"name\":\"test\"}", LocalModpack.class);
+		Assert.assertTrue(local.files.isEmpty());
+		Assert.assertTrue(local.trackedFileVersions.isEmpty());
+	}
+
+	@Test
+	public void testProgress() throws Exception {
+		byte[] json = new Gson().toJson(createRepoModpack(5000)).getBytes(StandardCharsets.UTF_8);
+		final int[] reported = {0, 0};
+		ModpackJson.readRepoModpack(new ByteArrayInputStream(json), json.length, new IDownloadProgressListener() {
+			@Override
+			public boolean isCancelled() {
+				return false;
+			}
+
+			@Override
+			public boolean isPaused() {
+				return false;
+			}
+
+			@Override
+			public void setDownloadProgress(String msg) {
+			}
+
+			@Override
+			public void setDownloadProgress(int progress) {
+				reported[0] = progress;
+			}
+
+			@Override
+			public void setDownloadProgress(String msg, int progress) {
+			}
+
+			@Override
+			public void setDownloadProgress(String msg, int progress, int maxProgress) {
+				reported[1] = maxProgress;
+			}
+		});
+		Assert.assertEquals(json.length / 1024, reported[1]);
+		Assert.assertTrue(reported[0] > reported[1] / 2);
+		Assert.assertTrue(reported[0] <= reported[1]);
+	}
+
+	private static RepoModpack createRepoModpack(int files) {
+		RepoModpack modpack = new RepoModpack();
+		modpack.modpackName = "test";
+		modpack.updaterRevision = 3;
+		modpack.minecraft = new RepoVersionInfo();
+		modpack.minecraft.version = "1.0";
+		modpack.minecraft.versionName = "1.7.10";
+		modpack.minecraft.arguments = Arrays.asList("%%=minecraft", "--tweakClass test");
+		modpack.minecraft.libraries = new ArrayList<>();
+		modpack.mirrors = Arrays.asList("http://mirror1.example.com/", "http://mirror2.example.com/");
+		modpack.files = new ArrayList<>();
+		for (int i = 0; i < files; i++) {
+			RepoMod mod = new RepoMod();
+			mod.name = "mod" + i;
+			mod.nameType = ModpackValues.Name.nameTypeFileName;
+			mod.version = "1." + i;
+			mod.downloadUrl = "http://example.com/mods/mod" + i + ".jar";
+			if (i % 7 == 0) {
+				mod.mirrors = Collections.singletonList("http://mirror.example.com/mod" + i + ".jar");
+			}
+			mod.md5 = "0123456789abcdef0123456789abcdef";
+			mod.setFileName("mods/mod" + i + ".jar");
+			mod.fileType = i % 3;
+			if (i % 10 == 0) {
+				RepoPatch patch = new RepoPatch();
+				patch.sourceMd5 = "fedcba9876543210fedcba9876543210";
+				patch.downloadUrl = "http://example.com/patches/" + patch.sourceMd5 + "-" + mod.md5 + ".patch";
+				patch.size = 100 + i;
+				mod.patches = Collections.singletonList(patch);
+			}
+			mod.deferrable = i % 5 == 0;
+			modpack.files.add(mod);
+		}
+		return modpack;
+	}
+}
@@ -0,0 +1,218 @@
+package common.nw.core;
+
+import com.google.common.util.concurrent.RateLimiter;
+import common.nw.core.modpack.LocalModpack;
+import common.nw.core.modpack.ModInfo;
+import common.nw.core.modpack.ModpackJson;
+import common.nw.core.modpack.ModpackValues;
+import common.nw.core.modpack.RepoMod;
+import common.nw.core.modpack.RepoModpack;
+import common.nw.core.utils.DownloadHelper;
+import common.nw.core.utils.Utils;
+import common.nw.updater.BackgroundStager;
+import common.nw.updater.Prefetcher;
+import common.nw.updater.StagedUpdates;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Random;
+
+/**
+ * testclass for {@link common.nw.updater.StagedUpdates}, {@link common.nw.updater.BackgroundStager}
+ * and {@link common.nw.updater.Prefetcher}
+ */
+public class TestStagedUpdates {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testStageAndCommit() throws Exception {
+		byte[] content = new byte[200000];
+		new Random(3).nextBytes(content);
+		File expected = folder.newFile("expected.zip");
+		Files.write(expected.toPath(), content);
+		String md5 = DownloadHelper.getHash(expected);
+
+		File gameDir = folder.newFolder("game");
+		File oldFile = new File(gameDir, "resourcepacks" + File.separator + "pack.zip");
+		Assert.assertTrue(oldFile.getParentFile().mkdirs());
+		Files.write(oldFile.toPath(), new byte[]{1, 2, 3});
+
+		try (LocalHttpServer server = new LocalHttpServer()) {
+			LocalHttpServer.Resource resource = server.serve("/pack.zip", content);
+			RepoMod remote = new RepoMod();
+			remote.name = "pack";
+			remote.version = "2.0";
+			remote.versionType = ModpackValues.Version.versionTypeTracked;
+			remote.downloadUrl = server.getUrl("/pack.zip");
+			remote.md5 = md5;
+			remote.deferrable = true;
+			remote.setFileName("resourcepacks/pack.zip");
+
+			StagedUpdates staged = new StagedUpdates(gameDir);
+			BackgroundStager stager = new BackgroundStager(staged, Collections.singletonList(new ModInfo(remote)),
+					null, 0, RateLimiter.create(100 * 1024 * 1024));
+			Assert.assertTrue(stager.isDaemon());
+			stager.start();
+			stager.join(30000);
+			Assert.assertFalse(stager.isAlive());
+
+			//the installed file is not touched while the game is running
+			Assert.assertArrayEquals(new byte[]{1, 2, 3}, Files.readAllBytes(oldFile.toPath()));
+			Assert.assertTrue(staged.isStaged("resourcepacks/pack.zip", md5));
+
+			//already staged files are not downloaded again
+			new BackgroundStager(staged, Collections.singletonList(new ModInfo(remote)), null, 0, RateLimiter.create(1024)).run();
+			Assert.assertEquals(1, resource.getRequestCount());
+		}
+
+		//next start
+		String fileName = "resourcepacks" + File.separator + "pack.zip";
+		LocalModpack local = new LocalModpack("pack", "http://example.com/", "1.0");
+		local.trackedFileVersions.put(fileName, "1.0");
+		Assert.assertEquals(1, new StagedUpdates(gameDir).commit(local));
+		Assert.assertArrayEquals(content, Files.readAllBytes(oldFile.toPath()));
+		Assert.assertEquals(Collections.singletonList(fileName), local.files);
+		Assert.assertEquals("2.0", local.trackedFileVersions.get(fileName));
+
+		//the journal is cleared
+		Assert.assertEquals(0, new StagedUpdates(gameDir).commit(local));
+	}
+
+	@Test
+	public void testConcurrentStaging() throws Exception {
+		byte[] content = new byte[100000];
+		new Random(5).nextBytes(content);
+		File expected = folder.newFile("expected.jar");
+		Files.write(expected.toPath(), content);
+		String md5 = DownloadHelper.getHash(expected);
+
+		File gameDir = folder.newFolder("game");
+		try (LocalHttpServer server = new LocalHttpServer()) {
+			LocalHttpServer.Resource resource = server.serve("/mod.jar", content).setDelay(500);
+			RepoMod remote = new RepoMod();
+			remote.name = "mod";
+			remote.version = "1.0";
+			remote.downloadUrl = server.getUrl("/mod.jar");
+			remote.md5 = md5;
+			remote.deferrable = true;
+			remote.setFileName("mods/mod.jar");
+
+			//both write into the same staging area, only one of them downloads the file
+			StagedUpdates staged = new StagedUpdates(gameDir);
+			BackgroundStager first = new BackgroundStager(staged, Collections.singletonList(new ModInfo(remote)),
+					null, 0, RateLimiter.create(100 * 1024 * 1024));
+			BackgroundStager second = new BackgroundStager(staged, Collections.singletonList(new ModInfo(remote)),
+					null, 0, RateLimiter.create(100 * 1024 * 1024));
+			first.start();
+			second.start();
+			first.join(30000);
+			second.join(30000);
+
+			Assert.assertEquals(1, resource.getRequestCount());
+			Assert.assertTrue(staged.isStaged("mods/mod.jar", md5));
+			Assert.assertArrayEquals(content, Files.readAllBytes(staged.getStagingFile("mods/mod.jar").toPath()));
+		}
+	}
+
+	@Test
+	public void testDamagedFileIsDiscarded() throws Exception {
+		File gameDir = folder.newFolder("game");
+		StagedUpdates staged = new StagedUpdates(gameDir);
+		File stagingFile = staged.getStagingFile("mods/mod.jar");
+		Assert.assertTrue(stagingFile.getParentFile().mkdirs());
+		Files.write(stagingFile.toPath(), new byte[]{1, 2, 3});
+		staged.add("mods/mod.jar", "0123456789abcdef0123456789abcdef", "1.0", false, false);
+
+		LocalModpack local = new LocalModpack("pack", "http://example.com/", "1.0");
+		Assert.assertEquals(0, staged.commit(local));
+		Assert.assertFalse(new File(gameDir, "mods" + File.separator + "mod.jar").exists());
+		Assert.assertFalse(stagingFile.exists());
+		Assert.assertTrue(local.files.isEmpty());
+	}
+
+	@Test
+	public void testPrefetch() throws Exception {
+		System.setProperty(Utils.CACHE_DIR_PROPERTY, folder.newFolder("cache").getPath());
+		try (LocalHttpServer server = new LocalHttpServer()) {
+			byte[] content = new byte[100000];
+			new Random(4).nextBytes(content);
+			File expected = folder.newFile("expected.jar");
+			Files.write(expected.toPath(), content);
+			LocalHttpServer.Resource resource = server.serve("/mod.jar", content);
+
+			RepoMod running = new RepoMod();
+			running.name = "mod";
+			running.version = "1.0";
+			running.md5 = "0123456789abcdef0123456789abcdef";
+			running.downloadUrl = server.getUrl("/mod.jar");
+			running.setFileName("mods/mod.jar");
+			RepoMod unchanged = new RepoMod();
+			unchanged.name = "config";
+			unchanged.version = "1.0";
+			unchanged.md5 = "fedcba9876543210fedcba9876543210";
+			unchanged.downloadUrl = server.getUrl("/config.cfg");
+			unchanged.setFileName("config/config.cfg");
+
+			RepoMod next = new RepoMod();
+			next.name = "mod";
+			next.version = "2.0";
+			next.md5 = DownloadHelper.getHash(expected);
+			next.downloadUrl = server.getUrl("/mod.jar");
+			next.setFileName("mods/mod.jar");
+			RepoModpack nextModpack = new RepoModpack();
+			nextModpack.files = Arrays.asList(next, unchanged);
+			File manifest = folder.newFile("modpack.json");
+			ModpackJson.write(nextModpack, manifest);
+			LocalHttpServer.Resource manifestResource = server.serve("/modpack.json", Files.readAllBytes(manifest.toPath()));
+			manifestResource.setETag("\"v2\"");
+
+			File gameDir = folder.newFolder("game");
+			StagedUpdates staged = new StagedUpdates(gameDir);
+			Prefetcher prefetcher = new Prefetcher(staged, server.getUrl("/modpack.json"), Arrays.asList(running, unchanged),
+					null, 0, 60000, RateLimiter.create(100 * 1024 * 1024));
+			Assert.assertEquals(1, prefetcher.check());
+			Assert.assertEquals(1, resource.getRequestCount());
+			Assert.assertFalse(new File(gameDir, "mods").exists());
+
+			//the manifest is checked conditionally, nothing is downloaded again
+			Assert.assertEquals(0, prefetcher.check());
+			Assert.assertEquals(2, manifestResource.getRequestCount());
+			Assert.assertEquals(1, resource.getRequestCount());
+
+			//prefetched files are not installed on start, only when the update needs them
+			LocalModpack local = new LocalModpack("pack", server.getUrl("/modpack.json"), "1.0");
+			Assert.assertEquals(0, staged.commit(local));
+			File target = new File(gameDir, "mods" + File.separator + "mod.jar");
+			Assert.assertFalse(staged.install("mods/mod.jar", running.md5, target));
+			Assert.assertTrue(staged.install("mods/mod.jar", next.md5, target));
+			Assert.assertArrayEquals(content, Files.readAllBytes(target.toPath()));
+			Assert.assertFalse(staged.isStaged("mods/mod.jar", next.md5));
+		} finally {
+			System.clearProperty(Utils.CACHE_DIR_PROPERTY);
+		}
+	}
+
+	@Test
+	public void testDiscardPrefetched() throws Exception {
+		File gameDir = folder.newFolder("game");
+		StagedUpdates staged = new StagedUpdates(gameDir);
+		File stagingFile = staged.getStagingFile("mods/mod.jar");
+		Assert.assertTrue(stagingFile.getParentFile().mkdirs());
+		Files.write(stagingFile.toPath(), new byte[]{1, 2, 3});
+		String md5 = DownloadHelper.getHash(stagingFile);
+		staged.add("mods/mod.jar", md5, "2.0", false, true);
+		Assert.assertTrue(staged.isStaged("mods/mod.jar", md5));
+
+		staged.discardPrefetched();
+		Assert.assertFalse(staged.isStaged("mods/mod.jar", md5));
+		Assert.assertFalse(stagingFile.exists());
+	}
+}
@@ -0,0 +1,82 @@
+package common.nw.core;
+
+import common.nw.installer.TaskGraph;
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * testclass for {@link common.nw.installer.TaskGraph}
+ */
+public class TestTaskGraph {
+
+	@Test
+	public void testIndependentTasksRunConcurrently() {
+		//both tasks only finish if they run at the same time
+		CountDownLatch latch = new CountDownLatch(2);
+		TaskGraph graph = new TaskGraph();
+		TaskGraph.Task a = graph.add("a", () -> {
+			latch.countDown();
+			return latch.await(10, TimeUnit.SECONDS);
+		});
+		TaskGraph.Task b = graph.add("b", () -> {
+			latch.countDown();
+			return latch.await(10, TimeUnit.SECONDS);
+		});
+		TaskGraph.Task c = graph.add("c", () -> {
+			Thread.sleep(50);
+			return true;
+		}, a, b);
+		Assert.assertTrue(graph.run(2));
+		Assert.assertTrue(a.isSucceeded());
+		Assert.assertTrue(b.isSucceeded());
+		Assert.assertTrue(c.isSucceeded());
+		Assert.assertEquals(c, graph.getCriticalPath().get(graph.getCriticalPath().size() - 1));
+	}
+
+	@Test
+	public void testCriticalPath() {
+		TaskGraph graph = new TaskGraph();
+		TaskGraph.Task dirs = graph.add("dirs", () -> true);
+		TaskGraph.Task json = graph.add("json", () -> {
+			Thread.sleep(100);
+			return true;
+		});
+		TaskGraph.Task write = graph.add("write", () -> true, dirs, json);
+		graph.add("jar", () -> true, dirs);
+		Assert.assertTrue(graph.run(3));
+		Assert.assertEquals(Arrays.asList(json, write), graph.getCriticalPath());
+		Assert.assertTrue(json.getDuration() >= 100);
+		Assert.assertTrue(graph.getReport().contains(" * json"));
+	}
+
+	@Test
+	public void testFailedDependencySkipsTask() {
+		AtomicInteger runs = new AtomicInteger();
+		TaskGraph graph = new TaskGraph();
+		TaskGraph.Task json = graph.add("json", () -> {
+			throw new IllegalStateException("offline");
+		});
+		TaskGraph.Task write = graph.add("write", () -> runs.incrementAndGet() > 0, json);
+		TaskGraph.Task jar = graph.add("jar", () -> runs.incrementAndGet() > 0);
+		Assert.assertFalse(graph.run(2));
+		Assert.assertEquals(TaskGraph.State.FAILED, json.getState());
+		Assert.assertEquals(TaskGraph.State.SKIPPED, write.getState());
+		Assert.assertTrue(jar.isSucceeded());
+		Assert.assertEquals(1, runs.get());
+	}
+
+	@Test
+	public void testRetry() {
+		AtomicInteger runs = new AtomicInteger();
+		TaskGraph graph = new TaskGraph();
+		TaskGraph.Task json = graph.add("json", () -> runs.incrementAndGet() > 1);
+		graph.setRetryPolicy(task -> task.getAttempts() < 3);
+		Assert.assertTrue(graph.run(1));
+		Assert.assertEquals(2, json.getAttempts());
+	}
+}
@@ -0,0 +1,69 @@
+package common.nw.core;
+
+import common.nw.core.modpack.LocalFileIndex;
+import common.nw.core.modpack.LocalModpack;
+import common.nw.updater.UpdateJournal;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.StandardOpenOption;
+
+/**
+ * testclass for {@link common.nw.updater.UpdateJournal}
+ */
+public class TestUpdateJournal {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testReplay() throws Exception {
+		File gameDir = folder.newFolder("game");
+		File mods = new File(gameDir, "mods");
+		Assert.assertTrue(mods.mkdirs());
+		File a = new File(mods, "a.jar");
+		File b = new File(mods, "b.jar");
+		Files.write(a.toPath(), new byte[]{1, 2, 3});
+		Files.write(b.toPath(), new byte[]{4, 5, 6});
+		//not the real hashes, the replayed hash is only used if the file did not change
+		String md5A = "0123456789abcdef0123456789abcdef";
+		String md5B = "fedcba9876543210fedcba9876543210";
+
+		UpdateJournal journal = new UpdateJournal(gameDir);
+		journal.record("mods" + File.separator + "a.jar", md5A, "1.0", false);
+		journal.record("mods" + File.separator + "b.jar", md5B, "2.0", true);
+		//the updater crashes while writing the next record
+		Files.write(new File(gameDir, UpdateJournal.FILE_NAME).toPath(), "{\"fileName\":\"mods/c".getBytes(StandardCharsets.UTF_8),
+				StandardOpenOption.APPEND);
+		Assert.assertTrue(b.setLastModified(b.lastModified() - 10000));
+
+		LocalModpack local = new LocalModpack("test", "http://example.com/modpack.json", "1.0");
+		LocalFileIndex index = new LocalFileIndex(gameDir);
+		UpdateJournal next = new UpdateJournal(gameDir);
+		Assert.assertEquals(2, next.replay(local, index));
+		Assert.assertTrue(local.files.contains("mods" + File.separator + "a.jar"));
+		Assert.assertTrue(local.files.contains("mods" + File.separator + "b.jar"));
+		Assert.assertEquals("2.0", local.trackedFileVersions.get("mods" + File.separator + "b.jar"));
+		Assert.assertFalse(local.trackedFileVersions.containsKey("mods" + File.separator + "a.jar"));
+		Assert.assertEquals(md5A, index.getHash(a));
+		//b changed after it was recorded
+		Assert.assertNotEquals(md5B, index.getHash(b));
+
+		//replaying twice does not duplicate files
+		Assert.assertEquals(2, new UpdateJournal(gameDir).replay(local, null));
+		Assert.assertEquals(2, local.files.size());
+
+		//records appended after the incomplete one are readable
+		next.record("mods" + File.separator + "c.jar", md5A, "1.0", false);
+		Assert.assertEquals(3, new UpdateJournal(gameDir).replay(local, null));
+
+		next.delete();
+		Assert.assertFalse(new File(gameDir, UpdateJournal.FILE_NAME).exists());
+		journal.close();
+	}
+}
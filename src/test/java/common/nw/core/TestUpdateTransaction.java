@@ -0,0 +1,147 @@
+package common.nw.core;
+
+import common.nw.updater.UpdateTransaction;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.Collections;
+
+/**
+ * testclass for {@link common.nw.updater.UpdateTransaction}
+ */
+public class TestUpdateTransaction {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	private File gameDir;
+
+	@Before
+	public void setUp() throws IOException {
+		gameDir = folder.newFolder("game");
+		write(new File(gameDir, "mods/a.jar"), "old a");
+		write(new File(gameDir, "mods/b.jar"), "old b");
+		write(new File(gameDir, "modpack.json"), "old modpack");
+	}
+
+	@Test
+	public void testCommit() throws IOException {
+		UpdateTransaction transaction = new UpdateTransaction(gameDir);
+		stage(transaction);
+		Assert.assertTrue(transaction.isPrepared());
+
+		//the game directory is not changed until the commit
+		Assert.assertEquals("old a", read(new File(gameDir, "mods/a.jar")));
+		Assert.assertTrue(new File(gameDir, "mods/b.jar").exists());
+		Assert.assertFalse(new File(gameDir, "mods/c.jar").exists());
+
+		Assert.assertTrue(new UpdateTransaction(gameDir).commit());
+		assertCommitted();
+
+		//nothing left to commit
+		Assert.assertFalse(new UpdateTransaction(gameDir).commit());
+	}
+
+	@Test
+	public void testInterruptedCommitIsRolledForward() throws IOException {
+		UpdateTransaction transaction = new UpdateTransaction(gameDir);
+		stage(transaction);
+
+		//simulate a commit that stopped after the first rename
+		File journal = new File(transaction.getStagingDir(), "transaction.json");
+		write(journal, read(journal).replace("\"prepared\"", "\"committing\""));
+		File backup = new File(gameDir, UpdateTransaction.BACKUP_DIR_NAME + "/mods/a.jar");
+		Assert.assertTrue(backup.getParentFile().mkdirs());
+		Files.move(new File(gameDir, "mods/a.jar").toPath(), backup.toPath());
+		Files.move(new File(transaction.getStagingDir(), "mods/a.jar").toPath(), new File(gameDir, "mods/a.jar").toPath());
+
+		Assert.assertTrue(new UpdateTransaction(gameDir).commit());
+		assertCommitted();
+	}
+
+	@Test
+	public void testFailedCommitIsRolledBack() throws IOException {
+		UpdateTransaction transaction = new UpdateTransaction(gameDir);
+		stage(transaction);
+		write(new File(transaction.getStagingDir(), "config/mod.cfg"), "config");
+		transaction.prepare(Collections.singletonList("mods" + File.separator + "b.jar"));
+		//the directory of the config can not be created
+		write(new File(gameDir, "config"), "not a directory");
+
+		Assert.assertFalse(transaction.commit());
+		Assert.assertEquals("old a", read(new File(gameDir, "mods/a.jar")));
+		Assert.assertEquals("old b", read(new File(gameDir, "mods/b.jar")));
+		Assert.assertEquals("old modpack", read(new File(gameDir, "modpack.json")));
+		Assert.assertFalse(new File(gameDir, "mods/c.jar").exists());
+		//the update can be committed again
+		Assert.assertTrue(transaction.isPrepared());
+		Assert.assertEquals("new c", read(new File(transaction.getStagingDir(), "mods/c.jar")));
+	}
+
+	@Test
+	public void testLeftoverBackupIsNotRestored() throws IOException {
+		//a backup of an earlier commit that could not be deleted
+		File leftover = new File(gameDir, UpdateTransaction.BACKUP_DIR_NAME + "/mods/a.jar");
+		write(leftover, "older a");
+		UpdateTransaction transaction = new UpdateTransaction(gameDir);
+		transaction.begin();
+		Assert.assertFalse(leftover.exists());
+
+		stage(transaction);
+		write(new File(transaction.getStagingDir(), "config/mod.cfg"), "config");
+		transaction.prepare(Collections.singletonList("mods" + File.separator + "b.jar"));
+		write(leftover, "older a");
+		write(new File(gameDir, "config"), "not a directory");
+
+		Assert.assertFalse(transaction.commit());
+		Assert.assertEquals("old a", read(new File(gameDir, "mods/a.jar")));
+		Assert.assertEquals("new a", read(new File(transaction.getStagingDir(), "mods/a.jar")));
+	}
+
+	@Test
+	public void testIncompleteUpdateIsDiscarded() throws IOException {
+		UpdateTransaction transaction = new UpdateTransaction(gameDir);
+		stage(transaction);
+		write(new File(transaction.getStagingDir(), "mods/c.jar"), "truncated");
+
+		Assert.assertFalse(transaction.commit());
+		Assert.assertFalse(transaction.getStagingDir().exists());
+		Assert.assertEquals("old a", read(new File(gameDir, "mods/a.jar")));
+	}
+
+	private void stage(UpdateTransaction transaction) throws IOException {
+		transaction.begin();
+		write(new File(transaction.getStagingDir(), "mods/a.jar"), "new a");
+		write(new File(transaction.getStagingDir(), "mods/c.jar"), "new c");
+		write(new File(transaction.getStagingDir(), "modpack.json"), "new modpack");
+		transaction.prepare(Collections.singletonList("mods" + File.separator + "b.jar"));
+	}
+
+	private void assertCommitted() throws IOException {
+		Assert.assertEquals("new a", read(new File(gameDir, "mods/a.jar")));
+		Assert.assertEquals("new c", read(new File(gameDir, "mods/c.jar")));
+		Assert.assertEquals("new modpack", read(new File(gameDir, "modpack.json")));
+		Assert.assertFalse(new File(gameDir, "mods/b.jar").exists());
+		Assert.assertFalse(new File(gameDir, UpdateTransaction.DIR_NAME).exists());
+		Assert.assertFalse(new File(gameDir, UpdateTransaction.BACKUP_DIR_NAME).exists());
+	}
+
+	private static void write(File file, String content) throws IOException {
+		File parent = file.getParentFile();
+		if (!parent.isDirectory()) {
+			Assert.assertTrue(parent.mkdirs());
+		}
+		Files.write(file.toPath(), content.getBytes(StandardCharsets.UTF_8));
+	}
+
+	private static String read(File file) throws IOException {
+		return new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8);
+	}
+}
@@ -0,0 +1,149 @@
+package common.nw.core;
+
+import com.sun.net.httpserver.Headers;
+import common.nw.core.utils.DownloadHelper;
+import common.nw.core.utils.ZipDeltaDownload;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.Random;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * testclass for {@link common.nw.core.utils.ZipDeltaDownload}
+ */
+public class TestZipDeltaDownload {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testChangedEntries() throws Exception {
+		byte[][] classes = createClasses(200, 1);
+		File local = folder.newFile("mod.jar");
+		Files.write(local.toPath(), createJar(classes));
+
+		//new version: one changed and one added class
+		Random random = new Random(2);
+		random.nextBytes(classes[100]);
+		byte[][] newClasses = new byte[classes.length + 1][];
+		System.arraycopy(classes, 0, newClasses, 0, classes.length);
+		newClasses[classes.length] = new byte[1000];
+		random.nextBytes(newClasses[classes.length]);
+		byte[] remote = createJar(newClasses);
+
+		try (LocalHttpServer server = new LocalHttpServer()) {
+			server.serve("/mod.jar", remote).setETag("\"v2\"");
+			File target = new File(folder.getRoot(), "mod.jar.tmp");
+			String md5 = new ZipDeltaDownload(server.getUrl("/mod.jar"), new TestDownloadHelper.SilentListener()).download(local, target);
+
+			Assert.assertArrayEquals(remote, Files.readAllBytes(target.toPath()));
+			Assert.assertEquals(DownloadHelper.getHash(target), md5);
+
+			long requested = 0;
+			for (Headers headers : server.getRequests()) {
+				String[] range = headers.getFirst("Range").substring(6).split("-", -1);
+				requested += range[0].isEmpty() ? Long.parseLong(range[1]) : Long.parseLong(range[1]) - Long.parseLong(range[0]) + 1;
+			}
+			Assert.assertTrue("requested " + requested + " of " + remote.length + " bytes", requested < remote.length / 5);
+		}
+	}
+
+	@Test
+	public void testInterleavedChanges() throws Exception {
+		byte[][] classes = createClasses(200, 6);
+		File local = folder.newFile("mod.jar");
+		Files.write(local.toPath(), createJar(classes));
+
+		//every other class of a small block changed, the unchanged classes in between are downloaded too
+		Random random = new Random(7);
+		for (int i = 100; i < 110; i += 2) {
+			random.nextBytes(classes[i]);
+		}
+		byte[] remote = createJar(classes);
+
+		try (LocalHttpServer server = new LocalHttpServer()) {
+			server.serve("/mod.jar", remote).setETag("\"v2\"");
+			File target = new File(folder.getRoot(), "mod.jar.tmp");
+			String md5 = new ZipDeltaDownload(server.getUrl("/mod.jar"), null).download(local, target);
+
+			Assert.assertArrayEquals(remote, Files.readAllBytes(target.toPath()));
+			Assert.assertEquals(DownloadHelper.getHash(target), md5);
+			//the tail and one range
+			Assert.assertEquals(2, server.getRequests().size());
+		}
+	}
+
+	@Test
+	public void testMostlyChanged() throws Exception {
+		byte[][] classes = createClasses(200, 8);
+		File local = folder.newFile("mod.jar");
+		Files.write(local.toPath(), createJar(classes));
+		Random random = new Random(9);
+		for (int i = 0; i < classes.length; i += 2) {
+			random.nextBytes(classes[i]);
+		}
+
+		try (LocalHttpServer server = new LocalHttpServer()) {
+			server.serve("/mod.jar", createJar(classes)).setETag("\"v2\"");
+			File target = new File(folder.getRoot(), "mod.jar.tmp");
+			Assert.assertNull(new ZipDeltaDownload(server.getUrl("/mod.jar"), null).download(local, target));
+			//only the central directory was requested
+			Assert.assertEquals(1, server.getRequests().size());
+		}
+	}
+
+	@Test
+	public void testNoRangeSupport() throws Exception {
+		byte[][] classes = createClasses(10, 3);
+		File local = folder.newFile("mod.jar");
+		Files.write(local.toPath(), createJar(classes));
+		try (LocalHttpServer server = new LocalHttpServer()) {
+			server.serve("/mod.jar", createJar(createClasses(10, 4))).setSupportsRanges(false);
+			File target = new File(folder.getRoot(), "mod.jar.tmp");
+			Assert.assertNull(new ZipDeltaDownload(server.getUrl("/mod.jar"), null).download(local, target));
+		}
+	}
+
+	@Test
+	public void testNoZip() throws Exception {
+		File local = folder.newFile("mod.jar");
+		Files.write(local.toPath(), new byte[100]);
+		try (LocalHttpServer server = new LocalHttpServer()) {
+			server.serve("/mod.jar", createJar(createClasses(10, 5)));
+			Assert.assertNull(new ZipDeltaDownload(server.getUrl("/mod.jar"), null).download(local, new File(folder.getRoot(), "mod.jar.tmp")));
+			Assert.assertEquals(0, server.getRequests().size());
+		}
+	}
+
+	private static byte[][] createClasses(int count, long seed) {
+		Random random = new Random(seed);
+		byte[][] classes = new byte[count][];
+		for (int i = 0; i < count; i++) {
+			classes[i] = new byte[1000 + random.nextInt(4000)];
+			random.nextBytes(classes[i]);
+		}
+		return classes;
+	}
+
+	private static byte[] createJar(byte[][] classes) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		try (ZipOutputStream zip = new ZipOutputStream(out)) {
+			for (int i = 0; i < classes.length; i++) {
+				ZipEntry entry = new ZipEntry("test/Class" + i + ".class");
+				entry.setTime(0);
+				zip.putNextEntry(entry);
+				zip.write(classes[i]);
+				zip.closeEntry();
+			}
+		}
+		return out.toByteArray();
+	}
+}
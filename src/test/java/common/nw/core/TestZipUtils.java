@@ -0,0 +1,95 @@
+package common.nw.core;
+
+import common.nw.core.modpack.ModInfo;
+import common.nw.core.utils.ZipUtils;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipException;
+import java.util.zip.ZipOutputStream;
+
+/**
+ * testclass for {@link common.nw.core.utils.ZipUtils}
+ */
+public class TestZipUtils {
+
+	@Rule
+	public TemporaryFolder folder = new TemporaryFolder();
+
+	@Test
+	public void testFindEntry() throws Exception {
+		File jar = createJar(1000, "assets/examplemod/mod.info", null);
+
+		Assert.assertEquals("assets/examplemod/mod.info", ZipUtils.findEntryEndingWith(jar, "mod.info"));
+		Assert.assertEquals("common/test/Class999.class", ZipUtils.findEntryEndingWith(jar, "Class999.class"));
+		Assert.assertNull(ZipUtils.findEntryEndingWith(jar, "litemod.json"));
+	}
+
+	@Test
+	public void testFindEntryWithComment() throws Exception {
+		File jar = createJar(10, "mcmod.info", "comment containing PK\u0005\u0006");
+
+		Assert.assertEquals("mcmod.info", ZipUtils.findEntryEndingWith(jar, "mod.info"));
+	}
+
+	@Test
+	public void testFindEntryWithPrependedData() throws Exception {
+		File jar = createJar(10, "mcmod.info", null);
+		byte[] zip = Files.readAllBytes(jar.toPath());
+		try (OutputStream out = new FileOutputStream(jar)) {
+			out.write(new byte[1000]);
+			out.write(zip);
+		}
+
+		Assert.assertEquals("mcmod.info", ZipUtils.findEntryEndingWith(jar, "mod.info"));
+	}
+
+	@Test(expected = ZipException.class)
+	public void testNoZipFile() throws Exception {
+		File file = folder.newFile("mod.jar");
+		Files.write(file.toPath(), new byte[100]);
+
+		ZipUtils.findEntryEndingWith(file, "mod.info");
+	}
+
+	@Test
+	public void testGetVersionFileFromZip() throws Exception {
+		File jar = createJar(100, "assets/examplemod/mod.info", null);
+		Assert.assertEquals("assets/examplemod/mod.info", ModInfo.getVersionFileFromZip(jar, "*mod.info"));
+
+		//the cached content is not used when the file changes
+		jar = createJar(100, "mcmod.info", null);
+		Assert.assertTrue(jar.setLastModified(jar.lastModified() + 2000));
+		Assert.assertEquals("mcmod.info", ModInfo.getVersionFileFromZip(jar, "*mod.info"));
+	}
+
+	/**
+	 * creates a jar with the given number of class files followed by the given mod info file (containing its name)
+	 */
+	private File createJar(int classes, String modInfo, String comment) throws IOException {
+		File jar = new File(folder.getRoot(), "mod.jar");
+		try (ZipOutputStream out = new ZipOutputStream(new FileOutputStream(jar))) {
+			for (int i = 0; i < classes; i++) {
+				out.putNextEntry(new ZipEntry("common/test/Class" + i + ".class"));
+				out.write(new byte[16]);
+				out.closeEntry();
+			}
+			out.putNextEntry(new ZipEntry(modInfo));
+			out.write(modInfo.getBytes(StandardCharsets.UTF_8));
+			out.closeEntry();
+			if (comment != null) {
+				out.setComment(comment);
+			}
+		}
+		return jar;
+	}
+}